@@ -0,0 +1,73 @@
+package org.briarheart.orchestra.mail;
+
+import org.joda.time.Period;
+import org.joda.time.PeriodType;
+import org.joda.time.format.PeriodFormat;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.support.MessageSourceAccessor;
+import org.springframework.context.support.ResourceBundleMessageSource;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures cost of rendering of password reset email (subject and text) with message source and with
+ * {@link MailTemplateEngine}. Run with {@code ./gradlew jmh -Pjmh.include=MailTemplateBenchmark}.
+ *
+ * @author Roman Chigvintsev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MailTemplateBenchmark {
+    private static final String SUBJECT_CODE = "user.password-reset.message.subject";
+    private static final String TEXT_CODE = "user.password-reset.message.text";
+    private static final String APPLICATION_NAME = "Orchestra";
+    private static final String FULL_NAME = "Alice";
+    private static final String LINK = "https://orchestra.com/account/password/reset/confirmation?userId=1"
+            + "&token=7b4d3b2c-2a36-4b25-8c4c-0c3f8a3d0f51";
+    private static final Duration TOKEN_EXPIRATION_TIMEOUT = Duration.ofHours(24);
+
+    @Param({"en", "ru"})
+    private String language;
+
+    private Locale locale;
+    private MessageSourceAccessor messages;
+    private MailTemplateEngine templateEngine;
+    private String formattedTokenExpirationTimeout;
+
+    @Setup
+    public void setUp() {
+        locale = new Locale(language);
+
+        ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
+        messageSource.setBasename("messages");
+        messages = new MessageSourceAccessor(messageSource);
+        templateEngine = new MailTemplateEngine(messages);
+        formattedTokenExpirationTimeout = formatTokenExpirationTimeout(locale);
+    }
+
+    @Benchmark
+    public void messageSource(Blackhole blackhole) {
+        blackhole.consume(messages.getMessage(SUBJECT_CODE, new Object[]{APPLICATION_NAME}, locale));
+        String linkExpiresAfter = formatTokenExpirationTimeout(locale);
+        blackhole.consume(messages.getMessage(TEXT_CODE, new Object[]{FULL_NAME, LINK, linkExpiresAfter}, locale));
+    }
+
+    @Benchmark
+    public void templateEngine(Blackhole blackhole) {
+        blackhole.consume(templateEngine.render(SUBJECT_CODE, locale, APPLICATION_NAME));
+        blackhole.consume(templateEngine.render(TEXT_CODE, locale, FULL_NAME, LINK,
+                formattedTokenExpirationTimeout));
+    }
+
+    private static String formatTokenExpirationTimeout(Locale locale) {
+        Period period = new Period(TOKEN_EXPIRATION_TIMEOUT.toMillis());
+        return PeriodFormat.wordBased(locale).print(period.normalizedStandard(PeriodType.dayTime()));
+    }
+}
@@ -0,0 +1,68 @@
+package org.briarheart.orchestra.security.web.server.authentication.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures cost of signature verification and parsing of access token with {@link HmacJwtParser} and with general
+ * purpose jjwt parser. Token contains the same claims as token issued by {@link JwtService}. Run with
+ * {@code ./gradlew jmh -Pjmh.include=HmacJwtParserBenchmark}.
+ *
+ * @author Roman Chigvintsev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HmacJwtParserBenchmark {
+    private static final Duration TOKEN_VALIDITY = Duration.ofDays(1);
+
+    private String tokenValue;
+    private HmacJwtParser hmacJwtParser;
+    private JwtParser jjwtParser;
+
+    @Setup
+    public void setUp() {
+        SecretKey secretKey = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        Instant issuedAt = Instant.now();
+        tokenValue = Jwts.builder()
+                .setId(UUID.randomUUID().toString())
+                .setSubject("1")
+                .claim(JwtClaim.EMAIL.getName(), "alice@mail.com")
+                .claim(JwtClaim.FULL_NAME.getName(), "Alice")
+                .claim(JwtClaim.PROFILE_PICTURE_URL.getName(), "https://orchestra.com/v1/users/1/profile-picture")
+                .setIssuedAt(Date.from(issuedAt))
+                .setExpiration(Date.from(issuedAt.plus(TOKEN_VALIDITY)))
+                .signWith(secretKey, SignatureAlgorithm.HS512)
+                .compact();
+
+        JwtSigningKey signingKey = new JwtSigningKey(null, SignatureAlgorithm.HS512, secretKey.getEncoded());
+        hmacJwtParser = new HmacJwtParser(new JwtKeySet(signingKey));
+        jjwtParser = Jwts.parser().setSigningKey(secretKey);
+    }
+
+    @Benchmark
+    public void hmacJwtParser(Blackhole blackhole) {
+        blackhole.consume(hmacJwtParser.parse(tokenValue));
+    }
+
+    @Benchmark
+    public void jjwtParser(Blackhole blackhole) {
+        Claims claims = jjwtParser.parseClaimsJws(tokenValue).getBody();
+        blackhole.consume(new Jwt.Builder(tokenValue).claims(claims).build());
+    }
+}
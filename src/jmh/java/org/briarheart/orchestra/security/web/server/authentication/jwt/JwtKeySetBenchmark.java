@@ -0,0 +1,100 @@
+package org.briarheart.orchestra.security.web.server.authentication.jwt;
+
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures cost of verification key lookup in {@link JwtKeySet}, of signing of access token with the current signing
+ * key and of verification of access tokens signed with the current signing key and with the oldest of rotated keys
+ * depending on signature algorithm and on the number of verification keys. EdDSA is not measured since it is not
+ * supported by jjwt. Run with {@code ./gradlew jmh -Pjmh.include=JwtKeySetBenchmark}.
+ *
+ * @author Roman Chigvintsev
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JwtKeySetBenchmark {
+    private static final Duration TOKEN_VALIDITY = Duration.ofDays(1);
+
+    @Param({"HS256", "HS384", "HS512"})
+    private SignatureAlgorithm algorithm;
+
+    @Param({"1", "4", "16"})
+    private int keyCount;
+
+    private JwtKeySet keySet;
+    private JwtSigningKey signingKey;
+    private HmacJwtParser parser;
+    private String signingKeyId;
+    private String oldestKeyId;
+    private String tokenSignedWithSigningKey;
+    private String tokenSignedWithOldestKey;
+
+    @Setup
+    public void setUp() {
+        List<JwtSigningKey> keys = new ArrayList<>();
+        for (int i = 0; i < keyCount; i++) {
+            keys.add(new JwtSigningKey("key-" + i, algorithm, Keys.secretKeyFor(algorithm).getEncoded()));
+        }
+        signingKey = keys.get(keys.size() - 1);
+        JwtSigningKey oldestKey = keys.get(0);
+        keySet = new JwtKeySet(signingKey, keys.subList(0, keys.size() - 1));
+        parser = new HmacJwtParser(keySet);
+
+        signingKeyId = signingKey.getId();
+        oldestKeyId = oldestKey.getId();
+        tokenSignedWithSigningKey = createToken(signingKey);
+        tokenSignedWithOldestKey = createToken(oldestKey);
+    }
+
+    @Benchmark
+    public void lookUpSigningKey(Blackhole blackhole) {
+        blackhole.consume(keySet.getVerificationKey(signingKeyId));
+    }
+
+    @Benchmark
+    public void lookUpOldestKey(Blackhole blackhole) {
+        blackhole.consume(keySet.getVerificationKey(oldestKeyId));
+    }
+
+    @Benchmark
+    public void signToken(Blackhole blackhole) {
+        blackhole.consume(createToken(signingKey));
+    }
+
+    @Benchmark
+    public void verifyTokenSignedWithSigningKey(Blackhole blackhole) {
+        blackhole.consume(parser.parse(tokenSignedWithSigningKey));
+    }
+
+    @Benchmark
+    public void verifyTokenSignedWithOldestKey(Blackhole blackhole) {
+        blackhole.consume(parser.parse(tokenSignedWithOldestKey));
+    }
+
+    private static String createToken(JwtSigningKey key) {
+        Instant issuedAt = Instant.now();
+        return Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, key.getId())
+                .setSubject("1")
+                .setIssuedAt(Date.from(issuedAt))
+                .setExpiration(Date.from(issuedAt.plus(TOKEN_VALIDITY)))
+                .signWith(key.getSecretKey(), key.getAlgorithm())
+                .compact();
+    }
+}
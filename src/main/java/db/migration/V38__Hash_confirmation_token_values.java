@@ -0,0 +1,58 @@
+package db.migration;
+
+import org.briarheart.orchestra.model.AbstractToken;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Fills "token_hash" column of confirmation token tables with digests of existing token values so that confirmation
+ * links sent before migration remain valid. Digests are computed in Java since PostgreSQL and H2 used in tests do not
+ * share SHA-256 function. Older tokens with duplicated values are deleted as digests must be unique.
+ *
+ * @author Roman Chigvintsev
+ */
+@SuppressWarnings({"SqlResolve", "unused"})
+public class V38__Hash_confirmation_token_values extends BaseJavaMigration {
+    private static final String[] TABLES = {"email_confirmation_token", "password_reset_confirmation_token"};
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        for (String table : TABLES) {
+            hashTokenValues(connection, table);
+        }
+    }
+
+    private static void hashTokenValues(Connection connection, String table) throws SQLException {
+        Set<String> tokenValues = new HashSet<>();
+        try (Statement select = connection.createStatement();
+             ResultSet tokens = select.executeQuery("SELECT id, token_value FROM " + table
+                     + " ORDER BY created_at DESC");
+             PreparedStatement update = connection.prepareStatement("UPDATE " + table
+                     + " SET token_hash = ? WHERE id = ?");
+             PreparedStatement delete = connection.prepareStatement("DELETE FROM " + table + " WHERE id = ?")) {
+            while (tokens.next()) {
+                long id = tokens.getLong("id");
+                String tokenValue = tokens.getString("token_value");
+                if (tokenValues.add(tokenValue)) {
+                    update.setString(1, AbstractToken.hashTokenValue(tokenValue));
+                    update.setLong(2, id);
+                    update.addBatch();
+                } else {
+                    delete.setLong(1, id);
+                    delete.addBatch();
+                }
+            }
+            update.executeBatch();
+            delete.executeBatch();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.briarheart.orchestra.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * @author Roman Chigvintsev
+ */
+@Configuration
+@ConfigurationProperties("application.mail")
+@Getter
+@Setter
+public class ApplicationMailProperties {
+    private Outbox outbox = new Outbox();
+    private Pool pool = new Pool();
+
+    @Getter
+    @Setter
+    public static class Outbox {
+        /**
+         * Interval of checking email outbox for messages that are due to be sent.
+         */
+        private Duration pollInterval = Duration.of(2, ChronoUnit.SECONDS);
+        /**
+         * Maximum number of messages sent over single SMTP connection.
+         */
+        private int batchSize = 50;
+        /**
+         * Number of failed attempts after which message is moved to dead letters.
+         */
+        private int maxAttempts = 10;
+        private Duration initialBackoff = Duration.of(30, ChronoUnit.SECONDS);
+        private Duration maxBackoff = Duration.of(1, ChronoUnit.HOURS);
+        /**
+         * Time after which messages claimed by dispatcher that failed to report sending result (for example because
+         * application was stopped) are sent again.
+         */
+        private Duration claimTimeout = Duration.of(5, ChronoUnit.MINUTES);
+    }
+
+    @Getter
+    @Setter
+    public static class Pool {
+        /**
+         * Maximum number of simultaneously open connections to mail server.
+         */
+        private int maxSize = 4;
+        private Duration borrowTimeout = Duration.of(30, ChronoUnit.SECONDS);
+        /**
+         * Idle time after which connection is checked before reuse.
+         */
+        private Duration validationInterval = Duration.of(10, ChronoUnit.SECONDS);
+        /**
+         * Idle time after which connection is closed. Keep it less than idle timeout of mail server.
+         */
+        private Duration maxIdleTime = Duration.of(1, ChronoUnit.MINUTES);
+        private Duration evictionInterval = Duration.of(30, ChronoUnit.SECONDS);
+    }
+}
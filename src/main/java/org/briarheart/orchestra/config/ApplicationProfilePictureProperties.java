@@ -0,0 +1,60 @@
+package org.briarheart.orchestra.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+/**
+ * @author Roman Chigvintsev
+ */
+@Configuration
+@ConfigurationProperties("application.profile-picture")
+@Getter
+@Setter
+public class ApplicationProfilePictureProperties {
+    private DataSize maxSize = DataSize.ofMegabytes(2);
+    /**
+     * Maximum number of pixels (width multiplied by height) of profile picture. Small compressed file may declare
+     * huge dimensions, so dimensions are checked before picture is decoded.
+     */
+    private long maxPixels = 25_000_000;
+    private Variants variants = new Variants();
+    private Cache cache = new Cache();
+
+    @Getter
+    @Setter
+    public static class Variants {
+        private List<Integer> sizes = List.of(32, 64, 256);
+        private int resizeThreads = Runtime.getRuntime().availableProcessors();
+        private int resizeQueueSize = 100;
+
+        /**
+         * Resolves the given size to the size of variant that is served for it, i.e. to the smallest variant size
+         * which is not less than the given size.
+         *
+         * @param size requested profile picture size (may be {@code null})
+         * @return variant size or {@code null} if original profile picture is served for the given size
+         */
+        public Integer resolveSize(Integer size) {
+            Integer variantSize = null;
+            if (size != null) {
+                for (Integer s : sizes) {
+                    if (s >= size && (variantSize == null || s < variantSize)) {
+                        variantSize = s;
+                    }
+                }
+            }
+            return variantSize;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class Cache {
+        private DataSize maxSize = DataSize.ofMegabytes(32);
+    }
+}
@@ -1,12 +1,18 @@
 package org.briarheart.orchestra.config;
 
+import io.jsonwebtoken.SignatureAlgorithm;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
 
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * @author Roman Chigvintsev
@@ -19,11 +25,26 @@ public class ApplicationSecurityProperties {
     private Authentication authentication = new Authentication();
     private PasswordReset passwordReset = new PasswordReset();
     private EmailConfirmation emailConfirmation = new EmailConfirmation();
+    private PasswordHashing passwordHashing = new PasswordHashing();
+    private RateLimiting rateLimiting = new RateLimiting();
+    private TokenPurge tokenPurge = new TokenPurge();
 
     @Getter
     @Setter
     public static class Authentication {
         private AccessToken accessToken = new AccessToken();
+        private UserDetailsCache userDetailsCache = new UserDetailsCache();
+    }
+
+    @Getter
+    @Setter
+    public static class UserDetailsCache {
+        /**
+         * Time during which user loaded on form login is reused. Changes of user's authorities become visible
+         * to form login after this time.
+         */
+        private Duration timeToLive = Duration.of(30, ChronoUnit.SECONDS);
+        private long size = 10_000;
     }
 
     @Getter
@@ -31,6 +52,128 @@ public class ApplicationSecurityProperties {
     public static class AccessToken {
         private String signingKey;
         private long validitySeconds;
+        private long cacheSize = 10_000;
+        /**
+         * Whether tokens should carry only user id and user profile version. User's display attributes are then
+         * resolved from user profile cache.
+         */
+        private boolean compactClaims;
+        private long profileCacheSize = 10_000;
+        /**
+         * Id of key from {@link #keys} used to sign new tokens. When not set tokens are signed with
+         * {@link #signingKey} and do not have "kid" header.
+         */
+        private String signingKeyId;
+        /**
+         * Keys that are accepted during verification. Keep previous signing key here until all tokens signed with
+         * it are expired.
+         */
+        private List<Key> keys = new ArrayList<>();
+        private Revocation revocation = new Revocation();
+    }
+
+    @Getter
+    @Setter
+    public static class Revocation {
+        /**
+         * Expected number of revoked tokens that are not expired yet. Bloom filter of revoked tokens is sized
+         * according to this number.
+         */
+        private long expectedRevocations = 100_000;
+        private double falsePositiveProbability = 0.01;
+        /**
+         * Interval of loading tokens revoked by other application instances.
+         */
+        private Duration refreshInterval = Duration.of(1, ChronoUnit.MINUTES);
+        /**
+         * Interval of deletion of expired revoked tokens and rebuilding of Bloom filter.
+         */
+        private Duration rebuildInterval = Duration.of(1, ChronoUnit.HOURS);
+    }
+
+    @Getter
+    @Setter
+    public static class Key {
+        private String id;
+        private SignatureAlgorithm algorithm = SignatureAlgorithm.HS512;
+        /**
+         * BASE64-encoded key bytes.
+         */
+        private String secret;
+    }
+
+    @Getter
+    @Setter
+    public static class PasswordHashing {
+        /**
+         * BCrypt strength of new password hashes. When {@link #targetHashDuration} is set this is the minimal
+         * strength. Hashes with lower strength are upgraded on successful login.
+         */
+        private int bcryptStrength = 10;
+        /**
+         * Desired time of hashing of single password. When set BCrypt strength is calibrated on startup to hit this
+         * time on current machine.
+         */
+        private Duration targetHashDuration;
+        private int threads = Runtime.getRuntime().availableProcessors();
+        /**
+         * Maximum number of hashing operations waiting for free thread. Operations exceeding this limit are rejected
+         * with "503 Service Unavailable" response.
+         */
+        private int queueSize = 100;
+    }
+
+    @Getter
+    @Setter
+    public static class RateLimiting {
+        private boolean enabled = true;
+        /**
+         * Maximum number of tracked clients (IP addresses or emails) per route.
+         */
+        private long maxKeys = 100_000;
+        /**
+         * Name of header that contains client IP address set by trusted reverse proxy (for example
+         * "X-Forwarded-For"). When header contains several addresses the last one (added by the proxy) is used.
+         * Remote address of connection is used when this property is not set.
+         */
+        private String clientAddressHeader;
+        /**
+         * Maximum size of JSON request body read to resolve email. Larger requests are rejected.
+         */
+        private DataSize maxBodySize = DataSize.ofKilobytes(16);
+        private RouteRateLimit login = new RouteRateLimit(
+                new RateLimit(20, Duration.of(1, ChronoUnit.MINUTES)),
+                new RateLimit(10, Duration.of(1, ChronoUnit.MINUTES))
+        );
+        private RouteRateLimit registration = new RouteRateLimit(
+                new RateLimit(10, Duration.of(1, ChronoUnit.MINUTES)),
+                new RateLimit(3, Duration.of(10, ChronoUnit.MINUTES))
+        );
+        private RouteRateLimit passwordReset = new RouteRateLimit(
+                new RateLimit(10, Duration.of(1, ChronoUnit.MINUTES)),
+                new RateLimit(3, Duration.of(1, ChronoUnit.HOURS))
+        );
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RouteRateLimit {
+        private RateLimit client;
+        private RateLimit email;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RateLimit {
+        /**
+         * Maximum number of requests within {@link #period}. Zero disables limit.
+         */
+        private long capacity;
+        private Duration period;
     }
 
     @Getter
@@ -44,4 +187,32 @@ public class ApplicationSecurityProperties {
     public static class EmailConfirmation {
         private Duration tokenExpirationTimeout = Duration.of(24, ChronoUnit.HOURS);
     }
+
+    @Getter
+    @Setter
+    public static class TokenPurge {
+        private boolean enabled = true;
+        /**
+         * Interval of deletion of expired and invalidated email confirmation and password reset tokens.
+         */
+        private Duration interval = Duration.of(1, ChronoUnit.HOURS);
+        /**
+         * Time during which expired tokens are kept so that users following expired link are told that link is
+         * expired rather than not found.
+         */
+        private Duration retention = Duration.of(7, ChronoUnit.DAYS);
+        /**
+         * Maximum number of tokens deleted by single statement.
+         */
+        private int batchSize = 500;
+        /**
+         * Pause between batches that gives way to foreground queries.
+         */
+        private Duration batchPause = Duration.of(200, ChronoUnit.MILLIS);
+        /**
+         * Maximum number of batches of every kind of tokens deleted per run. Remaining tokens are deleted on next
+         * run.
+         */
+        private int maxBatchesPerRun = 100;
+    }
 }
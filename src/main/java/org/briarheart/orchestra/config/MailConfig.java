@@ -0,0 +1,61 @@
+package org.briarheart.orchestra.config;
+
+import lombok.RequiredArgsConstructor;
+import org.briarheart.orchestra.mail.MailTemplateEngine;
+import org.briarheart.orchestra.mail.PooledJavaMailSender;
+import org.springframework.boot.autoconfigure.mail.MailProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.support.MessageSourceAccessor;
+
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * @author Roman Chigvintsev
+ */
+@Configuration
+@RequiredArgsConstructor
+public class MailConfig {
+    private final MailProperties mailProperties;
+    private final ApplicationMailProperties applicationMailProperties;
+
+    /**
+     * Creates mail sender that reuses connections to mail server. This bean replaces mail sender created by Spring
+     * Boot and is configured with the same "spring.mail.*" properties.
+     *
+     * @return mail sender
+     */
+    @Bean
+    public PooledJavaMailSender mailSender() {
+        ApplicationMailProperties.Pool poolProperties = applicationMailProperties.getPool();
+        PooledJavaMailSender mailSender = new PooledJavaMailSender(poolProperties.getMaxSize(),
+                poolProperties.getEvictionInterval());
+        mailSender.setBorrowTimeout(poolProperties.getBorrowTimeout());
+        mailSender.setValidationInterval(poolProperties.getValidationInterval());
+        mailSender.setMaxIdleTime(poolProperties.getMaxIdleTime());
+
+        mailSender.setHost(mailProperties.getHost());
+        if (mailProperties.getPort() != null) {
+            mailSender.setPort(mailProperties.getPort());
+        }
+        mailSender.setUsername(mailProperties.getUsername());
+        mailSender.setPassword(mailProperties.getPassword());
+        mailSender.setProtocol(mailProperties.getProtocol());
+        if (mailProperties.getDefaultEncoding() != null) {
+            mailSender.setDefaultEncoding(mailProperties.getDefaultEncoding().name());
+        }
+        Map<String, String> properties = mailProperties.getProperties();
+        if (!properties.isEmpty()) {
+            Properties javaMailProperties = new Properties();
+            javaMailProperties.putAll(properties);
+            mailSender.setJavaMailProperties(javaMailProperties);
+        }
+        return mailSender;
+    }
+
+    @Bean
+    public MailTemplateEngine mailTemplateEngine(MessageSourceAccessor messages) {
+        return new MailTemplateEngine(messages);
+    }
+}
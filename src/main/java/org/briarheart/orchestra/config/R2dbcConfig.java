@@ -5,9 +5,12 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.r2dbc.config.AbstractR2dbcConfiguration;
+import org.springframework.data.r2dbc.connectionfactory.R2dbcTransactionManager;
 import org.springframework.data.r2dbc.core.DatabaseClient;
 import org.springframework.data.r2dbc.core.ReactiveDataAccessStrategy;
 import org.springframework.data.r2dbc.support.R2dbcExceptionTranslator;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
 
 /**
  * @author Roman Chigvintsev
@@ -32,4 +35,14 @@ public class R2dbcConfig extends AbstractR2dbcConfiguration {
                 .exceptionTranslator(exceptionTranslator)
                 .build();
     }
+
+    @Bean
+    public ReactiveTransactionManager r2dbcTransactionManager() {
+        return new R2dbcTransactionManager(connectionFactory());
+    }
+
+    @Bean
+    public TransactionalOperator transactionalOperator(ReactiveTransactionManager r2dbcTransactionManager) {
+        return TransactionalOperator.create(r2dbcTransactionManager);
+    }
 }
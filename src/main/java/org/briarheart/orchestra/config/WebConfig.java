@@ -2,6 +2,7 @@ package org.briarheart.orchestra.config;
 
 import io.jsonwebtoken.lang.Assert;
 import lombok.RequiredArgsConstructor;
+import org.briarheart.orchestra.controller.format.CursorFormatter;
 import org.briarheart.orchestra.controller.format.LocalDateFormatter;
 import org.briarheart.orchestra.controller.format.LocalDateTimeFormatter;
 import org.briarheart.orchestra.data.EntityAlreadyExistsException;
@@ -16,11 +17,15 @@ import org.springframework.boot.autoconfigure.web.ServerProperties;
 import org.springframework.boot.web.reactive.error.ErrorAttributes;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.data.web.ReactivePageableHandlerMethodArgumentResolver;
 import org.springframework.format.FormatterRegistry;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.multipart.MultipartHttpMessageReader;
+import org.springframework.http.codec.multipart.SynchronossPartHttpMessageReader;
 import org.springframework.validation.Validator;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 import org.springframework.web.reactive.config.EnableWebFlux;
@@ -34,9 +39,14 @@ import javax.validation.MessageInterpolator;
  */
 @Configuration
 @EnableWebFlux
+@Import(ApplicationProfilePictureProperties.class)
 @RequiredArgsConstructor
 public class WebConfig implements WebFluxConfigurer {
+    // Profile picture upload is the only multipart request
+    private static final int MAX_MULTIPART_PARTS = 4;
+
     private final ServerProperties serverProperties;
+    private final ApplicationProfilePictureProperties profilePictureProperties;
 
     @Bean
     @Order(Ordered.HIGHEST_PRECEDENCE + 2)
@@ -68,6 +78,19 @@ public class WebConfig implements WebFluxConfigurer {
     public void addFormatters(FormatterRegistry registry) {
         registry.addFormatter(new LocalDateFormatter());
         registry.addFormatter(new LocalDateTimeFormatter());
+        registry.addFormatter(new CursorFormatter());
+    }
+
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        // Multipart reader stores whole part before it is emitted. Limits make reader cancel upload as soon as part
+        // exceeds maximum size of profile picture instead of storing oversize content.
+        long maxPartSize = profilePictureProperties.getMaxSize().toBytes();
+        SynchronossPartHttpMessageReader partReader = new SynchronossPartHttpMessageReader();
+        partReader.setMaxParts(MAX_MULTIPART_PARTS);
+        partReader.setMaxInMemorySize((int) maxPartSize);
+        partReader.setMaxDiskUsagePerPart(maxPartSize);
+        configurer.defaultCodecs().multipartReader(new MultipartHttpMessageReader(partReader));
     }
 
     @Override
@@ -1,11 +1,17 @@
 package org.briarheart.orchestra.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import org.briarheart.orchestra.data.EmailConfirmationTokenRepository;
 import org.briarheart.orchestra.data.PasswordResetConfirmationTokenRepository;
-import org.briarheart.orchestra.data.UserAuthorityRelationRepository;
+import org.briarheart.orchestra.data.RevokedAccessTokenRepository;
 import org.briarheart.orchestra.data.UserRepository;
+import org.briarheart.orchestra.mail.MailTemplateEngine;
+import org.briarheart.orchestra.security.crypto.password.BCryptStrengthCalibrator;
+import org.briarheart.orchestra.security.crypto.password.PasswordEncoderOverloadedException;
+import org.briarheart.orchestra.security.crypto.password.ReactivePasswordEncoder;
 import org.briarheart.orchestra.security.oauth2.client.endpoint.ReactiveAccessTokenTypeWebClientFilter;
 import org.briarheart.orchestra.security.oauth2.client.userinfo.*;
 import org.briarheart.orchestra.security.oauth2.client.web.server.CookieOAuth2ServerAuthorizationRequestRepository;
@@ -13,31 +19,39 @@ import org.briarheart.orchestra.security.oauth2.client.web.server.CustomServerOA
 import org.briarheart.orchestra.security.oauth2.client.web.server.FacebookOAuth2AuthorizationResponseConverter;
 import org.briarheart.orchestra.security.oauth2.client.web.server.OAuth2AuthorizationResponseConverter;
 import org.briarheart.orchestra.security.oauth2.core.userdetails.DatabaseReactiveUserDetailsService;
+import org.briarheart.orchestra.security.oauth2.core.userdetails.UserDetailsCache;
 import org.briarheart.orchestra.security.web.server.authentication.*;
-import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessTokenService;
-import org.briarheart.orchestra.security.web.server.authentication.accesstoken.ServerAccessTokenRepository;
+import org.briarheart.orchestra.security.web.server.authentication.accesstoken.*;
 import org.briarheart.orchestra.security.web.server.authentication.jwt.CookieJwtRepository;
+import org.briarheart.orchestra.security.web.server.authentication.jwt.JwtKeySet;
 import org.briarheart.orchestra.security.web.server.authentication.jwt.JwtService;
+import org.briarheart.orchestra.security.web.server.authentication.jwt.JwtSigningKey;
 import org.briarheart.orchestra.security.web.server.authentication.logout.AccessTokenLogoutHandler;
+import org.briarheart.orchestra.security.web.server.ratelimit.KeyedRateLimiter;
+import org.briarheart.orchestra.security.web.server.ratelimit.RateLimitingWebFilter;
 import org.briarheart.orchestra.service.DefaultEmailConfirmationService;
 import org.briarheart.orchestra.service.DefaultPasswordService;
 import org.briarheart.orchestra.service.EmailConfirmationService;
+import org.briarheart.orchestra.service.EmailOutboxService;
 import org.briarheart.orchestra.service.PasswordService;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.security.oauth2.client.OAuth2ClientProperties;
 import org.springframework.boot.autoconfigure.security.oauth2.client.OAuth2ClientPropertiesRegistrationAdapter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
-import org.springframework.context.support.MessageSourceAccessor;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
 import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
-import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
-import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.*;
+import org.springframework.security.crypto.scrypt.SCryptPasswordEncoder;
 import org.springframework.security.oauth2.client.endpoint.OAuth2AuthorizationCodeGrantRequest;
 import org.springframework.security.oauth2.client.endpoint.ReactiveOAuth2AccessTokenResponseClient;
 import org.springframework.security.oauth2.client.endpoint.WebClientReactiveAuthorizationCodeTokenResponseClient;
@@ -64,6 +78,9 @@ import org.springframework.security.web.server.context.NoOpServerSecurityContext
 import org.springframework.security.web.server.context.ServerSecurityContextRepository;
 import org.springframework.security.web.server.util.matcher.PathPatternParserServerWebExchangeMatcher;
 import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.reactive.CorsConfigurationSource;
 import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
@@ -71,13 +88,15 @@ import org.springframework.web.reactive.function.client.WebClient;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.briarheart.orchestra.security.authorization.UnauthenticatedReactiveAuthorizationManager.unauthenticated;
 import static org.briarheart.orchestra.security.web.server.authentication.ClientRedirectOAuth2LoginServerAuthenticationSuccessHandler.DEFAULT_CLIENT_REDIRECT_URI_PARAMETER_NAME;
-import static org.springframework.security.crypto.factory.PasswordEncoderFactories.createDelegatingPasswordEncoder;
 
 /**
  * @author Roman Chigvintsev
@@ -85,6 +104,8 @@ import static org.springframework.security.crypto.factory.PasswordEncoderFactori
 @EnableWebFluxSecurity
 @RequiredArgsConstructor
 public class WebSecurityConfig {
+    private static final String BCRYPT_PASSWORD_ENCODER_ID = "bcrypt";
+
     private final ApplicationSecurityProperties securityProperties;
 
     @Value("${spring.security.oauth2.client.redirect-uri-template}")
@@ -216,10 +237,14 @@ public class WebSecurityConfig {
     @Bean
     public AuthenticationWebFilter accessTokenAuthenticationWebFilter(
             AccessTokenService accessTokenService,
-            ServerAccessTokenRepository accessTokenRepository
+            ServerAccessTokenRepository accessTokenRepository,
+            UserRepository userRepository,
+            MeterRegistry meterRegistry
     ) {
+        long profileCacheSize = securityProperties.getAuthentication().getAccessToken().getProfileCacheSize();
+        UserProfileCache userProfileCache = new UserProfileCache(userRepository, profileCacheSize, meterRegistry);
         AccessTokenReactiveAuthenticationManager authenticationManager
-                = new AccessTokenReactiveAuthenticationManager(accessTokenService);
+                = new AccessTokenReactiveAuthenticationManager(accessTokenService, userProfileCache);
         AuthenticationWebFilter filter = new AuthenticationWebFilter(authenticationManager);
         filter.setServerAuthenticationConverter(new AccessTokenServerAuthenticationConverter(accessTokenRepository));
         return filter;
@@ -227,13 +252,20 @@ public class WebSecurityConfig {
 
     @Bean
     public AuthenticationWebFilter formLoginAuthenticationWebFilter(
-            ReactiveUserDetailsService userDetailsService,
-            PasswordEncoder passwordEncoder,
+            DatabaseReactiveUserDetailsService userDetailsService,
+            ReactivePasswordEncoder passwordEncoder,
             ServerAuthenticationSuccessHandler formLoginAuthenticationSuccessHandler
     ) {
-        UserDetailsRepositoryReactiveAuthenticationManager authenticationManager
+        UserDetailsRepositoryReactiveAuthenticationManager userDetailsAuthenticationManager
                 = new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService);
-        authenticationManager.setPasswordEncoder(passwordEncoder);
+        // Password is verified on bounded worker pool of password encoder instead of event loop
+        userDetailsAuthenticationManager.setPasswordEncoder(passwordEncoder.getPasswordEncoder());
+        userDetailsAuthenticationManager.setScheduler(passwordEncoder.getScheduler());
+        // Password hashes encoded with outdated settings are upgraded on successful login
+        userDetailsAuthenticationManager.setUserDetailsPasswordService(userDetailsService);
+        ReactiveAuthenticationManager authenticationManager = authentication -> userDetailsAuthenticationManager
+                .authenticate(authentication)
+                .onErrorMap(RejectedExecutionException.class, PasswordEncoderOverloadedException::new);
 
         ServerAuthenticationConverter authenticationConverter = new ServerFormLoginAuthenticationConverter();
 
@@ -253,8 +285,43 @@ public class WebSecurityConfig {
     }
 
     @Bean
-    public AccessTokenLogoutHandler accessTokenLogoutHandler(ServerAccessTokenRepository accessTokenRepository) {
-        return new AccessTokenLogoutHandler(accessTokenRepository);
+    @Order(Ordered.HIGHEST_PRECEDENCE + 3)
+    @ConditionalOnProperty(name = "application.security.rate-limiting.enabled", matchIfMissing = true)
+    public RateLimitingWebFilter rateLimitingWebFilter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        ApplicationSecurityProperties.RateLimiting rateLimitingProperties = securityProperties.getRateLimiting();
+        List<RateLimitingWebFilter.Rule> rules = List.of(
+                createRateLimitingRule("login", "/login", "username", rateLimitingProperties.getLogin(),
+                        rateLimitingProperties.getMaxKeys(), meterRegistry),
+                createRateLimitingRule("registration", "/v?/users", "email",
+                        rateLimitingProperties.getRegistration(), rateLimitingProperties.getMaxKeys(), meterRegistry),
+                createRateLimitingRule("passwordReset", "/v?/users/password/reset", "email",
+                        rateLimitingProperties.getPasswordReset(), rateLimitingProperties.getMaxKeys(), meterRegistry)
+        );
+        RateLimitingWebFilter filter = new RateLimitingWebFilter(rules, objectMapper);
+        filter.setClientAddressHeader(rateLimitingProperties.getClientAddressHeader());
+        filter.setMaxBodySize((int) rateLimitingProperties.getMaxBodySize().toBytes());
+        return filter;
+    }
+
+    @Bean
+    public AccessTokenLogoutHandler accessTokenLogoutHandler(ServerAccessTokenRepository accessTokenRepository,
+                                                             AccessTokenRevocationService revocationService) {
+        return new AccessTokenLogoutHandler(accessTokenRepository, revocationService);
+    }
+
+    @Bean
+    public AccessTokenRevocationService accessTokenRevocationService(
+            RevokedAccessTokenRepository revokedAccessTokenRepository,
+            MeterRegistry meterRegistry
+    ) {
+        ApplicationSecurityProperties.Revocation revocationProperties = securityProperties.getAuthentication()
+                .getAccessToken().getRevocation();
+        BloomFilterAccessTokenRevocationService revocationService = new BloomFilterAccessTokenRevocationService(
+                revokedAccessTokenRepository, revocationProperties.getExpectedRevocations(),
+                revocationProperties.getFalsePositiveProbability(), meterRegistry);
+        revocationService.setRefreshInterval(revocationProperties.getRefreshInterval());
+        revocationService.setRebuildInterval(revocationProperties.getRebuildInterval());
+        return revocationService;
     }
 
     @Bean
@@ -263,20 +330,38 @@ public class WebSecurityConfig {
     }
 
     @Bean
-    public AccessTokenService accessTokenService(ServerAccessTokenRepository accessTokenRepository) {
-        String signingKey = securityProperties.getAuthentication().getAccessToken().getSigningKey();
-        long accessTokenValidity = securityProperties.getAuthentication().getAccessToken().getValiditySeconds();
-        JwtService tokenService = new JwtService(accessTokenRepository, signingKey);
-        tokenService.setAccessTokenValiditySeconds(accessTokenValidity);
-        return tokenService;
+    public AccessTokenService accessTokenService(ServerAccessTokenRepository accessTokenRepository,
+                                                 AccessTokenRevocationService revocationService,
+                                                 MeterRegistry meterRegistry) {
+        ApplicationSecurityProperties.AccessToken accessTokenProperties = securityProperties.getAuthentication()
+                .getAccessToken();
+        JwtService tokenService;
+        if (accessTokenProperties.getSigningKeyId() == null) {
+            tokenService = new JwtService(accessTokenRepository, accessTokenProperties.getSigningKey());
+        } else {
+            tokenService = new JwtService(accessTokenRepository, createAccessTokenKeySet(accessTokenProperties));
+        }
+        tokenService.setAccessTokenValiditySeconds(accessTokenProperties.getValiditySeconds());
+        tokenService.setCompactClaims(accessTokenProperties.isCompactClaims());
+        tokenService.setRevocationService(revocationService);
+        CachingAccessTokenService cachingTokenService = new CachingAccessTokenService(tokenService,
+                accessTokenProperties.getCacheSize(), meterRegistry);
+        cachingTokenService.setRevocationService(revocationService);
+        return cachingTokenService;
     }
 
     @Bean
-    public ReactiveUserDetailsService userDetailsService(
-            UserRepository userRepository,
-            UserAuthorityRelationRepository userAuthorityRelationRepository
-    ) {
-        return new DatabaseReactiveUserDetailsService(userRepository, userAuthorityRelationRepository);
+    public UserDetailsCache userDetailsCache(MeterRegistry meterRegistry) {
+        ApplicationSecurityProperties.UserDetailsCache userDetailsCacheProperties
+                = securityProperties.getAuthentication().getUserDetailsCache();
+        return new UserDetailsCache(userDetailsCacheProperties.getTimeToLive(), userDetailsCacheProperties.getSize(),
+                meterRegistry);
+    }
+
+    @Bean
+    public DatabaseReactiveUserDetailsService userDetailsService(UserRepository userRepository,
+                                                                 UserDetailsCache userDetailsCache) {
+        return new DatabaseReactiveUserDetailsService(userRepository, userDetailsCache);
     }
 
     @Bean
@@ -300,23 +385,60 @@ public class WebSecurityConfig {
     }
 
     @Bean
+    @SuppressWarnings("deprecation")
     public PasswordEncoder passwordEncoder() {
-        DelegatingPasswordEncoder passwordEncoder = (DelegatingPasswordEncoder) createDelegatingPasswordEncoder();
+        ApplicationSecurityProperties.PasswordHashing passwordHashingProperties
+                = securityProperties.getPasswordHashing();
+        int bcryptStrength = passwordHashingProperties.getBcryptStrength();
+        if (passwordHashingProperties.getTargetHashDuration() != null) {
+            BCryptStrengthCalibrator calibrator = new BCryptStrengthCalibrator(bcryptStrength);
+            bcryptStrength = calibrator.calibrate(passwordHashingProperties.getTargetHashDuration());
+        }
+
+        // Same encoders as in PasswordEncoderFactories#createDelegatingPasswordEncoder so that users with legacy
+        // password hashes are still able to log in; their hashes are upgraded to BCrypt on successful login
+        Map<String, PasswordEncoder> encoders = new HashMap<>();
+        encoders.put(BCRYPT_PASSWORD_ENCODER_ID, new BCryptPasswordEncoder(bcryptStrength));
+        encoders.put("ldap", new LdapShaPasswordEncoder());
+        encoders.put("MD4", new Md4PasswordEncoder());
+        encoders.put("MD5", new MessageDigestPasswordEncoder("MD5"));
+        encoders.put("noop", NoOpPasswordEncoder.getInstance());
+        encoders.put("pbkdf2", new Pbkdf2PasswordEncoder());
+        encoders.put("scrypt", new SCryptPasswordEncoder());
+        encoders.put("SHA-1", new MessageDigestPasswordEncoder("SHA-1"));
+        encoders.put("SHA-256", new MessageDigestPasswordEncoder("SHA-256"));
+        encoders.put("sha256", new StandardPasswordEncoder());
+        encoders.put("argon2", new Argon2PasswordEncoder());
+
+        DelegatingPasswordEncoder passwordEncoder = new DelegatingPasswordEncoder(BCRYPT_PASSWORD_ENCODER_ID,
+                encoders);
         passwordEncoder.setDefaultPasswordEncoderForMatches(new NeverMatchesPasswordEncoder());
         return passwordEncoder;
     }
 
+    @Bean
+    public ReactivePasswordEncoder reactivePasswordEncoder(PasswordEncoder passwordEncoder,
+                                                           MeterRegistry meterRegistry) {
+        ApplicationSecurityProperties.PasswordHashing passwordHashingProperties
+                = securityProperties.getPasswordHashing();
+        return new ReactivePasswordEncoder(passwordEncoder, passwordHashingProperties.getThreads(),
+                passwordHashingProperties.getQueueSize(), meterRegistry);
+    }
+
     @Bean
     public PasswordService passwordService(PasswordResetConfirmationTokenRepository tokenRepository,
                                            UserRepository userRepository,
                                            ApplicationInfoProperties applicationInfo,
-                                           MessageSourceAccessor messages,
-                                           JavaMailSender mailSender,
-                                           PasswordEncoder passwordEncoder) {
+                                           MailTemplateEngine mailTemplateEngine,
+                                           EmailOutboxService emailOutboxService,
+                                           ReactivePasswordEncoder passwordEncoder,
+                                           TransactionalOperator transactionalOperator,
+                                           UserDetailsCache userDetailsCache) {
         DefaultPasswordService passwordService = new DefaultPasswordService(tokenRepository, userRepository,
-                applicationInfo, messages, mailSender, passwordEncoder);
+                applicationInfo, mailTemplateEngine, emailOutboxService, passwordEncoder, transactionalOperator);
         Duration tokenExpirationTimeout = securityProperties.getPasswordReset().getTokenExpirationTimeout();
         passwordService.setPasswordResetTokenExpirationTimeout(tokenExpirationTimeout);
+        passwordService.setUserDetailsCache(userDetailsCache);
         return passwordService;
     }
 
@@ -324,15 +446,42 @@ public class WebSecurityConfig {
     public EmailConfirmationService emailConfirmationService(EmailConfirmationTokenRepository tokenRepository,
                                                              UserRepository userRepository,
                                                              ApplicationInfoProperties applicationInfo,
-                                                             MessageSourceAccessor messages,
-                                                             JavaMailSender mailSender) {
+                                                             MailTemplateEngine mailTemplateEngine,
+                                                             EmailOutboxService emailOutboxService,
+                                                             TransactionalOperator transactionalOperator) {
         DefaultEmailConfirmationService emailConfirmationService = new DefaultEmailConfirmationService(tokenRepository,
-                userRepository, applicationInfo, messages, mailSender);
+                userRepository, applicationInfo, mailTemplateEngine, emailOutboxService, transactionalOperator);
         Duration tokenExpirationTimeout = securityProperties.getEmailConfirmation().getTokenExpirationTimeout();
         emailConfirmationService.setEmailConfirmationTokenExpirationTimeout(tokenExpirationTimeout);
         return emailConfirmationService;
     }
 
+    private RateLimitingWebFilter.Rule createRateLimitingRule(String route,
+                                                              String pathPattern,
+                                                              String emailParameter,
+                                                              ApplicationSecurityProperties.RouteRateLimit limits,
+                                                              long maxKeys,
+                                                              MeterRegistry meterRegistry) {
+        ServerWebExchangeMatcher matcher = new PathPatternParserServerWebExchangeMatcher(pathPattern,
+                HttpMethod.POST);
+        KeyedRateLimiter clientLimiter = createRateLimiter(route, "client", limits.getClient(), maxKeys,
+                meterRegistry);
+        KeyedRateLimiter emailLimiter = createRateLimiter(route, "email", limits.getEmail(), maxKeys,
+                meterRegistry);
+        return new RateLimitingWebFilter.Rule(matcher, clientLimiter, emailLimiter, emailParameter);
+    }
+
+    private KeyedRateLimiter createRateLimiter(String route,
+                                               String keyType,
+                                               ApplicationSecurityProperties.RateLimit limit,
+                                               long maxKeys,
+                                               MeterRegistry meterRegistry) {
+        if (limit == null || limit.getCapacity() <= 0) {
+            return null;
+        }
+        return new KeyedRateLimiter(route, keyType, limit.getCapacity(), limit.getPeriod(), maxKeys, meterRegistry);
+    }
+
     private CorsConfigurationSource createCorsConfigurationSource() {
         CorsConfiguration config = new CorsConfiguration();
         config.setAllowCredentials(true);
@@ -353,6 +502,30 @@ public class WebSecurityConfig {
         return source;
     }
 
+    private JwtKeySet createAccessTokenKeySet(ApplicationSecurityProperties.AccessToken accessTokenProperties) {
+        JwtSigningKey signingKey = null;
+        List<JwtSigningKey> verificationKeys = new ArrayList<>();
+        if (StringUtils.hasText(accessTokenProperties.getSigningKey())) {
+            // Tokens issued before key rotation was configured do not have "kid" header
+            byte[] secret = Base64.getDecoder().decode(accessTokenProperties.getSigningKey());
+            verificationKeys.add(new JwtSigningKey(null, SignatureAlgorithm.HS512, secret));
+        }
+        for (ApplicationSecurityProperties.Key keyProperties : accessTokenProperties.getKeys()) {
+            Assert.hasText(keyProperties.getId(), "Access token key id must not be null or empty");
+            Assert.hasText(keyProperties.getSecret(), "Access token key secret must not be null or empty");
+            byte[] secret = Base64.getDecoder().decode(keyProperties.getSecret());
+            JwtSigningKey key = new JwtSigningKey(keyProperties.getId(), keyProperties.getAlgorithm(), secret);
+            if (key.getId().equals(accessTokenProperties.getSigningKeyId())) {
+                signingKey = key;
+            } else {
+                verificationKeys.add(key);
+            }
+        }
+        Assert.state(signingKey != null, "Access token key with id \"" + accessTokenProperties.getSigningKeyId()
+                + "\" is not found");
+        return new JwtKeySet(signingKey, verificationKeys);
+    }
+
     /**
      * Default {@link PasswordEncoder} whose method {@link #matches(CharSequence, String)} always returns {@code false}.
      */
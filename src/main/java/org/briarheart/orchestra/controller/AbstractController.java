@@ -1,7 +1,14 @@
 package org.briarheart.orchestra.controller;
 
+import org.briarheart.orchestra.data.Cursor;
+import org.briarheart.orchestra.data.ItemPage;
+import org.briarheart.orchestra.model.Task;
 import org.briarheart.orchestra.model.User;
+import org.briarheart.orchestra.util.Pageables;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 /**
  * Base class for all controllers.
@@ -12,4 +19,23 @@ public abstract class AbstractController {
     protected User getUser(Authentication authentication) {
         return (User) authentication.getPrincipal();
     }
+
+    /**
+     * Collects the given tasks into {@link ItemPage} with cursor pointing to the last task when page is full.
+     *
+     * @param tasks    tasks of the current page
+     * @param pageable paging restriction used to get tasks
+     * @return page of tasks
+     */
+    protected Mono<ItemPage<Task>> toItemPage(Flux<Task> tasks, Pageable pageable) {
+        Integer limit = Pageables.getLimit(pageable);
+        return tasks.collectList().map(taskList -> {
+            // Full page means that there could be more tasks
+            Cursor next = null;
+            if (limit != null && !taskList.isEmpty() && taskList.size() >= limit) {
+                next = Cursor.of(taskList.get(taskList.size() - 1));
+            }
+            return ItemPage.of(taskList, next);
+        });
+    }
 }
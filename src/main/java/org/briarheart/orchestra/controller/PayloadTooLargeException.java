@@ -0,0 +1,20 @@
+package org.briarheart.orchestra.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Exception being thrown in case request content exceeds allowed size.
+ *
+ * @author Roman Chigvintsev
+ */
+public class PayloadTooLargeException extends ResponseStatusException {
+    /**
+     * Creates new instance of this class with the given error message.
+     *
+     * @param message error message
+     */
+    public PayloadTooLargeException(String message) {
+        super(HttpStatus.PAYLOAD_TOO_LARGE, message);
+    }
+}
@@ -1,6 +1,8 @@
 package org.briarheart.orchestra.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.briarheart.orchestra.data.Cursor;
+import org.briarheart.orchestra.data.ItemPage;
 import org.briarheart.orchestra.model.Tag;
 import org.briarheart.orchestra.model.Task;
 import org.briarheart.orchestra.service.TagService;
@@ -19,6 +21,8 @@ import java.net.URI;
 
 /**
  * REST-controller for task tag managing.
+ * <p>
+ * Task listing endpoint supports cursor mode in the same way as task listing endpoints of {@link TaskController}.
  *
  * @author Roman Chigvintsev
  */
@@ -72,4 +76,13 @@ public class TagController extends AbstractController {
                                           Pageable pageable) {
         return tagService.getUncompletedTasks(tagId, getUser(authentication), pageable);
     }
+
+    @GetMapping(path = "/{tagId}/tasks/uncompleted", params = "after")
+    public Mono<ItemPage<Task>> getUncompletedTasks(@PathVariable("tagId") Long tagId,
+                                                    @RequestParam(name = "after", required = false) Cursor after,
+                                                    Authentication authentication,
+                                                    Pageable pageable) {
+        Flux<Task> tasks = tagService.getUncompletedTasks(tagId, getUser(authentication), after, pageable);
+        return toItemPage(tasks, pageable);
+    }
 }
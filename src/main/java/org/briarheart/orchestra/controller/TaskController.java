@@ -1,6 +1,8 @@
 package org.briarheart.orchestra.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.briarheart.orchestra.data.Cursor;
+import org.briarheart.orchestra.data.ItemPage;
 import org.briarheart.orchestra.model.Tag;
 import org.briarheart.orchestra.model.Task;
 import org.briarheart.orchestra.model.TaskComment;
@@ -22,6 +24,12 @@ import java.time.LocalDateTime;
 
 /**
  * REST-controller for task managing.
+ * <p>
+ * Task listing endpoints support two paging modes. By default "page" and "size" request parameters are used for
+ * offset based paging. When "after" request parameter is present (even empty one to get the first page) cursor mode
+ * is used instead: response is wrapped in {@link ItemPage} containing cursor that should be passed in "after" request
+ * parameter to get the next page. In offset mode "withTotal=true" request parameter can be used to get page wrapped in
+ * {@link ItemPage} along with total number of tasks so that separate request to count tasks is not needed.
  *
  * @author Roman Chigvintsev
  */
@@ -36,6 +44,18 @@ public class TaskController extends AbstractController {
         return taskService.getUnprocessedTasks(getUser(authentication), pageable);
     }
 
+    @GetMapping(path = "/unprocessed", params = "after")
+    public Mono<ItemPage<Task>> getUnprocessedTasks(@RequestParam(name = "after", required = false) Cursor after,
+                                                    Authentication authentication,
+                                                    Pageable pageable) {
+        return toItemPage(taskService.getUnprocessedTasks(getUser(authentication), after, pageable), pageable);
+    }
+
+    @GetMapping(path = "/unprocessed", params = {"withTotal=true", "!after"})
+    public Mono<ItemPage<Task>> getUnprocessedTasksWithTotal(Authentication authentication, Pageable pageable) {
+        return taskService.getUnprocessedTasksWithTotal(getUser(authentication), pageable);
+    }
+
     @GetMapping("/unprocessed/count")
     public Mono<Long> getUnprocessedTaskCount(Authentication authentication) {
         return taskService.getUnprocessedTaskCount(getUser(authentication));
@@ -56,6 +76,39 @@ public class TaskController extends AbstractController {
         return taskService.getProcessedTasks(deadlineFrom, deadlineTo, getUser(authentication), pageable);
     }
 
+    @GetMapping(path = "/processed", params = "after")
+    public Mono<ItemPage<Task>> getProcessedTasks(
+            @RequestParam(name = "deadlineFrom", required = false) LocalDateTime deadlineFrom,
+            @RequestParam(name = "deadlineTo", required = false) LocalDateTime deadlineTo,
+            @RequestParam(name = "after", required = false) Cursor after,
+            Authentication authentication,
+            ServerHttpRequest request,
+            Pageable pageable
+    ) {
+        MultiValueMap<String, String> queryParams = request.getQueryParams();
+        if (!queryParams.containsKey("deadlineFrom") && !queryParams.containsKey("deadlineTo")) {
+            return toItemPage(taskService.getProcessedTasks(getUser(authentication), after, pageable), pageable);
+        }
+        Flux<Task> tasks = taskService.getProcessedTasks(deadlineFrom, deadlineTo, getUser(authentication), after,
+                pageable);
+        return toItemPage(tasks, pageable);
+    }
+
+    @GetMapping(path = "/processed", params = {"withTotal=true", "!after"})
+    public Mono<ItemPage<Task>> getProcessedTasksWithTotal(
+            @RequestParam(name = "deadlineFrom", required = false) LocalDateTime deadlineFrom,
+            @RequestParam(name = "deadlineTo", required = false) LocalDateTime deadlineTo,
+            Authentication authentication,
+            ServerHttpRequest request,
+            Pageable pageable
+    ) {
+        MultiValueMap<String, String> queryParams = request.getQueryParams();
+        if (!queryParams.containsKey("deadlineFrom") && !queryParams.containsKey("deadlineTo")) {
+            return taskService.getProcessedTasksWithTotal(getUser(authentication), pageable);
+        }
+        return taskService.getProcessedTasksWithTotal(deadlineFrom, deadlineTo, getUser(authentication), pageable);
+    }
+
     @GetMapping("/processed/count")
     public Mono<Long> getProcessedTaskCount(
             @RequestParam(name = "deadlineFrom", required = false) LocalDateTime deadlineFrom,
@@ -75,6 +128,18 @@ public class TaskController extends AbstractController {
         return taskService.getUncompletedTasks(getUser(authentication), pageable);
     }
 
+    @GetMapping(path = "/uncompleted", params = "after")
+    public Mono<ItemPage<Task>> getUncompletedTasks(@RequestParam(name = "after", required = false) Cursor after,
+                                                    Authentication authentication,
+                                                    Pageable pageable) {
+        return toItemPage(taskService.getUncompletedTasks(getUser(authentication), after, pageable), pageable);
+    }
+
+    @GetMapping(path = "/uncompleted", params = {"withTotal=true", "!after"})
+    public Mono<ItemPage<Task>> getUncompletedTasksWithTotal(Authentication authentication, Pageable pageable) {
+        return taskService.getUncompletedTasksWithTotal(getUser(authentication), pageable);
+    }
+
     @GetMapping("/uncompleted/count")
     public Mono<Long> getUncompletedTaskCount(Authentication authentication) {
         return taskService.getUncompletedTaskCount(getUser(authentication));
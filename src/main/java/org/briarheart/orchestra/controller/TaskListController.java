@@ -1,6 +1,8 @@
 package org.briarheart.orchestra.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.briarheart.orchestra.data.Cursor;
+import org.briarheart.orchestra.data.ItemPage;
 import org.briarheart.orchestra.model.Task;
 import org.briarheart.orchestra.model.TaskList;
 import org.briarheart.orchestra.service.TaskListService;
@@ -19,6 +21,8 @@ import java.net.URI;
 
 /**
  * REST-controller for task list managing.
+ * <p>
+ * Task listing endpoint supports cursor mode in the same way as task listing endpoints of {@link TaskController}.
  *
  * @author Roman Chigvintsev
  */
@@ -62,14 +66,12 @@ public class TaskListController extends AbstractController {
     }
 
     @PutMapping("/completed/{id}")
-    @ResponseStatus(HttpStatus.NO_CONTENT)
-    public Mono<Void> completeTaskList(@PathVariable Long id, Authentication authentication) {
+    public Mono<Integer> completeTaskList(@PathVariable Long id, Authentication authentication) {
         return taskListService.completeTaskList(id, getUser(authentication));
     }
 
     @DeleteMapping("/{id}")
-    @ResponseStatus(HttpStatus.NO_CONTENT)
-    public Mono<Void> deleteTaskList(@PathVariable Long id, Authentication authentication) {
+    public Mono<Integer> deleteTaskList(@PathVariable Long id, Authentication authentication) {
         return taskListService.deleteTaskList(id, getUser(authentication));
     }
 
@@ -80,6 +82,14 @@ public class TaskListController extends AbstractController {
         return taskListService.getTasks(taskListId, getUser(authentication), pageable);
     }
 
+    @GetMapping(path = "/{taskListId}/tasks", params = "after")
+    public Mono<ItemPage<Task>> getTasks(@PathVariable Long taskListId,
+                                         @RequestParam(name = "after", required = false) Cursor after,
+                                         Authentication authentication,
+                                         Pageable pageable) {
+        return toItemPage(taskListService.getTasks(taskListId, getUser(authentication), after, pageable), pageable);
+    }
+
     @PutMapping("/{taskListId}/tasks/{taskId}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public Mono<Void> addTask(@PathVariable Long taskListId, @PathVariable Long taskId, Authentication authentication) {
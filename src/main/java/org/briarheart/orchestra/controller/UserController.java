@@ -1,36 +1,43 @@
 package org.briarheart.orchestra.controller;
 
+import org.briarheart.orchestra.config.ApplicationProfilePictureProperties;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.model.ProfilePicture;
 import org.briarheart.orchestra.model.User;
 import org.briarheart.orchestra.service.EmailConfirmationService;
 import org.briarheart.orchestra.service.InvalidPasswordException;
 import org.briarheart.orchestra.service.PasswordService;
+import org.briarheart.orchestra.service.ProfilePictureTooLargeException;
 import org.briarheart.orchestra.service.UserService;
 import org.briarheart.orchestra.util.Errors;
+import org.briarheart.orchestra.util.ImageTypes;
 import org.springframework.context.support.MessageSourceAccessor;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
 import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.multipart.FilePart;
-import org.springframework.http.codec.multipart.Part;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.security.core.Authentication;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.UnsupportedMediaTypeStatusException;
 import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
-import java.io.ByteArrayOutputStream;
 import java.net.URI;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Roman Chigvintsev
@@ -38,10 +45,17 @@ import java.util.Locale;
 @RestController
 @RequestMapping("/v1/users")
 public class UserController extends AbstractController {
+    private static final String IMMUTABLE_CACHE_CONTROL = CacheControl.maxAge(365, TimeUnit.DAYS)
+            .cachePrivate()
+            .getHeaderValue() + ", immutable";
+    // Allowance for multipart boundaries and part headers surrounding profile picture content
+    private static final long MULTIPART_OVERHEAD = 16 * 1024;
+
     private final UserService userService;
     private final EmailConfirmationService emailConfirmationService;
     private final PasswordService passwordService;
     private final MessageSourceAccessor messages;
+    private final ApplicationProfilePictureProperties profilePictureProperties;
 
     /**
      * Creates new instance of this class with the given user, email confirmation, and password services.
@@ -50,20 +64,24 @@ public class UserController extends AbstractController {
      * @param emailConfirmationService email confirmation service (must not be {@code null})
      * @param passwordService          password service (must not be {@code null})
      * @param messages                 source of localized messages (must not be {@code null})
+     * @param profilePictureProperties profile picture properties (must not be {@code null})
      */
     public UserController(UserService userService,
                           EmailConfirmationService emailConfirmationService,
                           PasswordService passwordService,
-                          MessageSourceAccessor messages) {
+                          MessageSourceAccessor messages,
+                          ApplicationProfilePictureProperties profilePictureProperties) {
         Assert.notNull(userService, "User service must not be null");
         Assert.notNull(emailConfirmationService, "Email confirmation service must not be null");
         Assert.notNull(passwordService, "Password service must not be null");
         Assert.notNull(messages, "Message source accessor must not be null");
+        Assert.notNull(profilePictureProperties, "Profile picture properties must not be null");
 
         this.userService = userService;
         this.emailConfirmationService = emailConfirmationService;
         this.passwordService = passwordService;
         this.messages = messages;
+        this.profilePictureProperties = profilePictureProperties;
     }
 
     @PostMapping
@@ -127,15 +145,40 @@ public class UserController extends AbstractController {
     @GetMapping(path = "/{id}/profile-picture")
     public Mono<ResponseEntity<Resource>> getProfilePicture(
             @PathVariable("id") Long id,
-            Authentication authentication
+            @RequestParam(name = "size", required = false) Integer size,
+            @RequestParam(name = "v", required = false) String version,
+            Authentication authentication,
+            ServerWebExchange exchange
     ) {
         ensureValidUserId(id, authentication);
-        return userService.getProfilePicture(id).map(picture -> {
-            ResponseEntity.BodyBuilder bodyBuilder = ResponseEntity.ok();
-            if (picture.getType() != null) {
-                bodyBuilder.contentType(MediaType.parseMediaType(picture.getType()));
+        // All requested sizes served by the same variant share the same ETag
+        Integer variantSize = profilePictureProperties.getVariants().resolveSize(size);
+        // Hash is taken from cache or loaded without picture content so that content is not loaded at all when
+        // client already has the same picture version
+        return userService.getProfilePictureWithoutData(id, size).flatMap(pictureWithoutData -> {
+            String hash = pictureWithoutData.getHash();
+            String eTag = hash != null ? (variantSize != null ? hash + "-" + variantSize : hash) : null;
+            // URL containing hash of current picture content always points to the same content
+            String cacheControl = hash != null && hash.equals(version)
+                    ? IMMUTABLE_CACHE_CONTROL : CacheControl.noCache().cachePrivate().getHeaderValue();
+            if (eTag != null && exchange.checkNotModified(eTag)) {
+                return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .eTag(eTag)
+                        .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                        .build());
             }
-            return bodyBuilder.contentLength(picture.getData().length).body(new ByteArrayResource(picture.getData()));
+            return userService.getProfilePicture(id, size).map(picture -> {
+                ResponseEntity.BodyBuilder bodyBuilder = ResponseEntity.ok()
+                        .header(HttpHeaders.CACHE_CONTROL, cacheControl);
+                if (eTag != null) {
+                    bodyBuilder.eTag(eTag);
+                }
+                if (picture.getType() != null) {
+                    bodyBuilder.contentType(MediaType.parseMediaType(picture.getType()));
+                }
+                return bodyBuilder.contentLength(picture.getData().length)
+                        .body(new ByteArrayResource(picture.getData()));
+            });
         });
     }
 
@@ -149,30 +192,66 @@ public class UserController extends AbstractController {
     ) {
         User user = getUser(authentication);
         ensureValidUserId(id, user);
-        return profilePicture.flatMapMany(Part::content)
-                .reduce(new ByteArrayOutputStream(), (buffer, content) -> {
-                    buffer.writeBytes(content.asByteBuffer().array());
-                    DataBufferUtils.release(content);
-                    return buffer;
-                }).zipWith(profilePicture.map(Part::headers))
-                .flatMap(contentAndHeaders -> {
-                    byte[] pictureBytes = contentAndHeaders.getT1().toByteArray();
-                    HttpHeaders headers = contentAndHeaders.getT2();
-                    MediaType contentType = headers.getContentType();
-                    String pictureType = contentType != null ? contentType.toString() : null;
-                    ProfilePicture picture = ProfilePicture.builder()
-                            .userId(id)
-                            .data(pictureBytes)
-                            .type(pictureType)
-                            .build();
-                    return userService.saveProfilePicture(picture);
-                }).flatMap(picture -> {
-                    URI profilePictureUri = UriComponentsBuilder.fromHttpRequest(request).build().toUri();
+        int maxSize = (int) profilePictureProperties.getMaxSize().toBytes();
+        String sizeExceededMessage = "Profile picture size must not exceed " + maxSize + " bytes";
+        // Request that declares oversize content is rejected before its body is read
+        if (request.getHeaders().getContentLength() > maxSize + MULTIPART_OVERHEAD) {
+            return Mono.error(new PayloadTooLargeException(sizeExceededMessage));
+        }
+        // Multipart reader stores whole part before it is emitted and cancels upload as soon as part exceeds allowed
+        // size (see WebConfig). Here part content is joined into single buffer once again.
+        return profilePicture.flatMap(part -> DataBufferUtils.join(checkImageType(part.content()), maxSize))
+                .onErrorMap(DataBufferLimitException.class, e -> new PayloadTooLargeException(sizeExceededMessage))
+                .map(content -> {
+                    try {
+                        return createProfilePicture(id, content);
+                    } finally {
+                        DataBufferUtils.release(content);
+                    }
+                })
+                .flatMap(userService::saveProfilePicture)
+                .onErrorMap(ProfilePictureTooLargeException.class, e -> new PayloadTooLargeException(e.getMessage()))
+                .flatMap(picture -> {
+                    // Picture URL changes along with picture content so that it can be cached forever
+                    URI profilePictureUri = UriComponentsBuilder.fromHttpRequest(request)
+                            .replaceQuery(null)
+                            .queryParam("v", picture.getHash())
+                            .build()
+                            .toUri();
                     user.setProfilePictureUrl(profilePictureUri.toString());
                     return userService.updateUser(user);
                 }).then();
     }
 
+    private Flux<DataBuffer> checkImageType(Flux<DataBuffer> content) {
+        // Image type is checked by the first chunk of content before all content is joined. Chunk that is too short
+        // to contain image signature is let through: type is checked once again after join.
+        return content.switchOnFirst((signal, chunks) -> {
+            DataBuffer firstChunk = signal.get();
+            if (firstChunk != null && firstChunk.readableByteCount() >= ImageTypes.MAX_SIGNATURE_LENGTH
+                    && ImageTypes.detect(firstChunk) == null) {
+                // Rejected chunk is discarded and released by DataBufferUtils.join
+                return Mono.error(newUnsupportedImageTypeException());
+            }
+            return chunks;
+        });
+    }
+
+    private ProfilePicture createProfilePicture(Long userId, DataBuffer content) {
+        // Client provided content type is ignored since it cannot be trusted
+        MediaType pictureType = ImageTypes.detect(content);
+        if (pictureType == null) {
+            throw newUnsupportedImageTypeException();
+        }
+        byte[] pictureBytes = new byte[content.readableByteCount()];
+        content.read(pictureBytes);
+        return ProfilePicture.builder().userId(userId).data(pictureBytes).type(pictureType.toString()).build();
+    }
+
+    private UnsupportedMediaTypeStatusException newUnsupportedImageTypeException() {
+        return new UnsupportedMediaTypeStatusException("Profile picture must be either PNG, JPEG, GIF or WebP image");
+    }
+
     private void ensureValidUserId(Long id, Authentication authentication) {
         ensureValidUserId(id, getUser(authentication));
     }
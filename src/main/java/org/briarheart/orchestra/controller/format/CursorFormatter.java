@@ -0,0 +1,31 @@
+package org.briarheart.orchestra.controller.format;
+
+import org.briarheart.orchestra.data.Cursor;
+import org.springframework.format.Formatter;
+import org.springframework.util.Assert;
+
+import java.text.ParseException;
+import java.util.Locale;
+
+/**
+ * Formatter for {@link Cursor} type that converts cursor from/to its opaque string representation.
+ *
+ * @author Roman Chigvintsev
+ */
+public class CursorFormatter implements Formatter<Cursor> {
+    @Override
+    public Cursor parse(String text, Locale locale) throws ParseException {
+        Assert.hasLength(text, "Text to parse must not be null or empty");
+        try {
+            return Cursor.decode(text);
+        } catch (IllegalArgumentException e) {
+            throw new ParseException("Failed to parse cursor from string '" + text + "': " + e.getMessage(), 0);
+        }
+    }
+
+    @Override
+    public String print(Cursor object, Locale locale) {
+        Assert.notNull(object, "Cursor to print must not be null");
+        return object.encode();
+    }
+}
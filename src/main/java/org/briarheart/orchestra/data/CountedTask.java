@@ -0,0 +1,21 @@
+package org.briarheart.orchestra.data;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import org.briarheart.orchestra.model.Task;
+
+/**
+ * Task read together with total number of tasks meeting the same criteria. Instances of this class are returned by
+ * queries computing total number of rows with window function along with the requested page.
+ *
+ * @author Roman Chigvintsev
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true)
+public class CountedTask extends Task {
+    private Long total;
+}
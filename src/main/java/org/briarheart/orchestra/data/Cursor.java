@@ -0,0 +1,96 @@
+package org.briarheart.orchestra.data;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.briarheart.orchestra.model.Task;
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a result set ordered by creation time and id that is used for keyset (cursor) pagination. Instead of
+ * skipping rows with "OFFSET" queries using cursor seek directly to the rows following the given creation time/id pair.
+ * <p>
+ * Cursor is passed to clients as an opaque URL-safe string (see {@link #encode()} and {@link #decode(String)}).
+ *
+ * @author Roman Chigvintsev
+ */
+@Getter
+@EqualsAndHashCode
+@ToString
+public final class Cursor {
+    private static final char SEPARATOR = ',';
+
+    private final LocalDateTime createdAt;
+    private final Long id;
+
+    /**
+     * Creates new instance of this class with the given creation time and id.
+     *
+     * @param createdAt creation time of the last seen row (must not be {@code null})
+     * @param id        id of the last seen row (must not be {@code null})
+     */
+    public Cursor(LocalDateTime createdAt, Long id) {
+        Assert.notNull(createdAt, "Creation time must not be null");
+        Assert.notNull(id, "Id must not be null");
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    /**
+     * Creates cursor pointing to the given task.
+     *
+     * @param task task (must not be {@code null})
+     * @return new cursor
+     */
+    public static Cursor of(Task task) {
+        Assert.notNull(task, "Task must not be null");
+        return new Cursor(task.getCreatedAt(), task.getId());
+    }
+
+    /**
+     * Decodes cursor from the given string previously obtained with {@link #encode()}.
+     *
+     * @param value encoded cursor (must not be {@code null} or empty)
+     * @return decoded cursor
+     * @throws IllegalArgumentException if the given value is not a valid cursor
+     */
+    public static Cursor decode(String value) {
+        Assert.hasLength(value, "Cursor value must not be null or empty");
+        String decodedValue;
+        try {
+            decodedValue = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor \"" + value + "\" is not valid", e);
+        }
+
+        int separatorIndex = decodedValue.lastIndexOf(SEPARATOR);
+        if (separatorIndex <= 0 || separatorIndex == decodedValue.length() - 1) {
+            throw new IllegalArgumentException("Cursor \"" + value + "\" is not valid");
+        }
+
+        try {
+            LocalDateTime createdAt = LocalDateTime.parse(decodedValue.substring(0, separatorIndex),
+                    DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+            Long id = Long.valueOf(decodedValue.substring(separatorIndex + 1));
+            return new Cursor(createdAt, id);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Cursor \"" + value + "\" is not valid", e);
+        }
+    }
+
+    /**
+     * Encodes this cursor into opaque URL-safe string.
+     *
+     * @return encoded cursor
+     */
+    public String encode() {
+        String value = createdAt.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
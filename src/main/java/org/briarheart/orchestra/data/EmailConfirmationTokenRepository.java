@@ -1,16 +1,29 @@
 package org.briarheart.orchestra.data;
 
 import org.briarheart.orchestra.model.EmailConfirmationToken;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+
 /**
  * @author Roman Chigvintsev
  */
 public interface EmailConfirmationTokenRepository extends ReactiveCrudRepository<EmailConfirmationToken, Long> {
-    // Limit records in case (although unlikely) token values are duplicated
-    @Query("SELECT * FROM email_confirmation_token WHERE user_id = :userId AND token_value = :tokenValue"
-            + " ORDER BY created_at DESC LIMIT 1")
-    Mono<EmailConfirmationToken> findFirstByUserIdAndTokenValueOrderByCreatedAtDesc(Long userId, String tokenValue);
+    @Query("SELECT * FROM email_confirmation_token WHERE token_hash = :tokenHash")
+    Mono<EmailConfirmationToken> findByTokenHash(String tokenHash);
+
+    /**
+     * Deletes up to the given number of tokens that expired before the given time.
+     *
+     * @param expiresAt time before which tokens should expire to be deleted
+     * @param limit     maximum number of tokens to delete
+     * @return number of deleted tokens
+     */
+    @Modifying
+    @Query("DELETE FROM email_confirmation_token WHERE expires_at < :expiresAt AND id IN (SELECT id "
+            + "FROM email_confirmation_token WHERE expires_at < :expiresAt LIMIT :limit)")
+    Mono<Integer> deleteByExpiresAtBefore(LocalDateTime expiresAt, int limit);
 }
@@ -0,0 +1,51 @@
+package org.briarheart.orchestra.data;
+
+import org.briarheart.orchestra.model.EmailOutboxMessage;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * @author Roman Chigvintsev
+ */
+public interface EmailOutboxMessageRepository extends ReactiveCrudRepository<EmailOutboxMessage, Long> {
+    /**
+     * Marks up to the given number of pending messages that are due to be sent with the given claim token. Claimed
+     * messages are not claimed again until claim expires.
+     *
+     * @param claimToken     claim token
+     * @param now            current time
+     * @param claimExpiresAt time after which claimed messages may be claimed again
+     * @param limit          maximum number of messages to claim
+     * @return number of claimed messages
+     */
+    @Modifying
+    @Query("UPDATE email_outbox SET claim_token = :claimToken, next_attempt_at = :claimExpiresAt "
+            + "WHERE status = 'PENDING' AND next_attempt_at <= :now AND id IN (SELECT id FROM email_outbox "
+            + "WHERE status = 'PENDING' AND next_attempt_at <= :now ORDER BY next_attempt_at LIMIT :limit)")
+    Mono<Integer> claim(String claimToken, LocalDateTime now, LocalDateTime claimExpiresAt, int limit);
+
+    @Query("SELECT * FROM email_outbox WHERE claim_token = :claimToken")
+    Flux<EmailOutboxMessage> findByClaimToken(String claimToken);
+
+    @Modifying
+    @Query("DELETE FROM email_outbox WHERE id IN (:ids)")
+    Mono<Integer> deleteByIdIn(Collection<Long> ids);
+
+    /**
+     * Deletes up to the given number of dead messages that were moved to dead letters before the given time.
+     *
+     * @param deadBefore time before which messages should be moved to dead letters to be deleted
+     * @param limit      maximum number of messages to delete
+     * @return number of deleted messages
+     */
+    @Modifying
+    @Query("DELETE FROM email_outbox WHERE status = 'DEAD' AND next_attempt_at < :deadBefore AND id IN (SELECT id "
+            + "FROM email_outbox WHERE status = 'DEAD' AND next_attempt_at < :deadBefore LIMIT :limit)")
+    Mono<Integer> deleteDeadBefore(LocalDateTime deadBefore, int limit);
+}
@@ -0,0 +1,52 @@
+package org.briarheart.orchestra.data;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Page of items returned by listing endpoints working in cursor mode or requested with total number of items. Field
+ * {@link #next} holds encoded cursor that should be passed to get the next page or {@code null} if there are no more
+ * items. Field {@link #total} holds total number of items meeting the request criteria when it was requested.
+ *
+ * @param <T> type of items
+ * @author Roman Chigvintsev
+ * @see Cursor
+ */
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+public class ItemPage<T> {
+    private List<T> items;
+    private String next;
+    private Long total;
+
+    /**
+     * Creates new page with the given items and optional cursor pointing to the next page.
+     *
+     * @param items items of the page (must not be {@code null})
+     * @param next  cursor pointing to the next page or {@code null} if this page is the last one
+     * @param <T>   type of items
+     * @return new page
+     */
+    public static <T> ItemPage<T> of(List<T> items, Cursor next) {
+        return new ItemPage<>(items, next != null ? next.encode() : null, null);
+    }
+
+    /**
+     * Creates new page with the given items and total number of items.
+     *
+     * @param items items of the page (must not be {@code null})
+     * @param total total number of items meeting the request criteria
+     * @param <T>   type of items
+     * @return new page
+     */
+    public static <T> ItemPage<T> of(List<T> items, long total) {
+        return new ItemPage<>(items, null, total);
+    }
+}
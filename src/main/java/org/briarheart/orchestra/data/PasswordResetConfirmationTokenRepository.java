@@ -1,22 +1,56 @@
 package org.briarheart.orchestra.data;
 
 import org.briarheart.orchestra.model.PasswordResetConfirmationToken;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+
 /**
  * @author Roman Chigvintsev
  */
 public interface PasswordResetConfirmationTokenRepository
         extends ReactiveCrudRepository<PasswordResetConfirmationToken, Long> {
-    // Limit records in case (although unlikely) token values are duplicated
-    @Query("SELECT * FROM password_reset_confirmation_token WHERE user_id = :userId AND token_value = :tokenValue"
-            + " AND valid = :valid"
-            + " ORDER BY created_at DESC LIMIT 1")
-    Mono<PasswordResetConfirmationToken> findFirstByUserIdAndTokenValueAndValidOrderByCreatedAtDesc(
-            Long userId,
-            String tokenValue,
-            boolean valid
-    );
+    @Query("SELECT * FROM password_reset_confirmation_token WHERE token_hash = :tokenHash")
+    Mono<PasswordResetConfirmationToken> findByTokenHash(String tokenHash);
+
+    /**
+     * Marks token with the given digest as invalid if token belongs to user with the given id, is still valid and
+     * is not expired. Since check and update are performed by single statement token can be used only once even
+     * if it is presented concurrently.
+     *
+     * @param tokenHash digest of token value
+     * @param userId    user id
+     * @param now       current time
+     * @return number of invalidated tokens (zero or one)
+     */
+    @Modifying
+    @Query("UPDATE password_reset_confirmation_token SET valid = FALSE WHERE token_hash = :tokenHash "
+            + "AND user_id = :userId AND valid = TRUE AND expires_at > :now")
+    Mono<Integer> invalidate(String tokenHash, Long userId, LocalDateTime now);
+
+    /**
+     * Deletes up to the given number of tokens that expired before the given time.
+     *
+     * @param expiresAt time before which tokens should expire to be deleted
+     * @param limit     maximum number of tokens to delete
+     * @return number of deleted tokens
+     */
+    @Modifying
+    @Query("DELETE FROM password_reset_confirmation_token WHERE expires_at < :expiresAt AND id IN (SELECT id "
+            + "FROM password_reset_confirmation_token WHERE expires_at < :expiresAt LIMIT :limit)")
+    Mono<Integer> deleteByExpiresAtBefore(LocalDateTime expiresAt, int limit);
+
+    /**
+     * Deletes up to the given number of tokens that were already used or invalidated otherwise.
+     *
+     * @param limit maximum number of tokens to delete
+     * @return number of deleted tokens
+     */
+    @Modifying
+    @Query("DELETE FROM password_reset_confirmation_token WHERE valid = FALSE AND id IN (SELECT id "
+            + "FROM password_reset_confirmation_token WHERE valid = FALSE LIMIT :limit)")
+    Mono<Integer> deleteInvalid(int limit);
 }
@@ -7,5 +7,11 @@ import reactor.core.publisher.Mono;
  * @author Roman Chigvintsev
  */
 public interface ProfilePictureCreator {
-    Mono<ProfilePicture> create(ProfilePicture picture);
+    /**
+     * Creates new profile picture or replaces existing picture associated with the same user by single statement.
+     *
+     * @param picture profile picture to be saved (must not be {@code null})
+     * @return saved profile picture
+     */
+    Mono<ProfilePicture> createOrUpdate(ProfilePicture picture);
 }
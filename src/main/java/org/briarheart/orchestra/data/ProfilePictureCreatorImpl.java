@@ -1,40 +1,50 @@
 package org.briarheart.orchestra.data;
 
-import io.jsonwebtoken.lang.Assert;
 import org.briarheart.orchestra.model.ProfilePicture;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.data.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
 import reactor.core.publisher.Mono;
 
-import java.util.Objects;
-
 /**
+ * Default implementation of {@link ProfilePictureCreator} that uses {@link DatabaseClient} to save profile picture in
+ * non-blocking manner.
+ *
  * @author Roman Chigvintsev
  */
 @Component
 public class ProfilePictureCreatorImpl implements ProfilePictureCreator {
     @SuppressWarnings("SqlResolve")
-    private static final String SQL_CREATE_PROFILE_PICTURE = "INSERT INTO profile_picture (user_id, data, type) "
-            + "VALUES (?, ?, ?)";
+    private static final String SQL_CREATE_OR_UPDATE_PROFILE_PICTURE = "INSERT INTO profile_picture "
+            + "(user_id, data, type, hash) VALUES (:userId, :data, :type, :hash) "
+            + "ON CONFLICT (user_id) DO UPDATE SET data = EXCLUDED.data, type = EXCLUDED.type, hash = EXCLUDED.hash";
 
-    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseClient databaseClient;
 
-    public ProfilePictureCreatorImpl(JdbcTemplate jdbcTemplate) {
-        Assert.notNull(jdbcTemplate, "JDBC template must not be null");
-        this.jdbcTemplate = jdbcTemplate;
+    public ProfilePictureCreatorImpl(DatabaseClient databaseClient) {
+        Assert.notNull(databaseClient, "Database client must not be null");
+        this.databaseClient = databaseClient;
     }
 
     @Override
-    public Mono<ProfilePicture> create(ProfilePicture picture) {
-        ProfilePicture result = jdbcTemplate.execute(SQL_CREATE_PROFILE_PICTURE,
-                (PreparedStatementCallback<ProfilePicture>) preparedStatement -> {
-                    preparedStatement.setLong(1, picture.getUserId());
-                    preparedStatement.setBytes(2, picture.getData());
-                    preparedStatement.setString(3, picture.getType());
-                    preparedStatement.executeUpdate();
-                    return picture;
-                });
-        return Mono.just(Objects.requireNonNull(result));
+    public Mono<ProfilePicture> createOrUpdate(ProfilePicture picture) {
+        Assert.notNull(picture, "Profile picture must not be null");
+        Assert.notNull(picture.getUserId(), "User id must not be null");
+        Assert.notNull(picture.getData(), "Profile picture data must not be null");
+
+        DatabaseClient.GenericExecuteSpec executeSpec = databaseClient.execute(SQL_CREATE_OR_UPDATE_PROFILE_PICTURE)
+                .bind("userId", picture.getUserId())
+                .bind("data", picture.getData());
+        if (picture.getType() != null) {
+            executeSpec = executeSpec.bind("type", picture.getType());
+        } else {
+            executeSpec = executeSpec.bindNull("type", String.class);
+        }
+        if (picture.getHash() != null) {
+            executeSpec = executeSpec.bind("hash", picture.getHash());
+        } else {
+            executeSpec = executeSpec.bindNull("hash", String.class);
+        }
+        return executeSpec.fetch().rowsUpdated().thenReturn(picture);
     }
 }
@@ -1,10 +1,14 @@
 package org.briarheart.orchestra.data;
 
 import org.briarheart.orchestra.model.ProfilePicture;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
 
 /**
  * @author Roman Chigvintsev
  */
 public interface ProfilePictureRepository extends ReactiveCrudRepository<ProfilePicture, Long>, ProfilePictureCreator {
+    @Query("SELECT user_id, type, hash FROM profile_picture WHERE user_id = :userId")
+    Mono<ProfilePicture> findWithoutDataByUserId(Long userId);
 }
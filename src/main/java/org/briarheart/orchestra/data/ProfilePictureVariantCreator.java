@@ -0,0 +1,17 @@
+package org.briarheart.orchestra.data;
+
+import org.briarheart.orchestra.model.ProfilePictureVariant;
+import reactor.core.publisher.Mono;
+
+/**
+ * @author Roman Chigvintsev
+ */
+public interface ProfilePictureVariantCreator {
+    /**
+     * Creates new profile picture variant.
+     *
+     * @param variant profile picture variant to be created (must not be {@code null})
+     * @return created profile picture variant
+     */
+    Mono<ProfilePictureVariant> create(ProfilePictureVariant variant);
+}
@@ -0,0 +1,46 @@
+package org.briarheart.orchestra.data;
+
+import org.briarheart.orchestra.model.ProfilePictureVariant;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+
+/**
+ * Default implementation of {@link ProfilePictureVariantCreator} that uses {@link DatabaseClient} to insert profile
+ * picture variant in non-blocking manner.
+ *
+ * @author Roman Chigvintsev
+ */
+@Component
+public class ProfilePictureVariantCreatorImpl implements ProfilePictureVariantCreator {
+    @SuppressWarnings("SqlResolve")
+    private static final String SQL_CREATE_PROFILE_PICTURE_VARIANT = "INSERT INTO profile_picture_variant "
+            + "(user_id, size, data, type) VALUES (:userId, :size, :data, :type)";
+
+    private final DatabaseClient databaseClient;
+
+    public ProfilePictureVariantCreatorImpl(DatabaseClient databaseClient) {
+        Assert.notNull(databaseClient, "Database client must not be null");
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<ProfilePictureVariant> create(ProfilePictureVariant variant) {
+        Assert.notNull(variant, "Profile picture variant must not be null");
+        Assert.notNull(variant.getUserId(), "User id must not be null");
+        Assert.notNull(variant.getSize(), "Profile picture variant size must not be null");
+        Assert.notNull(variant.getData(), "Profile picture variant data must not be null");
+
+        DatabaseClient.GenericExecuteSpec executeSpec = databaseClient.execute(SQL_CREATE_PROFILE_PICTURE_VARIANT)
+                .bind("userId", variant.getUserId())
+                .bind("size", variant.getSize())
+                .bind("data", variant.getData());
+        if (variant.getType() != null) {
+            executeSpec = executeSpec.bind("type", variant.getType());
+        } else {
+            executeSpec = executeSpec.bindNull("type", String.class);
+        }
+        return executeSpec.fetch().rowsUpdated().thenReturn(variant);
+    }
+}
@@ -0,0 +1,18 @@
+package org.briarheart.orchestra.data;
+
+import org.briarheart.orchestra.model.ProfilePictureVariant;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+
+/**
+ * @author Roman Chigvintsev
+ */
+public interface ProfilePictureVariantRepository
+        extends ReactiveCrudRepository<ProfilePictureVariant, Void>, ProfilePictureVariantCreator {
+    @Query("SELECT * FROM profile_picture_variant WHERE user_id = :userId AND size >= :size ORDER BY size LIMIT 1")
+    Mono<ProfilePictureVariant> findFirstByUserIdAndSizeGreaterThanEqual(Long userId, Integer size);
+
+    @Query("DELETE FROM profile_picture_variant WHERE user_id = :userId")
+    Mono<Void> deleteByUserId(Long userId);
+}
@@ -0,0 +1,17 @@
+package org.briarheart.orchestra.data;
+
+import org.briarheart.orchestra.model.RevokedAccessToken;
+import reactor.core.publisher.Mono;
+
+/**
+ * @author Roman Chigvintsev
+ */
+public interface RevokedAccessTokenCreator {
+    /**
+     * Creates new revoked access token. Token that is already revoked is left untouched.
+     *
+     * @param token revoked access token to be saved (must not be {@code null})
+     * @return saved revoked access token
+     */
+    Mono<RevokedAccessToken> create(RevokedAccessToken token);
+}
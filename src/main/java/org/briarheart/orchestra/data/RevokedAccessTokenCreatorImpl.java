@@ -0,0 +1,44 @@
+package org.briarheart.orchestra.data;
+
+import org.briarheart.orchestra.model.RevokedAccessToken;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+
+/**
+ * Default implementation of {@link RevokedAccessTokenCreator} that uses {@link DatabaseClient} to insert revoked
+ * access token since token id is assigned by application and repository would try to update it instead.
+ *
+ * @author Roman Chigvintsev
+ */
+@Component
+public class RevokedAccessTokenCreatorImpl implements RevokedAccessTokenCreator {
+    @SuppressWarnings("SqlResolve")
+    private static final String SQL_CREATE_REVOKED_ACCESS_TOKEN = "INSERT INTO revoked_access_token "
+            + "(token_id, revoked_at, expires_at) VALUES (:tokenId, :revokedAt, :expiresAt) "
+            + "ON CONFLICT (token_id) DO NOTHING";
+
+    private final DatabaseClient databaseClient;
+
+    public RevokedAccessTokenCreatorImpl(DatabaseClient databaseClient) {
+        Assert.notNull(databaseClient, "Database client must not be null");
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<RevokedAccessToken> create(RevokedAccessToken token) {
+        Assert.notNull(token, "Revoked access token must not be null");
+        Assert.hasText(token.getTokenId(), "Token id must not be null or empty");
+        Assert.notNull(token.getRevokedAt(), "Token revocation time must not be null");
+        Assert.notNull(token.getExpiresAt(), "Token expiration time must not be null");
+
+        return databaseClient.execute(SQL_CREATE_REVOKED_ACCESS_TOKEN)
+                .bind("tokenId", token.getTokenId())
+                .bind("revokedAt", token.getRevokedAt())
+                .bind("expiresAt", token.getExpiresAt())
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(token);
+    }
+}
@@ -0,0 +1,27 @@
+package org.briarheart.orchestra.data;
+
+import org.briarheart.orchestra.model.RevokedAccessToken;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author Roman Chigvintsev
+ */
+public interface RevokedAccessTokenRepository
+        extends ReactiveCrudRepository<RevokedAccessToken, String>, RevokedAccessTokenCreator {
+    @Query("SELECT * FROM revoked_access_token WHERE expires_at > :expiresAt")
+    Flux<RevokedAccessToken> findByExpiresAtAfter(LocalDateTime expiresAt);
+
+    @Query("SELECT * FROM revoked_access_token WHERE revoked_at >= :revokedAt AND expires_at > :expiresAt")
+    Flux<RevokedAccessToken> findByRevokedAtGreaterThanEqualAndExpiresAtAfter(LocalDateTime revokedAt,
+                                                                              LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("DELETE FROM revoked_access_token WHERE expires_at <= :expiresAt")
+    Mono<Integer> deleteByExpiresAtLessThanEqual(LocalDateTime expiresAt);
+}
@@ -2,6 +2,7 @@ package org.briarheart.orchestra.data;
 
 import org.briarheart.orchestra.model.Task;
 import org.briarheart.orchestra.model.TaskStatus;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Flux;
@@ -16,31 +17,31 @@ public interface TaskRepository extends ReactiveCrudRepository<Task, Long> {
     @Query("SELECT * FROM task WHERE id = :id AND user_id = :userId")
     Mono<Task> findByIdAndUserId(Long id, Long userId);
 
-    @Query("SELECT * FROM task WHERE status = :status AND user_id = :userId ORDER BY created_at ASC LIMIT :limit "
-            + "OFFSET :offset")
+    @Query("SELECT * FROM task WHERE status = :status AND user_id = :userId ORDER BY created_at ASC, id ASC "
+            + "LIMIT :limit OFFSET :offset")
     Flux<Task> findByStatusAndUserIdOrderByCreatedAtAsc(TaskStatus status, Long userId, long offset, Integer limit);
 
-    @Query("SELECT * FROM task WHERE status <> :status AND user_id = :userId ORDER BY created_at ASC LIMIT :limit "
-            + "OFFSET :offset")
+    @Query("SELECT * FROM task WHERE status <> :status AND user_id = :userId ORDER BY created_at ASC, id ASC "
+            + "LIMIT :limit OFFSET :offset")
     Flux<Task> findByStatusNotAndUserIdOrderByCreatedAtAsc(TaskStatus status, Long userId, long offset, Integer limit);
 
     @Query("SELECT * FROM task WHERE status <> :status AND id IN (SELECT task_id FROM tasks_tags WHERE tag_id = :tagId)"
-            + " ORDER BY created_at ASC LIMIT :limit OFFSET :offset")
+            + " ORDER BY created_at ASC, id ASC LIMIT :limit OFFSET :offset")
     Flux<Task> findByStatusNotAndTagIdOrderByCreatedAtAsc(TaskStatus status, Long tagId, long offset, Integer limit);
 
-    @Query("SELECT * FROM task WHERE task_list_id = :taskListId AND user_id = :userId ORDER BY created_at ASC "
-            + "LIMIT :limit OFFSET :offset")
+    @Query("SELECT * FROM task WHERE task_list_id = :taskListId AND user_id = :userId "
+            + "ORDER BY created_at ASC, id ASC LIMIT :limit OFFSET :offset")
     Flux<Task> findByTaskListIdAndUserIdOrderByCreatedAtAsc(Long taskListId, Long userId, long offset, Integer limit);
 
     @Query("SELECT * FROM task WHERE deadline IS NULL AND status = :status AND user_id = :userId "
-            + "ORDER BY created_at ASC LIMIT :limit OFFSET :offset")
+            + "ORDER BY created_at ASC, id ASC LIMIT :limit OFFSET :offset")
     Flux<Task> findByDeadlineIsNullAndStatusAndUserIdOrderByCreatedAtAsc(TaskStatus status,
                                                                          Long userId,
                                                                          long offset,
                                                                          Integer limit);
 
     @Query("SELECT * FROM task WHERE deadline <= :deadline AND status = :status AND user_id = :userId "
-            + "ORDER BY created_at ASC LIMIT :limit OFFSET :offset")
+            + "ORDER BY created_at ASC, id ASC LIMIT :limit OFFSET :offset")
     Flux<Task> findByDeadlineLessThanEqualAndStatusAndUserIdOrderByCreatedAtAsc(LocalDateTime deadline,
                                                                                 TaskStatus status,
                                                                                 Long userId,
@@ -49,7 +50,7 @@ public interface TaskRepository extends ReactiveCrudRepository<Task, Long> {
 
 
     @Query("SELECT * FROM task WHERE deadline >= :deadline AND status = :status AND user_id = :userId "
-            + "ORDER BY created_at ASC LIMIT :limit OFFSET :offset")
+            + "ORDER BY created_at ASC, id ASC LIMIT :limit OFFSET :offset")
     Flux<Task> findByDeadlineGreaterThanEqualAndStatusAndUserIdOrderByCreatedAtAsc(LocalDateTime deadline,
                                                                                    TaskStatus status,
                                                                                    Long userId,
@@ -61,7 +62,7 @@ public interface TaskRepository extends ReactiveCrudRepository<Task, Long> {
             + "WHERE (deadline BETWEEN :deadlineFrom AND :deadlineTo) "
             + "AND status = :status "
             + "AND user_id = :userId "
-            + "ORDER BY created_at ASC "
+            + "ORDER BY created_at ASC, id ASC "
             + "LIMIT :limit OFFSET :offset")
     Flux<Task> findByDeadlineBetweenAndStatusAndUserIdOrderByCreatedAtAsc(LocalDateTime deadlineFrom,
                                                                           LocalDateTime deadlineTo,
@@ -70,6 +71,151 @@ public interface TaskRepository extends ReactiveCrudRepository<Task, Long> {
                                                                           long offset,
                                                                           Integer limit);
 
+    // Methods below implement keyset pagination: instead of skipping rows with OFFSET they seek directly to the rows
+    // following the given (created_at, id) pair. Predicate "created_at >= :createdAt" is kept separately so that index
+    // on creation time can be used for seeking.
+
+    @Query("SELECT * FROM task WHERE status = :status AND user_id = :userId "
+            + "AND created_at >= :createdAt AND (created_at > :createdAt OR id > :id) "
+            + "ORDER BY created_at ASC, id ASC LIMIT :limit")
+    Flux<Task> findByStatusAndUserIdAfterOrderByCreatedAtAsc(TaskStatus status,
+                                                             Long userId,
+                                                             LocalDateTime createdAt,
+                                                             Long id,
+                                                             Integer limit);
+
+    @Query("SELECT * FROM task WHERE status <> :status AND user_id = :userId "
+            + "AND created_at >= :createdAt AND (created_at > :createdAt OR id > :id) "
+            + "ORDER BY created_at ASC, id ASC LIMIT :limit")
+    Flux<Task> findByStatusNotAndUserIdAfterOrderByCreatedAtAsc(TaskStatus status,
+                                                                Long userId,
+                                                                LocalDateTime createdAt,
+                                                                Long id,
+                                                                Integer limit);
+
+    @Query("SELECT * FROM task WHERE deadline IS NULL AND status = :status AND user_id = :userId "
+            + "AND created_at >= :createdAt AND (created_at > :createdAt OR id > :id) "
+            + "ORDER BY created_at ASC, id ASC LIMIT :limit")
+    Flux<Task> findByDeadlineIsNullAndStatusAndUserIdAfterOrderByCreatedAtAsc(TaskStatus status,
+                                                                              Long userId,
+                                                                              LocalDateTime createdAt,
+                                                                              Long id,
+                                                                              Integer limit);
+
+    @Query("SELECT * FROM task WHERE deadline <= :deadline AND status = :status AND user_id = :userId "
+            + "AND created_at >= :createdAt AND (created_at > :createdAt OR id > :id) "
+            + "ORDER BY created_at ASC, id ASC LIMIT :limit")
+    Flux<Task> findByDeadlineLessThanEqualAndStatusAndUserIdAfterOrderByCreatedAtAsc(LocalDateTime deadline,
+                                                                                     TaskStatus status,
+                                                                                     Long userId,
+                                                                                     LocalDateTime createdAt,
+                                                                                     Long id,
+                                                                                     Integer limit);
+
+    @Query("SELECT * FROM task WHERE deadline >= :deadline AND status = :status AND user_id = :userId "
+            + "AND created_at >= :createdAt AND (created_at > :createdAt OR id > :id) "
+            + "ORDER BY created_at ASC, id ASC LIMIT :limit")
+    Flux<Task> findByDeadlineGreaterThanEqualAndStatusAndUserIdAfterOrderByCreatedAtAsc(LocalDateTime deadline,
+                                                                                        TaskStatus status,
+                                                                                        Long userId,
+                                                                                        LocalDateTime createdAt,
+                                                                                        Long id,
+                                                                                        Integer limit);
+
+    @Query("SELECT * "
+            + "FROM task "
+            + "WHERE (deadline BETWEEN :deadlineFrom AND :deadlineTo) "
+            + "AND status = :status "
+            + "AND user_id = :userId "
+            + "AND created_at >= :createdAt AND (created_at > :createdAt OR id > :id) "
+            + "ORDER BY created_at ASC, id ASC "
+            + "LIMIT :limit")
+    Flux<Task> findByDeadlineBetweenAndStatusAndUserIdAfterOrderByCreatedAtAsc(LocalDateTime deadlineFrom,
+                                                                               LocalDateTime deadlineTo,
+                                                                               TaskStatus status,
+                                                                               Long userId,
+                                                                               LocalDateTime createdAt,
+                                                                               Long id,
+                                                                               Integer limit);
+
+    @Query("SELECT * FROM task WHERE status <> :status AND id IN (SELECT task_id FROM tasks_tags WHERE tag_id = :tagId)"
+            + " AND created_at >= :createdAt AND (created_at > :createdAt OR id > :id) "
+            + "ORDER BY created_at ASC, id ASC LIMIT :limit")
+    Flux<Task> findByStatusNotAndTagIdAfterOrderByCreatedAtAsc(TaskStatus status,
+                                                               Long tagId,
+                                                               LocalDateTime createdAt,
+                                                               Long id,
+                                                               Integer limit);
+
+    @Query("SELECT * FROM task WHERE task_list_id = :taskListId AND user_id = :userId "
+            + "AND created_at >= :createdAt AND (created_at > :createdAt OR id > :id) "
+            + "ORDER BY created_at ASC, id ASC LIMIT :limit")
+    Flux<Task> findByTaskListIdAndUserIdAfterOrderByCreatedAtAsc(Long taskListId,
+                                                                 Long userId,
+                                                                 LocalDateTime createdAt,
+                                                                 Long id,
+                                                                 Integer limit);
+
+    // Methods below return requested page along with total number of tasks meeting the same criteria computed by
+    // window function. Note that total number is not available when requested page is out of range.
+
+    @Query("SELECT *, COUNT(*) OVER () AS total FROM task WHERE status = :status AND user_id = :userId "
+            + "ORDER BY created_at ASC, id ASC LIMIT :limit OFFSET :offset")
+    Flux<CountedTask> findWithTotalByStatusAndUserIdOrderByCreatedAtAsc(TaskStatus status,
+                                                                        Long userId,
+                                                                        long offset,
+                                                                        Integer limit);
+
+    @Query("SELECT *, COUNT(*) OVER () AS total FROM task WHERE status <> :status AND user_id = :userId "
+            + "ORDER BY created_at ASC, id ASC LIMIT :limit OFFSET :offset")
+    Flux<CountedTask> findWithTotalByStatusNotAndUserIdOrderByCreatedAtAsc(TaskStatus status,
+                                                                           Long userId,
+                                                                           long offset,
+                                                                           Integer limit);
+
+    @Query("SELECT *, COUNT(*) OVER () AS total FROM task WHERE deadline IS NULL AND status = :status "
+            + "AND user_id = :userId ORDER BY created_at ASC, id ASC LIMIT :limit OFFSET :offset")
+    Flux<CountedTask> findWithTotalByDeadlineIsNullAndStatusAndUserIdOrderByCreatedAtAsc(TaskStatus status,
+                                                                                         Long userId,
+                                                                                         long offset,
+                                                                                         Integer limit);
+
+    @Query("SELECT *, COUNT(*) OVER () AS total FROM task WHERE deadline <= :deadline AND status = :status "
+            + "AND user_id = :userId ORDER BY created_at ASC, id ASC LIMIT :limit OFFSET :offset")
+    Flux<CountedTask> findWithTotalByDeadlineLessThanEqualAndStatusAndUserIdOrderByCreatedAtAsc(
+            LocalDateTime deadline,
+            TaskStatus status,
+            Long userId,
+            long offset,
+            Integer limit
+    );
+
+    @Query("SELECT *, COUNT(*) OVER () AS total FROM task WHERE deadline >= :deadline AND status = :status "
+            + "AND user_id = :userId ORDER BY created_at ASC, id ASC LIMIT :limit OFFSET :offset")
+    Flux<CountedTask> findWithTotalByDeadlineGreaterThanEqualAndStatusAndUserIdOrderByCreatedAtAsc(
+            LocalDateTime deadline,
+            TaskStatus status,
+            Long userId,
+            long offset,
+            Integer limit
+    );
+
+    @Query("SELECT *, COUNT(*) OVER () AS total "
+            + "FROM task "
+            + "WHERE (deadline BETWEEN :deadlineFrom AND :deadlineTo) "
+            + "AND status = :status "
+            + "AND user_id = :userId "
+            + "ORDER BY created_at ASC, id ASC "
+            + "LIMIT :limit OFFSET :offset")
+    Flux<CountedTask> findWithTotalByDeadlineBetweenAndStatusAndUserIdOrderByCreatedAtAsc(
+            LocalDateTime deadlineFrom,
+            LocalDateTime deadlineTo,
+            TaskStatus status,
+            Long userId,
+            long offset,
+            Integer limit
+    );
+
     @Query("SELECT COUNT(*) FROM task WHERE status = :status AND user_id = :userId")
     Mono<Long> countAllByStatusAndUserId(TaskStatus status, Long userId);
 
@@ -98,4 +244,12 @@ public interface TaskRepository extends ReactiveCrudRepository<Task, Long> {
                                                            LocalDateTime deadlineTo,
                                                            TaskStatus status,
                                                            Long userId);
+
+    @Modifying
+    @Query("UPDATE task SET status = :status WHERE task_list_id = :taskListId AND user_id = :userId")
+    Mono<Integer> updateStatusByTaskListIdAndUserId(TaskStatus status, Long taskListId, Long userId);
+
+    @Modifying
+    @Query("DELETE FROM task WHERE task_list_id = :taskListId AND user_id = :userId")
+    Mono<Integer> deleteByTaskListIdAndUserId(Long taskListId, Long userId);
 }
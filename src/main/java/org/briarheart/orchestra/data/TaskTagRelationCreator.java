@@ -7,5 +7,13 @@ import reactor.core.publisher.Mono;
  * @author Roman Chigvintsev
  */
 public interface TaskTagRelationCreator {
+    /**
+     * Creates relation between task and tag with the given ids. Attempt to create already existing relation is
+     * silently ignored.
+     *
+     * @param taskId task id (must not be {@code null})
+     * @param tagId  tag id (must not be {@code null})
+     * @return created or already existing relation
+     */
     Mono<TaskTagRelation> create(Long taskId, Long tagId);
 }
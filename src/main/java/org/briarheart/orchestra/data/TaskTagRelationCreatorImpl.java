@@ -1,38 +1,39 @@
 package org.briarheart.orchestra.data;
 
-import io.jsonwebtoken.lang.Assert;
 import org.briarheart.orchestra.model.TaskTagRelation;
-import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.data.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
 import reactor.core.publisher.Mono;
 
-import java.util.Objects;
-
 /**
+ * Default implementation of {@link TaskTagRelationCreator} that uses {@link DatabaseClient} to insert relation in
+ * non-blocking manner.
+ *
  * @author Roman Chigvintsev
  */
 @Component
 public class TaskTagRelationCreatorImpl implements TaskTagRelationCreator {
     @SuppressWarnings("SqlResolve")
-    private static final String SQL_CREATE_TASK_TAG_RELATION = "INSERT INTO tasks_tags (task_id, tag_id) VALUES (?, ?)";
+    private static final String SQL_CREATE_TASK_TAG_RELATION = "INSERT INTO tasks_tags (task_id, tag_id) "
+            + "VALUES (:taskId, :tagId) ON CONFLICT DO NOTHING";
 
-    private final JdbcTemplate jdbcTemplate;
+    private final DatabaseClient databaseClient;
 
-    public TaskTagRelationCreatorImpl(JdbcTemplate jdbcTemplate) {
-        Assert.notNull(jdbcTemplate, "JDBC template must not be null");
-        this.jdbcTemplate = jdbcTemplate;
+    public TaskTagRelationCreatorImpl(DatabaseClient databaseClient) {
+        Assert.notNull(databaseClient, "Database client must not be null");
+        this.databaseClient = databaseClient;
     }
 
     @Override
     public Mono<TaskTagRelation> create(Long taskId, Long tagId) {
-        TaskTagRelation result = jdbcTemplate.execute(SQL_CREATE_TASK_TAG_RELATION,
-                (PreparedStatementCallback<TaskTagRelation>) preparedStatement -> {
-                    preparedStatement.setLong(1, taskId);
-                    preparedStatement.setLong(2, tagId);
-                    preparedStatement.executeUpdate();
-                    return new TaskTagRelation(taskId, tagId);
-                });
-        return Mono.just(Objects.requireNonNull(result));
+        Assert.notNull(taskId, "Task id must not be null");
+        Assert.notNull(tagId, "Tag id must not be null");
+        return databaseClient.execute(SQL_CREATE_TASK_TAG_RELATION)
+                .bind("taskId", taskId)
+                .bind("tagId", tagId)
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(new TaskTagRelation(taskId, tagId));
     }
 }
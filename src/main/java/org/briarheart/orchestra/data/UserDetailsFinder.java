@@ -0,0 +1,17 @@
+package org.briarheart.orchestra.data;
+
+import org.briarheart.orchestra.model.User;
+import reactor.core.publisher.Mono;
+
+/**
+ * @author Roman Chigvintsev
+ */
+public interface UserDetailsFinder {
+    /**
+     * Finds user with the given email together with user's authorities by single statement.
+     *
+     * @param email user's email (must not be {@code null} or empty)
+     * @return found user with authorities or empty {@link Mono} if user is not found
+     */
+    Mono<User> findByEmailWithAuthorities(String email);
+}
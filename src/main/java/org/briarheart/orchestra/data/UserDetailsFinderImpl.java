@@ -0,0 +1,69 @@
+package org.briarheart.orchestra.data;
+
+import io.r2dbc.spi.Row;
+import org.briarheart.orchestra.model.User;
+import org.springframework.data.r2dbc.core.DatabaseClient;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Default implementation of {@link UserDetailsFinder} that uses {@link DatabaseClient} to load user and aggregated
+ * authorities in one round trip.
+ *
+ * @author Roman Chigvintsev
+ */
+@Component
+public class UserDetailsFinderImpl implements UserDetailsFinder {
+    @SuppressWarnings("SqlResolve")
+    private static final String SQL_FIND_USER_BY_EMAIL_WITH_AUTHORITIES = "SELECT u.id, u.email, u.email_confirmed, "
+            + "u.version, u.password, u.enabled, u.full_name, u.profile_picture_url, "
+            + "array_agg(a.authority) FILTER (WHERE a.authority IS NOT NULL) AS authorities "
+            + "FROM users u LEFT JOIN authorities a ON a.user_id = u.id "
+            + "WHERE u.email = :email "
+            + "GROUP BY u.id, u.email, u.email_confirmed, u.version, u.password, u.enabled, u.full_name, "
+            + "u.profile_picture_url";
+
+    private final DatabaseClient databaseClient;
+
+    public UserDetailsFinderImpl(DatabaseClient databaseClient) {
+        Assert.notNull(databaseClient, "Database client must not be null");
+        this.databaseClient = databaseClient;
+    }
+
+    @Override
+    public Mono<User> findByEmailWithAuthorities(String email) {
+        Assert.hasText(email, "Email must not be null or empty");
+        return databaseClient.execute(SQL_FIND_USER_BY_EMAIL_WITH_AUTHORITIES)
+                .bind("email", email)
+                .map((row, metadata) -> mapUser(row))
+                .one();
+    }
+
+    private static User mapUser(Row row) {
+        Long version = row.get("version", Long.class);
+        User user = User.builder()
+                .id(row.get("id", Long.class))
+                .email(row.get("email", String.class))
+                .emailConfirmed(Boolean.TRUE.equals(row.get("email_confirmed", Boolean.class)))
+                .version(version != null ? version : 0L)
+                .password(row.get("password", String.class))
+                .enabled(Boolean.TRUE.equals(row.get("enabled", Boolean.class)))
+                .fullName(row.get("full_name", String.class))
+                .profilePictureUrl(row.get("profile_picture_url", String.class))
+                .build();
+        String[] authorities = row.get("authorities", String[].class);
+        if (authorities != null) {
+            List<SimpleGrantedAuthority> grantedAuthorities = Arrays.stream(authorities)
+                    .map(SimpleGrantedAuthority::new)
+                    .collect(Collectors.toList());
+            user.setAuthorities(grantedAuthorities);
+        }
+        return user;
+    }
+}
@@ -1,14 +1,17 @@
 package org.briarheart.orchestra.data;
 
 import org.briarheart.orchestra.model.User;
+import org.springframework.data.r2dbc.repository.Modifying;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+
 /**
  * @author Roman Chigvintsev
  */
-public interface UserRepository extends ReactiveCrudRepository<User, Long> {
+public interface UserRepository extends ReactiveCrudRepository<User, Long>, UserDetailsFinder {
     @Query("SELECT * FROM users WHERE email = :email")
     Mono<User> findByEmail(String email);
 
@@ -17,4 +20,27 @@ public interface UserRepository extends ReactiveCrudRepository<User, Long> {
 
     @Query("SELECT * FROM users WHERE id = :id AND email = :email")
     Mono<User> findByIdAndEmail(Long id, String email);
+
+    @Modifying
+    @Query("UPDATE users SET password = :newPassword WHERE id = :id AND password = :oldPassword")
+    Mono<Integer> updatePassword(Long id, String oldPassword, String newPassword);
+
+    @Modifying
+    @Query("UPDATE users SET password = :password, version = version + 1 WHERE id = :id")
+    Mono<Integer> resetPassword(Long id, String password);
+
+    /**
+     * Confirms email and enables user with the given id if there is email confirmation token with the given digest
+     * registered for this user that is not expired yet. Token is checked and user is updated by single statement.
+     *
+     * @param id        user id
+     * @param tokenHash digest of email confirmation token value
+     * @param now       current time
+     * @return number of updated users; zero when token is not found or expired or when email is already confirmed
+     */
+    @Modifying
+    @Query("UPDATE users SET email_confirmed = TRUE, enabled = TRUE, version = version + 1 "
+            + "WHERE id = :id AND email_confirmed = FALSE AND EXISTS (SELECT 1 FROM email_confirmation_token t "
+            + "WHERE t.token_hash = :tokenHash AND t.user_id = :id AND t.expires_at > :now)")
+    Mono<Integer> confirmEmail(Long id, String tokenHash, LocalDateTime now);
 }
@@ -0,0 +1,183 @@
+package org.briarheart.orchestra.mail;
+
+import org.springframework.util.Assert;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable renderer of localized message pattern in {@link MessageFormat} syntax. Pattern is parsed only once when
+ * template is compiled.
+ * <p>
+ * Patterns that consist of literal text and simple argument placeholders (like {@code {0}}) are compiled into list
+ * of segments that are concatenated without any formatting overhead as long as all arguments are strings. Patterns
+ * with format types or styles (like {@code {0,number}}) as well as non-string arguments are rendered by copy of
+ * precompiled {@link MessageFormat} so that result is always the same as of {@link MessageFormat#format}.
+ *
+ * @author Roman Chigvintsev
+ */
+public final class MailTemplate {
+    private final MessageFormat format;
+    private final Segment[] segments;
+    private final int estimatedLength;
+
+    private MailTemplate(MessageFormat format, Segment[] segments, int estimatedLength) {
+        this.format = format;
+        this.segments = segments;
+        this.estimatedLength = estimatedLength;
+    }
+
+    /**
+     * Compiles the given pattern into template.
+     *
+     * @param pattern pattern in {@link MessageFormat} syntax (must not be {@code null})
+     * @param locale  locale used to format non-string arguments (must not be {@code null})
+     * @return compiled template
+     * @throws IllegalArgumentException if pattern is invalid
+     */
+    public static MailTemplate compile(String pattern, Locale locale) {
+        Assert.notNull(pattern, "Pattern must not be null");
+        Assert.notNull(locale, "Locale must not be null");
+
+        MessageFormat format = new MessageFormat(pattern, locale);
+        List<Segment> segments = parseSimplePattern(pattern);
+        if (segments == null) {
+            return new MailTemplate(format, null, 0);
+        }
+        int literalLength = 0;
+        for (Segment segment : segments) {
+            if (segment.literal != null) {
+                literalLength += segment.literal.length();
+            }
+        }
+        return new MailTemplate(format, segments.toArray(new Segment[0]), literalLength);
+    }
+
+    /**
+     * Renders this template with the given arguments.
+     *
+     * @param args template arguments
+     * @return rendered text
+     */
+    public String render(Object... args) {
+        if (segments == null || !allStrings(args)) {
+            // MessageFormat is not thread safe
+            return ((MessageFormat) format.clone()).format(args);
+        }
+
+        int length = estimatedLength;
+        if (args != null) {
+            for (Object arg : args) {
+                if (arg != null) {
+                    length += ((String) arg).length();
+                }
+            }
+        }
+
+        StringBuilder result = new StringBuilder(length);
+        for (Segment segment : segments) {
+            if (segment.literal != null) {
+                result.append(segment.literal);
+            } else if (args == null || segment.argumentIndex >= args.length) {
+                // Same as MessageFormat does for missing arguments
+                result.append('{').append(segment.argumentIndex).append('}');
+            } else {
+                result.append(args[segment.argumentIndex]);
+            }
+        }
+        return result.toString();
+    }
+
+    private static boolean allStrings(Object[] args) {
+        if (args != null) {
+            for (Object arg : args) {
+                if (arg != null && !(arg instanceof String)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Splits the given pattern into literal and argument segments following quoting rules of {@link MessageFormat}.
+     *
+     * @return list of segments or {@code null} if pattern contains arguments with format type or style
+     */
+    private static List<Segment> parseSimplePattern(String pattern) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+                    literal.append('\'');
+                    i += 2;
+                    continue;
+                }
+                quoted = !quoted;
+            } else if (c == '{' && !quoted) {
+                int end = pattern.indexOf('}', i + 1);
+                if (end < 0) {
+                    return null;
+                }
+                Integer argumentIndex = parseArgumentIndex(pattern.substring(i + 1, end));
+                if (argumentIndex == null) {
+                    return null;
+                }
+                if (literal.length() > 0) {
+                    segments.add(Segment.literal(literal.toString()));
+                    literal.setLength(0);
+                }
+                segments.add(Segment.argument(argumentIndex));
+                i = end;
+            } else {
+                literal.append(c);
+            }
+            i++;
+        }
+        if (literal.length() > 0) {
+            segments.add(Segment.literal(literal.toString()));
+        }
+        return segments;
+    }
+
+    private static Integer parseArgumentIndex(String argument) {
+        String trimmed = argument.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < trimmed.length(); i++) {
+            if (!Character.isDigit(trimmed.charAt(i))) {
+                return null;
+            }
+        }
+        try {
+            return Integer.parseInt(trimmed);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class Segment {
+        private final String literal;
+        private final int argumentIndex;
+
+        private Segment(String literal, int argumentIndex) {
+            this.literal = literal;
+            this.argumentIndex = argumentIndex;
+        }
+
+        static Segment literal(String text) {
+            return new Segment(text, -1);
+        }
+
+        static Segment argument(int index) {
+            return new Segment(null, index);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.briarheart.orchestra.mail;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.support.MessageSourceAccessor;
+import org.springframework.util.Assert;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Renders localized email subjects and texts. Message patterns are looked up in message source and compiled into
+ * {@link MailTemplate}s only once for every pair of message code and locale.
+ * <p>
+ * Patterns are looked up without arguments which makes message source return them as is. This requires
+ * "alwaysUseMessageFormat" flag of message source to be turned off (default value).
+ *
+ * @author Roman Chigvintsev
+ */
+public class MailTemplateEngine {
+    private static final long DEFAULT_CACHE_SIZE = 1_000;
+
+    private final MessageSourceAccessor messages;
+    private final Cache<TemplateKey, MailTemplate> templates;
+
+    public MailTemplateEngine(MessageSourceAccessor messages) {
+        this(messages, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates new instance of this class.
+     *
+     * @param messages  message source accessor (must not be {@code null})
+     * @param cacheSize maximum number of compiled templates (must be greater than zero); number of templates depends
+     *                  on number of locales requested by clients and so should be bounded
+     */
+    public MailTemplateEngine(MessageSourceAccessor messages, long cacheSize) {
+        Assert.notNull(messages, "Message source accessor must not be null");
+        Assert.isTrue(cacheSize > 0, "Cache size must be greater than zero");
+
+        this.messages = messages;
+        this.templates = CacheBuilder.newBuilder().maximumSize(cacheSize).build();
+    }
+
+    /**
+     * Renders message with the given code.
+     *
+     * @param code   message code (must not be {@code null} or empty)
+     * @param locale message locale; default locale is used when {@code null}
+     * @param args   message arguments
+     * @return rendered message
+     * @throws org.springframework.context.NoSuchMessageException if message is not found
+     */
+    public String render(String code, Locale locale, Object... args) {
+        return getTemplate(code, locale).render(args);
+    }
+
+    /**
+     * Returns compiled template of message with the given code compiling it if necessary.
+     *
+     * @param code   message code (must not be {@code null} or empty)
+     * @param locale message locale; default locale is used when {@code null}
+     * @return compiled template
+     * @throws org.springframework.context.NoSuchMessageException if message is not found
+     */
+    public MailTemplate getTemplate(String code, Locale locale) {
+        Assert.hasLength(code, "Message code must not be null or empty");
+
+        // Message source falls back to default locale in the same way
+        Locale templateLocale = locale != null ? locale : Locale.getDefault();
+        TemplateKey key = new TemplateKey(code, templateLocale);
+        MailTemplate template = templates.getIfPresent(key);
+        if (template == null) {
+            try {
+                template = templates.get(key, () -> MailTemplate.compile(messages.getMessage(code, templateLocale),
+                        templateLocale));
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Failed to compile template of message \"" + code + "\"", e);
+            } catch (UncheckedExecutionException e) {
+                // Exceptions like NoSuchMessageException are rethrown as is
+                Throwables.throwIfUnchecked(e.getCause());
+                throw e;
+            }
+        }
+        return template;
+    }
+
+    @RequiredArgsConstructor
+    @EqualsAndHashCode
+    private static final class TemplateKey {
+        private final String code;
+        private final Locale locale;
+    }
+}
@@ -0,0 +1,238 @@
+package org.briarheart.orchestra.mail;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.util.Assert;
+
+import javax.mail.Address;
+import javax.mail.AuthenticationFailedException;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Extension of {@link JavaMailSenderImpl} that keeps pool of connected and authenticated {@link Transport}s instead of
+ * opening new connection (with TLS handshake and authentication) for every call of one of {@code send} methods. All
+ * messages passed to single {@code send} call are sent over one connection.
+ * <p>
+ * Transport that stayed idle for longer than {@link #validationInterval} is checked before reuse (SMTP transport
+ * sends "NOOP" command). Transports that stayed idle for longer than {@link #maxIdleTime} are closed by background
+ * eviction task.
+ *
+ * @author Roman Chigvintsev
+ */
+@Slf4j
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean {
+    private static final String HEADER_MESSAGE_ID = "Message-ID";
+
+    private final Semaphore permits;
+    private final BlockingDeque<PooledTransport> idleTransports = new LinkedBlockingDeque<>();
+    private final ScheduledExecutorService evictionExecutor;
+
+    /**
+     * Maximum time of waiting for free connection when all connections are in use.
+     */
+    @Setter
+    private Duration borrowTimeout = Duration.ofSeconds(30);
+    /**
+     * Idle time after which transport is checked before reuse.
+     */
+    @Setter
+    private Duration validationInterval = Duration.ofSeconds(10);
+    /**
+     * Idle time after which transport is closed.
+     */
+    @Setter
+    private Duration maxIdleTime = Duration.ofMinutes(1);
+    @Setter(AccessLevel.PACKAGE)
+    private Clock clock = Clock.systemUTC();
+
+    /**
+     * Creates new instance of this class.
+     *
+     * @param maxSize          maximum number of simultaneously open connections (must be greater than zero)
+     * @param evictionInterval interval of closing of idle connections (must not be {@code null})
+     */
+    public PooledJavaMailSender(int maxSize, Duration evictionInterval) {
+        Assert.isTrue(maxSize > 0, "Maximum pool size must be greater than zero");
+        Assert.notNull(evictionInterval, "Eviction interval must not be null");
+
+        this.permits = new Semaphore(maxSize, true);
+        this.evictionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mail-transport-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long evictionIntervalMillis = evictionInterval.toMillis();
+        this.evictionExecutor.scheduleWithFixedDelay(this::evictIdleTransports, evictionIntervalMillis,
+                evictionIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        evictionExecutor.shutdownNow();
+        PooledTransport transport;
+        while ((transport = idleTransports.pollFirst()) != null) {
+            close(transport.getTransport());
+        }
+    }
+
+    /**
+     * Returns number of connections that are currently open and not in use.
+     *
+     * @return number of idle connections
+     */
+    public int getIdleCount() {
+        return idleTransports.size();
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) throws MailException {
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        acquirePermit(mimeMessages, originalMessages, failedMessages);
+        Transport transport = null;
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                if (transport == null || !transport.isConnected()) {
+                    if (transport != null) {
+                        close(transport);
+                    }
+                    try {
+                        transport = borrowTransport();
+                    } catch (AuthenticationFailedException e) {
+                        throw new MailAuthenticationException(e);
+                    } catch (Exception e) {
+                        // All remaining messages are failed
+                        for (int j = i; j < mimeMessages.length; j++) {
+                            failedMessages.put(getOriginalMessage(mimeMessages, originalMessages, j), e);
+                        }
+                        throw new MailSendException("Mail server connection failed", e, failedMessages);
+                    }
+                }
+
+                MimeMessage mimeMessage = mimeMessages[i];
+                try {
+                    if (mimeMessage.getSentDate() == null) {
+                        mimeMessage.setSentDate(new Date());
+                    }
+                    String messageId = mimeMessage.getMessageID();
+                    mimeMessage.saveChanges();
+                    if (messageId != null) {
+                        // Preserve explicitly specified message id
+                        mimeMessage.setHeader(HEADER_MESSAGE_ID, messageId);
+                    }
+                    Address[] addresses = mimeMessage.getAllRecipients();
+                    transport.sendMessage(mimeMessage, addresses != null ? addresses : new Address[0]);
+                } catch (Exception e) {
+                    failedMessages.put(getOriginalMessage(mimeMessages, originalMessages, i), e);
+                }
+            }
+        } finally {
+            if (transport != null) {
+                releaseTransport(transport, !failedMessages.isEmpty());
+            }
+            permits.release();
+        }
+
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    void evictIdleTransports() {
+        Instant now = clock.instant();
+        Iterator<PooledTransport> iterator = idleTransports.iterator();
+        while (iterator.hasNext()) {
+            PooledTransport transport = iterator.next();
+            if (transport.isIdleLongerThan(maxIdleTime, now) && idleTransports.removeFirstOccurrence(transport)) {
+                close(transport.getTransport());
+                log.debug("Idle mail transport is closed");
+            }
+        }
+    }
+
+    private void acquirePermit(MimeMessage[] mimeMessages,
+                               Object[] originalMessages,
+                               Map<Object, Exception> failedMessages) {
+        boolean acquired;
+        Exception failure;
+        try {
+            acquired = permits.tryAcquire(borrowTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            failure = new MessagingException("Timed out waiting for free mail server connection");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+            failure = e;
+        }
+        if (!acquired) {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                failedMessages.put(getOriginalMessage(mimeMessages, originalMessages, i), failure);
+            }
+            throw new MailSendException("Mail server connection is not available", failure, failedMessages);
+        }
+    }
+
+    private Transport borrowTransport() throws MessagingException {
+        Instant now = clock.instant();
+        PooledTransport pooledTransport;
+        while ((pooledTransport = idleTransports.pollFirst()) != null) {
+            Transport transport = pooledTransport.getTransport();
+            if (!pooledTransport.isIdleLongerThan(validationInterval, now) || transport.isConnected()) {
+                return transport;
+            }
+            log.debug("Mail transport failed health check and is discarded");
+            close(transport);
+        }
+        return connectTransport();
+    }
+
+    private void releaseTransport(Transport transport, boolean failed) {
+        // Transport may be left in inconsistent state after failure so it is checked immediately
+        if (failed && !transport.isConnected()) {
+            close(transport);
+            return;
+        }
+        idleTransports.offerFirst(new PooledTransport(transport, clock.instant()));
+    }
+
+    private static Object getOriginalMessage(MimeMessage[] mimeMessages, Object[] originalMessages, int index) {
+        return originalMessages != null ? originalMessages[index] : mimeMessages[index];
+    }
+
+    private static void close(Transport transport) {
+        try {
+            transport.close();
+        } catch (Exception e) {
+            log.debug("Failed to close mail transport", e);
+        }
+    }
+
+    private static class PooledTransport {
+        private final Transport transport;
+        private final Instant releasedAt;
+
+        PooledTransport(Transport transport, Instant releasedAt) {
+            this.transport = transport;
+            this.releasedAt = releasedAt;
+        }
+
+        Transport getTransport() {
+            return transport;
+        }
+
+        boolean isIdleLongerThan(Duration duration, Instant now) {
+            return releasedAt.plus(duration).isBefore(now);
+        }
+    }
+}
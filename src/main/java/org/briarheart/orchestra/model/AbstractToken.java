@@ -1,14 +1,20 @@
 package org.briarheart.orchestra.model;
 
+import com.google.common.hash.Hashing;
 import io.jsonwebtoken.lang.Assert;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 
 /**
+ * Base class for tokens sent to users in confirmation links. Only SHA-256 digest of token value is stored in
+ * database; token value itself is available only for newly created tokens.
+ *
  * @author Roman Chigvintsev
  */
 @Data
@@ -18,7 +24,9 @@ public abstract class AbstractToken {
     private Long id;
     private Long userId;
     private String email;
+    @Transient
     private String tokenValue;
+    private String tokenHash;
     private LocalDateTime createdAt;
     private LocalDateTime expiresAt;
 
@@ -28,6 +36,7 @@ public abstract class AbstractToken {
         this.userId = other.userId;
         this.email = other.email;
         this.tokenValue = other.tokenValue;
+        this.tokenHash = other.tokenHash;
         this.createdAt = other.createdAt;
         this.expiresAt = other.expiresAt;
     }
@@ -37,15 +46,36 @@ public abstract class AbstractToken {
         this.id = builder.id;
         this.userId = builder.userId;
         this.email = builder.email;
-        this.tokenValue = builder.tokenValue;
+        setTokenValue(builder.tokenValue);
         this.createdAt = builder.createdAt;
         this.expiresAt = builder.expiresAt;
     }
 
+    /**
+     * Sets token value and digest of token value.
+     *
+     * @param tokenValue token value
+     */
+    public void setTokenValue(String tokenValue) {
+        this.tokenValue = tokenValue;
+        this.tokenHash = tokenValue != null ? hashTokenValue(tokenValue) : null;
+    }
+
     public boolean isExpired() {
         return !expiresAt.isAfter(LocalDateTime.now(ZoneOffset.UTC));
     }
 
+    /**
+     * Computes digest of the given token value that is stored in database and used to look token up.
+     *
+     * @param tokenValue token value (must not be {@code null})
+     * @return hex-encoded SHA-256 digest of token value
+     */
+    public static String hashTokenValue(String tokenValue) {
+        Assert.notNull(tokenValue, "Token value must not be null");
+        return Hashing.sha256().hashString(tokenValue, StandardCharsets.UTF_8).toString();
+    }
+
     public static abstract class AbstractTokenBuilder<T extends AbstractToken> {
         private Long id;
         private Long userId;
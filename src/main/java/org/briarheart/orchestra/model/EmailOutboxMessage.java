@@ -0,0 +1,37 @@
+package org.briarheart.orchestra.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * Email message that is stored in database in the same transaction as data it refers to (for example email
+ * confirmation token) and is sent asynchronously. Message is removed from outbox after it is successfully sent.
+ *
+ * @author Roman Chigvintsev
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Builder
+@Table("email_outbox")
+public class EmailOutboxMessage {
+    @Id
+    private Long id;
+    private String recipient;
+    private String subject;
+    private String text;
+    @Builder.Default
+    private EmailOutboxMessageStatus status = EmailOutboxMessageStatus.PENDING;
+    private int attempts;
+    private LocalDateTime createdAt;
+    private LocalDateTime nextAttemptAt;
+    /**
+     * Random value set by dispatcher that is going to send this message. Message with claim token is not picked up
+     * by other dispatchers until {@link #nextAttemptAt}.
+     */
+    private String claimToken;
+    private String lastError;
+}
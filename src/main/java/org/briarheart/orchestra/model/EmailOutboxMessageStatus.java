@@ -0,0 +1,17 @@
+package org.briarheart.orchestra.model;
+
+/**
+ * Possible statuses of {@link EmailOutboxMessage}.
+ *
+ * @author Roman Chigvintsev
+ */
+public enum EmailOutboxMessageStatus {
+    /**
+     * Message is waiting to be sent.
+     */
+    PENDING,
+    /**
+     * Message could not be sent after maximum number of attempts and requires manual intervention.
+     */
+    DEAD
+}
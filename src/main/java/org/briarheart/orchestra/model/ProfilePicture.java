@@ -18,6 +18,7 @@ public class ProfilePicture {
     private Long userId;
     private byte[] data;
     private String type;
+    private String hash;
 
     /**
      * Creates copy of the given profile picture.
@@ -29,5 +30,6 @@ public class ProfilePicture {
         this.userId = other.userId;
         this.data = other.data != null ? Arrays.copyOf(other.data, other.data.length) : null;
         this.type = other.type;
+        this.hash = other.hash;
     }
 }
@@ -0,0 +1,29 @@
+package org.briarheart.orchestra.model;
+
+import lombok.*;
+
+/**
+ * Downscaled copy of {@link ProfilePicture} which width and height do not exceed variant size.
+ *
+ * @author Roman Chigvintsev
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Builder
+public class ProfilePictureVariant {
+    private Long userId;
+    private Integer size;
+    private byte[] data;
+    private String type;
+
+    /**
+     * Converts this variant to profile picture so that it can be served in place of original picture.
+     *
+     * @param hash hash of original picture content
+     * @return profile picture with data and type of this variant and hash of original picture
+     */
+    public ProfilePicture toProfilePicture(String hash) {
+        return ProfilePicture.builder().userId(userId).data(data).type(type).hash(hash).build();
+    }
+}
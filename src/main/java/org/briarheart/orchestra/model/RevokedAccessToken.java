@@ -0,0 +1,23 @@
+package org.briarheart.orchestra.model;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+
+import java.time.LocalDateTime;
+
+/**
+ * Access token that was revoked before its expiration (for example on logout). Revoked access token is identified by
+ * value of its "jti" claim and is kept until it expires.
+ *
+ * @author Roman Chigvintsev
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@Builder
+public class RevokedAccessToken {
+    @Id
+    private String tokenId;
+    private LocalDateTime revokedAt;
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,90 @@
+package org.briarheart.orchestra.security.crypto.password;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * Picks BCrypt strength (log2 of number of hashing rounds) so that hashing of single password on current machine
+ * takes about the given time. Since every next strength doubles hashing time, hashing is measured only with minimal
+ * strength and the result is extrapolated; calibration therefore takes a fraction of the target time.
+ * <p>
+ * Calibrated strength is never less than the given minimal one so that slow machine does not weaken password hashes.
+ *
+ * @author Roman Chigvintsev
+ */
+@Slf4j
+public class BCryptStrengthCalibrator {
+    private static final int MAX_STRENGTH = 31;
+    private static final int DEFAULT_SAMPLES = 3;
+    private static final String SAMPLE_PASSWORD = "calibration-password";
+
+    private final int minStrength;
+    private final int samples;
+
+    /**
+     * Creates new instance of this class with the given minimal strength.
+     *
+     * @param minStrength minimal BCrypt strength (between 4 and 31)
+     */
+    public BCryptStrengthCalibrator(int minStrength) {
+        this(minStrength, DEFAULT_SAMPLES);
+    }
+
+    /**
+     * Creates new instance of this class with the given minimal strength and number of measurements.
+     *
+     * @param minStrength minimal BCrypt strength (between 4 and 31)
+     * @param samples     number of measurements of hashing time; the fastest one is used
+     */
+    public BCryptStrengthCalibrator(int minStrength, int samples) {
+        Assert.isTrue(minStrength >= 4 && minStrength <= MAX_STRENGTH, "Minimal strength must be between 4 and 31");
+        Assert.isTrue(samples > 0, "Number of samples must be positive");
+        this.minStrength = minStrength;
+        this.samples = samples;
+    }
+
+    /**
+     * Returns BCrypt strength with which hashing takes no more than the given time (unless minimal strength is
+     * already slower).
+     *
+     * @param targetDuration target time of hashing of single password (must not be {@code null})
+     * @return calibrated BCrypt strength
+     */
+    public int calibrate(Duration targetDuration) {
+        Assert.notNull(targetDuration, "Target duration must not be null");
+        Assert.isTrue(!targetDuration.isNegative() && !targetDuration.isZero(), "Target duration must be positive");
+
+        long baseNanos = Long.MAX_VALUE;
+        for (int i = 0; i < samples; i++) {
+            baseNanos = Math.min(baseNanos, measure(minStrength));
+        }
+        baseNanos = Math.max(baseNanos, 1);
+
+        int strength = minStrength;
+        long expectedNanos = baseNanos;
+        long targetNanos = targetDuration.toNanos();
+        while (strength < MAX_STRENGTH && expectedNanos <= targetNanos / 2) {
+            strength++;
+            expectedNanos *= 2;
+        }
+        log.info("BCrypt strength {} is chosen: hashing with strength {} took {} ms, expected hashing time is {} ms",
+                strength, minStrength, baseNanos / 1_000_000, expectedNanos / 1_000_000);
+        return strength;
+    }
+
+    /**
+     * Measures time of hashing of single password with the given strength.
+     *
+     * @param strength BCrypt strength
+     * @return hashing time in nanoseconds
+     */
+    protected long measure(int strength) {
+        BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+        long start = System.nanoTime();
+        encoder.encode(SAMPLE_PASSWORD);
+        return System.nanoTime() - start;
+    }
+}
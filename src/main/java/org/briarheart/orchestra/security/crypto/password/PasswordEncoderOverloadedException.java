@@ -0,0 +1,20 @@
+package org.briarheart.orchestra.security.crypto.password;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Exception being thrown in case password hashing is rejected because there are too many pending hashing operations.
+ *
+ * @author Roman Chigvintsev
+ */
+public class PasswordEncoderOverloadedException extends ResponseStatusException {
+    /**
+     * Creates new instance of this class with the given cause.
+     *
+     * @param cause cause of this exception
+     */
+    public PasswordEncoderOverloadedException(Throwable cause) {
+        super(HttpStatus.SERVICE_UNAVAILABLE, "Too many pending password hashing operations", cause);
+    }
+}
@@ -0,0 +1,149 @@
+package org.briarheart.orchestra.security.crypto.password;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking facade of {@link PasswordEncoder}. Since password hashing is CPU bound and deliberately slow operation
+ * it is performed on dedicated bounded pool of worker threads and never on event loop threads. Pool has bounded
+ * queue of pending operations; once the queue is full new operations fail immediately with
+ * {@link PasswordEncoderOverloadedException} rather than waiting.
+ * <p>
+ * Worker pool metrics (including queue depth) are published as "executor.*" metrics with "name" tag set to
+ * "passwordEncoder". Time of hashing is published as "password.encoder.hash" timer with "operation" tag set to either
+ * "encode" or "matches".
+ *
+ * @author Roman Chigvintsev
+ */
+public class ReactivePasswordEncoder implements DisposableBean {
+    private static final String EXECUTOR_NAME = "passwordEncoder";
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final Scheduler scheduler;
+
+    /**
+     * Creates new instance of this class.
+     *
+     * @param delegate      password encoder to which hashing is delegated (must not be {@code null})
+     * @param threads       number of worker threads
+     * @param queueSize     maximum number of operations waiting for worker thread
+     * @param meterRegistry registry for worker pool and hashing metrics (must not be {@code null})
+     */
+    public ReactivePasswordEncoder(PasswordEncoder delegate, int threads, int queueSize, MeterRegistry meterRegistry) {
+        Assert.notNull(delegate, "Password encoder must not be null");
+        Assert.isTrue(threads > 0, "Number of threads must be positive");
+        Assert.isTrue(queueSize > 0, "Queue size must be positive");
+        Assert.notNull(meterRegistry, "Meter registry must not be null");
+
+        this.passwordEncoder = new TimedPasswordEncoder(delegate, meterRegistry);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), new CustomizableThreadFactory("password-encoder-"),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.scheduler = Schedulers.fromExecutorService(executor);
+        new ExecutorServiceMetrics(executor, EXECUTOR_NAME, Tags.empty()).bindTo(meterRegistry);
+    }
+
+    /**
+     * Encodes the given raw password on worker thread.
+     *
+     * @param rawPassword raw password
+     * @return encoded password
+     * @throws PasswordEncoderOverloadedException if queue of pending operations is full
+     */
+    public Mono<String> encode(CharSequence rawPassword) {
+        return execute(Mono.fromCallable(() -> passwordEncoder.encode(rawPassword)));
+    }
+
+    /**
+     * Verifies on worker thread that the given raw password matches the given encoded password.
+     *
+     * @param rawPassword     raw password
+     * @param encodedPassword encoded password
+     * @return {@code true} if passwords match; {@code false} otherwise
+     * @throws PasswordEncoderOverloadedException if queue of pending operations is full
+     */
+    public Mono<Boolean> matches(CharSequence rawPassword, String encodedPassword) {
+        return execute(Mono.fromCallable(() -> passwordEncoder.matches(rawPassword, encodedPassword)));
+    }
+
+    /**
+     * Returns scheduler backed by worker pool of this encoder. Operations scheduled with returned scheduler when queue
+     * of pending operations is full are rejected with {@link RejectedExecutionException}.
+     *
+     * @return worker pool scheduler
+     */
+    public Scheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Returns synchronous password encoder which hashing time is recorded in "password.encoder.hash" timer. Returned
+     * encoder should only be called on threads of {@link #getScheduler() worker pool}.
+     *
+     * @return synchronous password encoder
+     */
+    public PasswordEncoder getPasswordEncoder() {
+        return passwordEncoder;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    private <T> Mono<T> execute(Mono<T> operation) {
+        return operation.subscribeOn(scheduler)
+                .onErrorMap(RejectedExecutionException.class, PasswordEncoderOverloadedException::new);
+    }
+
+    private static class TimedPasswordEncoder implements PasswordEncoder {
+        private final PasswordEncoder delegate;
+        private final Timer encodeTimer;
+        private final Timer matchesTimer;
+
+        TimedPasswordEncoder(PasswordEncoder delegate, MeterRegistry meterRegistry) {
+            this.delegate = delegate;
+            this.encodeTimer = createTimer("encode", meterRegistry);
+            this.matchesTimer = createTimer("matches", meterRegistry);
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return encodeTimer.record(() -> delegate.encode(rawPassword));
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            Boolean matches = matchesTimer.record(() -> delegate.matches(rawPassword, encodedPassword));
+            return matches != null && matches;
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            return delegate.upgradeEncoding(encodedPassword);
+        }
+
+        private static Timer createTimer(String operation, MeterRegistry meterRegistry) {
+            return Timer.builder("password.encoder.hash")
+                    .description("Time of password hashing")
+                    .tag("operation", operation)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -1,40 +1,55 @@
 package org.briarheart.orchestra.security.oauth2.core.userdetails;
 
 import lombok.RequiredArgsConstructor;
-import org.briarheart.orchestra.data.UserAuthorityRelationRepository;
+import lombok.extern.slf4j.Slf4j;
 import org.briarheart.orchestra.data.UserRepository;
-import org.briarheart.orchestra.model.UserAuthorityRelation;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.briarheart.orchestra.model.User;
+import org.springframework.security.core.userdetails.ReactiveUserDetailsPasswordService;
 import org.springframework.security.core.userdetails.ReactiveUserDetailsService;
 import org.springframework.security.core.userdetails.UserDetails;
-import reactor.core.publisher.Flux;
+import org.springframework.util.Assert;
 import reactor.core.publisher.Mono;
 
-import java.util.List;
-
 /**
- * Implementation of {@link ReactiveUserDetailsService} that load users from database.
+ * Implementation of {@link ReactiveUserDetailsService} that load users from database. User and user's authorities are
+ * loaded by single statement and kept in {@link UserDetailsCache} for a short time.
+ * <p>
+ * This service also implements {@link ReactiveUserDetailsPasswordService} so that password hash of user encoded with
+ * outdated settings is replaced with the new one after successful login.
  *
  * @author Roman Chigvintsev
  */
 @RequiredArgsConstructor
-public class DatabaseReactiveUserDetailsService implements ReactiveUserDetailsService {
+@Slf4j
+public class DatabaseReactiveUserDetailsService implements ReactiveUserDetailsService,
+        ReactiveUserDetailsPasswordService {
     private final UserRepository userRepository;
-    private final UserAuthorityRelationRepository userAuthorityRelationRepository;
+    private final UserDetailsCache userDetailsCache;
 
     @Override
     public Mono<UserDetails> findByUsername(String username) {
-        return userRepository.findByEmail(username)
-                .flatMap(user -> loadAuthorities(user.getId()).map(authorities -> {
-                    user.setAuthorities(authorities);
-                    return user;
-                }))
-                .cast(UserDetails.class);
+        return Mono.defer(() -> {
+            User cachedUser = userDetailsCache.get(username);
+            if (cachedUser != null) {
+                return Mono.just(cachedUser);
+            }
+            return userRepository.findByEmailWithAuthorities(username).doOnNext(userDetailsCache::put);
+        }).cast(UserDetails.class);
     }
 
-    private Mono<List<SimpleGrantedAuthority>> loadAuthorities(Long userId) {
-        Flux<UserAuthorityRelation> userAuthorityRelations = userAuthorityRelationRepository.findByUserId(userId);
-        return userAuthorityRelations.map(relations -> new SimpleGrantedAuthority(relations.getAuthority()))
-                .collectList();
+    @Override
+    public Mono<UserDetails> updatePassword(UserDetails userDetails, String newPassword) {
+        Assert.isInstanceOf(User.class, userDetails, "Unsupported user details");
+        User user = (User) userDetails;
+        // Password is updated only if it was not changed since user was loaded
+        return userRepository.updatePassword(user.getId(), user.getPassword(), newPassword)
+                .map(updatedRows -> {
+                    userDetailsCache.invalidate(user.getEmail());
+                    if (updatedRows > 0) {
+                        user.setPassword(newPassword);
+                        log.debug("Password hash is upgraded for user with id {}", user.getId());
+                    }
+                    return user;
+                });
     }
 }
@@ -0,0 +1,89 @@
+package org.briarheart.orchestra.security.oauth2.core.userdetails;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.briarheart.orchestra.model.User;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * Short-lived in-memory cache of users (including their authorities) loaded during form login. Only enabled users are
+ * cached so that user is able to log in immediately after email confirmation. Cached users must be invalidated when
+ * their passwords are changed.
+ * <p>
+ * Cache hit and miss statistics are published as "cache.*" metrics with "cache" tag set to "userDetails".
+ *
+ * @author Roman Chigvintsev
+ */
+public class UserDetailsCache {
+    private static final String CACHE_NAME = "userDetails";
+
+    private final Cache<String, User> cache;
+
+    /**
+     * Creates new instance of this class with the given time to live, cache size and meter registry.
+     *
+     * @param timeToLive    time after which cached user is evicted (must not be {@code null})
+     * @param cacheSize     maximum number of cached users
+     * @param meterRegistry registry for cache metrics (must not be {@code null})
+     */
+    public UserDetailsCache(Duration timeToLive, long cacheSize, MeterRegistry meterRegistry) {
+        Assert.notNull(timeToLive, "Time to live must not be null");
+        Assert.notNull(meterRegistry, "Meter registry must not be null");
+
+        this.cache = CacheBuilder.newBuilder()
+                .expireAfterWrite(timeToLive)
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns copy of cached user with the given email.
+     *
+     * @param email user's email (must not be {@code null})
+     * @return copy of cached user or {@code null} if user is not cached
+     */
+    public User get(String email) {
+        Assert.notNull(email, "Email must not be null");
+        User user = cache.getIfPresent(email);
+        return user != null ? new User(user) : null;
+    }
+
+    /**
+     * Puts copy of the given user into this cache. Disabled users are ignored.
+     *
+     * @param user user to be cached (must not be {@code null})
+     */
+    public void put(User user) {
+        Assert.notNull(user, "User must not be null");
+        if (user.isEnabled()) {
+            cache.put(user.getEmail(), new User(user));
+        }
+    }
+
+    /**
+     * Removes user with the given email from this cache.
+     *
+     * @param email user's email (must not be {@code null})
+     */
+    public void invalidate(String email) {
+        Assert.notNull(email, "Email must not be null");
+        cache.invalidate(email);
+    }
+
+    /**
+     * Removes user with the given id from this cache. Unlike {@link #invalidate(String)} this method iterates over
+     * all cached users and so should be used only when user's email is not known.
+     *
+     * @param userId user id (must not be {@code null})
+     */
+    public void invalidateById(Long userId) {
+        Assert.notNull(userId, "User id must not be null");
+        cache.asMap().values().removeIf(user -> userId.equals(user.getId()));
+    }
+}
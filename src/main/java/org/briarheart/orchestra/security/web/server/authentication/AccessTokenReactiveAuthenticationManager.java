@@ -1,37 +1,65 @@
 package org.briarheart.orchestra.security.web.server.authentication;
 
-import lombok.RequiredArgsConstructor;
 import org.briarheart.orchestra.model.User;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessToken;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessTokenService;
+import org.briarheart.orchestra.security.web.server.authentication.accesstoken.InvalidAccessTokenException;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
 import org.springframework.security.core.Authentication;
+import org.springframework.util.Assert;
 import reactor.core.publisher.Mono;
 
 /**
  * Implementation of {@link ReactiveAuthenticationManager} that performs authentication based on the access token.
  * This authentication manager expects only instances of {@link AccessTokenAuthentication}.
+ * <p>
+ * Principal is built from claims of access token. If access token carries only user profile version instead of user's
+ * display attributes these attributes are resolved with {@link UserProfileCache}.
  *
  * @author Roman Chigvintsev
  * @see AccessToken
  * @see AccessTokenAuthentication
  */
-@RequiredArgsConstructor
 public class AccessTokenReactiveAuthenticationManager implements ReactiveAuthenticationManager {
     private final AccessTokenService accessTokenService;
+    private final UserProfileCache userProfileCache;
+
+    /**
+     * Creates new instance of this class with the given access token service and user profile cache.
+     *
+     * @param accessTokenService access token service (must not be {@code null})
+     * @param userProfileCache   user profile cache (must not be {@code null})
+     */
+    public AccessTokenReactiveAuthenticationManager(AccessTokenService accessTokenService,
+                                                    UserProfileCache userProfileCache) {
+        Assert.notNull(accessTokenService, "Access token service must not be null");
+        Assert.notNull(userProfileCache, "User profile cache must not be null");
+
+        this.accessTokenService = accessTokenService;
+        this.userProfileCache = userProfileCache;
+    }
 
     @Override
     public Mono<Authentication> authenticate(Authentication authentication) {
         String accessTokenValue = ((AccessTokenAuthentication) authentication).getTokenValue();
         return accessTokenService.parseAccessToken(accessTokenValue)
-                .map(accessToken -> {
-                    User principal = User.builder()
-                            .id(Long.parseLong(accessToken.getSubject()))
-                            .email(accessToken.getEmail())
-                            .fullName(accessToken.getFullName())
-                            .profilePictureUrl(accessToken.getProfilePictureUrl())
-                            .build();
-                    return new AccessTokenAuthentication(accessToken, principal);
-                });
+                .flatMap(accessToken -> getPrincipal(accessToken)
+                        .map(principal -> new AccessTokenAuthentication(accessToken, principal)));
+    }
+
+    private Mono<User> getPrincipal(AccessToken accessToken) {
+        Long userId = Long.parseLong(accessToken.getSubject());
+        Long profileVersion = accessToken.getProfileVersion();
+        if (profileVersion != null) {
+            return userProfileCache.getUserProfile(userId, profileVersion)
+                    .switchIfEmpty(Mono.error(new InvalidAccessTokenException("User with id " + userId
+                            + " is not found", null)));
+        }
+        return Mono.just(User.builder()
+                .id(userId)
+                .email(accessToken.getEmail())
+                .fullName(accessToken.getFullName())
+                .profilePictureUrl(accessToken.getProfilePictureUrl())
+                .build());
     }
 }
@@ -0,0 +1,73 @@
+package org.briarheart.orchestra.security.web.server.authentication;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.briarheart.orchestra.data.UserRepository;
+import org.briarheart.orchestra.model.User;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+
+/**
+ * In-memory cache of user's display attributes (email, full name and profile picture URL) used to resolve principal
+ * from access tokens that carry only user id and user profile version. Cached profile is reloaded from database when
+ * token refers to newer profile version than the cached one.
+ * <p>
+ * Cache hit and miss statistics are published as "cache.*" metrics with "cache" tag set to "userProfiles".
+ *
+ * @author Roman Chigvintsev
+ */
+public class UserProfileCache {
+    private static final String CACHE_NAME = "userProfiles";
+
+    private final UserRepository userRepository;
+    private final Cache<Long, User> cache;
+
+    /**
+     * Creates new instance of this class with the given user repository, cache size and meter registry.
+     *
+     * @param userRepository user repository (must not be {@code null})
+     * @param cacheSize      maximum number of cached user profiles
+     * @param meterRegistry  registry for cache metrics (must not be {@code null})
+     */
+    public UserProfileCache(UserRepository userRepository, long cacheSize, MeterRegistry meterRegistry) {
+        Assert.notNull(userRepository, "User repository must not be null");
+        Assert.notNull(meterRegistry, "Meter registry must not be null");
+
+        this.userRepository = userRepository;
+        this.cache = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().build();
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns profile of user with the given id. Returned user contains only id, version and display attributes.
+     * Returned user is a copy of cached profile so that it can be modified without affecting cache.
+     *
+     * @param userId     user id (must not be {@code null})
+     * @param minVersion minimal acceptable version of user profile
+     * @return user profile or empty stream when user is not found
+     */
+    public Mono<User> getUserProfile(Long userId, long minVersion) {
+        Assert.notNull(userId, "User id must not be null");
+        return Mono.defer(() -> {
+            User profile = cache.getIfPresent(userId);
+            if (profile != null && profile.getVersion() >= minVersion) {
+                return Mono.just(new User(profile));
+            }
+            return userRepository.findById(userId).map(user -> {
+                User loadedProfile = User.builder()
+                        .id(user.getId())
+                        .version(user.getVersion())
+                        .email(user.getEmail())
+                        .fullName(user.getFullName())
+                        .profilePictureUrl(user.getProfilePictureUrl())
+                        .build();
+                // Concurrent request may have already loaded newer profile
+                return new User(cache.asMap().merge(userId, loadedProfile,
+                        (cachedProfile, newProfile) -> newProfile.getVersion() >= cachedProfile.getVersion()
+                                ? newProfile : cachedProfile));
+            });
+        });
+    }
+}
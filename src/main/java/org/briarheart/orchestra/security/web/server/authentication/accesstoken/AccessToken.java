@@ -12,6 +12,13 @@ import java.util.Map;
 public interface AccessToken extends Serializable {
     String getTokenValue();
 
+    /**
+     * Returns unique identifier of this token that is used to revoke it.
+     *
+     * @return token id or {@code null} if token was issued without id
+     */
+    String getId();
+
     String getSubject();
 
     String getEmail();
@@ -20,6 +27,15 @@ public interface AccessToken extends Serializable {
 
     String getProfilePictureUrl();
 
+    /**
+     * Returns version of user profile this token was issued for. Tokens carrying profile version do not contain
+     * display attributes of user (email, full name, profile picture URL); these attributes should be resolved by
+     * subject instead.
+     *
+     * @return user profile version or {@code null} if token contains display attributes of user
+     */
+    Long getProfileVersion();
+
     Instant getIssuedAt();
 
     Instant getExpiration();
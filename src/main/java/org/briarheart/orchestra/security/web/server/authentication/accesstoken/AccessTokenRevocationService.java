@@ -0,0 +1,28 @@
+package org.briarheart.orchestra.security.web.server.authentication.accesstoken;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Service for revocation of access tokens before their expiration.
+ *
+ * @author Roman Chigvintsev
+ * @see AccessToken
+ */
+public interface AccessTokenRevocationService {
+    /**
+     * Revokes the given access token so that it cannot be used anymore. Tokens without id cannot be revoked and are
+     * ignored.
+     *
+     * @param accessToken access token to be revoked (must not be {@code null})
+     * @return empty {@link Mono} that completes when access token is revoked
+     */
+    Mono<Void> revokeAccessToken(AccessToken accessToken);
+
+    /**
+     * Checks whether the given access token is revoked.
+     *
+     * @param accessToken access token to be checked (must not be {@code null})
+     * @return {@code true} if access token is revoked; {@code false} otherwise
+     */
+    Mono<Boolean> isRevoked(AccessToken accessToken);
+}
@@ -0,0 +1,190 @@
+package org.briarheart.orchestra.security.web.server.authentication.accesstoken;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.briarheart.orchestra.data.RevokedAccessTokenRepository;
+import org.briarheart.orchestra.model.RevokedAccessToken;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Implementation of {@link AccessTokenRevocationService} that keeps ids of revoked access tokens in database and puts
+ * in-memory Bloom filter in front of it. Database lookup is performed only when Bloom filter reports that token might
+ * be revoked so that check of not revoked tokens costs no more than a few hash computations.
+ * <p>
+ * Bloom filter is refreshed periodically with tokens revoked by other application instances. Since Bloom filter does
+ * not support removal of elements, expired tokens are periodically deleted from database and Bloom filter is rebuilt
+ * from remaining ones. Until Bloom filter is built for the first time every check is performed against database.
+ * <p>
+ * Number of database lookups and number of lookups that did not find revoked token (Bloom filter false positives)
+ * are published as "access.token.revocation.lookups" and "access.token.revocation.false.positives" counters.
+ *
+ * @author Roman Chigvintsev
+ */
+@Slf4j
+public class BloomFilterAccessTokenRevocationService
+        implements AccessTokenRevocationService, InitializingBean, DisposableBean {
+    private static final Duration DEFAULT_REFRESH_INTERVAL = Duration.ofMinutes(1);
+    private static final Duration DEFAULT_REBUILD_INTERVAL = Duration.ofHours(1);
+
+    private final RevokedAccessTokenRepository revokedAccessTokenRepository;
+    private final long expectedRevocations;
+    private final double falsePositiveProbability;
+    private final Counter lookupCounter;
+    private final Counter falsePositiveCounter;
+
+    @Setter
+    private Duration refreshInterval = DEFAULT_REFRESH_INTERVAL;
+    @Setter
+    private Duration rebuildInterval = DEFAULT_REBUILD_INTERVAL;
+
+    private volatile BloomFilter<String> filter;
+    private volatile LocalDateTime lastRefreshTime;
+    private volatile LocalDateTime lastRebuildTime;
+    private Disposable refreshTask;
+
+    /**
+     * Creates new instance of this class.
+     *
+     * @param revokedAccessTokenRepository revoked access token repository (must not be {@code null})
+     * @param expectedRevocations          expected number of simultaneously revoked not expired tokens
+     * @param falsePositiveProbability     desired false positive probability of Bloom filter
+     * @param meterRegistry                registry for revocation metrics (must not be {@code null})
+     */
+    public BloomFilterAccessTokenRevocationService(RevokedAccessTokenRepository revokedAccessTokenRepository,
+                                                   long expectedRevocations,
+                                                   double falsePositiveProbability,
+                                                   MeterRegistry meterRegistry) {
+        Assert.notNull(revokedAccessTokenRepository, "Revoked access token repository must not be null");
+        Assert.isTrue(expectedRevocations > 0, "Expected number of revocations must be positive");
+        Assert.isTrue(falsePositiveProbability > 0.0 && falsePositiveProbability < 1.0,
+                "False positive probability must be between 0 and 1");
+        Assert.notNull(meterRegistry, "Meter registry must not be null");
+
+        this.revokedAccessTokenRepository = revokedAccessTokenRepository;
+        this.expectedRevocations = expectedRevocations;
+        this.falsePositiveProbability = falsePositiveProbability;
+        this.lookupCounter = Counter.builder("access.token.revocation.lookups")
+                .description("Number of database lookups of revoked access tokens")
+                .register(meterRegistry);
+        this.falsePositiveCounter = Counter.builder("access.token.revocation.false.positives")
+                .description("Number of database lookups that did not find revoked access token")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Void> revokeAccessToken(AccessToken accessToken) {
+        Assert.notNull(accessToken, "Access token must not be null");
+        return Mono.defer(() -> {
+            String tokenId = accessToken.getId();
+            if (tokenId == null || accessToken.getExpiration() == null) {
+                log.debug("Access token without id or expiration time cannot be revoked");
+                return Mono.empty();
+            }
+            RevokedAccessToken revokedAccessToken = RevokedAccessToken.builder()
+                    .tokenId(tokenId)
+                    .revokedAt(LocalDateTime.now(ZoneOffset.UTC))
+                    .expiresAt(LocalDateTime.ofInstant(accessToken.getExpiration(), ZoneOffset.UTC))
+                    .build();
+            return revokedAccessTokenRepository.create(revokedAccessToken).doOnNext(token -> {
+                BloomFilter<String> currentFilter = filter;
+                if (currentFilter != null) {
+                    currentFilter.put(tokenId);
+                }
+            }).then();
+        });
+    }
+
+    @Override
+    public Mono<Boolean> isRevoked(AccessToken accessToken) {
+        Assert.notNull(accessToken, "Access token must not be null");
+        return Mono.defer(() -> {
+            String tokenId = accessToken.getId();
+            if (tokenId == null) {
+                return Mono.just(false);
+            }
+            BloomFilter<String> currentFilter = filter;
+            if (currentFilter != null && !currentFilter.mightContain(tokenId)) {
+                return Mono.just(false);
+            }
+            lookupCounter.increment();
+            return revokedAccessTokenRepository.existsById(tokenId).doOnNext(revoked -> {
+                if (!revoked && currentFilter != null) {
+                    falsePositiveCounter.increment();
+                }
+            });
+        });
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        refreshTask = Flux.interval(Duration.ZERO, refreshInterval)
+                .onBackpressureDrop()
+                .concatMap(tick -> refresh()
+                        .onErrorResume(e -> {
+                            log.error("Failed to refresh revoked access tokens", e);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        if (refreshTask != null) {
+            refreshTask.dispose();
+        }
+    }
+
+    /**
+     * Loads tokens revoked since last refresh into Bloom filter. Once rebuild interval is elapsed expired tokens are
+     * deleted from database and Bloom filter is replaced with the new one built from remaining tokens.
+     *
+     * @return empty {@link Mono} that completes when refresh is finished
+     */
+    Mono<Void> refresh() {
+        return Mono.defer(() -> {
+            LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+            if (filter == null || lastRebuildTime == null || !lastRebuildTime.plus(rebuildInterval).isAfter(now)) {
+                return rebuild(now);
+            }
+            // Tokens revoked by other instances are looked up with overlap to tolerate clock skew between them
+            LocalDateTime since = lastRefreshTime.minus(refreshInterval);
+            BloomFilter<String> currentFilter = filter;
+            return revokedAccessTokenRepository.findByRevokedAtGreaterThanEqualAndExpiresAtAfter(since, now)
+                    .doOnNext(token -> currentFilter.put(token.getTokenId()))
+                    .then(Mono.fromRunnable(() -> lastRefreshTime = now));
+        });
+    }
+
+    private Mono<Void> rebuild(LocalDateTime now) {
+        BloomFilter<String> newFilter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.US_ASCII),
+                expectedRevocations, falsePositiveProbability);
+        return revokedAccessTokenRepository.deleteByExpiresAtLessThanEqual(now)
+                .doOnNext(deleted -> log.debug("{} expired revoked access tokens are deleted", deleted))
+                .thenMany(revokedAccessTokenRepository.findByExpiresAtAfter(now))
+                .doOnNext(token -> newFilter.put(token.getTokenId()))
+                .then(Mono.fromRunnable(() -> {
+                    filter = newFilter;
+                    lastRebuildTime = now;
+                    lastRefreshTime = now;
+                }))
+                // Tokens revoked while Bloom filter was being built might have been put into the old one
+                .then(Mono.defer(() -> revokedAccessTokenRepository
+                        .findByRevokedAtGreaterThanEqualAndExpiresAtAfter(now.minus(refreshInterval), now)
+                        .doOnNext(token -> newFilter.put(token.getTokenId()))
+                        .then()));
+    }
+}
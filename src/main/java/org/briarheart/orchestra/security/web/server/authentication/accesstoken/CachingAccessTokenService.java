@@ -0,0 +1,108 @@
+package org.briarheart.orchestra.security.web.server.authentication.accesstoken;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.Setter;
+import org.briarheart.orchestra.model.User;
+import org.springframework.util.Assert;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * Implementation of {@link AccessTokenService} that caches access tokens parsed by another access token service so
+ * that repeated requests with the same token do not require signature verification and claims parsing. Cached token
+ * is not returned once it is expired.
+ * <p>
+ * Cache hit and miss statistics are published as "cache.*" metrics with "cache" tag set to "accessTokens". Time of
+ * verification of tokens that are not found in cache is published as "access.token.verification" timer.
+ * <p>
+ * When {@link AccessTokenRevocationService} is set cached token is checked for revocation on every cache hit since
+ * it might have been revoked after it was cached.
+ *
+ * @author Roman Chigvintsev
+ */
+public class CachingAccessTokenService implements AccessTokenService {
+    private static final String CACHE_NAME = "accessTokens";
+    private static final HashFunction TOKEN_HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final AccessTokenService delegate;
+    private final Cache<HashCode, AccessToken> cache;
+    private final Timer verificationTimer;
+
+    @Setter
+    private AccessTokenRevocationService revocationService;
+
+    /**
+     * Creates new instance of this class with the given delegate, cache size and meter registry.
+     *
+     * @param delegate      access token service to which token creation and parsing is delegated
+     *                      (must not be {@code null})
+     * @param cacheSize     maximum number of cached access tokens
+     * @param meterRegistry registry for cache and verification metrics (must not be {@code null})
+     */
+    public CachingAccessTokenService(AccessTokenService delegate, long cacheSize, MeterRegistry meterRegistry) {
+        Assert.notNull(delegate, "Access token service must not be null");
+        Assert.notNull(meterRegistry, "Meter registry must not be null");
+
+        this.delegate = delegate;
+        this.cache = CacheBuilder.newBuilder().maximumSize(cacheSize).recordStats().build();
+        this.verificationTimer = Timer.builder("access.token.verification")
+                .description("Time of access token signature verification and claims parsing")
+                .register(meterRegistry);
+        GuavaCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    @Override
+    public Mono<? extends AccessToken> createAccessToken(User user, ServerWebExchange exchange) {
+        return delegate.createAccessToken(user, exchange)
+                .doOnNext(token -> cache.put(hash(token.getTokenValue()), token));
+    }
+
+    @Override
+    public Mono<? extends AccessToken> parseAccessToken(String tokenValue) {
+        Assert.hasText(tokenValue, "Access token value must not be null or empty");
+        return Mono.defer(() -> {
+            HashCode key = hash(tokenValue);
+            AccessToken token = cache.getIfPresent(key);
+            // Non-cryptographic hash is used for performance reasons so token value must be compared on cache hit
+            if (token != null && token.getTokenValue().equals(tokenValue)) {
+                Instant expiration = token.getExpiration();
+                if (expiration == null || expiration.isAfter(Instant.now())) {
+                    return checkNotRevoked(key, token);
+                }
+                cache.invalidate(key);
+            }
+
+            Timer.Sample sample = Timer.start();
+            return delegate.parseAccessToken(tokenValue)
+                    .doOnNext(parsedToken -> cache.put(key, parsedToken))
+                    .doFinally(signal -> sample.stop(verificationTimer));
+        });
+    }
+
+    private Mono<AccessToken> checkNotRevoked(HashCode key, AccessToken token) {
+        if (revocationService == null) {
+            return Mono.just(token);
+        }
+        return revocationService.isRevoked(token).flatMap(revoked -> {
+            if (revoked) {
+                cache.invalidate(key);
+                return Mono.error(new InvalidAccessTokenException("Access token is revoked", null));
+            }
+            return Mono.just(token);
+        });
+    }
+
+    private static HashCode hash(String tokenValue) {
+        return TOKEN_HASH_FUNCTION.hashString(tokenValue, StandardCharsets.US_ASCII);
+    }
+}
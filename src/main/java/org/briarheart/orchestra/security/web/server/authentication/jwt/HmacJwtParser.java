@@ -0,0 +1,197 @@
+package org.briarheart.orchestra.security.web.server.authentication.jwt;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.jsonwebtoken.Claims;
+import org.briarheart.orchestra.security.web.server.authentication.accesstoken.InvalidAccessTokenException;
+import org.springframework.util.Assert;
+
+import javax.crypto.Mac;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parser of signed JWTs issued by {@link JwtService}. Unlike general purpose parser this one supports only HMAC
+ * signature algorithms and reads only claims known to {@link Jwt}; other claims are skipped. Verification key is looked
+ * up in {@link JwtKeySet} by "kid" header and must match algorithm given in "alg" header. Token is decoded directly
+ * from its bytes without intermediate strings and MAC instances are reused by every thread. Instances of this class
+ * are thread-safe.
+ *
+ * @author Roman Chigvintsev
+ */
+public class HmacJwtParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getUrlDecoder();
+    private static final Set<String> STRING_CLAIMS = Set.of(Claims.ID, Claims.SUBJECT, JwtClaim.EMAIL.getName(),
+            JwtClaim.FULL_NAME.getName(), JwtClaim.PROFILE_PICTURE_URL.getName());
+    private static final Set<String> NUMERIC_CLAIMS = Set.of(Claims.ISSUED_AT, Claims.EXPIRATION,
+            Claims.NOT_BEFORE, JwtClaim.PROFILE_VERSION.getName());
+
+    private final JwtKeySet keySet;
+
+    /**
+     * Creates new instance of this class with the given key set.
+     *
+     * @param keySet JWT key set (must not be {@code null})
+     */
+    public HmacJwtParser(JwtKeySet keySet) {
+        Assert.notNull(keySet, "Key set must not be null");
+        this.keySet = keySet;
+    }
+
+    /**
+     * Verifies signature of the given token and parses its claims.
+     *
+     * @param tokenValue JWT value (must not be {@code null} or empty)
+     * @return parsed JWT
+     * @throws InvalidAccessTokenException if token is malformed, unsupported, expired or its signature is not valid
+     */
+    public Jwt parse(String tokenValue) throws InvalidAccessTokenException {
+        Assert.hasText(tokenValue, "Token value must not be null or empty");
+
+        byte[] token = tokenValue.getBytes(StandardCharsets.US_ASCII);
+        int headerEnd = indexOf(token, (byte) '.', 0);
+        int payloadEnd = headerEnd >= 0 ? indexOf(token, (byte) '.', headerEnd + 1) : -1;
+        if (headerEnd <= 0 || payloadEnd < 0 || payloadEnd == headerEnd + 1
+                || indexOf(token, (byte) '.', payloadEnd + 1) >= 0) {
+            throw malformed(null);
+        }
+
+        JwtSigningKey key = getVerificationKey(decode(token, 0, headerEnd));
+        verifySignature(key, token, payloadEnd);
+        Map<String, Object> claims = parseClaims(decode(token, headerEnd + 1, payloadEnd - headerEnd - 1));
+        validateTimestamps(claims);
+        return new Jwt(tokenValue, claims);
+    }
+
+    private JwtSigningKey getVerificationKey(ByteBuffer header) {
+        String algorithm = null;
+        String keyId = null;
+        try (JsonParser parser = createParser(header)) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("alg".equals(fieldName) && value == JsonToken.VALUE_STRING) {
+                    algorithm = parser.getText();
+                } else if ("kid".equals(fieldName) && value == JsonToken.VALUE_STRING) {
+                    keyId = parser.getText();
+                } else if ("crit".equals(fieldName)) {
+                    // Critical header parameters are not supported at all
+                    throw unsupported();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw malformed(e);
+        }
+        JwtSigningKey key = keySet.getVerificationKey(keyId);
+        if (key == null || !key.getAlgorithm().getValue().equals(algorithm)) {
+            throw unsupported();
+        }
+        return key;
+    }
+
+    private void verifySignature(JwtSigningKey key, byte[] token, int signedLength) {
+        Mac mac = key.getMac();
+        mac.update(token, 0, signedLength);
+        byte[] expectedSignature = mac.doFinal();
+        ByteBuffer actualSignature = decode(token, signedLength + 1, token.length - signedLength - 1);
+        if (!constantTimeEquals(expectedSignature, actualSignature)) {
+            throw new InvalidAccessTokenException("Access token signature is not valid", null);
+        }
+    }
+
+    private Map<String, Object> parseClaims(ByteBuffer payload) {
+        Map<String, Object> claims = new HashMap<>();
+        try (JsonParser parser = createParser(payload)) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (STRING_CLAIMS.contains(fieldName)) {
+                    if (value != JsonToken.VALUE_NULL) {
+                        claims.put(fieldName, parser.getValueAsString());
+                    }
+                } else if (NUMERIC_CLAIMS.contains(fieldName)) {
+                    if (value != JsonToken.VALUE_NUMBER_INT) {
+                        throw malformed(null);
+                    }
+                    claims.put(fieldName, parser.getLongValue());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            if (parser.currentToken() != JsonToken.END_OBJECT || parser.nextToken() != null) {
+                throw malformed(null);
+            }
+        } catch (IOException e) {
+            throw malformed(e);
+        }
+        return claims;
+    }
+
+    private void validateTimestamps(Map<String, Object> claims) {
+        long now = Instant.now().getEpochSecond();
+        Long expiration = (Long) claims.get(Claims.EXPIRATION);
+        if (expiration != null && expiration <= now) {
+            throw new InvalidAccessTokenException("Access token is expired", null);
+        }
+        Long notBefore = (Long) claims.get(Claims.NOT_BEFORE);
+        if (notBefore != null && notBefore > now) {
+            throw new InvalidAccessTokenException("Access token is not valid yet", null);
+        }
+    }
+
+    private static JsonParser createParser(ByteBuffer json) throws IOException {
+        JsonParser parser = JSON_FACTORY.createParser(json.array(), json.arrayOffset() + json.position(),
+                json.remaining());
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            parser.close();
+            throw malformed(null);
+        }
+        return parser;
+    }
+
+    private static ByteBuffer decode(byte[] token, int offset, int length) {
+        try {
+            return BASE64_DECODER.decode(ByteBuffer.wrap(token, offset, length));
+        } catch (IllegalArgumentException e) {
+            throw malformed(e);
+        }
+    }
+
+    private static int indexOf(byte[] bytes, byte b, int fromIndex) {
+        for (int i = fromIndex; i < bytes.length; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean constantTimeEquals(byte[] expected, ByteBuffer actual) {
+        if (expected.length != actual.remaining()) {
+            return false;
+        }
+        int result = 0;
+        for (int i = 0; i < expected.length; i++) {
+            result |= expected[i] ^ actual.get(actual.position() + i);
+        }
+        return result == 0;
+    }
+
+    private static InvalidAccessTokenException malformed(Throwable cause) {
+        return new InvalidAccessTokenException("Access token is malformed", cause);
+    }
+
+    private static InvalidAccessTokenException unsupported() {
+        return new InvalidAccessTokenException("Access token is unsupported", null);
+    }
+}
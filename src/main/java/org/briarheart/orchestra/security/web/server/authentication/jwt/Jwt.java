@@ -1,28 +1,44 @@
 package org.briarheart.orchestra.security.web.server.authentication.jwt;
 
 import io.jsonwebtoken.Claims;
-import lombok.AccessLevel;
-import lombok.Data;
-import lombok.RequiredArgsConstructor;
+import lombok.Value;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessToken;
 import org.springframework.util.Assert;
 
 import java.time.Instant;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
- * JWT based implementation of {@link AccessToken}.
+ * JWT based implementation of {@link AccessToken}. Instances of this class are immutable so that the same token can
+ * be safely shared between threads handling requests of the same user.
  *
  * @author Roman Chigvintsev
  */
-@Data
-@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@Value
 public class Jwt implements AccessToken {
     private static final long serialVersionUID = 1L;
 
-    private final String tokenValue;
-    private final Map<String, Object> claims = new HashMap<>();
+    String tokenValue;
+    Map<String, Object> claims;
+
+    /**
+     * Creates new instance of this class. The given claims are not copied, so caller must not modify them after
+     * this constructor returns.
+     *
+     * @param tokenValue JWT value
+     * @param claims     JWT claims
+     */
+    Jwt(String tokenValue, Map<String, Object> claims) {
+        this.tokenValue = tokenValue;
+        this.claims = Collections.unmodifiableMap(claims);
+    }
+
+    @Override
+    public String getId() {
+        return (String) claims.get(Claims.ID);
+    }
 
     @Override
     public String getSubject() {
@@ -44,14 +60,20 @@ public class Jwt implements AccessToken {
         return (String) claims.get(JwtClaim.PROFILE_PICTURE_URL.getName());
     }
 
+    @Override
+    public Long getProfileVersion() {
+        Number version = (Number) claims.get(JwtClaim.PROFILE_VERSION.getName());
+        return version != null ? version.longValue() : null;
+    }
+
     @Override
     public Instant getIssuedAt() {
-        return Instant.ofEpochSecond((Long) claims.get(Claims.ISSUED_AT));
+        return getInstant(Claims.ISSUED_AT);
     }
 
     @Override
     public Instant getExpiration() {
-        return Instant.ofEpochSecond((Long) claims.get(Claims.EXPIRATION));
+        return getInstant(Claims.EXPIRATION);
     }
 
     @Override
@@ -59,6 +81,12 @@ public class Jwt implements AccessToken {
         return claims;
     }
 
+    private Instant getInstant(String claimName) {
+        // Parsed claims contain either integer or long value depending on the number of seconds
+        Number seconds = (Number) claims.get(claimName);
+        return seconds != null ? Instant.ofEpochSecond(seconds.longValue()) : null;
+    }
+
     public static class Builder {
         private final String tokenValue;
         private final Map<String, Object> claims = new HashMap<>();
@@ -83,9 +111,7 @@ public class Jwt implements AccessToken {
         }
 
         public Jwt build() {
-            Jwt jwt = new Jwt(tokenValue);
-            jwt.claims.putAll(claims);
-            return jwt;
+            return new Jwt(tokenValue, new HashMap<>(claims));
         }
     }
 }
@@ -0,0 +1,66 @@
+package org.briarheart.orchestra.security.web.server.authentication.jwt;
+
+import lombok.Getter;
+import org.springframework.util.Assert;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Set of keys used to sign and verify JWTs. New tokens are always signed with the single signing key while tokens
+ * signed with any of the verification keys are still accepted. This allows to rotate keys without invalidating tokens
+ * issued by other nodes or before the rotation. Verification keys are indexed by their ids.
+ *
+ * @author Roman Chigvintsev
+ *
+ * @see JwtSigningKey
+ */
+public class JwtKeySet {
+    @Getter
+    private final JwtSigningKey signingKey;
+
+    private final Map<String, JwtSigningKey> verificationKeys;
+
+    /**
+     * Creates new instance of this class with the given signing key which is also used as the only verification key.
+     *
+     * @param signingKey signing key (must not be {@code null})
+     */
+    public JwtKeySet(JwtSigningKey signingKey) {
+        this(signingKey, Collections.emptyList());
+    }
+
+    /**
+     * Creates new instance of this class.
+     *
+     * @param signingKey       signing key (must not be {@code null})
+     * @param verificationKeys additional verification keys (must not be {@code null}); signing key is always used for
+     *                         verification as well. At most one key may have {@code null} id.
+     */
+    public JwtKeySet(JwtSigningKey signingKey, Collection<JwtSigningKey> verificationKeys) {
+        Assert.notNull(signingKey, "Signing key must not be null");
+        Assert.notNull(verificationKeys, "Verification keys must not be null");
+
+        this.signingKey = signingKey;
+        Map<String, JwtSigningKey> keys = new HashMap<>();
+        keys.put(signingKey.getId(), signingKey);
+        for (JwtSigningKey key : verificationKeys) {
+            Assert.notNull(key, "Verification key must not be null");
+            JwtSigningKey existingKey = keys.putIfAbsent(key.getId(), key);
+            Assert.isTrue(existingKey == null || existingKey == key, "Duplicate key id: " + key.getId());
+        }
+        this.verificationKeys = keys;
+    }
+
+    /**
+     * Returns verification key with the given id.
+     *
+     * @param id key id taken from "kid" header of token (may be {@code null})
+     * @return verification key or {@code null} if key with the given id is not found
+     */
+    public JwtSigningKey getVerificationKey(String id) {
+        return verificationKeys.get(id);
+    }
+}
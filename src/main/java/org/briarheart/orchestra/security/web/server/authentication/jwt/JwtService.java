@@ -1,11 +1,10 @@
 package org.briarheart.orchestra.security.web.server.authentication.jwt;
 
 import io.jsonwebtoken.*;
-import io.jsonwebtoken.security.Keys;
-import io.jsonwebtoken.security.SignatureException;
 import lombok.Setter;
 import org.briarheart.orchestra.model.User;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessToken;
+import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessTokenRevocationService;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessTokenService;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.InvalidAccessTokenException;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.ServerAccessTokenRepository;
@@ -13,16 +12,25 @@ import org.springframework.util.Assert;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
-import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.Base64;
 import java.util.Date;
+import java.util.UUID;
 
 /**
  * JWT based implementation of {@link AccessTokenService}. By default this service issues signed JWTs with expiration
- * timeout of ten minutes.
+ * timeout of ten minutes. Tokens are signed with signing key of {@link JwtKeySet} and parsed with
+ * {@link HmacJwtParser}.
+ * <p>
+ * When compact claims are enabled tokens carry only user id and user profile version instead of user's display
+ * attributes (email, full name and profile picture URL). This makes tokens considerably shorter which matters since
+ * they are sent with every request.
+ * <p>
+ * Every token is issued with unique "jti" claim. When {@link AccessTokenRevocationService} is set parsed tokens are
+ * additionally checked for revocation.
  *
  * @author Roman Chigvintsev
  *
@@ -32,23 +40,40 @@ public class JwtService implements AccessTokenService {
     private static final long DEFAULT_ACCESS_TOKEN_VALIDITY_SECONDS = 300;
 
     private final ServerAccessTokenRepository accessTokenRepository;
-    private final SecretKey accessTokenSigningKey;
+    private final JwtKeySet accessTokenKeySet;
+    private final HmacJwtParser accessTokenParser;
 
     @Setter
     private long accessTokenValiditySeconds = DEFAULT_ACCESS_TOKEN_VALIDITY_SECONDS;
+    @Setter
+    private boolean compactClaims;
+    @Setter
+    private AccessTokenRevocationService revocationService;
 
     /**
-     * Creates new instance of this class with the given access token repository and signing key.
+     * Creates new instance of this class with the given access token repository and signing key. Tokens are signed
+     * using HS512 algorithm and do not have "kid" header.
      *
      * @param accessTokenRepository access token repository (must not be {@code null})
      * @param accessTokenSigningKey BASE64-encoded JWT signing key (must not be {@code null} or empty)
      */
     public JwtService(ServerAccessTokenRepository accessTokenRepository, String accessTokenSigningKey) {
+        this(accessTokenRepository, createKeySet(accessTokenSigningKey));
+    }
+
+    /**
+     * Creates new instance of this class with the given access token repository and key set.
+     *
+     * @param accessTokenRepository access token repository (must not be {@code null})
+     * @param accessTokenKeySet     JWT key set (must not be {@code null})
+     */
+    public JwtService(ServerAccessTokenRepository accessTokenRepository, JwtKeySet accessTokenKeySet) {
         Assert.notNull(accessTokenRepository, "Access token repository must not be null");
-        Assert.hasText(accessTokenSigningKey, "Access token signing key must not be null or empty");
+        Assert.notNull(accessTokenKeySet, "Access token key set must not be null");
 
         this.accessTokenRepository = accessTokenRepository;
-        this.accessTokenSigningKey = Keys.hmacShaKeyFor(Base64.getDecoder().decode(accessTokenSigningKey));
+        this.accessTokenKeySet = accessTokenKeySet;
+        this.accessTokenParser = new HmacJwtParser(accessTokenKeySet);
     }
 
     @Override
@@ -58,10 +83,15 @@ public class JwtService implements AccessTokenService {
 
         return Mono.defer(() -> {
             Claims claims = Jwts.claims();
+            claims.setId(generateTokenId());
             claims.setSubject(user.getId().toString());
-            claims.put(JwtClaim.EMAIL.getName(), user.getEmail());
-            claims.put(JwtClaim.FULL_NAME.getName(), user.getFullName());
-            claims.put(JwtClaim.PROFILE_PICTURE_URL.getName(), user.getProfilePictureUrl());
+            if (compactClaims) {
+                claims.put(JwtClaim.PROFILE_VERSION.getName(), user.getVersion());
+            } else {
+                claims.put(JwtClaim.EMAIL.getName(), user.getEmail());
+                claims.put(JwtClaim.FULL_NAME.getName(), user.getFullName());
+                claims.put(JwtClaim.PROFILE_PICTURE_URL.getName(), user.getProfilePictureUrl());
+            }
 
             LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
             LocalDateTime expiration = now.plus(accessTokenValiditySeconds, ChronoUnit.SECONDS);
@@ -69,9 +99,11 @@ public class JwtService implements AccessTokenService {
             claims.setIssuedAt(Date.from(now.toInstant(ZoneOffset.UTC)));
             claims.setExpiration(Date.from(expiration.toInstant(ZoneOffset.UTC)));
 
+            JwtSigningKey signingKey = accessTokenKeySet.getSigningKey();
             String tokenValue = Jwts.builder()
+                    .setHeaderParam(JwsHeader.KEY_ID, signingKey.getId())
                     .setClaims(claims)
-                    .signWith(accessTokenSigningKey, SignatureAlgorithm.HS512)
+                    .signWith(signingKey.getSecretKey(), signingKey.getAlgorithm())
                     .compact();
             Jwt token = new Jwt.Builder(tokenValue).claims(claims).build();
             return accessTokenRepository.saveAccessToken(token, exchange);
@@ -81,22 +113,27 @@ public class JwtService implements AccessTokenService {
     @Override
     public Mono<? extends AccessToken> parseAccessToken(String tokenValue) {
         Assert.hasText(tokenValue, "Access token value must not be null or empty");
-        return Mono.fromCallable(() -> {
-            try {
-                Claims claims = Jwts.parser()
-                        .setSigningKey(accessTokenSigningKey)
-                        .parseClaimsJws(tokenValue)
-                        .getBody();
-                return new Jwt.Builder(tokenValue).claims(claims).build();
-            } catch (ExpiredJwtException e) {
-                throw new InvalidAccessTokenException("Access token is expired", e);
-            } catch (UnsupportedJwtException e) {
-                throw new InvalidAccessTokenException("Access token is unsupported", e);
-            } catch (MalformedJwtException e) {
-                throw new InvalidAccessTokenException("Access token is malformed", e);
-            } catch (SignatureException e) {
-                throw new InvalidAccessTokenException("Access token signature is not valid", e);
-            }
-        });
+        Mono<Jwt> token = Mono.fromCallable(() -> accessTokenParser.parse(tokenValue));
+        if (revocationService == null) {
+            return token;
+        }
+        return token.flatMap(jwt -> revocationService.isRevoked(jwt).flatMap(revoked -> revoked
+                ? Mono.<Jwt>error(new InvalidAccessTokenException("Access token is revoked", null))
+                : Mono.just(jwt)));
+    }
+
+    private static String generateTokenId() {
+        // Random UUID encoded without padding is considerably shorter than its canonical string representation
+        UUID uuid = UUID.randomUUID();
+        ByteBuffer bytes = ByteBuffer.allocate(16);
+        bytes.putLong(uuid.getMostSignificantBits());
+        bytes.putLong(uuid.getLeastSignificantBits());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.array());
+    }
+
+    private static JwtKeySet createKeySet(String signingKey) {
+        Assert.hasText(signingKey, "Access token signing key must not be null or empty");
+        byte[] secret = Base64.getDecoder().decode(signingKey);
+        return new JwtKeySet(new JwtSigningKey(null, SignatureAlgorithm.HS512, secret));
     }
 }
@@ -0,0 +1,66 @@
+package org.briarheart.orchestra.security.web.server.authentication.jwt;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import lombok.Getter;
+import org.springframework.util.Assert;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * HMAC key used to sign and verify JWTs. Key id is put in "kid" header of every token signed with this key so that
+ * verifier can pick the right key during key rotation. Instances of this class are thread-safe.
+ *
+ * @author Roman Chigvintsev
+ *
+ * @see JwtKeySet
+ */
+public class JwtSigningKey {
+    @Getter
+    private final String id;
+    @Getter
+    private final SignatureAlgorithm algorithm;
+    @Getter
+    private final SecretKey secretKey;
+
+    private final ThreadLocal<Mac> mac;
+
+    /**
+     * Creates new instance of this class.
+     *
+     * @param id        key id (may be {@code null} for key used to verify tokens without "kid" header)
+     * @param algorithm HMAC signature algorithm (must not be {@code null})
+     * @param secret    key bytes (must not be {@code null}); length must be sufficient for the given algorithm
+     */
+    public JwtSigningKey(String id, SignatureAlgorithm algorithm, byte[] secret) {
+        Assert.notNull(algorithm, "Signature algorithm must not be null");
+        Assert.isTrue(algorithm.isHmac(), "Signature algorithm " + algorithm + " is not supported");
+        Assert.notNull(secret, "Secret must not be null");
+
+        this.id = id;
+        this.algorithm = algorithm;
+        this.secretKey = new SecretKeySpec(secret, algorithm.getJcaName());
+        algorithm.assertValidSigningKey(this.secretKey);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac mac = Mac.getInstance(algorithm.getJcaName());
+                mac.init(secretKey);
+                return mac;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Failed to initialize " + algorithm.getJcaName() + " MAC", e);
+            }
+        });
+    }
+
+    /**
+     * Returns MAC instance initialized with this key and bound to the current thread. Returned instance must not be
+     * shared with other threads.
+     *
+     * @return MAC instance
+     */
+    public Mac getMac() {
+        return mac.get();
+    }
+}
@@ -1,6 +1,9 @@
 package org.briarheart.orchestra.security.web.server.authentication.logout;
 
 import lombok.RequiredArgsConstructor;
+import org.briarheart.orchestra.security.web.server.authentication.AccessTokenAuthentication;
+import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessToken;
+import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessTokenRevocationService;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.ServerAccessTokenRepository;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.server.WebFilterExchange;
@@ -9,18 +12,29 @@ import reactor.core.publisher.Mono;
 
 /**
  * Implementation of {@link ServerLogoutHandler} that removes access token from current
- * {@link org.springframework.web.server.ServerWebExchange} using {@link ServerAccessTokenRepository}.
+ * {@link org.springframework.web.server.ServerWebExchange} using {@link ServerAccessTokenRepository}. Access token
+ * of current authentication is revoked using {@link AccessTokenRevocationService} so that it cannot be used anymore
+ * even if it was copied before logout.
  *
  * @author Roman Chigvintsev
  *
  * @see ServerAccessTokenRepository
+ * @see AccessTokenRevocationService
  */
 @RequiredArgsConstructor
 public class AccessTokenLogoutHandler implements ServerLogoutHandler {
     private final ServerAccessTokenRepository accessTokenRepository;
+    private final AccessTokenRevocationService revocationService;
 
     @Override
     public Mono<Void> logout(WebFilterExchange exchange, Authentication authentication) {
-        return accessTokenRepository.removeAccessToken(exchange.getExchange()).then();
+        Mono<Void> removeAccessToken = accessTokenRepository.removeAccessToken(exchange.getExchange()).then();
+        if (authentication instanceof AccessTokenAuthentication) {
+            AccessToken accessToken = ((AccessTokenAuthentication) authentication).getToken();
+            if (accessToken != null) {
+                return removeAccessToken.then(revocationService.revokeAccessToken(accessToken));
+            }
+        }
+        return removeAccessToken;
     }
 }
@@ -0,0 +1,105 @@
+package org.briarheart.orchestra.security.web.server.ratelimit;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+
+/**
+ * Rate limiter that keeps separate {@link TokenBucket} for every key (client IP address, email, etc). Buckets are
+ * stored in striped cache and evicted after they become full again so that memory consumption is bounded by the
+ * number of recently active keys.
+ * <p>
+ * Number of allowed and rejected requests is published as "rate.limiter.requests" metric with "route", "key" and
+ * "outcome" tags. Number of tracked keys is published as "rate.limiter.keys" metric.
+ *
+ * @author Roman Chigvintsev
+ */
+public class KeyedRateLimiter {
+    private static final int CONCURRENCY_LEVEL = 16;
+
+    private final long capacity;
+    private final long tokenIntervalNanos;
+    private final Ticker ticker;
+    private final Cache<String, TokenBucket> buckets;
+    private final Counter allowedCounter;
+    private final Counter rejectedCounter;
+
+    /**
+     * Creates new instance of this class.
+     *
+     * @param route         route name used as metric tag (must not be {@code null} or empty)
+     * @param keyType       key type used as metric tag (must not be {@code null} or empty)
+     * @param capacity      maximum number of requests per key allowed within the given period (must be greater
+     *                      than zero)
+     * @param period        period during which number of requests is limited (must not be {@code null})
+     * @param maxKeys       maximum number of tracked keys
+     * @param meterRegistry registry for rate limiter metrics (must not be {@code null})
+     */
+    public KeyedRateLimiter(String route,
+                            String keyType,
+                            long capacity,
+                            Duration period,
+                            long maxKeys,
+                            MeterRegistry meterRegistry) {
+        this(route, keyType, capacity, period, maxKeys, meterRegistry, Ticker.systemTicker());
+    }
+
+    KeyedRateLimiter(String route,
+                     String keyType,
+                     long capacity,
+                     Duration period,
+                     long maxKeys,
+                     MeterRegistry meterRegistry,
+                     Ticker ticker) {
+        Assert.hasText(route, "Route must not be null or empty");
+        Assert.hasText(keyType, "Key type must not be null or empty");
+        Assert.isTrue(capacity > 0, "Capacity must be greater than zero");
+        Assert.notNull(period, "Period must not be null");
+        Assert.isTrue(!period.isNegative() && !period.isZero(), "Period must be positive");
+        Assert.notNull(meterRegistry, "Meter registry must not be null");
+        Assert.notNull(ticker, "Ticker must not be null");
+
+        this.capacity = capacity;
+        this.tokenIntervalNanos = Math.max(period.toNanos() / capacity, 1L);
+        this.ticker = ticker;
+        // Bucket that was not accessed during the period is full again and thus can be safely evicted
+        this.buckets = CacheBuilder.newBuilder()
+                .concurrencyLevel(CONCURRENCY_LEVEL)
+                .maximumSize(maxKeys)
+                .expireAfterAccess(period)
+                .ticker(ticker)
+                .build();
+
+        Tags tags = Tags.of("route", route, "key", keyType);
+        this.allowedCounter = meterRegistry.counter("rate.limiter.requests", tags.and("outcome", "allowed"));
+        this.rejectedCounter = meterRegistry.counter("rate.limiter.requests", tags.and("outcome", "rejected"));
+        Gauge.builder("rate.limiter.keys", buckets, Cache::size).tags(tags).register(meterRegistry);
+    }
+
+    /**
+     * Tries to acquire permit for request identified by the given key.
+     *
+     * @param key request key (must not be {@code null})
+     * @return zero if permit is acquired or time after which permit for the given key will be available
+     */
+    public Duration tryAcquire(String key) {
+        Assert.notNull(key, "Key must not be null");
+        long now = ticker.read();
+        TokenBucket bucket = buckets.asMap().computeIfAbsent(key, k -> new TokenBucket(capacity, tokenIntervalNanos,
+                now));
+        long waitNanos = bucket.tryConsume(now);
+        if (waitNanos > 0) {
+            rejectedCounter.increment();
+            return Duration.ofNanos(waitNanos);
+        }
+        allowedCounter.increment();
+        return Duration.ZERO;
+    }
+}
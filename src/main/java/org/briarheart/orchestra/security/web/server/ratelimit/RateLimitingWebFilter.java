@@ -0,0 +1,283 @@
+package org.briarheart.orchestra.security.web.server.ratelimit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.security.web.server.util.matcher.ServerWebExchangeMatcher;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Filter that limits rate of requests to expensive endpoints (login, registration, password reset) per client IP
+ * address and per email. Client IP address is checked first so that request body is not read for requests of client
+ * that already exceeded its limit. Email is resolved from form parameter or from JSON field depending on request
+ * content type. JSON request body is read only up to configured size; larger requests are rejected with 413 (Payload
+ * Too Large) status.
+ * <p>
+ * Client IP address is taken from remote address of connection unless header set by trusted reverse proxy is
+ * configured. Otherwise all clients behind load balancer would share the same limit.
+ * <p>
+ * Rejected requests are completed with 429 (Too Many Requests) status and "Retry-After" header.
+ *
+ * @author Roman Chigvintsev
+ */
+@Slf4j
+public class RateLimitingWebFilter implements WebFilter {
+    private static final int DEFAULT_MAX_BODY_SIZE = 16 * 1024;
+
+    private final List<Rule> rules;
+    private final ObjectMapper objectMapper;
+
+    private String clientAddressHeader;
+    private int maxBodySize = DEFAULT_MAX_BODY_SIZE;
+
+    /**
+     * Creates new instance of this class with the given rules and object mapper.
+     *
+     * @param rules        rate limiting rules; first matching rule is applied to request (must not be {@code null})
+     * @param objectMapper object mapper to read email from JSON request body (must not be {@code null})
+     */
+    public RateLimitingWebFilter(List<Rule> rules, ObjectMapper objectMapper) {
+        Assert.notNull(rules, "Rules must not be null");
+        Assert.notNull(objectMapper, "Object mapper must not be null");
+        this.rules = List.copyOf(rules);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Sets name of header that contains client IP address. Header must be set (or overwritten) by trusted reverse
+     * proxy; when it contains several comma separated addresses the last one is used. Remote address of connection
+     * is used when header name is not set or header is missing.
+     *
+     * @param clientAddressHeader name of header that contains client IP address (may be {@code null})
+     */
+    public void setClientAddressHeader(String clientAddressHeader) {
+        this.clientAddressHeader = clientAddressHeader;
+    }
+
+    /**
+     * Sets maximum size of JSON request body that is read to resolve email. Default value is 16 KB.
+     *
+     * @param maxBodySize maximum size of request body in bytes (must be positive)
+     */
+    public void setMaxBodySize(int maxBodySize) {
+        Assert.isTrue(maxBodySize > 0, "Max body size must be positive");
+        this.maxBodySize = maxBodySize;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        return Flux.fromIterable(rules)
+                .concatMap(rule -> rule.getMatcher().matches(exchange)
+                        .filter(ServerWebExchangeMatcher.MatchResult::isMatch)
+                        .map(matchResult -> rule))
+                .next()
+                .map(rule -> applyRule(rule, exchange, chain))
+                .defaultIfEmpty(Mono.defer(() -> chain.filter(exchange)))
+                .flatMap(result -> result);
+    }
+
+    private Mono<Void> applyRule(Rule rule, ServerWebExchange exchange, WebFilterChain chain) {
+        if (rule.getClientLimiter() != null) {
+            String clientAddress = getClientAddress(exchange);
+            if (clientAddress != null) {
+                Duration waitTime = rule.getClientLimiter().tryAcquire(clientAddress);
+                if (!waitTime.isZero()) {
+                    log.debug("Request rate limit is exceeded for client {}", clientAddress);
+                    return reject(exchange, waitTime);
+                }
+            }
+        }
+
+        if (rule.getEmailLimiter() == null) {
+            return chain.filter(exchange);
+        }
+
+        MediaType contentType = exchange.getRequest().getHeaders().getContentType();
+        if (contentType != null && MediaType.APPLICATION_FORM_URLENCODED.isCompatibleWith(contentType)) {
+            // Form data is cached by exchange so it is still available for downstream handlers
+            return exchange.getFormData().flatMap(formData -> {
+                String email = formData.getFirst(rule.getEmailParameter());
+                return applyEmailLimit(rule, email, exchange, chain);
+            });
+        }
+        if (contentType != null && MediaType.APPLICATION_JSON.isCompatibleWith(contentType)) {
+            // Request that declares oversize body is rejected before its body is read
+            if (exchange.getRequest().getHeaders().getContentLength() > maxBodySize) {
+                return rejectPayloadTooLarge(exchange);
+            }
+            return DataBufferUtils.join(exchange.getRequest().getBody(), maxBodySize)
+                    .map(RateLimitingWebFilter::readContent)
+                    .defaultIfEmpty(new byte[0])
+                    .flatMap(content -> {
+                        ServerHttpRequest request = new CachedBodyServerHttpRequest(exchange, content);
+                        ServerWebExchange mutatedExchange = exchange.mutate().request(request).build();
+                        String email = readJsonField(content, rule.getEmailParameter());
+                        return applyEmailLimit(rule, email, mutatedExchange, chain);
+                    })
+                    .onErrorResume(DataBufferLimitException.class, e -> rejectPayloadTooLarge(exchange));
+        }
+        return chain.filter(exchange);
+    }
+
+    private Mono<Void> applyEmailLimit(Rule rule, String email, ServerWebExchange exchange, WebFilterChain chain) {
+        if (StringUtils.hasText(email)) {
+            Duration waitTime = rule.getEmailLimiter().tryAcquire(email.trim().toLowerCase(Locale.ROOT));
+            if (!waitTime.isZero()) {
+                log.debug("Request rate limit is exceeded for email {}", email);
+                return reject(exchange, waitTime);
+            }
+        }
+        return chain.filter(exchange);
+    }
+
+    private String readJsonField(byte[] content, String fieldName) {
+        if (content.length == 0) {
+            return null;
+        }
+        try {
+            JsonNode field = objectMapper.readTree(content).get(fieldName);
+            return field != null ? field.textValue() : null;
+        } catch (IOException e) {
+            // Malformed request body is rejected by request handler
+            return null;
+        }
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, Duration waitTime) {
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        long retryAfterSeconds = Math.max((waitTime.toMillis() + 999) / 1000, 1L);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        return response.setComplete();
+    }
+
+    private static Mono<Void> rejectPayloadTooLarge(ServerWebExchange exchange) {
+        log.debug("Request body size exceeds limit");
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.PAYLOAD_TOO_LARGE);
+        return response.setComplete();
+    }
+
+    private String getClientAddress(ServerWebExchange exchange) {
+        if (clientAddressHeader != null) {
+            String headerValue = exchange.getRequest().getHeaders().getFirst(clientAddressHeader);
+            if (StringUtils.hasText(headerValue)) {
+                // Proxy appends address of client it received request from to the end of list; preceding addresses
+                // are sent by client and may be forged
+                String clientAddress = headerValue.substring(headerValue.lastIndexOf(',') + 1).trim();
+                if (!clientAddress.isEmpty()) {
+                    return clientAddress;
+                }
+            }
+        }
+        InetSocketAddress remoteAddress = exchange.getRequest().getRemoteAddress();
+        if (remoteAddress == null) {
+            return null;
+        }
+        if (remoteAddress.getAddress() != null) {
+            return remoteAddress.getAddress().getHostAddress();
+        }
+        return remoteAddress.getHostString();
+    }
+
+    private static byte[] readContent(DataBuffer buffer) {
+        try {
+            byte[] content = new byte[buffer.readableByteCount()];
+            buffer.read(content);
+            return content;
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    /**
+     * Rate limiting rule of single route.
+     */
+    public static class Rule {
+        private final ServerWebExchangeMatcher matcher;
+        private final KeyedRateLimiter clientLimiter;
+        private final KeyedRateLimiter emailLimiter;
+        private final String emailParameter;
+
+        /**
+         * Creates new instance of this class.
+         *
+         * @param matcher        matcher of requests to which this rule is applied (must not be {@code null})
+         * @param clientLimiter  limiter of requests per client IP address or {@code null} if requests should not be
+         *                       limited per client IP address
+         * @param emailLimiter   limiter of requests per email or {@code null} if requests should not be limited per
+         *                       email
+         * @param emailParameter name of form parameter or JSON field that contains email (must not be {@code null}
+         *                       or empty if email limiter is set)
+         */
+        public Rule(ServerWebExchangeMatcher matcher,
+                    KeyedRateLimiter clientLimiter,
+                    KeyedRateLimiter emailLimiter,
+                    String emailParameter) {
+            Assert.notNull(matcher, "Matcher must not be null");
+            if (emailLimiter != null) {
+                Assert.hasText(emailParameter, "Email parameter must not be null or empty");
+            }
+            this.matcher = matcher;
+            this.clientLimiter = clientLimiter;
+            this.emailLimiter = emailLimiter;
+            this.emailParameter = emailParameter;
+        }
+
+        ServerWebExchangeMatcher getMatcher() {
+            return matcher;
+        }
+
+        KeyedRateLimiter getClientLimiter() {
+            return clientLimiter;
+        }
+
+        KeyedRateLimiter getEmailLimiter() {
+            return emailLimiter;
+        }
+
+        String getEmailParameter() {
+            return emailParameter;
+        }
+    }
+
+    private static class CachedBodyServerHttpRequest extends ServerHttpRequestDecorator {
+        private final ServerWebExchange exchange;
+        private final byte[] content;
+
+        CachedBodyServerHttpRequest(ServerWebExchange exchange, byte[] content) {
+            super(exchange.getRequest());
+            this.exchange = exchange;
+            this.content = content;
+        }
+
+        @Override
+        public Flux<DataBuffer> getBody() {
+            if (content.length == 0) {
+                return Flux.empty();
+            }
+            return Flux.defer(() -> Flux.just(exchange.getResponse().bufferFactory().wrap(content)));
+        }
+    }
+}
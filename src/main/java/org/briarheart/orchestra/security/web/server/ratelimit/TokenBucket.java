@@ -0,0 +1,52 @@
+package org.briarheart.orchestra.security.web.server.ratelimit;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Instead of the number of available tokens bucket keeps the moment when it becomes full
+ * again (so called theoretical arrival time) which allows to update its state with single CAS operation.
+ *
+ * @author Roman Chigvintsev
+ */
+class TokenBucket {
+    private final long tokenIntervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * Creates new instance of this class.
+     *
+     * @param capacity           maximum number of tokens in this bucket (must be greater than zero)
+     * @param tokenIntervalNanos time in nanoseconds required to refill one token (must be greater than zero)
+     * @param nowNanos           current time in nanoseconds
+     */
+    TokenBucket(long capacity, long tokenIntervalNanos, long nowNanos) {
+        Assert.isTrue(capacity > 0, "Capacity must be greater than zero");
+        Assert.isTrue(tokenIntervalNanos > 0, "Token interval must be greater than zero");
+        this.tokenIntervalNanos = tokenIntervalNanos;
+        this.capacityNanos = Math.multiplyExact(capacity, tokenIntervalNanos);
+        this.fullAt = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * Tries to take one token from this bucket.
+     *
+     * @param nowNanos current time in nanoseconds
+     * @return zero if token was taken or time in nanoseconds after which token will be available
+     */
+    long tryConsume(long nowNanos) {
+        while (true) {
+            long currentFullAt = fullAt.get();
+            long newFullAt = Math.max(currentFullAt, nowNanos) + tokenIntervalNanos;
+            long excess = newFullAt - nowNanos - capacityNanos;
+            if (excess > 0) {
+                return excess;
+            }
+            if (fullAt.compareAndSet(currentFullAt, newFullAt)) {
+                return 0L;
+            }
+        }
+    }
+}
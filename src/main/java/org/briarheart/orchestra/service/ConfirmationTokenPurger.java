@@ -0,0 +1,134 @@
+package org.briarheart.orchestra.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.briarheart.orchestra.config.ApplicationSecurityProperties;
+import org.briarheart.orchestra.data.EmailConfirmationTokenRepository;
+import org.briarheart.orchestra.data.EmailOutboxMessageRepository;
+import org.briarheart.orchestra.data.PasswordResetConfirmationTokenRepository;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Background task that periodically deletes expired email confirmation and password reset tokens as well as
+ * password reset tokens that were already used. Dead messages of email outbox are deleted after the same retention
+ * period. Tokens are deleted in batches of limited size with pause between batches so that purge does not compete
+ * with foreground queries for database connections and locks. Number of batches per run is limited as well; tokens
+ * that were not deleted are deleted on next run.
+ * <p>
+ * Number of deleted tokens is published as "confirmation.tokens.purged" metric with "type" tag set to
+ * "email-confirmation" or "password-reset". Number of deleted dead messages is published as "email.outbox.messages"
+ * metric with "outcome" tag set to "purged". Duration of every run is published as "confirmation.tokens.purge"
+ * metric.
+ *
+ * @author Roman Chigvintsev
+ */
+@Component
+@ConditionalOnProperty(name = "application.security.token-purge.enabled", matchIfMissing = true)
+@Slf4j
+public class ConfirmationTokenPurger implements InitializingBean, DisposableBean {
+    private final EmailConfirmationTokenRepository emailConfirmationTokenRepository;
+    private final PasswordResetConfirmationTokenRepository passwordResetTokenRepository;
+    private final EmailOutboxMessageRepository emailOutboxRepository;
+    private final ApplicationSecurityProperties.TokenPurge properties;
+    private final Counter emailConfirmationCounter;
+    private final Counter passwordResetCounter;
+    private final Counter deadEmailCounter;
+    private final Timer purgeTimer;
+
+    private Disposable purgeTask;
+
+    public ConfirmationTokenPurger(EmailConfirmationTokenRepository emailConfirmationTokenRepository,
+                                   PasswordResetConfirmationTokenRepository passwordResetTokenRepository,
+                                   EmailOutboxMessageRepository emailOutboxRepository,
+                                   ApplicationSecurityProperties securityProperties,
+                                   MeterRegistry meterRegistry) {
+        Assert.notNull(emailConfirmationTokenRepository, "Email confirmation token repository must not be null");
+        Assert.notNull(passwordResetTokenRepository, "Password reset token repository must not be null");
+        Assert.notNull(emailOutboxRepository, "Email outbox message repository must not be null");
+        Assert.notNull(securityProperties, "Security properties must not be null");
+        Assert.notNull(meterRegistry, "Meter registry must not be null");
+
+        this.emailConfirmationTokenRepository = emailConfirmationTokenRepository;
+        this.passwordResetTokenRepository = passwordResetTokenRepository;
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.properties = securityProperties.getTokenPurge();
+        Assert.isTrue(properties.getBatchSize() > 0, "Batch size must be greater than zero");
+        Assert.isTrue(properties.getMaxBatchesPerRun() > 0, "Maximum number of batches must be greater than zero");
+
+        this.emailConfirmationCounter = meterRegistry.counter("confirmation.tokens.purged",
+                "type", "email-confirmation");
+        this.passwordResetCounter = meterRegistry.counter("confirmation.tokens.purged", "type", "password-reset");
+        this.deadEmailCounter = meterRegistry.counter("email.outbox.messages", "outcome", "purged");
+        this.purgeTimer = meterRegistry.timer("confirmation.tokens.purge");
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        purgeTask = Flux.interval(properties.getInterval(), properties.getInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> purge()
+                        .then()
+                        .onErrorResume(e -> {
+                            log.error("Failed to purge confirmation tokens", e);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        if (purgeTask != null) {
+            purgeTask.dispose();
+        }
+    }
+
+    /**
+     * Deletes expired and invalidated tokens and dead email messages.
+     *
+     * @return total number of deleted tokens and messages
+     */
+    Mono<Long> purge() {
+        return Mono.defer(() -> {
+            long startTime = System.nanoTime();
+            LocalDateTime expiresAt = LocalDateTime.now(ZoneOffset.UTC).minus(properties.getRetention());
+            return purgeInBatches(limit -> emailConfirmationTokenRepository.deleteByExpiresAtBefore(expiresAt,
+                    limit), emailConfirmationCounter)
+                    .concatWith(purgeInBatches(limit -> passwordResetTokenRepository.deleteByExpiresAtBefore(
+                            expiresAt, limit), passwordResetCounter))
+                    .concatWith(purgeInBatches(passwordResetTokenRepository::deleteInvalid, passwordResetCounter))
+                    .concatWith(purgeInBatches(limit -> emailOutboxRepository.deleteDeadBefore(expiresAt, limit),
+                            deadEmailCounter))
+                    .reduce(0L, Long::sum)
+                    .doOnSuccess(count -> {
+                        purgeTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                        log.debug("{} confirmation token(s) and dead email message(s) are purged", count);
+                    });
+        });
+    }
+
+    private Mono<Long> purgeInBatches(IntFunction<Mono<Integer>> deleteBatch, Counter counter) {
+        int batchSize = properties.getBatchSize();
+        Mono<Integer> nextBatch = Mono.defer(() -> deleteBatch.apply(batchSize));
+        return nextBatch
+                // Next batch is deleted after pause only if previous one was full
+                .expand(deleted -> deleted < batchSize ? Mono.empty()
+                        : Mono.delay(properties.getBatchPause()).then(nextBatch))
+                .take(properties.getMaxBatchesPerRun())
+                .doOnNext(counter::increment)
+                .reduce(0L, (total, deleted) -> total + deleted);
+    }
+}
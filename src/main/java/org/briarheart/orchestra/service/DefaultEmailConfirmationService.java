@@ -6,12 +6,12 @@ import org.briarheart.orchestra.config.ApplicationInfoProperties;
 import org.briarheart.orchestra.data.EmailConfirmationTokenRepository;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.data.UserRepository;
+import org.briarheart.orchestra.mail.MailTemplateEngine;
+import org.briarheart.orchestra.model.AbstractToken;
 import org.briarheart.orchestra.model.EmailConfirmationToken;
 import org.briarheart.orchestra.model.User;
-import org.springframework.context.support.MessageSourceAccessor;
-import org.springframework.mail.MailException;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.util.Assert;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
@@ -35,8 +35,9 @@ public class DefaultEmailConfirmationService implements EmailConfirmationService
     private final EmailConfirmationTokenRepository tokenRepository;
     private final UserRepository userRepository;
     private final ApplicationInfoProperties applicationInfo;
-    private final MessageSourceAccessor messages;
-    private final JavaMailSender mailSender;
+    private final MailTemplateEngine templateEngine;
+    private final EmailOutboxService emailOutboxService;
+    private final TransactionalOperator transactionalOperator;
 
     @Setter
     private Duration emailConfirmationTokenExpirationTimeout = DEFAULT_TOKEN_EXPIRATION_TIMEOUT;
@@ -44,28 +45,31 @@ public class DefaultEmailConfirmationService implements EmailConfirmationService
     public DefaultEmailConfirmationService(EmailConfirmationTokenRepository tokenRepository,
                                            UserRepository userRepository,
                                            ApplicationInfoProperties applicationInfo,
-                                           MessageSourceAccessor messages,
-                                           JavaMailSender mailSender) {
+                                           MailTemplateEngine templateEngine,
+                                           EmailOutboxService emailOutboxService,
+                                           TransactionalOperator transactionalOperator) {
         Assert.notNull(tokenRepository, "Token repository must not be null");
         Assert.notNull(userRepository, "User repository must not be null");
         Assert.notNull(applicationInfo, "Application info properties must not be null");
-        Assert.notNull(messages, "Message source accessor must not be null");
-        Assert.notNull(mailSender, "Mail sender must not be null");
+        Assert.notNull(templateEngine, "Mail template engine must not be null");
+        Assert.notNull(emailOutboxService, "Email outbox service must not be null");
+        Assert.notNull(transactionalOperator, "Transactional operator must not be null");
 
         this.tokenRepository = tokenRepository;
         this.userRepository = userRepository;
         this.applicationInfo = applicationInfo;
-        this.messages = messages;
-        this.mailSender = mailSender;
+        this.templateEngine = templateEngine;
+        this.emailOutboxService = emailOutboxService;
+        this.transactionalOperator = transactionalOperator;
     }
 
     @Override
-    public Mono<EmailConfirmationToken> sendEmailConfirmationLink(User user, Locale locale)
-            throws UnableToSendMessageException {
+    public Mono<EmailConfirmationToken> sendEmailConfirmationLink(User user, Locale locale) {
         Assert.notNull(user, "User must not be null");
 
+        // Message is put into outbox in the same transaction as token and is sent asynchronously
         return createEmailConfirmationToken(user)
-                .map(token -> {
+                .flatMap(token -> {
                     String confirmationLink = UriComponentsBuilder.fromHttpUrl(applicationInfo.getUrl())
                             .path("/account/email/confirmation")
                             .queryParam("userId", user.getId())
@@ -73,57 +77,42 @@ public class DefaultEmailConfirmationService implements EmailConfirmationService
                             .build()
                             .toUriString();
 
-                    String subject = messages.getMessage("user.registration.email-confirmation.message.subject",
-                            new Object[]{applicationInfo.getName()}, locale);
-                    String text = messages.getMessage("user.registration.email-confirmation.message.text",
-                            new Object[]{user.getFullName(), applicationInfo.getName(), confirmationLink}, locale);
+                    String subject = templateEngine.render("user.registration.email-confirmation.message.subject",
+                            locale, applicationInfo.getName());
+                    String text = templateEngine.render("user.registration.email-confirmation.message.text",
+                            locale, user.getFullName(), applicationInfo.getName(), confirmationLink);
 
                     SimpleMailMessage message = new SimpleMailMessage();
                     message.setTo(user.getEmail());
                     message.setSubject(subject);
                     message.setText(text);
-                    mailSender.send(message);
-                    log.debug("Email confirmation link is sent to email {}", user.getEmail());
-                    return token;
+                    return emailOutboxService.enqueue(message)
+                            .doOnSuccess(m -> log.debug("Email confirmation link for email {} is put into outbox",
+                                    user.getEmail()))
+                            .thenReturn(token);
                 })
-                .onErrorMap(MailException.class, e -> {
-                    String message = messages.getMessage(
-                            "user.registration.email-confirmation.link.unable-to-send",
-                            new Object[]{user.getEmail()},
-                            Locale.ENGLISH
-                    );
-                    String localizedMessage;
-                    if (locale == null || locale == Locale.ENGLISH) {
-                        localizedMessage = message;
-                    } else {
-                        localizedMessage = messages.getMessage(
-                                "user.registration.email-confirmation.link.unable-to-send",
-                                new Object[]{user.getEmail()},
-                                locale
-                        );
-                    }
-                    return new UnableToSendMessageException(message, localizedMessage, e);
-                });
+                .as(transactionalOperator::transactional);
     }
 
     @Override
     public Mono<Void> confirmEmail(Long userId, String tokenValue) {
-        return tokenRepository.findFirstByUserIdAndTokenValueOrderByCreatedAtDesc(userId, tokenValue)
-                .switchIfEmpty(Mono.error(new EntityNotFoundException("Email confirmation token \""
-                        + tokenValue + "\" is not registered for user with id " + userId)))
-                .filter(token -> !token.isExpired())
-                .switchIfEmpty(Mono.error(new TokenExpiredException("Email confirmation token \""
-                        + tokenValue + "\" is expired")))
-                .flatMap(token -> userRepository.findById(userId))
-                .switchIfEmpty(Mono.error(new EntityNotFoundException("User with id " + userId + " is not found")))
-                .filter(user -> !user.isEmailConfirmed())
-                .flatMap(user -> {
-                    user.setEmailConfirmed(true);
-                    user.setEnabled(true);
-                    user.setVersion(user.getVersion() + 1);
-                    return userRepository.save(user)
-                            .doOnSuccess(u -> log.debug("Email {} is confirmed for user with id {}",
-                                    user.getEmail(), user.getId()));
+        String tokenHash = AbstractToken.hashTokenValue(tokenValue);
+        return userRepository.confirmEmail(userId, tokenHash, LocalDateTime.now(ZoneOffset.UTC))
+                .flatMap(updated -> {
+                    if (updated > 0) {
+                        log.debug("Email is confirmed for user with id {}", userId);
+                        return Mono.empty();
+                    }
+                    // Token is looked up only to tell why email was not confirmed
+                    return tokenRepository.findByTokenHash(tokenHash)
+                            .filter(token -> userId.equals(token.getUserId()))
+                            .switchIfEmpty(Mono.error(new EntityNotFoundException("Email confirmation token \""
+                                    + tokenValue + "\" is not registered for user with id " + userId)))
+                            .filter(token -> !token.isExpired())
+                            .switchIfEmpty(Mono.error(new TokenExpiredException("Email confirmation token \""
+                                    + tokenValue + "\" is expired")))
+                            // Otherwise email is already confirmed
+                            .then();
                 })
                 .then();
     }
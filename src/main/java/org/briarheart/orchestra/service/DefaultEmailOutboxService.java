@@ -0,0 +1,45 @@
+package org.briarheart.orchestra.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.briarheart.orchestra.data.EmailOutboxMessageRepository;
+import org.briarheart.orchestra.model.EmailOutboxMessage;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Service;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Default implementation of {@link EmailOutboxService}.
+ *
+ * @author Roman Chigvintsev
+ */
+@Service
+@Slf4j
+public class DefaultEmailOutboxService implements EmailOutboxService {
+    private final EmailOutboxMessageRepository outboxRepository;
+
+    public DefaultEmailOutboxService(EmailOutboxMessageRepository outboxRepository) {
+        Assert.notNull(outboxRepository, "Email outbox message repository must not be null");
+        this.outboxRepository = outboxRepository;
+    }
+
+    @Override
+    public Mono<EmailOutboxMessage> enqueue(SimpleMailMessage message) {
+        Assert.notNull(message, "Message must not be null");
+        Assert.isTrue(message.getTo() != null && message.getTo().length == 1, "Message must have one recipient");
+
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        EmailOutboxMessage outboxMessage = EmailOutboxMessage.builder()
+                .recipient(message.getTo()[0])
+                .subject(message.getSubject())
+                .text(message.getText())
+                .createdAt(now)
+                .nextAttemptAt(now)
+                .build();
+        return outboxRepository.save(outboxMessage)
+                .doOnSuccess(m -> log.debug("Email message with id {} is put into outbox", m.getId()));
+    }
+}
@@ -1,22 +1,25 @@
 package org.briarheart.orchestra.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.briarheart.orchestra.config.ApplicationInfoProperties;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.data.PasswordResetConfirmationTokenRepository;
 import org.briarheart.orchestra.data.UserRepository;
+import org.briarheart.orchestra.mail.MailTemplateEngine;
+import org.briarheart.orchestra.model.AbstractToken;
 import org.briarheart.orchestra.model.PasswordResetConfirmationToken;
 import org.briarheart.orchestra.model.User;
+import org.briarheart.orchestra.security.crypto.password.ReactivePasswordEncoder;
+import org.briarheart.orchestra.security.oauth2.core.userdetails.UserDetailsCache;
 import org.joda.time.Period;
 import org.joda.time.PeriodType;
 import org.joda.time.format.PeriodFormat;
 import org.joda.time.format.PeriodFormatter;
-import org.springframework.context.support.MessageSourceAccessor;
-import org.springframework.mail.MailException;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.util.Assert;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Mono;
@@ -40,32 +43,54 @@ public class DefaultPasswordService implements PasswordService {
     private final PasswordResetConfirmationTokenRepository tokenRepository;
     private final UserRepository userRepository;
     private final ApplicationInfoProperties applicationInfo;
-    private final MessageSourceAccessor messages;
-    private final JavaMailSender mailSender;
-    private final PasswordEncoder passwordEncoder;
+    private final MailTemplateEngine templateEngine;
+    private final EmailOutboxService emailOutboxService;
+    private final ReactivePasswordEncoder passwordEncoder;
+    private final TransactionalOperator transactionalOperator;
+
+    /**
+     * Password reset token expiration timeout formatted for every locale requested by clients.
+     */
+    private final Cache<Locale, String> formattedTokenExpirationTimeouts = CacheBuilder.newBuilder()
+            .maximumSize(100)
+            .build();
 
-    @Setter
     private Duration passwordResetTokenExpirationTimeout = DEFAULT_TOKEN_EXPIRATION_TIMEOUT;
+    /**
+     * Cache of users loaded during form login. Users are removed from this cache when their passwords are changed.
+     */
+    @Setter
+    private UserDetailsCache userDetailsCache;
 
     public DefaultPasswordService(PasswordResetConfirmationTokenRepository tokenRepository,
                                   UserRepository userRepository,
                                   ApplicationInfoProperties applicationInfo,
-                                  MessageSourceAccessor messages,
-                                  JavaMailSender mailSender,
-                                  PasswordEncoder passwordEncoder) {
+                                  MailTemplateEngine templateEngine,
+                                  EmailOutboxService emailOutboxService,
+                                  ReactivePasswordEncoder passwordEncoder,
+                                  TransactionalOperator transactionalOperator) {
         Assert.notNull(tokenRepository, "Token repository must not be null");
         Assert.notNull(userRepository, "User repository must not be null");
         Assert.notNull(applicationInfo, "Application info properties must not be null");
-        Assert.notNull(messages, "Message source accessor must not be null");
-        Assert.notNull(mailSender, "Mail sender must not be null");
+        Assert.notNull(templateEngine, "Mail template engine must not be null");
+        Assert.notNull(emailOutboxService, "Email outbox service must not be null");
         Assert.notNull(passwordEncoder, "Password encoder must not be null");
+        Assert.notNull(transactionalOperator, "Transactional operator must not be null");
 
         this.tokenRepository = tokenRepository;
         this.userRepository = userRepository;
         this.applicationInfo = applicationInfo;
-        this.messages = messages;
-        this.mailSender = mailSender;
+        this.templateEngine = templateEngine;
+        this.emailOutboxService = emailOutboxService;
         this.passwordEncoder = passwordEncoder;
+        this.transactionalOperator = transactionalOperator;
+    }
+
+    public void setPasswordResetTokenExpirationTimeout(Duration passwordResetTokenExpirationTimeout) {
+        Assert.notNull(passwordResetTokenExpirationTimeout,
+                "Password reset token expiration timeout must not be null");
+        this.passwordResetTokenExpirationTimeout = passwordResetTokenExpirationTimeout;
+        formattedTokenExpirationTimeouts.invalidateAll();
     }
 
     @Override
@@ -79,23 +104,35 @@ public class DefaultPasswordService implements PasswordService {
     @Override
     public Mono<Void> confirmPasswordReset(Long userId, String tokenValue, String newPassword)
             throws EntityNotFoundException, TokenExpiredException {
-        return tokenRepository.findFirstByUserIdAndTokenValueAndValidOrderByCreatedAtDesc(userId, tokenValue, true)
-                .switchIfEmpty(Mono.error(new EntityNotFoundException("Password reset confirmation token \""
-                        + tokenValue + "\" is not registered for user with id " + userId)))
-                .filter(token -> !token.isExpired())
-                .switchIfEmpty(Mono.error(new TokenExpiredException("Password reset confirmation token \""
-                        + tokenValue + "\" is expired")))
-                .flatMap(token -> {
-                    token.setValid(false);
-                    return tokenRepository.save(token)
-                            .doOnSuccess(t -> log.debug("Token with id {} is marked as invalid", t.getId()));
-                })
-                .flatMap(token -> findUser(userId))
-                .flatMap(user -> {
-                    user.setPassword(encodePassword(newPassword));
-                    user.setVersion(user.getVersion() + 1);
-                    return userRepository.save(user)
-                            .doOnSuccess(u -> log.debug("Password is reset for user with id {}", u.getId()));
+        String tokenHash = AbstractToken.hashTokenValue(tokenValue);
+        // Token is checked before password is encoded so that invalid links do not load password encoder. Password is
+        // encoded before token is invalidated so that token is not used up when encoding fails; token invalidation
+        // and password update are committed together.
+        return findValidPasswordResetToken(userId, tokenValue, tokenHash)
+                .then(Mono.defer(() -> passwordEncoder.encode(newPassword)))
+                .flatMap(encodedPassword -> tokenRepository.invalidate(tokenHash, userId,
+                        LocalDateTime.now(ZoneOffset.UTC))
+                        .flatMap(invalidated -> {
+                            if (invalidated > 0) {
+                                log.debug("Password reset confirmation token for user with id {} is marked as "
+                                        + "invalid", userId);
+                                return userRepository.resetPassword(userId, encodedPassword);
+                            }
+                            return rejectPasswordResetToken(userId, tokenValue, tokenHash);
+                        })
+                        .flatMap(updated -> {
+                            if (updated == 0) {
+                                return Mono.error(new EntityNotFoundException("User with id " + userId
+                                        + " is not found"));
+                            }
+                            return Mono.just(updated);
+                        })
+                        .as(transactionalOperator::transactional))
+                .doOnSuccess(updated -> {
+                    if (userDetailsCache != null) {
+                        userDetailsCache.invalidateById(userId);
+                    }
+                    log.debug("Password is reset for user with id {}", userId);
                 })
                 .then();
     }
@@ -103,22 +140,22 @@ public class DefaultPasswordService implements PasswordService {
     @Override
     public Mono<Void> changePassword(Long userId, String currentPassword, String newPassword) {
         return findUser(userId)
-                .flatMap(user -> {
-                    if (!passwordEncoder.matches(currentPassword, user.getPassword())) {
+                .flatMap(user -> passwordEncoder.matches(currentPassword, user.getPassword()).flatMap(matches -> {
+                    if (!matches) {
                         return Mono.error(new InvalidPasswordException(currentPassword));
                     }
-                    return Mono.just(user);
-                }).flatMap(user -> {
-                    user.setPassword(encodePassword(newPassword));
+                    return passwordEncoder.encode(newPassword);
+                }).flatMap(encodedPassword -> {
+                    user.setPassword(encodedPassword);
                     user.setVersion(user.getVersion() + 1);
-                    return userRepository.save(user);
-                }).then();
+                    return userRepository.save(user).doOnSuccess(this::invalidateUserDetails);
+                })).then();
     }
 
-    private Mono<PasswordResetConfirmationToken> sendPasswordResetLink(User user, Locale locale)
-            throws UnableToSendMessageException {
+    private Mono<PasswordResetConfirmationToken> sendPasswordResetLink(User user, Locale locale) {
+        // Message is put into outbox in the same transaction as token and is sent asynchronously
         return createPasswordResetToken(user)
-                .map(token -> {
+                .flatMap(token -> {
                     String passwordResetLink = UriComponentsBuilder.fromHttpUrl(applicationInfo.getUrl())
                             .path("/account/password/reset/confirmation")
                             .queryParam("userId", user.getId())
@@ -126,33 +163,43 @@ public class DefaultPasswordService implements PasswordService {
                             .build()
                             .toUriString();
 
-                    String subject = messages.getMessage("user.password-reset.message.subject",
-                            new Object[]{applicationInfo.getName()}, locale);
+                    String subject = templateEngine.render("user.password-reset.message.subject", locale,
+                            applicationInfo.getName());
 
                     String linkExpiresAfter = formatPasswordResetTokenExpirationTimeout(locale);
-                    String text = messages.getMessage("user.password-reset.message.text",
-                            new Object[]{user.getFullName(), passwordResetLink, linkExpiresAfter}, locale);
+                    String text = templateEngine.render("user.password-reset.message.text", locale,
+                            user.getFullName(), passwordResetLink, linkExpiresAfter);
 
                     SimpleMailMessage message = new SimpleMailMessage();
                     message.setTo(user.getEmail());
                     message.setSubject(subject);
                     message.setText(text);
-                    mailSender.send(message);
-                    log.debug("Password reset confirmation link is sent to email {}", user.getEmail());
-                    return token;
+                    return emailOutboxService.enqueue(message)
+                            .doOnSuccess(m -> log.debug("Password reset confirmation link for email {} is put into "
+                                    + "outbox", user.getEmail()))
+                            .thenReturn(token);
                 })
-                .onErrorMap(MailException.class, e -> {
-                    String message = messages.getMessage("user.password-reset.link.unable-to-send",
-                            new Object[]{user.getEmail()}, Locale.ENGLISH);
-                    String localizedMessage;
-                    if (locale == null || locale == Locale.ENGLISH) {
-                        localizedMessage = message;
-                    } else {
-                        localizedMessage = messages.getMessage("user.password-reset.link.unable-to-send",
-                                new Object[]{user.getEmail()}, locale);
-                    }
-                    return new UnableToSendMessageException(message, localizedMessage, e);
-                });
+                .as(transactionalOperator::transactional);
+    }
+
+    private Mono<PasswordResetConfirmationToken> findValidPasswordResetToken(Long userId,
+                                                                              String tokenValue,
+                                                                              String tokenHash) {
+        return tokenRepository.findByTokenHash(tokenHash)
+                .filter(token -> userId.equals(token.getUserId()) && token.isValid())
+                .switchIfEmpty(Mono.error(new EntityNotFoundException("Password reset confirmation token \""
+                        + tokenValue + "\" is not registered for user with id " + userId)))
+                .filter(token -> !token.isExpired())
+                .switchIfEmpty(Mono.error(new TokenExpiredException("Password reset confirmation token \""
+                        + tokenValue + "\" is expired")));
+    }
+
+    private Mono<Integer> rejectPasswordResetToken(Long userId, String tokenValue, String tokenHash) {
+        // Token is looked up once again only to tell why it was rejected
+        return findValidPasswordResetToken(userId, tokenValue, tokenHash)
+                // Token was used concurrently
+                .flatMap(token -> Mono.error(new EntityNotFoundException("Password reset confirmation token \""
+                        + tokenValue + "\" is not registered for user with id " + userId)));
     }
 
     private Mono<PasswordResetConfirmationToken> createPasswordResetToken(User user) {
@@ -169,14 +216,22 @@ public class DefaultPasswordService implements PasswordService {
                 .doOnSuccess(t -> log.debug("Password reset confirmation token with id {} is created", t.getId()));
     }
 
-    private String encodePassword(String rawPassword) {
-        return passwordEncoder.encode(rawPassword);
+    private String formatPasswordResetTokenExpirationTimeout(Locale locale) {
+        Locale formatLocale = locale != null ? locale : Locale.getDefault();
+        String result = formattedTokenExpirationTimeouts.getIfPresent(formatLocale);
+        if (result == null) {
+            Period period = new Period(passwordResetTokenExpirationTimeout.toMillis());
+            PeriodFormatter periodFormatter = PeriodFormat.wordBased(formatLocale);
+            result = periodFormatter.print(period.normalizedStandard(PeriodType.dayTime()));
+            formattedTokenExpirationTimeouts.put(formatLocale, result);
+        }
+        return result;
     }
 
-    private String formatPasswordResetTokenExpirationTimeout(Locale locale) {
-        Period period = new Period(passwordResetTokenExpirationTimeout.toMillis());
-        PeriodFormatter periodFormatter = PeriodFormat.wordBased(locale);
-        return periodFormatter.print(period.normalizedStandard(PeriodType.dayTime()));
+    private void invalidateUserDetails(User user) {
+        if (userDetailsCache != null && user != null) {
+            userDetailsCache.invalidate(user.getEmail());
+        }
     }
 
     private Mono<User> findUser(Long id) {
@@ -1,6 +1,7 @@
 package org.briarheart.orchestra.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.briarheart.orchestra.data.Cursor;
 import org.briarheart.orchestra.data.EntityAlreadyExistsException;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.data.TagRepository;
@@ -16,6 +17,8 @@ import org.springframework.util.Assert;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Map;
+
 /**
  * Default implementation of {@link TagService}.
  *
@@ -26,19 +29,22 @@ import reactor.core.publisher.Mono;
 public class DefaultTagService implements TagService {
     private final TagRepository tagRepository;
     private final TaskRepository taskRepository;
+    private final TagCache tagCache;
 
-    public DefaultTagService(TagRepository tagRepository, TaskRepository taskRepository) {
+    public DefaultTagService(TagRepository tagRepository, TaskRepository taskRepository, TagCache tagCache) {
         Assert.notNull(tagRepository, "Tag repository must not be null");
         Assert.notNull(taskRepository, "Task repository must not be null");
+        Assert.notNull(tagCache, "Tag cache must not be null");
 
         this.tagRepository = tagRepository;
         this.taskRepository = taskRepository;
+        this.tagCache = tagCache;
     }
 
     @Override
     public Flux<Tag> getTags(User user) {
         Assert.notNull(user, "User must not be null");
-        return tagRepository.findByUserId(user.getId());
+        return getUserTags(user.getId()).flatMapIterable(Map::values).map(Tag::new);
     }
 
     @Override
@@ -59,6 +65,7 @@ public class DefaultTagService implements TagService {
                     Tag newTag = new Tag(tag);
                     newTag.setId(null);
                     return tagRepository.save(newTag)
+                            .doOnSuccess(t -> tagCache.invalidate(t.getUserId()))
                             .doOnSuccess(t -> log.debug("Tag with id {} is created", t.getId()));
                 }));
     }
@@ -78,6 +85,7 @@ public class DefaultTagService implements TagService {
                     String message = "Tag with name \"" + tag.getName() + "\" already exists";
                     return Mono.<Tag>error(new EntityAlreadyExistsException(message));
                 }).switchIfEmpty(Mono.defer(() -> tagRepository.save(tag)
+                        .doOnSuccess(t -> tagCache.invalidate(t.getUserId()))
                         .doOnSuccess(t -> log.debug("Tag with id {} is updated", t.getId()))));
     }
 
@@ -85,6 +93,7 @@ public class DefaultTagService implements TagService {
     public Mono<Void> deleteTag(Long id, User user) throws EntityNotFoundException {
         return getTag(id, user)
                 .flatMap(tagRepository::delete)
+                .doOnSuccess(v -> tagCache.invalidate(user.getId()))
                 .doOnSuccess(v -> log.debug("Tag with id {} is deleted", id));
     }
 
@@ -97,8 +106,28 @@ public class DefaultTagService implements TagService {
         });
     }
 
+    @Override
+    public Flux<Task> getUncompletedTasks(Long tagId, User user, Cursor after, Pageable pageable) {
+        return getTag(tagId, user).flatMapMany(tag -> {
+            Integer limit = Pageables.getLimit(pageable);
+            if (after == null) {
+                return taskRepository.findByStatusNotAndTagIdOrderByCreatedAtAsc(TaskStatus.COMPLETED, tagId, 0,
+                        limit);
+            }
+            return taskRepository.findByStatusNotAndTagIdAfterOrderByCreatedAtAsc(TaskStatus.COMPLETED, tagId,
+                    after.getCreatedAt(), after.getId(), limit);
+        });
+    }
+
     private Mono<Tag> findTag(Long tagId, Long userId) throws EntityNotFoundException {
-        return tagRepository.findByIdAndUserId(tagId, userId)
+        // Tag belongs to user when it is found among user's tags
+        return getUserTags(userId)
+                .flatMap(tags -> Mono.justOrEmpty(tags.get(tagId)))
+                .map(Tag::new)
                 .switchIfEmpty(Mono.error(new EntityNotFoundException("Tag with id " + tagId + " is not found")));
     }
+
+    private Mono<Map<Long, Tag>> getUserTags(Long userId) {
+        return tagCache.get(userId, () -> tagRepository.findByUserId(userId));
+    }
 }
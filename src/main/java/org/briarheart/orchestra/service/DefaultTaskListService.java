@@ -1,6 +1,7 @@
 package org.briarheart.orchestra.service;
 
 import lombok.extern.slf4j.Slf4j;
+import org.briarheart.orchestra.data.Cursor;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.data.TaskListRepository;
 import org.briarheart.orchestra.data.TaskRepository;
@@ -11,6 +12,7 @@ import org.briarheart.orchestra.model.User;
 import org.briarheart.orchestra.util.Pageables;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import org.springframework.util.Assert;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -25,13 +27,18 @@ import reactor.core.publisher.Mono;
 public class DefaultTaskListService implements TaskListService {
     private final TaskListRepository taskListRepository;
     private final TaskRepository taskRepository;
+    private final TransactionalOperator transactionalOperator;
 
-    public DefaultTaskListService(TaskListRepository taskListRepository, TaskRepository taskRepository) {
+    public DefaultTaskListService(TaskListRepository taskListRepository,
+                                  TaskRepository taskRepository,
+                                  TransactionalOperator transactionalOperator) {
         Assert.notNull(taskListRepository, "Task list repository must not be null");
         Assert.notNull(taskRepository, "Task repository must not be null");
+        Assert.notNull(transactionalOperator, "Transactional operator must not be null");
 
         this.taskListRepository = taskListRepository;
         this.taskRepository = taskRepository;
+        this.transactionalOperator = transactionalOperator;
     }
 
     @Override
@@ -66,37 +73,30 @@ public class DefaultTaskListService implements TaskListService {
     }
 
     @Override
-    public Mono<Void> completeTaskList(Long id, User user) throws EntityNotFoundException {
+    public Mono<Integer> completeTaskList(Long id, User user) throws EntityNotFoundException {
         return getTaskList(id, user)
-                .zipWhen(taskList -> {
-                    Flux<Task> taskFlux = taskRepository.findByTaskListIdAndUserIdOrderByCreatedAtAsc(id, user.getId(), 0, null);
-                    return taskFlux.flatMap(task -> {
-                        task.setStatus(TaskStatus.COMPLETED);
-                        return taskRepository.save(task)
-                                .doOnSuccess(t -> log.debug("Task with id {} is completed", t.getId()));
-                    }).then(Mono.just(true));
-                })
-                .flatMap(taskListAndFlag -> {
-                    TaskList taskList = taskListAndFlag.getT1();
-                    taskList.setCompleted(true);
-                    return taskListRepository.save(taskList)
-                            .doOnSuccess(l -> log.debug("Task list with id {} is completed", id))
-                            .then();
-                });
+                .flatMap(taskList -> taskRepository.updateStatusByTaskListIdAndUserId(TaskStatus.COMPLETED, id,
+                        user.getId())
+                        .doOnSuccess(count -> log.debug("{} task(s) from task list with id {} are completed", count,
+                                id))
+                        .flatMap(count -> {
+                            taskList.setCompleted(true);
+                            return taskListRepository.save(taskList)
+                                    .doOnSuccess(l -> log.debug("Task list with id {} is completed", id))
+                                    .thenReturn(count);
+                        }))
+                .as(transactionalOperator::transactional);
     }
 
     @Override
-    public Mono<Void> deleteTaskList(Long id, User user) throws EntityNotFoundException {
+    public Mono<Integer> deleteTaskList(Long id, User user) throws EntityNotFoundException {
         return getTaskList(id, user)
-                .zipWhen(taskList -> taskRepository.findByTaskListIdAndUserIdOrderByCreatedAtAsc(id, user.getId(), 0, null)
-                        .flatMap(t -> taskRepository.delete(t)
-                                .doOnSuccess(v -> log.debug("Task with id {} is deleted", t.getId())))
-                        .then(Mono.just(true)))
-                .flatMap(taskListAndFlag -> {
-                    TaskList taskList = taskListAndFlag.getT1();
-                    return taskListRepository.delete(taskList)
-                            .doOnSuccess(v -> log.debug("Task list with id {} is deleted", id));
-                });
+                .flatMap(taskList -> taskRepository.deleteByTaskListIdAndUserId(id, user.getId())
+                        .doOnSuccess(count -> log.debug("{} task(s) from task list with id {} are deleted", count, id))
+                        .flatMap(count -> taskListRepository.delete(taskList)
+                                .doOnSuccess(v -> log.debug("Task list with id {} is deleted", id))
+                                .thenReturn(count)))
+                .as(transactionalOperator::transactional);
     }
 
     @Override
@@ -108,6 +108,20 @@ public class DefaultTaskListService implements TaskListService {
         });
     }
 
+    @Override
+    public Flux<Task> getTasks(Long taskListId, User user, Cursor after, Pageable pageable)
+            throws EntityNotFoundException {
+        return getTaskList(taskListId, user).flatMapMany(taskList -> {
+            Integer limit = Pageables.getLimit(pageable);
+            if (after == null) {
+                return taskRepository.findByTaskListIdAndUserIdOrderByCreatedAtAsc(taskList.getId(), user.getId(), 0,
+                        limit);
+            }
+            return taskRepository.findByTaskListIdAndUserIdAfterOrderByCreatedAtAsc(taskList.getId(), user.getId(),
+                    after.getCreatedAt(), after.getId(), limit);
+        });
+    }
+
     @Override
     public Mono<Void> addTask(Long taskListId, Long taskId, User user) throws EntityNotFoundException {
         Assert.notNull(user, "User must not be null");
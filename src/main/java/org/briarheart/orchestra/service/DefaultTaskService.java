@@ -13,7 +13,9 @@ import reactor.core.publisher.Mono;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -28,20 +30,24 @@ public class DefaultTaskService implements TaskService {
     private final TaskTagRelationRepository taskTagRelationRepository;
     private final TagRepository tagRepository;
     private final TaskCommentRepository taskCommentRepository;
+    private final TagCache tagCache;
 
     public DefaultTaskService(TaskRepository taskRepository,
                               TaskTagRelationRepository taskTagRelationRepository,
                               TagRepository tagRepository,
-                              TaskCommentRepository taskCommentRepository) {
+                              TaskCommentRepository taskCommentRepository,
+                              TagCache tagCache) {
         Assert.notNull(taskRepository, "Task repository must not be null");
         Assert.notNull(taskTagRelationRepository, "Task-tag relation repository must not be null");
         Assert.notNull(tagRepository, "Tag repository must not be null");
         Assert.notNull(taskCommentRepository, "Task comment repository must not be null");
+        Assert.notNull(tagCache, "Tag cache must not be null");
 
         this.taskRepository = taskRepository;
         this.taskTagRelationRepository = taskTagRelationRepository;
         this.tagRepository = tagRepository;
         this.taskCommentRepository = taskCommentRepository;
+        this.tagCache = tagCache;
     }
 
     @Override
@@ -57,6 +63,25 @@ public class DefaultTaskService implements TaskService {
                 Pageables.getOffset(pageable), Pageables.getLimit(pageable));
     }
 
+    @Override
+    public Flux<Task> getUnprocessedTasks(User user, Cursor after, Pageable pageable) {
+        Assert.notNull(user, "User must not be null");
+        if (after == null) {
+            return taskRepository.findByStatusAndUserIdOrderByCreatedAtAsc(TaskStatus.UNPROCESSED, user.getId(), 0,
+                    Pageables.getLimit(pageable));
+        }
+        return taskRepository.findByStatusAndUserIdAfterOrderByCreatedAtAsc(TaskStatus.UNPROCESSED, user.getId(),
+                after.getCreatedAt(), after.getId(), Pageables.getLimit(pageable));
+    }
+
+    @Override
+    public Mono<ItemPage<Task>> getUnprocessedTasksWithTotal(User user, Pageable pageable) {
+        Assert.notNull(user, "User must not be null");
+        Flux<CountedTask> tasks = taskRepository.findWithTotalByStatusAndUserIdOrderByCreatedAtAsc(
+                TaskStatus.UNPROCESSED, user.getId(), Pageables.getOffset(pageable), Pageables.getLimit(pageable));
+        return toItemPage(tasks, pageable, () -> getUnprocessedTaskCount(user));
+    }
+
     @Override
     public Mono<Long> getProcessedTaskCount(User user) {
         Assert.notNull(user, "User must not be null");
@@ -70,6 +95,25 @@ public class DefaultTaskService implements TaskService {
                 Pageables.getOffset(pageable), Pageables.getLimit(pageable));
     }
 
+    @Override
+    public Flux<Task> getProcessedTasks(User user, Cursor after, Pageable pageable) {
+        Assert.notNull(user, "User must not be null");
+        if (after == null) {
+            return taskRepository.findByStatusAndUserIdOrderByCreatedAtAsc(TaskStatus.PROCESSED, user.getId(), 0,
+                    Pageables.getLimit(pageable));
+        }
+        return taskRepository.findByStatusAndUserIdAfterOrderByCreatedAtAsc(TaskStatus.PROCESSED, user.getId(),
+                after.getCreatedAt(), after.getId(), Pageables.getLimit(pageable));
+    }
+
+    @Override
+    public Mono<ItemPage<Task>> getProcessedTasksWithTotal(User user, Pageable pageable) {
+        Assert.notNull(user, "User must not be null");
+        Flux<CountedTask> tasks = taskRepository.findWithTotalByStatusAndUserIdOrderByCreatedAtAsc(
+                TaskStatus.PROCESSED, user.getId(), Pageables.getOffset(pageable), Pageables.getLimit(pageable));
+        return toItemPage(tasks, pageable, () -> getProcessedTaskCount(user));
+    }
+
     @Override
     public Mono<Long> getProcessedTaskCount(LocalDateTime deadlineFrom, LocalDateTime deadlineTo, User user) {
         Assert.notNull(user, "User must not be null");
@@ -96,20 +140,67 @@ public class DefaultTaskService implements TaskService {
             Pageable pageable
     ) {
         Assert.notNull(user, "User must not be null");
+        return findProcessedTasks(deadlineFrom, deadlineTo, user.getId(), Pageables.getOffset(pageable),
+                Pageables.getLimit(pageable));
+    }
+
+    @Override
+    public Flux<Task> getProcessedTasks(
+            LocalDateTime deadlineFrom,
+            LocalDateTime deadlineTo,
+            User user,
+            Cursor after,
+            Pageable pageable
+    ) {
+        Assert.notNull(user, "User must not be null");
+        Integer limit = Pageables.getLimit(pageable);
+        if (after == null) {
+            return findProcessedTasks(deadlineFrom, deadlineTo, user.getId(), 0, limit);
+        }
+
+        LocalDateTime createdAt = after.getCreatedAt();
+        Long id = after.getId();
         if (deadlineFrom == null && deadlineTo == null) {
-            return taskRepository.findByDeadlineIsNullAndStatusAndUserIdOrderByCreatedAtAsc(TaskStatus.PROCESSED, user.getId(),
-                    Pageables.getOffset(pageable), Pageables.getLimit(pageable));
+            return taskRepository.findByDeadlineIsNullAndStatusAndUserIdAfterOrderByCreatedAtAsc(TaskStatus.PROCESSED,
+                    user.getId(), createdAt, id, limit);
         }
         if (deadlineFrom == null) {
-            return taskRepository.findByDeadlineLessThanEqualAndStatusAndUserIdOrderByCreatedAtAsc(deadlineTo, TaskStatus.PROCESSED,
-                    user.getId(), Pageables.getOffset(pageable), Pageables.getLimit(pageable));
+            return taskRepository.findByDeadlineLessThanEqualAndStatusAndUserIdAfterOrderByCreatedAtAsc(deadlineTo,
+                    TaskStatus.PROCESSED, user.getId(), createdAt, id, limit);
         }
         if (deadlineTo == null) {
-            return taskRepository.findByDeadlineGreaterThanEqualAndStatusAndUserIdOrderByCreatedAtAsc(deadlineFrom, TaskStatus.PROCESSED,
-                    user.getId(), Pageables.getOffset(pageable), Pageables.getLimit(pageable));
+            return taskRepository.findByDeadlineGreaterThanEqualAndStatusAndUserIdAfterOrderByCreatedAtAsc(
+                    deadlineFrom, TaskStatus.PROCESSED, user.getId(), createdAt, id, limit);
+        }
+        return taskRepository.findByDeadlineBetweenAndStatusAndUserIdAfterOrderByCreatedAtAsc(deadlineFrom,
+                deadlineTo, TaskStatus.PROCESSED, user.getId(), createdAt, id, limit);
+    }
+
+    @Override
+    public Mono<ItemPage<Task>> getProcessedTasksWithTotal(
+            LocalDateTime deadlineFrom,
+            LocalDateTime deadlineTo,
+            User user,
+            Pageable pageable
+    ) {
+        Assert.notNull(user, "User must not be null");
+        long offset = Pageables.getOffset(pageable);
+        Integer limit = Pageables.getLimit(pageable);
+        Flux<CountedTask> tasks;
+        if (deadlineFrom == null && deadlineTo == null) {
+            tasks = taskRepository.findWithTotalByDeadlineIsNullAndStatusAndUserIdOrderByCreatedAtAsc(
+                    TaskStatus.PROCESSED, user.getId(), offset, limit);
+        } else if (deadlineFrom == null) {
+            tasks = taskRepository.findWithTotalByDeadlineLessThanEqualAndStatusAndUserIdOrderByCreatedAtAsc(
+                    deadlineTo, TaskStatus.PROCESSED, user.getId(), offset, limit);
+        } else if (deadlineTo == null) {
+            tasks = taskRepository.findWithTotalByDeadlineGreaterThanEqualAndStatusAndUserIdOrderByCreatedAtAsc(
+                    deadlineFrom, TaskStatus.PROCESSED, user.getId(), offset, limit);
+        } else {
+            tasks = taskRepository.findWithTotalByDeadlineBetweenAndStatusAndUserIdOrderByCreatedAtAsc(deadlineFrom,
+                    deadlineTo, TaskStatus.PROCESSED, user.getId(), offset, limit);
         }
-        return taskRepository.findByDeadlineBetweenAndStatusAndUserIdOrderByCreatedAtAsc(deadlineFrom, deadlineTo, TaskStatus.PROCESSED,
-                user.getId(), Pageables.getOffset(pageable), Pageables.getLimit(pageable));
+        return toItemPage(tasks, pageable, () -> getProcessedTaskCount(deadlineFrom, deadlineTo, user));
     }
 
     @Override
@@ -125,6 +216,25 @@ public class DefaultTaskService implements TaskService {
                 Pageables.getOffset(pageable), Pageables.getLimit(pageable));
     }
 
+    @Override
+    public Flux<Task> getUncompletedTasks(User user, Cursor after, Pageable pageable) {
+        Assert.notNull(user, "User must not be null");
+        if (after == null) {
+            return taskRepository.findByStatusNotAndUserIdOrderByCreatedAtAsc(TaskStatus.COMPLETED, user.getId(), 0,
+                    Pageables.getLimit(pageable));
+        }
+        return taskRepository.findByStatusNotAndUserIdAfterOrderByCreatedAtAsc(TaskStatus.COMPLETED, user.getId(),
+                after.getCreatedAt(), after.getId(), Pageables.getLimit(pageable));
+    }
+
+    @Override
+    public Mono<ItemPage<Task>> getUncompletedTasksWithTotal(User user, Pageable pageable) {
+        Assert.notNull(user, "User must not be null");
+        Flux<CountedTask> tasks = taskRepository.findWithTotalByStatusNotAndUserIdOrderByCreatedAtAsc(
+                TaskStatus.COMPLETED, user.getId(), Pageables.getOffset(pageable), Pageables.getLimit(pageable));
+        return toItemPage(tasks, pageable, () -> getUncompletedTaskCount(user));
+    }
+
     @Override
     public Mono<Task> getTask(Long id, User user) throws EntityNotFoundException {
         Assert.notNull(user, "User must not be null");
@@ -192,7 +302,11 @@ public class DefaultTaskService implements TaskService {
                 Set<Long> tagIds = relationList.stream()
                         .map(TaskTagRelation::getTagId)
                         .collect(Collectors.toSet());
-                return tagRepository.findByIdIn(tagIds);
+                // Tags assigned to task belong to task author
+                return getUserTags(user.getId())
+                        .flatMapIterable(Map::values)
+                        .filter(tag -> tagIds.contains(tag.getId()))
+                        .map(Tag::new);
             });
         });
     }
@@ -201,10 +315,8 @@ public class DefaultTaskService implements TaskService {
     public Mono<Void> assignTag(Long taskId, Long tagId, User user) throws EntityNotFoundException {
         return getTask(taskId, user)
                 .flatMap(task -> findTag(tagId, user.getId()))
-                .flatMap(tag -> taskTagRelationRepository.findByTaskIdAndTagId(taskId, tagId))
-                .switchIfEmpty(Mono.defer(()
-                        -> taskTagRelationRepository.create(taskId, tagId).doOnSuccess(relation
-                        -> log.debug("Tag with id {} is assigned to task with id {}", tagId, taskId))))
+                .flatMap(tag -> taskTagRelationRepository.create(taskId, tagId))
+                .doOnSuccess(relation -> log.debug("Tag with id {} is assigned to task with id {}", tagId, taskId))
                 .then();
     }
 
@@ -241,13 +353,53 @@ public class DefaultTaskService implements TaskService {
         return LocalDateTime.now(ZoneOffset.UTC);
     }
 
+    private Flux<Task> findProcessedTasks(LocalDateTime deadlineFrom,
+                                          LocalDateTime deadlineTo,
+                                          Long userId,
+                                          long offset,
+                                          Integer limit) {
+        if (deadlineFrom == null && deadlineTo == null) {
+            return taskRepository.findByDeadlineIsNullAndStatusAndUserIdOrderByCreatedAtAsc(TaskStatus.PROCESSED,
+                    userId, offset, limit);
+        }
+        if (deadlineFrom == null) {
+            return taskRepository.findByDeadlineLessThanEqualAndStatusAndUserIdOrderByCreatedAtAsc(deadlineTo,
+                    TaskStatus.PROCESSED, userId, offset, limit);
+        }
+        if (deadlineTo == null) {
+            return taskRepository.findByDeadlineGreaterThanEqualAndStatusAndUserIdOrderByCreatedAtAsc(deadlineFrom,
+                    TaskStatus.PROCESSED, userId, offset, limit);
+        }
+        return taskRepository.findByDeadlineBetweenAndStatusAndUserIdOrderByCreatedAtAsc(deadlineFrom, deadlineTo,
+                TaskStatus.PROCESSED, userId, offset, limit);
+    }
+
+    private Mono<ItemPage<Task>> toItemPage(Flux<CountedTask> tasks,
+                                            Pageable pageable,
+                                            Supplier<Mono<Long>> totalSupplier) {
+        return tasks.collectList().flatMap(taskList -> {
+            if (taskList.isEmpty()) {
+                // Nothing to take total number from when requested page is out of range
+                Mono<Long> total = Pageables.getOffset(pageable) > 0 ? totalSupplier.get() : Mono.just(0L);
+                return total.map(t -> ItemPage.of(List.<Task>of(), t));
+            }
+            List<Task> items = taskList.stream().map(Task::new).collect(Collectors.toList());
+            return Mono.just(ItemPage.of(items, taskList.get(0).getTotal()));
+        });
+    }
+
     private Mono<Task> findTask(Long id, Long userId) {
         return taskRepository.findByIdAndUserId(id, userId)
                 .switchIfEmpty(Mono.error(new EntityNotFoundException("Task with id " + id + " is not found")));
     }
 
     private Mono<Tag> findTag(Long id, Long userId) {
-        return tagRepository.findByIdAndUserId(id, userId)
+        return getUserTags(userId)
+                .flatMap(tags -> Mono.justOrEmpty(tags.get(id)))
                 .switchIfEmpty(Mono.error(new EntityNotFoundException("Tag with id " + id + " is not found")));
     }
+
+    private Mono<Map<Long, Tag>> getUserTags(Long userId) {
+        return tagCache.get(userId, () -> tagRepository.findByUserId(userId));
+    }
 }
@@ -1,20 +1,25 @@
 package org.briarheart.orchestra.service;
 
+import com.google.common.hash.Hashing;
 import io.jsonwebtoken.lang.Assert;
 import lombok.extern.slf4j.Slf4j;
 import org.briarheart.orchestra.data.EntityAlreadyExistsException;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.data.ProfilePictureRepository;
+import org.briarheart.orchestra.data.ProfilePictureVariantRepository;
 import org.briarheart.orchestra.data.UserRepository;
 import org.briarheart.orchestra.model.ProfilePicture;
 import org.briarheart.orchestra.model.User;
+import org.briarheart.orchestra.security.crypto.password.ReactivePasswordEncoder;
 import org.springframework.context.support.MessageSourceAccessor;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.Collections;
 import java.util.Locale;
+import java.util.Optional;
 
 /**
  * Default implementation of {@link UserService}.
@@ -26,26 +31,42 @@ import java.util.Locale;
 public class DefaultUserService implements UserService {
     private final UserRepository userRepository;
     private final ProfilePictureRepository profilePictureRepository;
+    private final ProfilePictureVariantRepository profilePictureVariantRepository;
+    private final ProfilePictureResizer profilePictureResizer;
+    private final ProfilePictureCache profilePictureCache;
     private final EmailConfirmationService emailConfirmationService;
-    private final PasswordEncoder passwordEncoder;
+    private final ReactivePasswordEncoder passwordEncoder;
     private final MessageSourceAccessor messages;
+    private final TransactionalOperator transactionalOperator;
 
     public DefaultUserService(UserRepository userRepository,
                               ProfilePictureRepository profilePictureRepository,
+                              ProfilePictureVariantRepository profilePictureVariantRepository,
+                              ProfilePictureResizer profilePictureResizer,
+                              ProfilePictureCache profilePictureCache,
                               EmailConfirmationService emailConfirmationService,
-                              PasswordEncoder passwordEncoder,
-                              MessageSourceAccessor messages) {
+                              ReactivePasswordEncoder passwordEncoder,
+                              MessageSourceAccessor messages,
+                              TransactionalOperator transactionalOperator) {
         Assert.notNull(userRepository, "User repository must not be null");
         Assert.notNull(profilePictureRepository, "Profile picture repository must not be null");
+        Assert.notNull(profilePictureVariantRepository, "Profile picture variant repository must not be null");
+        Assert.notNull(profilePictureResizer, "Profile picture resizer must not be null");
+        Assert.notNull(profilePictureCache, "Profile picture cache must not be null");
         Assert.notNull(emailConfirmationService, "Email confirmation service must not be null");
         Assert.notNull(passwordEncoder, "Password encoder must not be null");
         Assert.notNull(messages, "Message source accessor must not be null");
+        Assert.notNull(transactionalOperator, "Transactional operator must not be null");
 
         this.userRepository = userRepository;
         this.profilePictureRepository = profilePictureRepository;
+        this.profilePictureVariantRepository = profilePictureVariantRepository;
+        this.profilePictureResizer = profilePictureResizer;
+        this.profilePictureCache = profilePictureCache;
         this.emailConfirmationService = emailConfirmationService;
         this.passwordEncoder = passwordEncoder;
         this.messages = messages;
+        this.transactionalOperator = transactionalOperator;
     }
 
     @Override
@@ -55,11 +76,12 @@ public class DefaultUserService implements UserService {
         String email = user.getEmail();
         return userRepository.findByEmail(email)
                 .flatMap(u -> ensureEmailNotConfirmed(u, locale))
-                .flatMap(u -> {
+                .flatMap(u -> encodePassword(user.getPassword()).map(encodedPassword -> {
                     u.setFullName(user.getFullName());
-                    u.setPassword(encodePassword(user.getPassword()));
-                    return userRepository.save(u);
-                })
+                    u.setPassword(encodedPassword.orElse(null));
+                    return u;
+                }))
+                .flatMap(userRepository::save)
                 .switchIfEmpty(Mono.defer(() -> createNewUser(user)
                         .doOnSuccess(u -> log.debug("User with id {} is created", u.getId()))))
                 .map(this::clearPassword)
@@ -92,17 +114,58 @@ public class DefaultUserService implements UserService {
                         + userId + " is not found")));
     }
 
+    @Override
+    public Mono<ProfilePicture> getProfilePictureWithoutData(Long userId) throws EntityNotFoundException {
+        return profilePictureRepository.findWithoutDataByUserId(userId)
+                .switchIfEmpty(Mono.error(new EntityNotFoundException("Profile picture associated with user with id "
+                        + userId + " is not found")));
+    }
+
+    @Override
+    public Mono<ProfilePicture> getProfilePictureWithoutData(Long userId, Integer size)
+            throws EntityNotFoundException {
+        return Mono.defer(() -> {
+            ProfilePicture cachedPicture = profilePictureCache.getIfPresent(userId, size);
+            if (cachedPicture != null) {
+                return Mono.just(ProfilePicture.builder()
+                        .userId(cachedPicture.getUserId())
+                        .type(cachedPicture.getType())
+                        .hash(cachedPicture.getHash())
+                        .build());
+            }
+            return getProfilePictureWithoutData(userId);
+        });
+    }
+
+    @Override
+    public Mono<ProfilePicture> getProfilePicture(Long userId, Integer size) throws EntityNotFoundException {
+        return profilePictureCache.get(userId, size, variantSize -> {
+            if (variantSize == null) {
+                return getProfilePicture(userId);
+            }
+            // Variant carries hash of original picture so that picture version can be checked without one more query
+            return profilePictureVariantRepository.findFirstByUserIdAndSizeGreaterThanEqual(userId, variantSize)
+                    .flatMap(variant -> getProfilePictureWithoutData(userId)
+                            .map(pictureWithoutData -> variant.toProfilePicture(pictureWithoutData.getHash())))
+                    .switchIfEmpty(Mono.defer(() -> getProfilePicture(userId)));
+        });
+    }
+
     @Override
     public Mono<ProfilePicture> saveProfilePicture(ProfilePicture picture) {
         Assert.notNull(picture, "Profile picture must not be null");
-        return profilePictureRepository.findById(picture.getUserId())
-                .hasElement()
-                .flatMap(found -> {
-                    if (found) {
-                        return profilePictureRepository.save(picture);
-                    }
-                    return profilePictureRepository.create(picture);
-                });
+        Assert.notNull(picture.getData(), "Profile picture data must not be null");
+        picture.setHash(Hashing.sha256().hashBytes(picture.getData()).toString());
+        // Variants are created before transaction is started so that database connection is not held while picture
+        // is being resized
+        return profilePictureResizer.resize(picture).collectList()
+                .flatMap(variants -> profilePictureRepository.createOrUpdate(picture)
+                        .flatMap(savedPicture -> profilePictureVariantRepository.deleteByUserId(picture.getUserId())
+                                .thenMany(Flux.fromIterable(variants))
+                                .concatMap(profilePictureVariantRepository::create)
+                                .then(Mono.just(savedPicture)))
+                        .as(transactionalOperator::transactional))
+                .doOnSuccess(savedPicture -> profilePictureCache.invalidate(picture.getUserId()));
     }
 
     private Mono<User> ensureEmailNotConfirmed(User user, Locale locale) {
@@ -122,18 +185,23 @@ public class DefaultUserService implements UserService {
     }
 
     private Mono<User> createNewUser(User user) {
-        User newUser = new User(user);
-        newUser.setId(null);
-        newUser.setEmailConfirmed(false);
-        newUser.setVersion(0L);
-        newUser.setPassword(encodePassword(user.getPassword()));
-        newUser.setEnabled(false);
-        newUser.setAuthorities(Collections.emptySet());
-        return userRepository.save(newUser);
+        return encodePassword(user.getPassword()).flatMap(encodedPassword -> {
+            User newUser = new User(user);
+            newUser.setId(null);
+            newUser.setEmailConfirmed(false);
+            newUser.setVersion(0L);
+            newUser.setPassword(encodedPassword.orElse(null));
+            newUser.setEnabled(false);
+            newUser.setAuthorities(Collections.emptySet());
+            return userRepository.save(newUser);
+        });
     }
 
-    private String encodePassword(String rawPassword) {
-        return rawPassword != null ? passwordEncoder.encode(rawPassword) : null;
+    private Mono<Optional<String>> encodePassword(String rawPassword) {
+        if (rawPassword == null) {
+            return Mono.just(Optional.empty());
+        }
+        return passwordEncoder.encode(rawPassword).map(Optional::of);
     }
 
     private User clearPassword(User user) {
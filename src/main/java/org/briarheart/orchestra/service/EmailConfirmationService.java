@@ -14,14 +14,13 @@ import java.util.Locale;
  */
 public interface EmailConfirmationService {
     /**
-     * Sends email confirmation link to the given user.
+     * Sends email confirmation link to the given user. Message with the link is put into email outbox and is sent
+     * asynchronously.
      *
      * @param user   user to which email confirmation link should be sent (must not be {@code null})
      * @param locale current user's locale
-     * @throws UnableToSendMessageException if error occurred while trying to send email confirmation link
      */
-    Mono<EmailConfirmationToken> sendEmailConfirmationLink(User user, Locale locale)
-            throws UnableToSendMessageException;
+    Mono<EmailConfirmationToken> sendEmailConfirmationLink(User user, Locale locale);
 
     /**
      * Confirms email for user with the given id.
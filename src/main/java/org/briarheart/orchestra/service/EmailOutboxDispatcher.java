@@ -0,0 +1,220 @@
+package org.briarheart.orchestra.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.briarheart.orchestra.config.ApplicationMailProperties;
+import org.briarheart.orchestra.data.EmailOutboxMessageRepository;
+import org.briarheart.orchestra.model.EmailOutboxMessage;
+import org.briarheart.orchestra.model.EmailOutboxMessageStatus;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Background dispatcher of messages from email outbox. Dispatcher periodically claims batch of pending messages and
+ * sends them over single SMTP connection on dedicated thread. Successfully sent messages are removed from outbox.
+ * Failed messages are retried with exponential backoff and are marked as dead after maximum number of attempts. Text
+ * of dead message is cleared since it contains confirmation links.
+ * <p>
+ * Number of processed messages is published as "email.outbox.messages" metric with "outcome" tag set to "sent",
+ * "retried" or "dead".
+ *
+ * @author Roman Chigvintsev
+ */
+@Component
+@Slf4j
+public class EmailOutboxDispatcher implements InitializingBean, DisposableBean {
+    private static final int MAX_ERROR_LENGTH = 2_000;
+
+    private final EmailOutboxMessageRepository outboxRepository;
+    private final JavaMailSender mailSender;
+    private final ApplicationMailProperties.Outbox properties;
+    private final Scheduler scheduler;
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter deadCounter;
+
+    private Disposable dispatchTask;
+
+    public EmailOutboxDispatcher(EmailOutboxMessageRepository outboxRepository,
+                                 JavaMailSender mailSender,
+                                 ApplicationMailProperties mailProperties,
+                                 MeterRegistry meterRegistry) {
+        Assert.notNull(outboxRepository, "Email outbox message repository must not be null");
+        Assert.notNull(mailSender, "Mail sender must not be null");
+        Assert.notNull(mailProperties, "Mail properties must not be null");
+        Assert.notNull(meterRegistry, "Meter registry must not be null");
+
+        this.outboxRepository = outboxRepository;
+        this.mailSender = mailSender;
+        this.properties = mailProperties.getOutbox();
+        this.scheduler = Schedulers.newSingle("email-outbox-dispatcher");
+        this.sentCounter = meterRegistry.counter("email.outbox.messages", "outcome", "sent");
+        this.retriedCounter = meterRegistry.counter("email.outbox.messages", "outcome", "retried");
+        this.deadCounter = meterRegistry.counter("email.outbox.messages", "outcome", "dead");
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        dispatchTask = Flux.interval(properties.getPollInterval(), properties.getPollInterval())
+                .onBackpressureDrop()
+                // Outbox is drained without waiting for next tick while batches are full
+                .concatMap(tick -> dispatch()
+                        .expand(count -> count == properties.getBatchSize() ? dispatch() : Mono.empty())
+                        .then()
+                        .onErrorResume(e -> {
+                            log.error("Failed to dispatch messages from email outbox", e);
+                            return Mono.empty();
+                        }), 1)
+                .subscribe();
+    }
+
+    @Override
+    public void destroy() {
+        if (dispatchTask != null) {
+            dispatchTask.dispose();
+        }
+        scheduler.dispose();
+    }
+
+    /**
+     * Claims and sends single batch of messages that are due to be sent.
+     *
+     * @return number of claimed messages
+     */
+    Mono<Integer> dispatch() {
+        return Mono.defer(() -> {
+            String claimToken = UUID.randomUUID().toString();
+            LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+            LocalDateTime claimExpiresAt = now.plus(properties.getClaimTimeout());
+            return outboxRepository.claim(claimToken, now, claimExpiresAt, properties.getBatchSize())
+                    .filter(claimed -> claimed > 0)
+                    .flatMap(claimed -> outboxRepository.findByClaimToken(claimToken)
+                            .collectList()
+                            .flatMap(this::send)
+                            .thenReturn(claimed))
+                    .defaultIfEmpty(0);
+        });
+    }
+
+    private Mono<Void> send(List<EmailOutboxMessage> outboxMessages) {
+        if (outboxMessages.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> sendBatch(outboxMessages))
+                .subscribeOn(scheduler)
+                .flatMap(failures -> {
+                    List<Long> sentIds = new ArrayList<>();
+                    List<EmailOutboxMessage> failedMessages = new ArrayList<>();
+                    for (EmailOutboxMessage outboxMessage : outboxMessages) {
+                        Exception failure = failures.get(outboxMessage.getId());
+                        if (failure == null) {
+                            sentIds.add(outboxMessage.getId());
+                        } else {
+                            failedMessages.add(handleFailure(outboxMessage, failure));
+                        }
+                    }
+
+                    Mono<Integer> deleteSent = sentIds.isEmpty() ? Mono.just(0)
+                            : outboxRepository.deleteByIdIn(sentIds);
+                    return deleteSent
+                            .doOnSuccess(count -> {
+                                sentCounter.increment(sentIds.size());
+                                log.debug("{} message(s) from email outbox are sent", sentIds.size());
+                            })
+                            .thenMany(outboxRepository.saveAll(failedMessages))
+                            .then();
+                });
+    }
+
+    /**
+     * Sends the given messages over single SMTP connection.
+     *
+     * @return failures of messages that were not sent mapped by message id
+     */
+    private Map<Long, Exception> sendBatch(List<EmailOutboxMessage> outboxMessages) {
+        SimpleMailMessage[] messages = new SimpleMailMessage[outboxMessages.size()];
+        for (int i = 0; i < outboxMessages.size(); i++) {
+            EmailOutboxMessage outboxMessage = outboxMessages.get(i);
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setTo(outboxMessage.getRecipient());
+            message.setSubject(outboxMessage.getSubject());
+            message.setText(outboxMessage.getText());
+            messages[i] = message;
+        }
+
+        Map<Long, Exception> failures = new HashMap<>();
+        try {
+            mailSender.send(messages);
+        } catch (MailSendException e) {
+            Map<Object, Exception> failedMessages = e.getFailedMessages();
+            if (failedMessages.isEmpty()) {
+                outboxMessages.forEach(m -> failures.put(m.getId(), e));
+            } else {
+                for (int i = 0; i < messages.length; i++) {
+                    Exception failure = failedMessages.get(messages[i]);
+                    if (failure != null) {
+                        failures.put(outboxMessages.get(i).getId(), failure);
+                    }
+                }
+            }
+        } catch (MailException e) {
+            outboxMessages.forEach(m -> failures.put(m.getId(), e));
+        }
+        return failures;
+    }
+
+    private EmailOutboxMessage handleFailure(EmailOutboxMessage outboxMessage, Exception failure) {
+        int attempts = outboxMessage.getAttempts() + 1;
+        outboxMessage.setAttempts(attempts);
+        outboxMessage.setClaimToken(null);
+        outboxMessage.setLastError(truncate(String.valueOf(failure.getMessage())));
+        if (attempts >= properties.getMaxAttempts()) {
+            outboxMessage.setStatus(EmailOutboxMessageStatus.DEAD);
+            // Text of message contains confirmation links that must not be kept once message will not be sent.
+            // Time of move to dead letters is kept instead of time of next attempt so that dead message is purged
+            // after retention period (see ConfirmationTokenPurger).
+            outboxMessage.setText("");
+            outboxMessage.setNextAttemptAt(LocalDateTime.now(ZoneOffset.UTC));
+            deadCounter.increment();
+            log.error("Failed to send message with id {} from email outbox after {} attempt(s); message is moved "
+                    + "to dead letters", outboxMessage.getId(), attempts, failure);
+        } else {
+            LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+            outboxMessage.setNextAttemptAt(now.plus(getBackoff(attempts)));
+            retriedCounter.increment();
+            log.warn("Failed to send message with id {} from email outbox (attempt {}): {}", outboxMessage.getId(),
+                    attempts, failure.getMessage());
+        }
+        return outboxMessage;
+    }
+
+    private Duration getBackoff(int attempts) {
+        Duration maxBackoff = properties.getMaxBackoff();
+        Duration backoff = properties.getInitialBackoff();
+        for (int i = 1; i < attempts && backoff.compareTo(maxBackoff) < 0; i++) {
+            backoff = backoff.multipliedBy(2);
+        }
+        return backoff.compareTo(maxBackoff) < 0 ? backoff : maxBackoff;
+    }
+
+    private static String truncate(String error) {
+        return error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error;
+    }
+}
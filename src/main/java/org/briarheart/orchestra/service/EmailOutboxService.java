@@ -0,0 +1,21 @@
+package org.briarheart.orchestra.service;
+
+import org.briarheart.orchestra.model.EmailOutboxMessage;
+import org.springframework.mail.SimpleMailMessage;
+import reactor.core.publisher.Mono;
+
+/**
+ * Service that accepts email messages to be sent asynchronously.
+ *
+ * @author Roman Chigvintsev
+ */
+public interface EmailOutboxService {
+    /**
+     * Puts the given message into outbox. Message is stored within current transaction so it is sent only if
+     * transaction is committed.
+     *
+     * @param message message to be sent (must not be {@code null} and must have exactly one recipient)
+     * @return stored outbox message
+     */
+    Mono<EmailOutboxMessage> enqueue(SimpleMailMessage message);
+}
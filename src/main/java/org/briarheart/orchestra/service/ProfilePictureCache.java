@@ -0,0 +1,118 @@
+package org.briarheart.orchestra.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import lombok.Value;
+import org.briarheart.orchestra.config.ApplicationProfilePictureProperties;
+import org.briarheart.orchestra.model.ProfilePicture;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * In-memory cache of profile pictures and their variants. Pictures are cached by size of variant that is served for
+ * requested size rather than by requested size itself, so that all requested sizes served by the same variant share
+ * single cache entry. Cache is bounded by total size of picture data rather than by number of pictures; least
+ * recently used pictures are evicted first. Hit, miss and eviction statistics are
+ * published as "cache.*" metrics with "cache" tag set to "profilePictures".
+ *
+ * @author Roman Chigvintsev
+ */
+@Component
+public class ProfilePictureCache implements MeterBinder {
+    private static final String CACHE_NAME = "profilePictures";
+
+    private final Cache<Key, ProfilePicture> cache;
+    private final ApplicationProfilePictureProperties.Variants variants;
+    private long generation;
+
+    /**
+     * Creates new instance of this class with the given profile picture properties.
+     *
+     * @param properties profile picture properties (must not be {@code null})
+     */
+    public ProfilePictureCache(ApplicationProfilePictureProperties properties) {
+        Assert.notNull(properties, "Profile picture properties must not be null");
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(properties.getCache().getMaxSize().toBytes())
+                .weigher((Key key, ProfilePicture picture) -> picture.getData() != null ? picture.getData().length : 0)
+                .recordStats()
+                .build();
+        this.variants = properties.getVariants();
+    }
+
+    /**
+     * Returns cached profile picture of the given size or loads it using the given loader when picture is not cached.
+     * Requested size is resolved to the smallest variant size which is not less than requested size. Resolved size is
+     * passed to the loader; {@code null} is passed when original picture should be loaded.
+     *
+     * @param userId id of user associated with profile picture (must not be {@code null})
+     * @param size   optional profile picture size
+     * @param loader profile picture loader accepting resolved variant size (must not be {@code null})
+     * @return cached or loaded profile picture
+     */
+    public Mono<ProfilePicture> get(Long userId, Integer size, Function<Integer, Mono<ProfilePicture>> loader) {
+        Assert.notNull(userId, "User id must not be null");
+        Assert.notNull(loader, "Profile picture loader must not be null");
+        Integer variantSize = variants.resolveSize(size);
+        Key key = new Key(userId, variantSize);
+        return Mono.defer(() -> {
+            ProfilePicture picture = cache.getIfPresent(key);
+            if (picture != null) {
+                return Mono.just(picture);
+            }
+            long loadGeneration = getGeneration();
+            return loader.apply(variantSize).doOnNext(loadedPicture -> put(key, loadedPicture, loadGeneration));
+        });
+    }
+
+    /**
+     * Returns cached profile picture of the given size without loading it.
+     *
+     * @param userId id of user associated with profile picture (must not be {@code null})
+     * @param size   optional profile picture size
+     * @return cached profile picture or {@code null} if picture is not cached
+     */
+    public ProfilePicture getIfPresent(Long userId, Integer size) {
+        Assert.notNull(userId, "User id must not be null");
+        return cache.getIfPresent(new Key(userId, variants.resolveSize(size)));
+    }
+
+    /**
+     * Removes all cached profile pictures associated with user with the given id.
+     *
+     * @param userId user id (must not be {@code null})
+     */
+    public synchronized void invalidate(Long userId) {
+        Assert.notNull(userId, "User id must not be null");
+        // Pictures that are being loaded at the moment may already be stale so they must not get into cache
+        generation++;
+        cache.asMap().keySet().removeIf(key -> key.getUserId().equals(userId));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        GuavaCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    private synchronized void put(Key key, ProfilePicture picture, long loadGeneration) {
+        if (loadGeneration == generation) {
+            cache.put(key, picture);
+        }
+    }
+
+    @Value
+    private static class Key {
+        Long userId;
+        Integer size;
+    }
+}
@@ -0,0 +1,173 @@
+package org.briarheart.orchestra.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.briarheart.orchestra.config.ApplicationProfilePictureProperties;
+import org.briarheart.orchestra.model.ProfilePicture;
+import org.briarheart.orchestra.model.ProfilePictureVariant;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Creates downscaled variants of profile pictures. Since image decoding and scaling are CPU bound blocking operations
+ * they are performed on dedicated bounded pool of worker threads and never on event loop threads. Pictures whose
+ * dimensions exceed configured limit are rejected before they are decoded.
+ *
+ * @author Roman Chigvintsev
+ */
+@Component
+@Slf4j
+public class ProfilePictureResizer implements DisposableBean {
+    private final List<Integer> sizes;
+    private final long maxPixels;
+    private final Scheduler scheduler;
+
+    /**
+     * Creates new instance of this class with the given profile picture properties.
+     *
+     * @param properties profile picture properties (must not be {@code null})
+     */
+    public ProfilePictureResizer(ApplicationProfilePictureProperties properties) {
+        Assert.notNull(properties, "Profile picture properties must not be null");
+        ApplicationProfilePictureProperties.Variants variants = properties.getVariants();
+        this.sizes = new ArrayList<>(variants.getSizes());
+        // Larger variants go first so that every next variant can be scaled from the previous one
+        this.sizes.sort(Comparator.reverseOrder());
+        this.maxPixels = properties.getMaxPixels();
+        this.scheduler = Schedulers.newBoundedElastic(variants.getResizeThreads(), variants.getResizeQueueSize(),
+                "profile-picture-resizer");
+    }
+
+    /**
+     * Creates variants of the given profile picture for all configured sizes that are less than size of the picture
+     * itself. Variants of pictures in formats that cannot be decoded are not created.
+     *
+     * @param picture profile picture (must not be {@code null})
+     * @return profile picture variants or empty stream if picture is small enough or cannot be decoded
+     * @throws ProfilePictureTooLargeException if number of pixels in picture exceeds configured limit
+     */
+    public Flux<ProfilePictureVariant> resize(ProfilePicture picture) {
+        Assert.notNull(picture, "Profile picture must not be null");
+        return Mono.fromCallable(() -> createVariants(picture))
+                .subscribeOn(scheduler)
+                .flatMapIterable(Function.identity());
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+
+    private List<ProfilePictureVariant> createVariants(ProfilePicture picture) {
+        BufferedImage image;
+        try {
+            image = decode(picture);
+        } catch (IOException e) {
+            log.warn("Failed to decode profile picture of user with id " + picture.getUserId(), e);
+            return Collections.emptyList();
+        }
+        if (image == null) {
+            log.debug("Format of profile picture of user with id {} is not supported", picture.getUserId());
+            return Collections.emptyList();
+        }
+
+        boolean alpha = image.getColorModel().hasAlpha();
+        MediaType type = alpha ? MediaType.IMAGE_PNG : MediaType.IMAGE_JPEG;
+        List<ProfilePictureVariant> result = new ArrayList<>();
+        int maxDimension = Math.max(image.getWidth(), image.getHeight());
+        BufferedImage source = image;
+        for (Integer size : sizes) {
+            if (size >= maxDimension) {
+                continue;
+            }
+            // Dimensions are always calculated from original image to avoid accumulation of rounding errors
+            int width = Math.max((int) Math.round((double) image.getWidth() * size / maxDimension), 1);
+            int height = Math.max((int) Math.round((double) image.getHeight() * size / maxDimension), 1);
+            source = scale(source, width, height, alpha);
+            result.add(ProfilePictureVariant.builder()
+                    .userId(picture.getUserId())
+                    .size(size)
+                    .data(encode(source, type))
+                    .type(type.toString())
+                    .build());
+        }
+        return result;
+    }
+
+    private BufferedImage decode(ProfilePicture picture) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(picture.getData()))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // Dimensions are read from image header; raster is not allocated until image is decoded
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    throw new ProfilePictureTooLargeException("Profile picture must not contain more than "
+                            + maxPixels + " pixels");
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scale(BufferedImage image, int width, int height, boolean alpha) {
+        BufferedImage result = image;
+        // Bilinear interpolation produces noticeable artifacts when image is scaled down by more than half at once
+        while (result.getWidth() != width || result.getHeight() != height) {
+            int stepWidth = Math.max(result.getWidth() / 2, width);
+            int stepHeight = Math.max(result.getHeight() / 2, height);
+            BufferedImage scaled = new BufferedImage(stepWidth, stepHeight,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                        RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(result, 0, 0, stepWidth, stepHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            result = scaled;
+        }
+        return result;
+    }
+
+    private byte[] encode(BufferedImage image, MediaType type) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            if (!ImageIO.write(image, type.getSubtype(), output)) {
+                throw new IllegalStateException("No image writer found for " + type);
+            }
+        } catch (IOException e) {
+            // Should never happen when writing to byte array
+            throw new IllegalStateException("Failed to encode profile picture variant", e);
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,17 @@
+package org.briarheart.orchestra.service;
+
+/**
+ * Exception indicating that dimensions of profile picture exceed allowed limit.
+ *
+ * @author Roman Chigvintsev
+ */
+public class ProfilePictureTooLargeException extends RuntimeException {
+    /**
+     * Creates new instance of this class with the given error message.
+     *
+     * @param message error message
+     */
+    public ProfilePictureTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,108 @@
+package org.briarheart.orchestra.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.briarheart.orchestra.model.Tag;
+import org.springframework.stereotype.Component;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * In-memory cache of tags. All tags of one user are cached together as immutable map of tags by their ids so that
+ * both list of user's tags and tag ownership checks are served by single cache entry. Number of users whose tags are
+ * cached is bounded; least recently used entries are evicted first. Entries also expire after short time since
+ * tags may be changed by other application instances.
+ * <p>
+ * Cached tags must not be modified; callers should return copies. Hit, miss and eviction statistics are published
+ * as "cache.*" metrics with "cache" tag set to "tags".
+ *
+ * @author Roman Chigvintsev
+ */
+@Component
+public class TagCache implements MeterBinder {
+    private static final String CACHE_NAME = "tags";
+    private static final long DEFAULT_MAX_SIZE = 10_000;
+    private static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(1);
+
+    private final Cache<Long, Map<Long, Tag>> cache;
+    private long generation;
+
+    public TagCache() {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Creates new instance of this class.
+     *
+     * @param maxSize    maximum number of users whose tags are cached
+     * @param timeToLive time after which cached tags are reloaded (must not be {@code null})
+     */
+    public TagCache(long maxSize, Duration timeToLive) {
+        Assert.notNull(timeToLive, "Time to live must not be null");
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(timeToLive)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns cached tags of user with the given id or loads them using the given loader when tags are not cached.
+     *
+     * @param userId id of user owning tags (must not be {@code null})
+     * @param loader loader of all tags of user (must not be {@code null})
+     * @return immutable map of tags by their ids in order returned by loader
+     */
+    public Mono<Map<Long, Tag>> get(Long userId, Supplier<Flux<Tag>> loader) {
+        Assert.notNull(userId, "User id must not be null");
+        Assert.notNull(loader, "Tag loader must not be null");
+        return Mono.defer(() -> {
+            Map<Long, Tag> tags = cache.getIfPresent(userId);
+            if (tags != null) {
+                return Mono.just(tags);
+            }
+            long loadGeneration = getGeneration();
+            return loader.get()
+                    .collect(ImmutableMap::<Long, Tag>builder, (builder, tag) -> builder.put(tag.getId(), tag))
+                    .<Map<Long, Tag>>map(ImmutableMap.Builder::build)
+                    .doOnNext(loadedTags -> put(userId, loadedTags, loadGeneration));
+        });
+    }
+
+    /**
+     * Removes cached tags of user with the given id. Should be called after any tag of user is created, updated or
+     * deleted.
+     *
+     * @param userId user id (must not be {@code null})
+     */
+    public synchronized void invalidate(Long userId) {
+        Assert.notNull(userId, "User id must not be null");
+        // Tags that are being loaded at the moment may already be stale so they must not get into cache
+        generation++;
+        cache.invalidate(userId);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        GuavaCacheMetrics.monitor(registry, cache, CACHE_NAME);
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    private synchronized void put(Long userId, Map<Long, Tag> tags, long loadGeneration) {
+        if (loadGeneration == generation) {
+            cache.put(userId, tags);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.briarheart.orchestra.service;
 
+import org.briarheart.orchestra.data.Cursor;
 import org.briarheart.orchestra.data.EntityAlreadyExistsException;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.model.Tag;
@@ -73,4 +74,17 @@ public interface TagService {
      * @throws EntityNotFoundException if tag is not found by id or does not belong to the given user
      */
     Flux<Task> getUncompletedTasks(Long tagId, User user, Pageable pageable);
+
+    /**
+     * Returns uncompleted tasks (either unprocessed or processed) for tag with the given id, belonging to the given
+     * user and following the given cursor. Only page size is taken from paging restriction; page number is ignored.
+     *
+     * @param tagId    tag id
+     * @param user     tag author (must not be {@code null})
+     * @param after    cursor pointing to the last task of the previous page or {@code null} to get the first page
+     * @param pageable paging restriction
+     * @return uncompleted tasks or empty stream when there is no task meeting the given criteria
+     * @throws EntityNotFoundException if tag is not found by id or does not belong to the given user
+     */
+    Flux<Task> getUncompletedTasks(Long tagId, User user, Cursor after, Pageable pageable);
 }
@@ -1,5 +1,6 @@
 package org.briarheart.orchestra.service;
 
+import org.briarheart.orchestra.data.Cursor;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.model.Task;
 import org.briarheart.orchestra.model.TaskList;
@@ -55,18 +56,20 @@ public interface TaskListService {
      *
      * @param id   task list id
      * @param user task list author (must not be {@code null})
+     * @return number of completed tasks
      * @throws EntityNotFoundException if task list is not found by id or does not belong to the given user
      */
-    Mono<Void> completeTaskList(Long id, User user) throws EntityNotFoundException;
+    Mono<Integer> completeTaskList(Long id, User user) throws EntityNotFoundException;
 
     /**
      * Deletes task list with the given id and belonging to the given user along with all tasks included in it.
      *
      * @param id   task list id
      * @param user task list author (must not be {@code null})
+     * @return number of deleted tasks
      * @throws EntityNotFoundException if task list is not found by id or does not belong to the given user
      */
-    Mono<Void> deleteTaskList(Long id, User user) throws EntityNotFoundException;
+    Mono<Integer> deleteTaskList(Long id, User user) throws EntityNotFoundException;
 
     /**
      * Returns tasks for task list with the given id and belonging to the given user.
@@ -79,6 +82,19 @@ public interface TaskListService {
      */
     Flux<Task> getTasks(Long taskListId, User user, Pageable pageable) throws EntityNotFoundException;
 
+    /**
+     * Returns tasks for task list with the given id, belonging to the given user and following the given cursor. Only
+     * page size is taken from paging restriction; page number is ignored.
+     *
+     * @param taskListId task list id
+     * @param user       task list author (must not be {@code null})
+     * @param after      cursor pointing to the last task of the previous page or {@code null} to get the first page
+     * @param pageable   paging restriction
+     * @return tasks from task list or empty stream when task list does not have any tasks
+     * @throws EntityNotFoundException if task list is not found by id or does not belong to the given user
+     */
+    Flux<Task> getTasks(Long taskListId, User user, Cursor after, Pageable pageable) throws EntityNotFoundException;
+
     /**
      * Assigns task with the given id to task list with the given id.
      *
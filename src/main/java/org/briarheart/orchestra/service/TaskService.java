@@ -1,6 +1,8 @@
 package org.briarheart.orchestra.service;
 
+import org.briarheart.orchestra.data.Cursor;
 import org.briarheart.orchestra.data.EntityNotFoundException;
+import org.briarheart.orchestra.data.ItemPage;
 import org.briarheart.orchestra.model.Tag;
 import org.briarheart.orchestra.model.Task;
 import org.briarheart.orchestra.model.TaskComment;
@@ -35,6 +37,26 @@ public interface TaskService {
      */
     Flux<Task> getUnprocessedTasks(User user, Pageable pageable);
 
+    /**
+     * Returns unprocessed tasks belonging to the given user and following the given cursor. Only page size is taken
+     * from paging restriction; page number is ignored.
+     *
+     * @param user     task author (must not be {@code null})
+     * @param after    cursor pointing to the last task of the previous page or {@code null} to get the first page
+     * @param pageable paging restriction
+     * @return unprocessed tasks or empty stream when there is no task meeting the given criteria
+     */
+    Flux<Task> getUnprocessedTasks(User user, Cursor after, Pageable pageable);
+
+    /**
+     * Returns page of unprocessed tasks belonging to the given user along with total number of such tasks.
+     *
+     * @param user     task author (must not be {@code null})
+     * @param pageable paging restriction
+     * @return page of unprocessed tasks with total number of unprocessed tasks
+     */
+    Mono<ItemPage<Task>> getUnprocessedTasksWithTotal(User user, Pageable pageable);
+
     /**
      * Returns number of all processed tasks belonging to the given user.
      *
@@ -52,6 +74,26 @@ public interface TaskService {
      */
     Flux<Task> getProcessedTasks(User user, Pageable pageable);
 
+    /**
+     * Returns processed tasks belonging to the given user and following the given cursor. Only page size is taken
+     * from paging restriction; page number is ignored.
+     *
+     * @param user     task author (must not be {@code null})
+     * @param after    cursor pointing to the last task of the previous page or {@code null} to get the first page
+     * @param pageable paging restriction
+     * @return processed tasks or empty stream when there is no task meeting the given criteria
+     */
+    Flux<Task> getProcessedTasks(User user, Cursor after, Pageable pageable);
+
+    /**
+     * Returns page of processed tasks belonging to the given user along with total number of such tasks.
+     *
+     * @param user     task author (must not be {@code null})
+     * @param pageable paging restriction
+     * @return page of processed tasks with total number of processed tasks
+     */
+    Mono<ItemPage<Task>> getProcessedTasksWithTotal(User user, Pageable pageable);
+
     /**
      * Returns number of processed tasks optionally falling within the given deadline bounds and belonging to the given
      * user. If deadline bounds are not specified this method returns number of processed tasks without deadline.
@@ -78,6 +120,40 @@ public interface TaskService {
                                  User user,
                                  Pageable pageable);
 
+    /**
+     * Returns processed tasks optionally falling within the given deadline bounds, belonging to the given user and
+     * following the given cursor. If deadline bounds are not specified this method returns processed tasks without
+     * deadline. Only page size is taken from paging restriction; page number is ignored.
+     *
+     * @param deadlineFrom optional deadline from bound
+     * @param deadlineTo   optional deadline to bound
+     * @param user         task author (must not be {@code null})
+     * @param after        cursor pointing to the last task of the previous page or {@code null} to get the first page
+     * @param pageable     paging restriction
+     * @return processed tasks or empty stream when there is no task meeting the given criteria
+     */
+    Flux<Task> getProcessedTasks(LocalDateTime deadlineFrom,
+                                 LocalDateTime deadlineTo,
+                                 User user,
+                                 Cursor after,
+                                 Pageable pageable);
+
+    /**
+     * Returns page of processed tasks optionally falling within the given deadline bounds and belonging to the given
+     * user along with total number of such tasks. If deadline bounds are not specified this method returns processed
+     * tasks without deadline.
+     *
+     * @param deadlineFrom optional deadline from bound
+     * @param deadlineTo   optional deadline to bound
+     * @param user         task author (must not be {@code null})
+     * @param pageable     paging restriction
+     * @return page of processed tasks with total number of tasks meeting the given criteria
+     */
+    Mono<ItemPage<Task>> getProcessedTasksWithTotal(LocalDateTime deadlineFrom,
+                                                    LocalDateTime deadlineTo,
+                                                    User user,
+                                                    Pageable pageable);
+
     /**
      * Returns number of all uncompleted tasks (either unprocessed or processed) belonging to the given user.
      *
@@ -95,6 +171,27 @@ public interface TaskService {
      */
     Flux<Task> getUncompletedTasks(User user, Pageable pageable);
 
+    /**
+     * Returns uncompleted tasks (either unprocessed or processed) belonging to the given user and following the given
+     * cursor. Only page size is taken from paging restriction; page number is ignored.
+     *
+     * @param user     task author (must not be {@code null})
+     * @param after    cursor pointing to the last task of the previous page or {@code null} to get the first page
+     * @param pageable paging restriction
+     * @return uncompleted tasks or empty stream when there is no task meeting the given criteria
+     */
+    Flux<Task> getUncompletedTasks(User user, Cursor after, Pageable pageable);
+
+    /**
+     * Returns page of uncompleted tasks (either unprocessed or processed) belonging to the given user along with
+     * total number of such tasks.
+     *
+     * @param user     task author (must not be {@code null})
+     * @param pageable paging restriction
+     * @return page of uncompleted tasks with total number of uncompleted tasks
+     */
+    Mono<ItemPage<Task>> getUncompletedTasksWithTotal(User user, Pageable pageable);
+
     /**
      * Returns task with the given id and belonging to the given user.
      *
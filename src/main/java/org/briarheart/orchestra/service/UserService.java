@@ -45,7 +45,42 @@ public interface UserService {
     Mono<ProfilePicture> getProfilePicture(Long userId) throws EntityNotFoundException;
 
     /**
-     * Creates new or updates existing profile picture.
+     * Returns profile picture associated with user with the given id without picture data. Can be used to check
+     * whether profile picture is changed without loading its content.
+     *
+     * @param userId user id
+     * @return profile picture without data
+     * @throws EntityNotFoundException if profile picture is not found by user id
+     */
+    Mono<ProfilePicture> getProfilePictureWithoutData(Long userId) throws EntityNotFoundException;
+
+    /**
+     * Returns profile picture of the given size associated with user with the given id without picture data. Hash
+     * and type are taken from cached picture when picture is cached; otherwise they are loaded without picture
+     * content. Returned picture contains hash of original picture content.
+     *
+     * @param userId user id
+     * @param size   optional desired profile picture size
+     * @return profile picture without data
+     * @throws EntityNotFoundException if profile picture is not found by user id
+     */
+    Mono<ProfilePicture> getProfilePictureWithoutData(Long userId, Integer size) throws EntityNotFoundException;
+
+    /**
+     * Returns the smallest variant of profile picture associated with user with the given id which is not smaller
+     * than the given size. Original profile picture is returned when there is no such variant or size is not
+     * specified. Returned picture always contains hash of original picture content.
+     *
+     * @param userId user id
+     * @param size   optional desired profile picture size
+     * @return profile picture variant or original profile picture
+     * @throws EntityNotFoundException if user is not found by id
+     */
+    Mono<ProfilePicture> getProfilePicture(Long userId, Integer size) throws EntityNotFoundException;
+
+    /**
+     * Creates new or updates existing profile picture. Variants of profile picture are recreated as well. Hash of
+     * picture content is calculated and assigned to the given profile picture.
      *
      * @param picture profile picture to be created/updated (must not be {@code null})
      * @return created/updated profile picture
@@ -0,0 +1,65 @@
+package org.briarheart.orchestra.util;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+
+/**
+ * Utility class that detects image type by signature bytes at the beginning of image content.
+ *
+ * @author Roman Chigvintsev
+ */
+public class ImageTypes {
+    public static final MediaType IMAGE_WEBP = MediaType.valueOf("image/webp");
+    /**
+     * Number of bytes at the beginning of image content that is enough to detect type of any supported image.
+     */
+    public static final int MAX_SIGNATURE_LENGTH = 12;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+    private static final byte[] JPEG_SIGNATURE = {(byte) 0xff, (byte) 0xd8, (byte) 0xff};
+    private static final byte[] GIF87A_SIGNATURE = {'G', 'I', 'F', '8', '7', 'a'};
+    private static final byte[] GIF89A_SIGNATURE = {'G', 'I', 'F', '8', '9', 'a'};
+    private static final byte[] RIFF_SIGNATURE = {'R', 'I', 'F', 'F'};
+    private static final byte[] WEBP_SIGNATURE = {'W', 'E', 'B', 'P'};
+
+    private ImageTypes() {
+        //no instance
+    }
+
+    /**
+     * Detects type of image contained in the given buffer. Buffer read position is not changed.
+     *
+     * @param content image content (must not be {@code null})
+     * @return image type or {@code null} if content does not start with signature of any supported image type
+     */
+    public static MediaType detect(DataBuffer content) {
+        Assert.notNull(content, "Image content must not be null");
+        if (startsWith(content, 0, PNG_SIGNATURE)) {
+            return MediaType.IMAGE_PNG;
+        }
+        if (startsWith(content, 0, JPEG_SIGNATURE)) {
+            return MediaType.IMAGE_JPEG;
+        }
+        if (startsWith(content, 0, GIF87A_SIGNATURE) || startsWith(content, 0, GIF89A_SIGNATURE)) {
+            return MediaType.IMAGE_GIF;
+        }
+        if (startsWith(content, 0, RIFF_SIGNATURE) && startsWith(content, 8, WEBP_SIGNATURE)) {
+            return IMAGE_WEBP;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(DataBuffer content, int offset, byte[] signature) {
+        if (content.readableByteCount() < offset + signature.length) {
+            return false;
+        }
+        int start = content.readPosition() + offset;
+        for (int i = 0; i < signature.length; i++) {
+            if (content.getByte(start + i) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,11 @@
+-- noinspection SqlResolveForFile
+CREATE INDEX idx_task_user_id_status_created_at ON task (user_id, status, created_at, id);
+CREATE INDEX idx_task_user_id_status_deadline ON task (user_id, status, deadline);
+CREATE INDEX idx_task_task_list_id_user_id_created_at ON task (task_list_id, user_id, created_at, id);
+CREATE INDEX idx_task_comment_task_id_created_at ON task_comment (task_id, created_at);
+CREATE INDEX idx_tasks_tags_tag_id ON tasks_tags (tag_id);
+CREATE INDEX idx_tag_user_id ON tag (user_id);
+CREATE INDEX idx_task_list_user_id_completed ON task_list (user_id, completed);
+CREATE INDEX idx_email_confirmation_token_user_id_token_value ON email_confirmation_token (user_id, token_value);
+CREATE INDEX idx_password_reset_confirmation_token_user_id_token_value
+    ON password_reset_confirmation_token (user_id, token_value);
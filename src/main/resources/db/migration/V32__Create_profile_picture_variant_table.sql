@@ -0,0 +1,10 @@
+-- noinspection SqlResolve
+CREATE TABLE profile_picture_variant (
+  user_id BIGINT NOT NULL,
+  size INTEGER NOT NULL,
+  data BYTEA NOT NULL,
+  type VARCHAR(20),
+  PRIMARY KEY (user_id, size),
+  CONSTRAINT fk_profile_picture_variant_profile_picture FOREIGN KEY (user_id) REFERENCES profile_picture(user_id)
+    ON DELETE CASCADE
+)
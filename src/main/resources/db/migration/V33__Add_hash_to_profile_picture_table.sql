@@ -0,0 +1,2 @@
+-- noinspection SqlResolve
+ALTER TABLE profile_picture ADD COLUMN hash VARCHAR(64)
@@ -0,0 +1,8 @@
+-- noinspection SqlResolveForFile
+CREATE TABLE revoked_access_token (
+  token_id VARCHAR(50) PRIMARY KEY,
+  revoked_at TIMESTAMP NOT NULL,
+  expires_at TIMESTAMP NOT NULL
+);
+CREATE INDEX idx_revoked_access_token_revoked_at ON revoked_access_token (revoked_at);
+CREATE INDEX idx_revoked_access_token_expires_at ON revoked_access_token (expires_at);
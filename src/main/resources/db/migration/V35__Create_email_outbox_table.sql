@@ -0,0 +1,15 @@
+-- noinspection SqlResolveForFile
+CREATE TABLE email_outbox (
+  id BIGSERIAL PRIMARY KEY,
+  recipient VARCHAR(255) NOT NULL,
+  subject VARCHAR(1000) NOT NULL,
+  text TEXT NOT NULL,
+  status VARCHAR(20) NOT NULL,
+  attempts INTEGER NOT NULL DEFAULT 0,
+  created_at TIMESTAMP NOT NULL,
+  next_attempt_at TIMESTAMP NOT NULL,
+  claim_token VARCHAR(50),
+  last_error VARCHAR(2000)
+);
+CREATE INDEX idx_email_outbox_status_next_attempt_at ON email_outbox (status, next_attempt_at);
+CREATE INDEX idx_email_outbox_claim_token ON email_outbox (claim_token);
@@ -0,0 +1,4 @@
+-- noinspection SqlResolveForFile
+CREATE INDEX idx_email_confirmation_token_expires_at ON email_confirmation_token (expires_at);
+CREATE INDEX idx_password_reset_confirmation_token_expires_at ON password_reset_confirmation_token (expires_at);
+CREATE INDEX idx_password_reset_confirmation_token_valid ON password_reset_confirmation_token (valid);
@@ -0,0 +1,3 @@
+-- noinspection SqlResolveForFile
+ALTER TABLE email_confirmation_token ADD token_hash VARCHAR(64);
+ALTER TABLE password_reset_confirmation_token ADD token_hash VARCHAR(64);
@@ -0,0 +1,10 @@
+-- noinspection SqlResolveForFile
+ALTER TABLE email_confirmation_token ALTER COLUMN token_hash SET NOT NULL;
+CREATE UNIQUE INDEX idx_email_confirmation_token_token_hash ON email_confirmation_token (token_hash);
+DROP INDEX idx_email_confirmation_token_user_id_token_value;
+ALTER TABLE email_confirmation_token DROP COLUMN token_value;
+
+ALTER TABLE password_reset_confirmation_token ALTER COLUMN token_hash SET NOT NULL;
+CREATE UNIQUE INDEX idx_password_reset_confirmation_token_token_hash ON password_reset_confirmation_token (token_hash);
+DROP INDEX idx_password_reset_confirmation_token_user_id_token_value;
+ALTER TABLE password_reset_confirmation_token DROP COLUMN token_value;
@@ -0,0 +1,5 @@
+-- noinspection SqlResolveForFile
+-- Completed tasks usually make up the most part of task table and are never shown in uncompleted task listings,
+-- so partial index keeps these listings independent of the number of completed tasks. H2 used in tests does not
+-- support partial indexes, that is why this migration is applied to PostgreSQL only.
+CREATE INDEX idx_task_user_id_created_at_uncompleted ON task (user_id, created_at, id) WHERE status <> 'COMPLETED';
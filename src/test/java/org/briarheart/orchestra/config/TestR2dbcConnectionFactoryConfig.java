@@ -1,6 +1,7 @@
 package org.briarheart.orchestra.config;
 
 import io.r2dbc.h2.CustomH2ConnectionFactory;
+import io.r2dbc.h2.H2ConnectionOption;
 import io.r2dbc.h2.codecs.CustomCodecs;
 import io.r2dbc.h2.codecs.EnumCodec;
 import io.r2dbc.spi.ConnectionFactory;
@@ -8,6 +9,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Roman Chigvintsev
@@ -17,6 +19,7 @@ public class TestR2dbcConnectionFactoryConfig {
     @Bean
     public ConnectionFactory connectionFactory() {
         return CustomH2ConnectionFactory.inMemory("testdb")
+                .withProperties(Map.of(H2ConnectionOption.MODE, "PostgreSQL"))
                 .withCodecsProvider(client -> new CustomCodecs(client, List.of(new EnumCodec())))
                 .build();
     }
@@ -0,0 +1,92 @@
+package org.briarheart.orchestra.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.briarheart.orchestra.data.UserRepository;
+import org.briarheart.orchestra.model.User;
+import org.briarheart.orchestra.security.oauth2.core.userdetails.DatabaseReactiveUserDetailsService;
+import org.briarheart.orchestra.security.oauth2.core.userdetails.UserDetailsCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.crypto.password.MessageDigestPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class WebSecurityConfigTest {
+    private static final String EMAIL = "alice@mail.com";
+    private static final String PASSWORD = "secret";
+
+    private PasswordEncoder passwordEncoder;
+    private UserRepository userRepository;
+    private UserDetailsRepositoryReactiveAuthenticationManager authenticationManager;
+
+    @BeforeEach
+    void setUp() {
+        ApplicationSecurityProperties securityProperties = new ApplicationSecurityProperties();
+        securityProperties.getPasswordHashing().setBcryptStrength(4);
+        passwordEncoder = new WebSecurityConfig(securityProperties).passwordEncoder();
+
+        userRepository = mock(UserRepository.class);
+        UserDetailsCache userDetailsCache = new UserDetailsCache(Duration.ofMinutes(1), 100,
+                new SimpleMeterRegistry());
+        DatabaseReactiveUserDetailsService userDetailsService = new DatabaseReactiveUserDetailsService(userRepository,
+                userDetailsCache);
+        authenticationManager = new UserDetailsRepositoryReactiveAuthenticationManager(userDetailsService);
+        authenticationManager.setPasswordEncoder(passwordEncoder);
+        authenticationManager.setUserDetailsPasswordService(userDetailsService);
+    }
+
+    @Test
+    void shouldAuthenticateUserWithNoopPasswordHashAndUpgradeItToBCrypt() {
+        assertPasswordHashIsUpgraded("{noop}" + PASSWORD);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void shouldAuthenticateUserWithMd5PasswordHashAndUpgradeItToBCrypt() {
+        assertPasswordHashIsUpgraded("{MD5}" + new MessageDigestPasswordEncoder("MD5").encode(PASSWORD));
+    }
+
+    @Test
+    void shouldNotUpgradeBCryptPasswordHash() {
+        String passwordHash = passwordEncoder.encode(PASSWORD);
+        User user = User.builder().id(1L).email(EMAIL).password(passwordHash).build();
+        when(userRepository.findByEmailWithAuthorities(EMAIL)).thenReturn(Mono.just(user));
+
+        Authentication result = authenticationManager
+                .authenticate(new UsernamePasswordAuthenticationToken(EMAIL, PASSWORD))
+                .block();
+        assertNotNull(result);
+        verify(userRepository, never()).updatePassword(anyLong(), anyString(), anyString());
+    }
+
+    private void assertPasswordHashIsUpgraded(String passwordHash) {
+        User user = User.builder().id(1L).email(EMAIL).password(passwordHash).build();
+        when(userRepository.findByEmailWithAuthorities(EMAIL)).thenReturn(Mono.just(user));
+        when(userRepository.updatePassword(eq(1L), eq(passwordHash), anyString())).thenReturn(Mono.just(1));
+
+        Authentication result = authenticationManager
+                .authenticate(new UsernamePasswordAuthenticationToken(EMAIL, PASSWORD))
+                .block();
+        assertNotNull(result);
+        assertTrue(result.isAuthenticated());
+
+        ArgumentCaptor<String> newPasswordHash = ArgumentCaptor.forClass(String.class);
+        verify(userRepository).updatePassword(eq(1L), eq(passwordHash), newPasswordHash.capture());
+        assertTrue(newPasswordHash.getValue().startsWith("{bcrypt}"));
+        assertTrue(passwordEncoder.matches(PASSWORD, newPasswordHash.getValue()));
+    }
+}
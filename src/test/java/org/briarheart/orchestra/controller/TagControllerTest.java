@@ -1,6 +1,7 @@
 package org.briarheart.orchestra.controller;
 
 import org.briarheart.orchestra.config.PermitAllSecurityConfig;
+import org.briarheart.orchestra.data.Cursor;
 import org.briarheart.orchestra.data.EntityAlreadyExistsException;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.model.Tag;
@@ -15,6 +16,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
@@ -22,6 +24,7 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
 import java.util.Locale;
 
 import static org.mockito.ArgumentMatchers.*;
@@ -122,6 +125,30 @@ class TagControllerTest {
                 .expectBody(Task[].class).isEqualTo(new Task[]{task});
     }
 
+    @Test
+    void shouldReturnUncompletedTasksForTagInCursorMode() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        Task task = Task.builder()
+                .id(2L)
+                .userId(user.getId())
+                .title("Test task")
+                .createdAt(LocalDateTime.parse("2020-01-10T00:00:00"))
+                .build();
+        long tagId = 3L;
+        when(tagService.getUncompletedTasks(tagId, user, null, PageRequest.of(0, 20))).thenReturn(Flux.just(task));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/tags/" + tagId + "/tasks/uncompleted?after=")
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo(task.getId())
+                .jsonPath("$.next").doesNotExist();
+    }
+
     @Test
     void shouldCreateTag() {
         User user = User.builder().id(1L).email("alice@mail.com").build();
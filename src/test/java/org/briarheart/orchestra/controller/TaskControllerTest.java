@@ -1,7 +1,9 @@
 package org.briarheart.orchestra.controller;
 
 import org.briarheart.orchestra.config.PermitAllSecurityConfig;
+import org.briarheart.orchestra.data.Cursor;
 import org.briarheart.orchestra.data.EntityNotFoundException;
+import org.briarheart.orchestra.data.ItemPage;
 import org.briarheart.orchestra.model.*;
 import org.briarheart.orchestra.service.TaskService;
 import org.junit.jupiter.api.AfterAll;
@@ -24,6 +26,7 @@ import reactor.core.publisher.Mono;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
 import java.util.Locale;
 
 import static org.mockito.ArgumentMatchers.*;
@@ -230,6 +233,192 @@ class TaskControllerTest {
                 .expectBody(Task[].class).isEqualTo(new Task[]{task});
     }
 
+    @Test
+    void shouldReturnFirstPageOfUnprocessedTasksInCursorMode() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        Task task = Task.builder()
+                .id(2L)
+                .userId(user.getId())
+                .title("Test task")
+                .createdAt(LocalDateTime.parse("2020-01-10T00:00:00", DateTimeFormatter.ISO_DATE_TIME))
+                .build();
+        when(taskService.getUnprocessedTasks(user, null, PageRequest.of(0, 1))).thenReturn(Flux.just(task));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/tasks/unprocessed?after=&size=1")
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo(task.getId())
+                .jsonPath("$.next").isEqualTo(Cursor.of(task).encode());
+    }
+
+    @Test
+    void shouldReturnLastPageOfUnprocessedTasksInCursorMode() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        Cursor cursor = new Cursor(LocalDateTime.parse("2020-01-10T00:00:00", DateTimeFormatter.ISO_DATE_TIME), 1L);
+        Task task = Task.builder()
+                .id(2L)
+                .userId(user.getId())
+                .title("Test task")
+                .createdAt(cursor.getCreatedAt())
+                .build();
+        when(taskService.getUnprocessedTasks(user, cursor, PageRequest.of(0, 20))).thenReturn(Flux.just(task));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/tasks/unprocessed?after=" + cursor.encode())
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo(task.getId())
+                .jsonPath("$.next").doesNotExist();
+    }
+
+    @Test
+    void shouldRejectTaskListingInCursorModeWhenCursorIsNotValid() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/tasks/uncompleted?after=invalid")
+                .exchange()
+
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void shouldReturnProcessedTasksWithDeadlineInCursorMode() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        LocalDateTime deadlineTo = LocalDateTime.parse("2020-01-31T23:59", DateTimeFormatter.ISO_DATE_TIME);
+        Cursor cursor = new Cursor(LocalDateTime.parse("2020-01-10T00:00:00", DateTimeFormatter.ISO_DATE_TIME), 1L);
+        Task task = Task.builder()
+                .id(2L)
+                .userId(user.getId())
+                .title("Test task")
+                .status(TaskStatus.PROCESSED)
+                .createdAt(cursor.getCreatedAt())
+                .deadline(deadlineTo)
+                .build();
+        when(taskService.getProcessedTasks(null, deadlineTo, user, cursor, PageRequest.of(0, 20)))
+                .thenReturn(Flux.just(task));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/tasks/processed?deadlineTo=2020-01-31T23:59&after=" + cursor.encode())
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo(task.getId());
+    }
+
+    @Test
+    void shouldReturnUncompletedTasksInCursorMode() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        Task task = Task.builder().id(2L).userId(user.getId()).title("Test task").build();
+        when(taskService.getUncompletedTasks(user, null, PageRequest.of(0, 20))).thenReturn(Flux.just(task));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/tasks/uncompleted?after=")
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo(task.getId());
+    }
+
+    @Test
+    void shouldReturnUnprocessedTasksWithTotal() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        Task task = Task.builder().id(2L).userId(user.getId()).title("Test task").build();
+        when(taskService.getUnprocessedTasksWithTotal(user, PageRequest.of(0, 20)))
+                .thenReturn(Mono.just(ItemPage.of(List.of(task), 1L)));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/tasks/unprocessed?withTotal=true")
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo(task.getId())
+                .jsonPath("$.total").isEqualTo(1)
+                .jsonPath("$.next").doesNotExist();
+    }
+
+    @Test
+    void shouldReturnProcessedTasksWithDeadlineWithTotal() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        LocalDateTime deadlineFrom = LocalDateTime.parse("2020-01-01T00:00", DateTimeFormatter.ISO_DATE_TIME);
+        Task task = Task.builder()
+                .id(2L)
+                .userId(user.getId())
+                .title("Test task")
+                .status(TaskStatus.PROCESSED)
+                .deadline(deadlineFrom.plus(1, ChronoUnit.DAYS))
+                .build();
+        when(taskService.getProcessedTasksWithTotal(deadlineFrom, null, user, PageRequest.of(0, 20)))
+                .thenReturn(Mono.just(ItemPage.of(List.of(task), 1L)));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/tasks/processed?deadlineFrom=2020-01-01T00:00&withTotal=true")
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo(task.getId())
+                .jsonPath("$.total").isEqualTo(1);
+    }
+
+    @Test
+    void shouldReturnUncompletedTasksWithTotal() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        Task task = Task.builder().id(2L).userId(user.getId()).title("Test task").build();
+        when(taskService.getUncompletedTasksWithTotal(user, PageRequest.of(0, 20)))
+                .thenReturn(Mono.just(ItemPage.of(List.of(task), 1L)));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/tasks/uncompleted?withTotal=true")
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo(task.getId())
+                .jsonPath("$.total").isEqualTo(1);
+    }
+
+    @Test
+    void shouldPreferCursorModeWhenTotalIsRequestedAlongWithCursor() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        Task task = Task.builder().id(2L).userId(user.getId()).title("Test task").build();
+        when(taskService.getUncompletedTasks(user, null, PageRequest.of(0, 20))).thenReturn(Flux.just(task));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/tasks/uncompleted?after=&withTotal=true")
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo(task.getId())
+                .jsonPath("$.total").doesNotExist();
+    }
+
     @Test
     void shouldReturnNumberOfAllUncompletedTasks() {
         User user = User.builder().id(1L).email("alice@mail.com").build();
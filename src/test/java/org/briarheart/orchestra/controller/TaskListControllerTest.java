@@ -1,6 +1,7 @@
 package org.briarheart.orchestra.controller;
 
 import org.briarheart.orchestra.config.PermitAllSecurityConfig;
+import org.briarheart.orchestra.data.Cursor;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.model.Task;
 import org.briarheart.orchestra.model.TaskList;
@@ -22,6 +23,7 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
 import java.util.Locale;
 
 import static org.mockito.ArgumentMatchers.any;
@@ -203,13 +205,14 @@ class TaskListControllerTest {
         Authentication authenticationMock = createAuthentication(user);
 
         long taskListId = 2L;
-        when(taskListService.completeTaskList(taskListId, user)).thenReturn(Mono.empty());
+        when(taskListService.completeTaskList(taskListId, user)).thenReturn(Mono.just(3));
 
         testClient.mutateWith(mockAuthentication(authenticationMock)).mutateWith(csrf())
                 .put().uri("/v1/task-lists/completed/" + taskListId)
                 .exchange()
 
-                .expectStatus().isNoContent();
+                .expectStatus().isOk()
+                .expectBody(Integer.class).isEqualTo(3);
         verify(taskListService, times(1)).completeTaskList(taskListId, user);
     }
 
@@ -219,11 +222,12 @@ class TaskListControllerTest {
         Authentication authenticationMock = createAuthentication(user);
 
         long taskListId = 2L;
-        when(taskListService.deleteTaskList(taskListId, user)).thenReturn(Mono.empty());
+        when(taskListService.deleteTaskList(taskListId, user)).thenReturn(Mono.just(3));
 
         testClient.mutateWith(mockAuthentication(authenticationMock)).mutateWith(csrf()).delete()
                 .uri("/v1/task-lists/" + taskListId).exchange()
-                .expectStatus().isNoContent();
+                .expectStatus().isOk()
+                .expectBody(Integer.class).isEqualTo(3);
         verify(taskListService, times(1)).deleteTaskList(taskListId, user);
     }
 
@@ -244,6 +248,32 @@ class TaskListControllerTest {
                 .expectBody(Task[].class).isEqualTo(new Task[]{task});
     }
 
+    @Test
+    void shouldReturnTasksForTaskListInCursorMode() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        Task task = Task.builder()
+                .id(2L)
+                .userId(user.getId())
+                .taskListId(3L)
+                .title("Test task")
+                .createdAt(LocalDateTime.parse("2020-01-10T00:00:00"))
+                .build();
+        Cursor cursor = new Cursor(task.getCreatedAt(), 1L);
+        when(taskListService.getTasks(task.getTaskListId(), user, cursor, PageRequest.of(0, 1)))
+                .thenReturn(Flux.just(task));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/task-lists/" + task.getTaskListId() + "/tasks?after=" + cursor.encode() + "&size=1")
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.items[0].id").isEqualTo(task.getId())
+                .jsonPath("$.next").isEqualTo(Cursor.of(task).encode());
+    }
+
     @Test
     void shouldAddTaskToTaskList() {
         User user = User.builder().id(1L).email("alice@mail.com").build();
@@ -13,6 +13,7 @@ import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
 import org.springframework.http.*;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.test.context.ActiveProfiles;
@@ -101,6 +102,7 @@ class UserControllerIntegrationTest {
 
     public static class TestJavaMailSenderConfiguration {
         @Bean
+        @Primary
         public JavaMailSender javaMailSender() {
             return mock(JavaMailSender.class);
         }
@@ -1,5 +1,6 @@
 package org.briarheart.orchestra.controller;
 
+import org.briarheart.orchestra.config.ApplicationProfilePictureProperties;
 import org.briarheart.orchestra.config.I18nConfig;
 import org.briarheart.orchestra.config.PermitAllSecurityConfig;
 import org.briarheart.orchestra.data.EntityNotFoundException;
@@ -8,6 +9,7 @@ import org.briarheart.orchestra.model.User;
 import org.briarheart.orchestra.service.EmailConfirmationService;
 import org.briarheart.orchestra.service.InvalidPasswordException;
 import org.briarheart.orchestra.service.PasswordService;
+import org.briarheart.orchestra.service.ProfilePictureTooLargeException;
 import org.briarheart.orchestra.service.UserService;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -18,14 +20,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.context.support.MessageSourceAccessor;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.MultipartBodyBuilder;
 import org.springframework.security.core.Authentication;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.util.MultiValueMap;
+import org.springframework.util.unit.DataSize;
 import reactor.core.publisher.Mono;
 
 import java.util.ArrayList;
@@ -35,6 +41,7 @@ import java.util.Locale;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.security.test.web.reactive.server.SecurityMockServerConfigurers.csrf;
@@ -45,7 +52,7 @@ import static org.springframework.security.test.web.reactive.server.SecurityMock
  */
 @ExtendWith(SpringExtension.class)
 @WebFluxTest(UserController.class)
-@Import({PermitAllSecurityConfig.class, I18nConfig.class})
+@Import({PermitAllSecurityConfig.class, I18nConfig.class, ApplicationProfilePictureProperties.class})
 class UserControllerTest {
     private static final Locale DEFAULT_LOCALE = Locale.getDefault();
     private static final String TEST_JPEG = "/9j/4AAQSkZJRgABAQEAeAB4AAD/4QAiRXhpZgAATU0AKgAAAAgAAQESAAMAAAABAAEAAAAAA"
@@ -87,10 +94,19 @@ class UserControllerTest {
     @Test
     void shouldThrowExceptionOnConstructWhenMessageSourceAccessorIsNull() {
         IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
-                () -> new UserController(userService, emailConfirmationService, passwordService, null));
+                () -> new UserController(userService, emailConfirmationService, passwordService, null,
+                        new ApplicationProfilePictureProperties()));
         assertEquals("Message source accessor must not be null", e.getMessage());
     }
 
+    @Test
+    void shouldThrowExceptionOnConstructWhenProfilePicturePropertiesAreNull() {
+        MessageSourceAccessor messages = mock(MessageSourceAccessor.class);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new UserController(userService, emailConfirmationService, passwordService, messages, null));
+        assertEquals("Profile picture properties must not be null", e.getMessage());
+    }
+
     @Test
     void shouldCreateUser() {
         User user = User.builder().email("alice@mail.com").password("secret").fullName("Alice").build();
@@ -242,7 +258,8 @@ class UserControllerTest {
                 .data(Base64.getDecoder().decode(TEST_JPEG))
                 .type(MediaType.IMAGE_JPEG.toString())
                 .build();
-        when(userService.getProfilePicture(user.getId())).thenReturn(Mono.just(profilePicture));
+        when(userService.getProfilePictureWithoutData(user.getId(), null)).thenReturn(Mono.just(profilePicture));
+        when(userService.getProfilePicture(user.getId(), null)).thenReturn(Mono.just(profilePicture));
 
         testClient.mutateWith(mockAuthentication(authenticationMock))
                 .get().uri("/v1/users/{userId}/profile-picture", user.getId())
@@ -253,13 +270,123 @@ class UserControllerTest {
                 .expectBody(byte[].class).isEqualTo(profilePicture.getData());
     }
 
+    @Test
+    void shouldReturnProfilePictureWithETag() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        ProfilePicture profilePicture = ProfilePicture.builder()
+                .userId(user.getId())
+                .data(Base64.getDecoder().decode(TEST_JPEG))
+                .type(MediaType.IMAGE_JPEG.toString())
+                .hash("abc")
+                .build();
+        when(userService.getProfilePictureWithoutData(user.getId(), null)).thenReturn(Mono.just(profilePicture));
+        when(userService.getProfilePicture(user.getId(), null)).thenReturn(Mono.just(profilePicture));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/users/{userId}/profile-picture", user.getId())
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"abc\"")
+                .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "no-cache, private");
+    }
+
+    @Test
+    void shouldReturnNotModifiedStatusCodeWhenProfilePictureETagMatches() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        ProfilePicture profilePicture = ProfilePicture.builder()
+                .userId(user.getId())
+                .type(MediaType.IMAGE_JPEG.toString())
+                .hash("abc")
+                .build();
+        when(userService.getProfilePictureWithoutData(user.getId(), 64)).thenReturn(Mono.just(profilePicture));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/users/{userId}/profile-picture?size=64", user.getId())
+                .header(HttpHeaders.IF_NONE_MATCH, "\"abc-64\"")
+                .exchange()
+
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"abc-64\"");
+        verify(userService, never()).getProfilePicture(anyLong(), any());
+    }
+
+    @Test
+    void shouldReturnETagOfVariantServedForRequestedSize() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        ProfilePicture profilePicture = ProfilePicture.builder()
+                .userId(user.getId())
+                .data(Base64.getDecoder().decode(TEST_JPEG))
+                .type(MediaType.IMAGE_JPEG.toString())
+                .hash("abc")
+                .build();
+        when(userService.getProfilePictureWithoutData(user.getId(), 48)).thenReturn(Mono.just(profilePicture));
+        when(userService.getProfilePicture(user.getId(), 48)).thenReturn(Mono.just(profilePicture));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/users/{userId}/profile-picture?size=48", user.getId())
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"abc-64\"");
+    }
+
+    @Test
+    void shouldAllowToCacheProfilePictureForeverWhenVersionMatchesHash() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        ProfilePicture profilePicture = ProfilePicture.builder()
+                .userId(user.getId())
+                .data(Base64.getDecoder().decode(TEST_JPEG))
+                .type(MediaType.IMAGE_JPEG.toString())
+                .hash("abc")
+                .build();
+        when(userService.getProfilePictureWithoutData(user.getId(), null)).thenReturn(Mono.just(profilePicture));
+        when(userService.getProfilePicture(user.getId(), null)).thenReturn(Mono.just(profilePicture));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/users/{userId}/profile-picture?v=abc", user.getId())
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.CACHE_CONTROL, "max-age=31536000, private, immutable");
+    }
+
+    @Test
+    void shouldReturnProfilePictureOfRequestedSize() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        ProfilePicture profilePicture = ProfilePicture.builder()
+                .userId(user.getId())
+                .data(Base64.getDecoder().decode(TEST_JPEG))
+                .type(MediaType.IMAGE_JPEG.toString())
+                .build();
+        when(userService.getProfilePictureWithoutData(user.getId(), 64)).thenReturn(Mono.just(profilePicture));
+        when(userService.getProfilePicture(user.getId(), 64)).thenReturn(Mono.just(profilePicture));
+
+        testClient.mutateWith(mockAuthentication(authenticationMock))
+                .get().uri("/v1/users/{userId}/profile-picture?size=64", user.getId())
+                .exchange()
+
+                .expectStatus().isOk()
+                .expectBody(byte[].class).isEqualTo(profilePicture.getData());
+    }
+
     @Test
     void shouldReturnNotFoundStatusCodeWhenProfilePictureIsNotFound() {
         User user = User.builder().id(1L).email("alice@mail.com").build();
         Authentication authenticationMock = createAuthentication(user);
 
         String errorMessage = "Image is not found";
-        when(userService.getProfilePicture(user.getId()))
+        when(userService.getProfilePictureWithoutData(user.getId(), null))
                 .thenReturn(Mono.error(new EntityNotFoundException(errorMessage)));
 
         testClient.mutateWith(mockAuthentication(authenticationMock)).get()
@@ -297,11 +424,59 @@ class UserControllerTest {
         User user = User.builder().id(1L).email("alice@mail.com").build();
         Authentication authenticationMock = createAuthentication(user);
 
+        when(userService.saveProfilePicture(any(ProfilePicture.class))).thenAnswer(args -> {
+            ProfilePicture picture = args.getArgument(0);
+            picture.setHash("abc");
+            return Mono.just(picture);
+        });
+
+        MultipartBodyBuilder multipartBodyBuilder = new MultipartBodyBuilder();
+        multipartBodyBuilder.part("profilePicture", new ByteArrayResource(Base64.getDecoder().decode(TEST_JPEG)))
+                .filename("test.jpg")
+                .contentType(MediaType.IMAGE_JPEG);
+        MultiValueMap<String, HttpEntity<?>> form = multipartBodyBuilder.build();
+
+        testClient.mutateWith(mockAuthentication(authenticationMock)).mutateWith(csrf())
+                .put().uri("/v1/users/{userId}/profile-picture", user.getId())
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(form)
+                .exchange();
+
+        assertEquals("/v1/users/" + user.getId() + "/profile-picture?v=abc", user.getProfilePictureUrl());
+    }
+
+    @Test
+    void shouldDetectProfilePictureTypeByContent() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
         when(userService.saveProfilePicture(any(ProfilePicture.class)))
                 .thenAnswer(args -> Mono.just(args.getArgument(0)));
 
         MultipartBodyBuilder multipartBodyBuilder = new MultipartBodyBuilder();
         multipartBodyBuilder.part("profilePicture", new ByteArrayResource(Base64.getDecoder().decode(TEST_JPEG)))
+                .filename("test.png")
+                .contentType(MediaType.IMAGE_PNG);
+        MultiValueMap<String, HttpEntity<?>> form = multipartBodyBuilder.build();
+
+        testClient.mutateWith(mockAuthentication(authenticationMock)).mutateWith(csrf())
+                .put().uri("/v1/users/{userId}/profile-picture", user.getId())
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(form)
+                .exchange()
+
+                .expectStatus().isNoContent();
+        verify(userService).saveProfilePicture(argThat(picture ->
+                MediaType.IMAGE_JPEG_VALUE.equals(picture.getType())));
+    }
+
+    @Test
+    void shouldReturnUnsupportedMediaTypeStatusCodeWhenProfilePictureIsNotImage() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        MultipartBodyBuilder multipartBodyBuilder = new MultipartBodyBuilder();
+        multipartBodyBuilder.part("profilePicture", new ByteArrayResource("Not an image".getBytes()))
                 .filename("test.jpg")
                 .contentType(MediaType.IMAGE_JPEG);
         MultiValueMap<String, HttpEntity<?>> form = multipartBodyBuilder.build();
@@ -310,9 +485,80 @@ class UserControllerTest {
                 .put().uri("/v1/users/{userId}/profile-picture", user.getId())
                 .contentType(MediaType.MULTIPART_FORM_DATA)
                 .bodyValue(form)
-                .exchange();
+                .exchange()
+
+                .expectStatus().isEqualTo(HttpStatus.UNSUPPORTED_MEDIA_TYPE);
+        verify(userService, never()).saveProfilePicture(any());
+    }
+
+    @Test
+    void shouldReturnPayloadTooLargeStatusCodeWhenProfilePictureExceedsMaxSize() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        byte[] pictureBytes = new byte[(int) DataSize.ofMegabytes(2).toBytes() + 1];
+        System.arraycopy(Base64.getDecoder().decode(TEST_JPEG), 0, pictureBytes, 0, 3);
+
+        MultipartBodyBuilder multipartBodyBuilder = new MultipartBodyBuilder();
+        multipartBodyBuilder.part("profilePicture", new ByteArrayResource(pictureBytes))
+                .filename("test.jpg")
+                .contentType(MediaType.IMAGE_JPEG);
+        MultiValueMap<String, HttpEntity<?>> form = multipartBodyBuilder.build();
+
+        testClient.mutateWith(mockAuthentication(authenticationMock)).mutateWith(csrf())
+                .put().uri("/v1/users/{userId}/profile-picture", user.getId())
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(form)
+                .exchange()
+
+                .expectStatus().isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+        verify(userService, never()).saveProfilePicture(any());
+    }
+
+    @Test
+    void shouldReturnPayloadTooLargeStatusCodeWhenRequestContentLengthExceedsProfilePictureMaxSize() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        MultipartBodyBuilder multipartBodyBuilder = new MultipartBodyBuilder();
+        multipartBodyBuilder.part("profilePicture", new ByteArrayResource(Base64.getDecoder().decode(TEST_JPEG)))
+                .filename("test.jpg")
+                .contentType(MediaType.IMAGE_JPEG);
+        MultiValueMap<String, HttpEntity<?>> form = multipartBodyBuilder.build();
+
+        testClient.mutateWith(mockAuthentication(authenticationMock)).mutateWith(csrf())
+                .put().uri("/v1/users/{userId}/profile-picture", user.getId())
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .contentLength(DataSize.ofMegabytes(3).toBytes())
+                .bodyValue(form)
+                .exchange()
+
+                .expectStatus().isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+        verify(userService, never()).saveProfilePicture(any());
+    }
+
+    @Test
+    void shouldReturnPayloadTooLargeStatusCodeWhenProfilePictureHasTooManyPixels() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Authentication authenticationMock = createAuthentication(user);
+
+        when(userService.saveProfilePicture(any(ProfilePicture.class)))
+                .thenReturn(Mono.error(new ProfilePictureTooLargeException("Too many pixels")));
+
+        MultipartBodyBuilder multipartBodyBuilder = new MultipartBodyBuilder();
+        multipartBodyBuilder.part("profilePicture", new ByteArrayResource(Base64.getDecoder().decode(TEST_JPEG)))
+                .filename("test.jpg")
+                .contentType(MediaType.IMAGE_JPEG);
+        MultiValueMap<String, HttpEntity<?>> form = multipartBodyBuilder.build();
+
+        testClient.mutateWith(mockAuthentication(authenticationMock)).mutateWith(csrf())
+                .put().uri("/v1/users/{userId}/profile-picture", user.getId())
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .bodyValue(form)
+                .exchange()
 
-        assertEquals("/v1/users/" + user.getId() + "/profile-picture", user.getProfilePictureUrl());
+                .expectStatus().isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE);
+        verify(userService, never()).updateUser(any());
     }
 
     private Authentication createAuthentication(User user) {
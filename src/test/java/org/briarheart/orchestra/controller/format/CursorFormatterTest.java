@@ -0,0 +1,45 @@
+package org.briarheart.orchestra.controller.format;
+
+import org.briarheart.orchestra.data.Cursor;
+import org.junit.jupiter.api.Test;
+
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class CursorFormatterTest {
+    private final CursorFormatter formatter = new CursorFormatter();
+
+    @Test
+    void shouldParseCursor() throws ParseException {
+        Cursor cursor = new Cursor(LocalDateTime.of(2020, 1, 1, 15, 30), 1L);
+        assertEquals(cursor, formatter.parse(cursor.encode(), Locale.getDefault()));
+    }
+
+    @Test
+    void shouldThrowExceptionOnParseWhenTextIsEmpty() {
+        assertThrows(IllegalArgumentException.class, () -> formatter.parse("", Locale.getDefault()));
+    }
+
+    @Test
+    void shouldThrowExceptionOnParseWhenCursorIsNotValid() {
+        assertThrows(ParseException.class, () -> formatter.parse("not a cursor", Locale.getDefault()));
+    }
+
+    @Test
+    void shouldPrintCursor() {
+        Cursor cursor = new Cursor(LocalDateTime.of(2020, 1, 1, 15, 30), 1L);
+        assertEquals(cursor.encode(), formatter.print(cursor, Locale.getDefault()));
+    }
+
+    @Test
+    void shouldThrowExceptionOnPrintWhenCursorIsNull() {
+        assertThrows(IllegalArgumentException.class, () -> formatter.print(null, Locale.getDefault()));
+    }
+}
@@ -0,0 +1,131 @@
+package org.briarheart.orchestra.data;
+
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.type.classreading.CachingMetadataReaderFactory;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+import org.springframework.data.r2dbc.repository.Query;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Base class for tests that run {@code EXPLAIN} for every {@link Query} declared in this package and fail if any of
+ * them falls back to a full table scan.
+ *
+ * @author Roman Chigvintsev
+ */
+abstract class AbstractQueryPlanTest {
+    private static final String REPOSITORY_LOCATION = "classpath*:org/briarheart/orchestra/data/*.class";
+    private static final Pattern NAMED_PARAMETER_PATTERN = Pattern.compile(":(\\w+)");
+
+    @TestFactory
+    Stream<DynamicTest> shouldNotUseFullTableScan() throws IOException, ClassNotFoundException {
+        return getQueryMethods().stream().map(method -> DynamicTest.dynamicTest(getTestName(method), () -> {
+            String plan = explain(method);
+            assertFalse(isFullTableScan(plan), () -> "Query of " + getTestName(method)
+                    + " uses full table scan: " + plan);
+        }));
+    }
+
+    /**
+     * Returns data source of database with schema created by Flyway migrations.
+     *
+     * @return data source
+     */
+    protected abstract DataSource getDataSource();
+
+    /**
+     * Checks whether the given query plan contains full table scan.
+     *
+     * @param plan query plan returned by {@code EXPLAIN}
+     * @return {@code true} if plan contains full table scan
+     */
+    protected abstract boolean isFullTableScan(String plan);
+
+    private static List<Method> getQueryMethods() throws IOException, ClassNotFoundException {
+        List<Method> methods = new ArrayList<>();
+        MetadataReaderFactory metadataReaderFactory = new CachingMetadataReaderFactory();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(REPOSITORY_LOCATION)) {
+            String className = metadataReaderFactory.getMetadataReader(resource).getClassMetadata().getClassName();
+            for (Method method : Class.forName(className).getDeclaredMethods()) {
+                if (method.isAnnotationPresent(Query.class)) {
+                    methods.add(method);
+                }
+            }
+        }
+        methods.sort(Comparator.comparing(AbstractQueryPlanTest::getTestName));
+        return methods;
+    }
+
+    private static String getTestName(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+
+    private String explain(Method method) throws SQLException {
+        String query = method.getAnnotation(Query.class).value();
+        List<Object> arguments = new ArrayList<>();
+        Matcher matcher = NAMED_PARAMETER_PATTERN.matcher(query);
+        StringBuffer sql = new StringBuffer("EXPLAIN ");
+        while (matcher.find()) {
+            arguments.add(getArgument(method, matcher.group(1)));
+            matcher.appendReplacement(sql, "?");
+        }
+        matcher.appendTail(sql);
+
+        try (Connection connection = getDataSource().getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+            for (int i = 0; i < arguments.size(); i++) {
+                statement.setObject(i + 1, arguments.get(i));
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                StringBuilder plan = new StringBuilder();
+                while (resultSet.next()) {
+                    plan.append(resultSet.getString(1)).append('\n');
+                }
+                return plan.toString();
+            }
+        }
+    }
+
+    private static Object getArgument(Method method, String parameterName) {
+        for (Parameter parameter : method.getParameters()) {
+            if (parameter.getName().equals(parameterName)) {
+                return getArgument(parameter.getType());
+            }
+        }
+        throw new IllegalStateException("Parameter \"" + parameterName + "\" is not found in method "
+                + getTestName(method));
+    }
+
+    private static Object getArgument(Class<?> type) {
+        if (type == Long.class || type == long.class || type == Collection.class || type == Set.class) {
+            return 1L;
+        }
+        if (type == Integer.class || type == int.class) {
+            return 10;
+        }
+        if (type == Boolean.class || type == boolean.class) {
+            return true;
+        }
+        if (type == LocalDateTime.class) {
+            return Timestamp.valueOf(LocalDateTime.now());
+        }
+        if (type.isEnum()) {
+            return type.getEnumConstants()[0].toString();
+        }
+        return "test";
+    }
+}
@@ -0,0 +1,65 @@
+package org.briarheart.orchestra.data;
+
+import org.briarheart.orchestra.model.Task;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class CursorTest {
+    @Test
+    void shouldDecodeEncodedCursor() {
+        Cursor cursor = new Cursor(LocalDateTime.of(2020, 1, 1, 15, 30, 51, 564), 42L);
+        assertEquals(cursor, Cursor.decode(cursor.encode()));
+    }
+
+    @Test
+    void shouldCreateCursorPointingToTask() {
+        LocalDateTime createdAt = LocalDateTime.of(2020, 1, 1, 15, 30);
+        Task task = Task.builder().id(2L).createdAt(createdAt).build();
+        Cursor cursor = Cursor.of(task);
+        assertEquals(createdAt, cursor.getCreatedAt());
+        assertEquals(task.getId(), cursor.getId());
+    }
+
+    @Test
+    void shouldEncodeCursorToUrlSafeString() {
+        Cursor cursor = new Cursor(LocalDateTime.of(2020, 1, 1, 15, 30, 51, 564), 42L);
+        assertTrue(cursor.encode().matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    void shouldThrowExceptionOnDecodeWhenValueIsNotBase64Encoded() {
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode("not a cursor"));
+    }
+
+    @Test
+    void shouldThrowExceptionOnDecodeWhenIdIsMissing() {
+        String value = Base64.getUrlEncoder().encodeToString("2020-01-01T15:30:51".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode(value));
+    }
+
+    @Test
+    void shouldThrowExceptionOnDecodeWhenIdIsNotNumber() {
+        String value = Base64.getUrlEncoder().encodeToString("2020-01-01T15:30:51,abc".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode(value));
+    }
+
+    @Test
+    void shouldThrowExceptionOnDecodeWhenCreationTimeIsNotValid() {
+        String value = Base64.getUrlEncoder().encodeToString("01.01.2020,1".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode(value));
+    }
+
+    @Test
+    void shouldThrowExceptionOnCreateWhenCreationTimeIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new Cursor(null, 1L));
+        assertEquals("Creation time must not be null", e.getMessage());
+    }
+}
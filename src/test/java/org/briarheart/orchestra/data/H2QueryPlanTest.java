@@ -0,0 +1,78 @@
+package org.briarheart.orchestra.data;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Smoke check of query plans against in-memory H2 database with schema created by common SQL migrations. It only
+ * catches queries that have no usable index at all: unlike PostgreSQL H2 implicitly creates indexes for foreign key
+ * columns, and PostgreSQL specific migrations are not applied here. Query plans in PostgreSQL are verified by
+ * {@link PostgreSQLQueryPlanTest}.
+ *
+ * @author Roman Chigvintsev
+ */
+class H2QueryPlanTest extends AbstractQueryPlanTest {
+    private static final String MIGRATION_LOCATION = "classpath*:db/migration/V*.sql";
+    private static final Pattern MIGRATION_VERSION_PATTERN = Pattern.compile("^V(\\d+)__");
+
+    private static SingleConnectionDataSource dataSource;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:query-plan", true);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        for (Resource migration : getMigrations()) {
+            // Migration scripts are not required to end statements with semicolon so they are split manually
+            String script = StreamUtils.copyToString(migration.getInputStream(), StandardCharsets.UTF_8);
+            for (String statement : script.split(";")) {
+                if (StringUtils.hasText(statement.replaceAll("--.*", ""))) {
+                    jdbcTemplate.execute(statement);
+                }
+            }
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        dataSource.destroy();
+    }
+
+    @Override
+    protected DataSource getDataSource() {
+        return dataSource;
+    }
+
+    @Override
+    protected boolean isFullTableScan(String plan) {
+        return plan.contains(".tableScan");
+    }
+
+    private static Resource[] getMigrations() throws IOException {
+        Resource[] migrations = new PathMatchingResourcePatternResolver().getResources(MIGRATION_LOCATION);
+        Arrays.sort(migrations, Comparator.comparingInt(H2QueryPlanTest::getMigrationVersion));
+        return migrations;
+    }
+
+    private static int getMigrationVersion(Resource migration) {
+        Matcher matcher = MIGRATION_VERSION_PATTERN.matcher(Objects.requireNonNull(migration.getFilename()));
+        if (!matcher.find()) {
+            throw new IllegalStateException("Unexpected migration file name: " + migration.getFilename());
+        }
+        return Integer.parseInt(matcher.group(1));
+    }
+}
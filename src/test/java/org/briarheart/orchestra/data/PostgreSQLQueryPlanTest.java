@@ -0,0 +1,59 @@
+package org.briarheart.orchestra.data;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+
+/**
+ * Verifies query plans against PostgreSQL started in Docker container with schema created by all migrations including
+ * PostgreSQL specific ones. Test tables are empty so sequential scans are disabled in session: this way planner still
+ * falls back to sequential scan only when there is no index that can serve the query. Test is skipped when Docker is
+ * not available.
+ *
+ * @author Roman Chigvintsev
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class PostgreSQLQueryPlanTest extends AbstractQueryPlanTest {
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRESQL = new PostgreSQLContainer<>("postgres:12.5");
+
+    private static SingleConnectionDataSource dataSource;
+
+    @BeforeAll
+    static void setUp() {
+        dataSource = new SingleConnectionDataSource(POSTGRESQL.getJdbcUrl(), POSTGRESQL.getUsername(),
+                POSTGRESQL.getPassword(), true);
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration", "classpath:db/migration/postgresql")
+                // Test data inserted by "afterMigrate" callback is not needed here
+                .skipDefaultCallbacks(true)
+                .load()
+                .migrate();
+        new JdbcTemplate(dataSource).execute("SET enable_seqscan = off");
+    }
+
+    @AfterAll
+    static void tearDown() {
+        if (dataSource != null) {
+            dataSource.destroy();
+        }
+    }
+
+    @Override
+    protected DataSource getDataSource() {
+        return dataSource;
+    }
+
+    @Override
+    protected boolean isFullTableScan(String plan) {
+        return plan.contains("Seq Scan");
+    }
+}
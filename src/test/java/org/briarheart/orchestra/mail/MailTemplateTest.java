@@ -0,0 +1,60 @@
+package org.briarheart.orchestra.mail;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.MessageFormat;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class MailTemplateTest {
+    @Test
+    void shouldRenderSimplePattern() {
+        MailTemplate template = MailTemplate.compile("Hi, {0}! Please follow the link {1}.", Locale.ENGLISH);
+        assertEquals("Hi, Alice! Please follow the link https://test.com.",
+                template.render("Alice", "https://test.com"));
+    }
+
+    @Test
+    void shouldRenderRepeatedArguments() {
+        MailTemplate template = MailTemplate.compile("{1} and {0} and {1}", Locale.ENGLISH);
+        assertEquals("b and a and b", template.render("a", "b"));
+    }
+
+    @Test
+    void shouldRenderEscapedQuotes() {
+        String pattern = "It''s '{0}' for {0}";
+        MailTemplate template = MailTemplate.compile(pattern, Locale.ENGLISH);
+        assertEquals(new MessageFormat(pattern, Locale.ENGLISH).format(new Object[]{"Alice"}),
+                template.render("Alice"));
+    }
+
+    @Test
+    void shouldRenderMissingArgumentAsPlaceholder() {
+        MailTemplate template = MailTemplate.compile("{0} {1}", Locale.ENGLISH);
+        assertEquals("Alice {1}", template.render("Alice"));
+    }
+
+    @Test
+    void shouldRenderNullArgument() {
+        MailTemplate template = MailTemplate.compile("Hi, {0}!", Locale.ENGLISH);
+        assertEquals("Hi, null!", template.render((Object) null));
+    }
+
+    @Test
+    void shouldRenderNonStringArgumentAsMessageFormatDoes() {
+        String pattern = "You have {0} messages";
+        MailTemplate template = MailTemplate.compile(pattern, Locale.ENGLISH);
+        assertEquals(new MessageFormat(pattern, Locale.ENGLISH).format(new Object[]{12345}), template.render(12345));
+    }
+
+    @Test
+    void shouldRenderPatternWithFormatType() {
+        String pattern = "You have {0,number,integer} {0,choice,1#message|1<messages}";
+        MailTemplate template = MailTemplate.compile(pattern, Locale.ENGLISH);
+        assertEquals("You have 2 messages", template.render(2));
+    }
+}
@@ -0,0 +1,168 @@
+package org.briarheart.orchestra.mail;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.NoSuchProviderException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class PooledJavaMailSenderTest {
+    private List<Transport> transports;
+    private boolean brokenTransports;
+    private PooledJavaMailSender mailSender;
+
+    @BeforeEach
+    void setUp() {
+        transports = new ArrayList<>();
+        mailSender = new PooledJavaMailSender(2, Duration.ofHours(1)) {
+            @Override
+            protected Transport getTransport(Session session) throws NoSuchProviderException {
+                Transport transport = mock(Transport.class);
+                if (brokenTransports) {
+                    // Connection is lost while message is being sent
+                    when(transport.isConnected()).thenReturn(false);
+                    try {
+                        doThrow(new MessagingException("Broken pipe")).when(transport)
+                                .sendMessage(any(Message.class), any(Address[].class));
+                    } catch (MessagingException e) {
+                        throw new IllegalStateException(e);
+                    }
+                } else {
+                    when(transport.isConnected()).thenReturn(true);
+                }
+                transports.add(transport);
+                return transport;
+            }
+        };
+        mailSender.setHost("localhost");
+    }
+
+    @AfterEach
+    void tearDown() {
+        mailSender.destroy();
+    }
+
+    @Test
+    void shouldReuseConnection() throws MessagingException {
+        mailSender.send(createMessage("alice@mail.com"));
+        mailSender.send(createMessage("bob@mail.com"));
+        assertEquals(1, transports.size());
+        verify(transports.get(0), times(2)).sendMessage(any(Message.class), any(Address[].class));
+        assertEquals(1, mailSender.getIdleCount());
+    }
+
+    @Test
+    void shouldSendBatchOverSingleConnection() throws MessagingException {
+        mailSender.send(createMessage("alice@mail.com"), createMessage("bob@mail.com"),
+                createMessage("carol@mail.com"));
+        assertEquals(1, transports.size());
+        verify(transports.get(0), times(3)).sendMessage(any(Message.class), any(Address[].class));
+    }
+
+    @Test
+    void shouldDiscardConnectionFailedHealthCheck() {
+        Instant now = Instant.now();
+        mailSender.setClock(Clock.fixed(now, ZoneOffset.UTC));
+        mailSender.send(createMessage("alice@mail.com"));
+        Transport staleTransport = transports.get(0);
+        when(staleTransport.isConnected()).thenReturn(false);
+
+        mailSender.setClock(Clock.fixed(now.plus(Duration.ofMinutes(1)), ZoneOffset.UTC));
+        mailSender.send(createMessage("bob@mail.com"));
+        assertEquals(2, transports.size());
+        verify(staleTransport, atLeastOnce()).isConnected();
+    }
+
+    @Test
+    void shouldNotCheckRecentlyUsedConnection() {
+        Instant now = Instant.now();
+        mailSender.setClock(Clock.fixed(now, ZoneOffset.UTC));
+        mailSender.send(createMessage("alice@mail.com"));
+        Transport transport = transports.get(0);
+        clearInvocations(transport);
+
+        mailSender.send(createMessage("bob@mail.com"));
+        verify(transport, never()).isConnected();
+    }
+
+    @Test
+    void shouldCloseIdleConnections() throws MessagingException {
+        Instant now = Instant.now();
+        mailSender.setClock(Clock.fixed(now, ZoneOffset.UTC));
+        mailSender.send(createMessage("alice@mail.com"));
+
+        mailSender.setClock(Clock.fixed(now.plus(Duration.ofMinutes(2)), ZoneOffset.UTC));
+        mailSender.evictIdleTransports();
+        assertEquals(0, mailSender.getIdleCount());
+        verify(transports.get(0), times(1)).close();
+    }
+
+    @Test
+    void shouldCloseConnectionLeftDisconnectedAfterFailure() throws MessagingException {
+        brokenTransports = true;
+        assertThrows(MailSendException.class, () -> mailSender.send(createMessage("alice@mail.com")));
+        assertEquals(0, mailSender.getIdleCount());
+        verify(transports.get(0), times(1)).close();
+    }
+
+    @Test
+    void shouldOpenSingleConnectionToSmtpServerForSeveralMessages() throws Exception {
+        try (SmtpServerStub smtpServer = new SmtpServerStub()) {
+            PooledJavaMailSender pooledMailSender = new PooledJavaMailSender(1, Duration.ofHours(1));
+            try {
+                pooledMailSender.setHost("localhost");
+                pooledMailSender.setPort(smtpServer.getPort());
+                for (int i = 0; i < 10; i++) {
+                    pooledMailSender.send(createMessage("user" + i + "@mail.com"));
+                }
+            } finally {
+                pooledMailSender.destroy();
+            }
+            assertEquals(10, smtpServer.getMessageCount());
+            assertEquals(1, smtpServer.getConnectionCount());
+        }
+    }
+
+    @Test
+    void shouldOpenConnectionToSmtpServerForEveryMessageWithoutPool() throws Exception {
+        try (SmtpServerStub smtpServer = new SmtpServerStub()) {
+            JavaMailSenderImpl plainMailSender = new JavaMailSenderImpl();
+            plainMailSender.setHost("localhost");
+            plainMailSender.setPort(smtpServer.getPort());
+            for (int i = 0; i < 10; i++) {
+                plainMailSender.send(createMessage("user" + i + "@mail.com"));
+            }
+            assertEquals(10, smtpServer.getMessageCount());
+            assertEquals(10, smtpServer.getConnectionCount());
+        }
+    }
+
+    private static SimpleMailMessage createMessage(String to) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setFrom("noreply@mail.com");
+        message.setTo(to);
+        message.setSubject("Test");
+        message.setText("Test message");
+        return message;
+    }
+}
@@ -0,0 +1,102 @@
+package org.briarheart.orchestra.mail;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal in-process SMTP server that accepts any message and counts opened connections and received messages.
+ *
+ * @author Roman Chigvintsev
+ */
+class SmtpServerStub implements Closeable {
+    private final ServerSocket serverSocket;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final AtomicInteger messageCount = new AtomicInteger();
+
+    SmtpServerStub() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        executor.execute(this::acceptConnections);
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    int getMessageCount() {
+        return messageCount.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                connectionCount.incrementAndGet();
+                executor.execute(() -> handleConnection(socket));
+            } catch (SocketException e) {
+                // Server socket is closed
+                return;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void handleConnection(Socket socket) {
+        try (socket;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                     StandardCharsets.US_ASCII));
+             Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+            reply(writer, "220 localhost SMTP stub");
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String command = line.length() > 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                switch (command) {
+                    case "DATA":
+                        reply(writer, "354 End data with <CR><LF>.<CR><LF>");
+                        while ((line = reader.readLine()) != null && !line.equals(".")) {
+                            // Message content is ignored
+                        }
+                        messageCount.incrementAndGet();
+                        reply(writer, "250 OK");
+                        break;
+                    case "QUIT":
+                        reply(writer, "221 Bye");
+                        return;
+                    default:
+                        reply(writer, "250 OK");
+                }
+            }
+        } catch (IOException e) {
+            // Client closed connection
+        }
+    }
+
+    private static void reply(Writer writer, String reply) throws IOException {
+        writer.write(reply + "\r\n");
+        writer.flush();
+    }
+}
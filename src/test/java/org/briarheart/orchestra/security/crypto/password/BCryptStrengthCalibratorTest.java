@@ -0,0 +1,57 @@
+package org.briarheart.orchestra.security.crypto.password;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class BCryptStrengthCalibratorTest {
+    @Test
+    void shouldPickStrengthNotExceedingTargetDuration() {
+        // Hashing with strength 10 takes 50 ms so strength 12 takes 200 ms and strength 13 takes 400 ms
+        BCryptStrengthCalibrator calibrator = createCalibrator(10, Duration.ofMillis(50));
+        assertEquals(12, calibrator.calibrate(Duration.ofMillis(250)));
+    }
+
+    @Test
+    void shouldNotPickStrengthLessThanMinimalOne() {
+        BCryptStrengthCalibrator calibrator = createCalibrator(10, Duration.ofMillis(500));
+        assertEquals(10, calibrator.calibrate(Duration.ofMillis(250)));
+    }
+
+    @Test
+    void shouldNotPickStrengthGreaterThanMaximalOne() {
+        BCryptStrengthCalibrator calibrator = createCalibrator(4, Duration.ofNanos(1));
+        assertEquals(31, calibrator.calibrate(Duration.ofDays(365)));
+    }
+
+    @Test
+    void shouldMeasureActualHashingTime() {
+        BCryptStrengthCalibrator calibrator = new BCryptStrengthCalibrator(4, 1);
+        // Hashing with minimal strength can hardly take a minute
+        int strength = calibrator.calibrate(Duration.ofMinutes(1));
+        assertTrue(strength > 4 && strength <= 31);
+    }
+
+    @Test
+    void shouldThrowExceptionOnConstructWhenMinStrengthIsInvalid() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new BCryptStrengthCalibrator(3));
+        assertEquals("Minimal strength must be between 4 and 31", e.getMessage());
+    }
+
+    private BCryptStrengthCalibrator createCalibrator(int minStrength, Duration minStrengthDuration) {
+        return new BCryptStrengthCalibrator(minStrength) {
+            @Override
+            protected long measure(int strength) {
+                return minStrengthDuration.toNanos() << (strength - minStrength);
+            }
+        };
+    }
+}
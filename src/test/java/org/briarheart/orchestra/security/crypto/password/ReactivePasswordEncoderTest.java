@@ -0,0 +1,94 @@
+package org.briarheart.orchestra.security.crypto.password;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class ReactivePasswordEncoderTest {
+    private PasswordEncoder passwordEncoderMock;
+    private SimpleMeterRegistry meterRegistry;
+    private ReactivePasswordEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        passwordEncoderMock = mock(PasswordEncoder.class);
+        when(passwordEncoderMock.encode(any())).thenAnswer(args -> "{noop}" + args.getArgument(0));
+        when(passwordEncoderMock.matches(any(), anyString()))
+                .thenAnswer(args -> ("{noop}" + args.getArgument(0)).equals(args.getArgument(1)));
+        meterRegistry = new SimpleMeterRegistry();
+        encoder = new ReactivePasswordEncoder(passwordEncoderMock, 1, 1, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        encoder.destroy();
+    }
+
+    @Test
+    void shouldThrowExceptionOnConstructWhenPasswordEncoderIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new ReactivePasswordEncoder(null, 1, 1, meterRegistry));
+        assertEquals("Password encoder must not be null", e.getMessage());
+    }
+
+    @Test
+    void shouldEncodePasswordOnWorkerThread() {
+        String callerThread = Thread.currentThread().getName();
+        when(passwordEncoderMock.encode(any())).thenAnswer(args -> Thread.currentThread().getName());
+        String workerThread = encoder.encode("secret").block();
+        assertNotNull(workerThread);
+        assertNotEquals(callerThread, workerThread);
+        assertTrue(workerThread.startsWith("password-encoder-"));
+    }
+
+    @Test
+    void shouldMatchPassword() {
+        assertTrue(encoder.matches("secret", "{noop}secret").block());
+        assertFalse(encoder.matches("secret", "{noop}other").block());
+    }
+
+    @Test
+    void shouldRejectOperationWhenQueueIsFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(passwordEncoderMock.encode("slow")).thenAnswer(args -> {
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return "{noop}slow";
+        });
+
+        try {
+            // The first operation occupies the only thread, the second one occupies the only place in queue
+            encoder.encode("slow").subscribe();
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            encoder.encode("queued").subscribe();
+
+            assertThrows(PasswordEncoderOverloadedException.class, () -> encoder.encode("rejected").block());
+            assertEquals(1.0, meterRegistry.get("executor.queued").tag("name", "passwordEncoder").gauge().value());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void shouldPublishHashingTime() {
+        encoder.encode("secret").block();
+        encoder.matches("secret", "{noop}secret").block();
+        assertEquals(1, meterRegistry.get("password.encoder.hash").tag("operation", "encode").timer().count());
+        assertEquals(1, meterRegistry.get("password.encoder.hash").tag("operation", "matches").timer().count());
+    }
+}
@@ -1,24 +1,20 @@
 package org.briarheart.orchestra.security.oauth2.core.userdetails;
 
-import org.briarheart.orchestra.data.UserAuthorityRelationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.briarheart.orchestra.data.UserRepository;
 import org.briarheart.orchestra.model.User;
-import org.briarheart.orchestra.model.UserAuthorityRelation;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.List;
+import java.time.Duration;
+import java.util.Set;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.mockito.ArgumentMatchers.anyLong;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
 
 /**
  * @author Roman Chigvintsev
@@ -26,34 +22,84 @@ import static org.mockito.Mockito.when;
 class DatabaseReactiveUserDetailsServiceTest {
     private DatabaseReactiveUserDetailsService service;
     private UserRepository userRepository;
-    private UserAuthorityRelationRepository userAuthorityRelationRepository;
+    private UserDetailsCache userDetailsCache;
 
     @BeforeEach
     void setUp() {
         userRepository = mock(UserRepository.class);
-        userAuthorityRelationRepository = mock(UserAuthorityRelationRepository.class);
-        service = new DatabaseReactiveUserDetailsService(userRepository, userAuthorityRelationRepository);
+        userDetailsCache = new UserDetailsCache(Duration.ofMinutes(1), 100, new SimpleMeterRegistry());
+        service = new DatabaseReactiveUserDetailsService(userRepository, userDetailsCache);
     }
 
     @Test
     void shouldFindUserByUsername() {
         User user = User.builder().id(1L).email("alice@mail.com").build();
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Mono.just(user));
-        when(userAuthorityRelationRepository.findByUserId(anyLong())).thenReturn(Flux.empty());
+        when(userRepository.findByEmailWithAuthorities(user.getEmail())).thenReturn(Mono.just(user));
         UserDetails result = service.findByUsername(user.getUsername()).block();
         assertEquals(user, result);
     }
 
     @Test
     void shouldLoadUserAuthoritiesOnUserFind() {
-        User user = User.builder().id(1L).email("alice@mail.com").build();
         GrantedAuthority authority = new SimpleGrantedAuthority("user");
+        User user = User.builder().id(1L).email("alice@mail.com").authorities(Set.of(authority)).build();
+        when(userRepository.findByEmailWithAuthorities(user.getEmail())).thenReturn(Mono.just(user));
+        UserDetails result = service.findByUsername(user.getUsername()).block();
+        assertNotNull(result);
+        assertEquals(Set.of(authority), Set.copyOf(result.getAuthorities()));
+    }
 
-        when(userRepository.findByEmail(user.getEmail())).thenReturn(Mono.just(user));
-        when(userAuthorityRelationRepository.findByUserId(user.getId()))
-                .thenReturn(Flux.just(new UserAuthorityRelation(user.getId(), authority.getAuthority())));
+    @Test
+    void shouldReturnCachedUserOnSubsequentFind() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        when(userRepository.findByEmailWithAuthorities(user.getEmail())).thenReturn(Mono.just(user));
+        service.findByUsername(user.getUsername()).block();
         UserDetails result = service.findByUsername(user.getUsername()).block();
+        assertEquals(user, result);
+        verify(userRepository, times(1)).findByEmailWithAuthorities(user.getEmail());
+    }
+
+    @Test
+    void shouldNotCacheDisabledUser() {
+        User user = User.builder().id(1L).email("alice@mail.com").enabled(false).build();
+        when(userRepository.findByEmailWithAuthorities(user.getEmail())).thenReturn(Mono.just(user));
+        service.findByUsername(user.getUsername()).block();
+        service.findByUsername(user.getUsername()).block();
+        verify(userRepository, times(2)).findByEmailWithAuthorities(user.getEmail());
+    }
+
+    @Test
+    void shouldReturnEmptyResultWhenUserIsNotFound() {
+        when(userRepository.findByEmailWithAuthorities("alice@mail.com")).thenReturn(Mono.empty());
+        assertNull(service.findByUsername("alice@mail.com").block());
+    }
+
+    @Test
+    void shouldUpdatePassword() {
+        User user = User.builder().id(1L).email("alice@mail.com").password("{bcrypt}old").build();
+        when(userRepository.updatePassword(1L, "{bcrypt}old", "{bcrypt}new")).thenReturn(Mono.just(1));
+        UserDetails result = service.updatePassword(user, "{bcrypt}new").block();
+        assertNotNull(result);
+        assertEquals("{bcrypt}new", result.getPassword());
+    }
+
+    @Test
+    void shouldInvalidateCachedUserOnPasswordUpdate() {
+        User user = User.builder().id(1L).email("alice@mail.com").password("{bcrypt}old").build();
+        when(userRepository.findByEmailWithAuthorities(user.getEmail())).thenReturn(Mono.just(user));
+        when(userRepository.updatePassword(1L, "{bcrypt}old", "{bcrypt}new")).thenReturn(Mono.just(1));
+
+        service.findByUsername(user.getUsername()).block();
+        service.updatePassword(user, "{bcrypt}new").block();
+        assertNull(userDetailsCache.get(user.getEmail()));
+    }
+
+    @Test
+    void shouldNotUpdatePasswordChangedConcurrently() {
+        User user = User.builder().id(1L).email("alice@mail.com").password("{bcrypt}old").build();
+        when(userRepository.updatePassword(1L, "{bcrypt}old", "{bcrypt}new")).thenReturn(Mono.just(0));
+        UserDetails result = service.updatePassword(user, "{bcrypt}new").block();
         assertNotNull(result);
-        assertEquals(List.of(authority), result.getAuthorities());
+        assertEquals("{bcrypt}old", result.getPassword());
     }
 }
@@ -1,5 +1,7 @@
 package org.briarheart.orchestra.security.web.server.authentication;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.briarheart.orchestra.data.UserRepository;
 import org.briarheart.orchestra.model.User;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessToken;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessTokenService;
@@ -20,18 +22,22 @@ class AccessTokenReactiveAuthenticationManagerTest {
     private static final String ACCESS_TOKEN_VALUE = "NlYwTEh5V2I2anNjQVB0MUhQbTQ=";
 
     private AccessTokenService accessTokenServiceMock;
+    private UserRepository userRepositoryMock;
     private AccessTokenReactiveAuthenticationManager manager;
 
     @BeforeEach
     void setUp() {
         accessTokenServiceMock = mock(AccessTokenService.class);
-        manager = new AccessTokenReactiveAuthenticationManager(accessTokenServiceMock);
+        userRepositoryMock = mock(UserRepository.class);
+        UserProfileCache userProfileCache = new UserProfileCache(userRepositoryMock, 10, new SimpleMeterRegistry());
+        manager = new AccessTokenReactiveAuthenticationManager(accessTokenServiceMock, userProfileCache);
     }
 
     @Test
     void shouldAuthenticate() {
         AccessToken accessTokenMock = mock(AccessToken.class);
         when(accessTokenMock.getSubject()).thenReturn("1");
+        when(accessTokenMock.getProfileVersion()).thenReturn(null);
         doReturn(Mono.just(accessTokenMock)).when(accessTokenServiceMock).parseAccessToken(anyString());
 
         Authentication authenticationMock = new AccessTokenAuthentication(ACCESS_TOKEN_VALUE);
@@ -44,6 +50,7 @@ class AccessTokenReactiveAuthenticationManagerTest {
     void shouldReturnAuthenticationWithPrincipal() {
         AccessToken accessTokenMock = mock(AccessToken.class);
         when(accessTokenMock.getSubject()).thenReturn("1");
+        when(accessTokenMock.getProfileVersion()).thenReturn(null);
         doReturn(Mono.just(accessTokenMock)).when(accessTokenServiceMock).parseAccessToken(anyString());
 
         Authentication authenticationMock = new AccessTokenAuthentication(ACCESS_TOKEN_VALUE);
@@ -55,6 +62,96 @@ class AccessTokenReactiveAuthenticationManagerTest {
         assertTrue(principal instanceof User);
     }
 
+    @Test
+    void shouldResolvePrincipalAttributesByProfileVersion() {
+        AccessToken accessTokenMock = mock(AccessToken.class);
+        when(accessTokenMock.getSubject()).thenReturn("1");
+        when(accessTokenMock.getProfileVersion()).thenReturn(2L);
+        doReturn(Mono.just(accessTokenMock)).when(accessTokenServiceMock).parseAccessToken(anyString());
+
+        User user = User.builder().id(1L).version(2L).email("alice@mail.com").fullName("Alice").password("secret")
+                .build();
+        when(userRepositoryMock.findById(1L)).thenReturn(Mono.just(user));
+
+        Authentication authenticationMock = new AccessTokenAuthentication(ACCESS_TOKEN_VALUE);
+        Authentication authentication = manager.authenticate(authenticationMock).block();
+        assertNotNull(authentication);
+
+        User principal = (User) authentication.getPrincipal();
+        assertEquals(1L, principal.getId());
+        assertEquals("alice@mail.com", principal.getEmail());
+        assertEquals("Alice", principal.getFullName());
+        assertNull(principal.getPassword());
+    }
+
+    @Test
+    void shouldReuseCachedUserProfile() {
+        AccessToken accessTokenMock = mock(AccessToken.class);
+        when(accessTokenMock.getSubject()).thenReturn("1");
+        when(accessTokenMock.getProfileVersion()).thenReturn(2L);
+        doReturn(Mono.just(accessTokenMock)).when(accessTokenServiceMock).parseAccessToken(anyString());
+
+        User user = User.builder().id(1L).version(2L).email("alice@mail.com").build();
+        when(userRepositoryMock.findById(1L)).thenReturn(Mono.just(user));
+
+        Authentication authenticationMock = new AccessTokenAuthentication(ACCESS_TOKEN_VALUE);
+        manager.authenticate(authenticationMock).block();
+        manager.authenticate(authenticationMock).block();
+        verify(userRepositoryMock, times(1)).findById(1L);
+    }
+
+    @Test
+    void shouldNotShareCachedUserProfileBetweenPrincipals() {
+        AccessToken accessTokenMock = mock(AccessToken.class);
+        when(accessTokenMock.getSubject()).thenReturn("1");
+        when(accessTokenMock.getProfileVersion()).thenReturn(2L);
+        doReturn(Mono.just(accessTokenMock)).when(accessTokenServiceMock).parseAccessToken(anyString());
+
+        User user = User.builder().id(1L).version(2L).profilePictureUrl("http://example.com/picture?v=1").build();
+        when(userRepositoryMock.findById(1L)).thenReturn(Mono.just(user));
+
+        Authentication authenticationMock = new AccessTokenAuthentication(ACCESS_TOKEN_VALUE);
+        Authentication authentication = manager.authenticate(authenticationMock).block();
+        assertNotNull(authentication);
+        ((User) authentication.getPrincipal()).setProfilePictureUrl("http://example.com/picture?v=2");
+
+        authentication = manager.authenticate(authenticationMock).block();
+        assertNotNull(authentication);
+        assertEquals("http://example.com/picture?v=1", ((User) authentication.getPrincipal()).getProfilePictureUrl());
+    }
+
+    @Test
+    void shouldReloadUserProfileWhenTokenRefersToNewerVersion() {
+        AccessToken accessTokenMock = mock(AccessToken.class);
+        when(accessTokenMock.getSubject()).thenReturn("1");
+        when(accessTokenMock.getProfileVersion()).thenReturn(1L, 2L);
+        doReturn(Mono.just(accessTokenMock)).when(accessTokenServiceMock).parseAccessToken(anyString());
+
+        User user = User.builder().id(1L).version(1L).fullName("Alice").build();
+        User updatedUser = User.builder().id(1L).version(2L).fullName("Alice Liddell").build();
+        when(userRepositoryMock.findById(1L)).thenReturn(Mono.just(user), Mono.just(updatedUser));
+
+        Authentication authenticationMock = new AccessTokenAuthentication(ACCESS_TOKEN_VALUE);
+        manager.authenticate(authenticationMock).block();
+        Authentication authentication = manager.authenticate(authenticationMock).block();
+        assertNotNull(authentication);
+        assertEquals("Alice Liddell", ((User) authentication.getPrincipal()).getFullName());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenUserReferencedByCompactTokenIsNotFound() {
+        AccessToken accessTokenMock = mock(AccessToken.class);
+        when(accessTokenMock.getSubject()).thenReturn("1");
+        when(accessTokenMock.getProfileVersion()).thenReturn(2L);
+        doReturn(Mono.just(accessTokenMock)).when(accessTokenServiceMock).parseAccessToken(anyString());
+        when(userRepositoryMock.findById(1L)).thenReturn(Mono.empty());
+
+        Authentication authenticationMock = new AccessTokenAuthentication(ACCESS_TOKEN_VALUE);
+        InvalidAccessTokenException e = assertThrows(InvalidAccessTokenException.class,
+                () -> manager.authenticate(authenticationMock).block());
+        assertEquals("User with id 1 is not found", e.getMessage());
+    }
+
     @Test
     void shouldThrowExceptionWhenAccessTokenIsInvalid() {
         when(accessTokenServiceMock.parseAccessToken(anyString())).thenThrow(InvalidAccessTokenException.class);
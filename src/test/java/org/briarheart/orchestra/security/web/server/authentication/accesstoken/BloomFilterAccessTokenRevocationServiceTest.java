@@ -0,0 +1,120 @@
+package org.briarheart.orchestra.security.web.server.authentication.accesstoken;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.briarheart.orchestra.data.RevokedAccessTokenRepository;
+import org.briarheart.orchestra.model.RevokedAccessToken;
+import org.briarheart.orchestra.security.web.server.authentication.jwt.Jwt;
+import org.briarheart.orchestra.security.web.server.authentication.jwt.JwtClaim;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class BloomFilterAccessTokenRevocationServiceTest {
+    private RevokedAccessTokenRepository repositoryMock;
+    private SimpleMeterRegistry meterRegistry;
+    private BloomFilterAccessTokenRevocationService service;
+
+    @BeforeEach
+    void setUp() {
+        repositoryMock = mock(RevokedAccessTokenRepository.class);
+        when(repositoryMock.create(any())).thenAnswer(args -> Mono.just(args.getArgument(0)));
+        when(repositoryMock.existsById(anyString())).thenReturn(Mono.just(false));
+        when(repositoryMock.deleteByExpiresAtLessThanEqual(any())).thenReturn(Mono.just(0));
+        when(repositoryMock.findByExpiresAtAfter(any())).thenReturn(Flux.empty());
+        when(repositoryMock.findByRevokedAtGreaterThanEqualAndExpiresAtAfter(any(), any())).thenReturn(Flux.empty());
+
+        meterRegistry = new SimpleMeterRegistry();
+        service = new BloomFilterAccessTokenRevocationService(repositoryMock, 1_000, 0.01, meterRegistry);
+    }
+
+    @Test
+    void shouldThrowExceptionOnConstructWhenRepositoryIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new BloomFilterAccessTokenRevocationService(null, 1_000, 0.01, meterRegistry));
+        assertEquals("Revoked access token repository must not be null", e.getMessage());
+    }
+
+    @Test
+    void shouldSaveRevokedAccessTokenUntilItsExpiration() {
+        Instant expiration = Instant.now().plus(1, ChronoUnit.HOURS).truncatedTo(ChronoUnit.SECONDS);
+        service.revokeAccessToken(createToken("token-1", expiration)).block();
+
+        ArgumentCaptor<RevokedAccessToken> captor = ArgumentCaptor.forClass(RevokedAccessToken.class);
+        verify(repositoryMock).create(captor.capture());
+        assertEquals("token-1", captor.getValue().getTokenId());
+        assertEquals(LocalDateTime.ofInstant(expiration, ZoneOffset.UTC), captor.getValue().getExpiresAt());
+    }
+
+    @Test
+    void shouldIgnoreAccessTokenWithoutId() {
+        Jwt token = new Jwt.Builder("header.payload.signature")
+                .claim(JwtClaim.EXPIRATION_TIME, Instant.now().plus(1, ChronoUnit.HOURS).getEpochSecond())
+                .build();
+        service.revokeAccessToken(token).block();
+        assertFalse(service.isRevoked(token).block());
+        verify(repositoryMock, never()).create(any());
+    }
+
+    @Test
+    void shouldLookUpDatabaseUntilBloomFilterIsBuilt() {
+        service.isRevoked(createToken("token-1", Instant.now().plus(1, ChronoUnit.HOURS))).block();
+        verify(repositoryMock).existsById("token-1");
+    }
+
+    @Test
+    void shouldNotLookUpDatabaseWhenBloomFilterDoesNotContainToken() {
+        service.refresh().block();
+        assertFalse(service.isRevoked(createToken("token-1", Instant.now().plus(1, ChronoUnit.HOURS))).block());
+        verify(repositoryMock, never()).existsById(anyString());
+    }
+
+    @Test
+    void shouldReportRevokedAccessToken() {
+        service.refresh().block();
+        Jwt token = createToken("token-1", Instant.now().plus(1, ChronoUnit.HOURS));
+        service.revokeAccessToken(token).block();
+        when(repositoryMock.existsById("token-1")).thenReturn(Mono.just(true));
+
+        assertTrue(service.isRevoked(token).block());
+        assertEquals(1.0, meterRegistry.get("access.token.revocation.lookups").counter().count());
+    }
+
+    @Test
+    void shouldLoadRevokedAccessTokensIntoBloomFilterOnRefresh() {
+        LocalDateTime expiresAt = LocalDateTime.now(ZoneOffset.UTC).plus(1, ChronoUnit.HOURS);
+        RevokedAccessToken revokedToken = RevokedAccessToken.builder().tokenId("token-1").expiresAt(expiresAt).build();
+        when(repositoryMock.findByExpiresAtAfter(any())).thenReturn(Flux.just(revokedToken));
+        when(repositoryMock.existsById("token-1")).thenReturn(Mono.just(true));
+
+        service.refresh().block();
+        assertTrue(service.isRevoked(createToken("token-1", Instant.now().plus(1, ChronoUnit.HOURS))).block());
+    }
+
+    @Test
+    void shouldDeleteExpiredRevokedAccessTokensOnRebuild() {
+        service.refresh().block();
+        verify(repositoryMock).deleteByExpiresAtLessThanEqual(any());
+    }
+
+    private Jwt createToken(String tokenId, Instant expiration) {
+        return new Jwt.Builder("header.payload.signature")
+                .claim("jti", tokenId)
+                .claim(JwtClaim.EXPIRATION_TIME, expiration.getEpochSecond())
+                .build();
+    }
+}
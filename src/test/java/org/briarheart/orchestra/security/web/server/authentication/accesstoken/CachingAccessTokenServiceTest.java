@@ -0,0 +1,133 @@
+package org.briarheart.orchestra.security.web.server.authentication.accesstoken;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.briarheart.orchestra.model.User;
+import org.briarheart.orchestra.security.web.server.authentication.jwt.Jwt;
+import org.briarheart.orchestra.security.web.server.authentication.jwt.JwtClaim;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class CachingAccessTokenServiceTest {
+    private static final String TOKEN_VALUE = "header.payload.signature";
+
+    private AccessTokenService delegate;
+    private SimpleMeterRegistry meterRegistry;
+    private CachingAccessTokenService service;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(AccessTokenService.class);
+        meterRegistry = new SimpleMeterRegistry();
+        service = new CachingAccessTokenService(delegate, 100, meterRegistry);
+    }
+
+    @Test
+    void shouldThrowExceptionOnConstructWhenDelegateIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new CachingAccessTokenService(null, 100, meterRegistry));
+        assertEquals("Access token service must not be null", e.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionOnConstructWhenMeterRegistryIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new CachingAccessTokenService(delegate, 100, null));
+        assertEquals("Meter registry must not be null", e.getMessage());
+    }
+
+    @Test
+    void shouldParseAccessTokenOnlyOnce() {
+        Jwt token = createToken(TOKEN_VALUE, Instant.now().plus(1, ChronoUnit.HOURS));
+        doReturn(Mono.just(token)).when(delegate).parseAccessToken(TOKEN_VALUE);
+
+        service.parseAccessToken(TOKEN_VALUE).block();
+        AccessToken result = service.parseAccessToken(TOKEN_VALUE).block();
+        assertSame(token, result);
+        verify(delegate, times(1)).parseAccessToken(TOKEN_VALUE);
+    }
+
+    @Test
+    void shouldNotReturnExpiredCachedAccessToken() {
+        Jwt token = createToken(TOKEN_VALUE, Instant.now().minus(1, ChronoUnit.SECONDS));
+        doReturn(Mono.just(token)).when(delegate).parseAccessToken(TOKEN_VALUE);
+
+        service.parseAccessToken(TOKEN_VALUE).block();
+        service.parseAccessToken(TOKEN_VALUE).block();
+        verify(delegate, times(2)).parseAccessToken(TOKEN_VALUE);
+    }
+
+    @Test
+    void shouldNotCacheInvalidAccessToken() {
+        when(delegate.parseAccessToken(anyString()))
+                .thenReturn(Mono.error(new InvalidAccessTokenException("Access token is malformed", null)));
+        assertThrows(InvalidAccessTokenException.class, () -> service.parseAccessToken(TOKEN_VALUE).block());
+        assertThrows(InvalidAccessTokenException.class, () -> service.parseAccessToken(TOKEN_VALUE).block());
+        verify(delegate, times(2)).parseAccessToken(TOKEN_VALUE);
+    }
+
+    @Test
+    void shouldCacheCreatedAccessToken() {
+        Jwt token = createToken(TOKEN_VALUE, Instant.now().plus(1, ChronoUnit.HOURS));
+        doReturn(Mono.just(token)).when(delegate).createAccessToken(any(User.class), any(ServerWebExchange.class));
+
+        service.createAccessToken(User.builder().id(1L).build(), mock(ServerWebExchange.class)).block();
+        AccessToken result = service.parseAccessToken(TOKEN_VALUE).block();
+        assertSame(token, result);
+        verify(delegate, never()).parseAccessToken(anyString());
+    }
+
+    @Test
+    void shouldNotReturnRevokedCachedAccessToken() {
+        Jwt token = createToken(TOKEN_VALUE, Instant.now().plus(1, ChronoUnit.HOURS));
+        doReturn(Mono.just(token)).when(delegate).parseAccessToken(TOKEN_VALUE);
+        AccessTokenRevocationService revocationServiceMock = mock(AccessTokenRevocationService.class);
+        when(revocationServiceMock.isRevoked(token)).thenReturn(Mono.just(true));
+        service.setRevocationService(revocationServiceMock);
+
+        service.parseAccessToken(TOKEN_VALUE).block();
+        InvalidAccessTokenException e = assertThrows(InvalidAccessTokenException.class,
+                () -> service.parseAccessToken(TOKEN_VALUE).block());
+        assertEquals("Access token is revoked", e.getMessage());
+    }
+
+    @Test
+    void shouldPublishMetrics() {
+        Jwt token = createToken(TOKEN_VALUE, Instant.now().plus(1, ChronoUnit.HOURS));
+        doReturn(Mono.just(token)).when(delegate).parseAccessToken(TOKEN_VALUE);
+
+        service.parseAccessToken(TOKEN_VALUE).block();
+        service.parseAccessToken(TOKEN_VALUE).block();
+
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "accessTokens").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", "accessTokens").tag("result", "miss")
+                .functionCounter().count());
+        assertEquals(1, meterRegistry.get("access.token.verification").timer().count());
+    }
+
+    @Test
+    void shouldThrowExceptionOnParseWhenTokenValueIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> service.parseAccessToken(null));
+        assertEquals("Access token value must not be null or empty", e.getMessage());
+    }
+
+    private Jwt createToken(String tokenValue, Instant expiration) {
+        return new Jwt.Builder(tokenValue)
+                .claim(JwtClaim.EXPIRATION_TIME, expiration.getEpochSecond())
+                .build();
+    }
+}
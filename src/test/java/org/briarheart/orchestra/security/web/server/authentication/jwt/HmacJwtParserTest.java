@@ -0,0 +1,202 @@
+package org.briarheart.orchestra.security.web.server.authentication.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.briarheart.orchestra.security.web.server.authentication.accesstoken.InvalidAccessTokenException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class HmacJwtParserTest {
+    private SecretKey signingKey;
+    private JwtSigningKey previousKey;
+    private HmacJwtParser parser;
+
+    @BeforeEach
+    void setUp() {
+        signingKey = Keys.secretKeyFor(SignatureAlgorithm.HS512);
+        previousKey = new JwtSigningKey("previous", SignatureAlgorithm.HS256,
+                Keys.secretKeyFor(SignatureAlgorithm.HS256).getEncoded());
+        JwtSigningKey currentKey = new JwtSigningKey(null, SignatureAlgorithm.HS512, signingKey.getEncoded());
+        parser = new HmacJwtParser(new JwtKeySet(currentKey, List.of(previousKey)));
+    }
+
+    @Test
+    void shouldThrowExceptionOnConstructWhenKeySetIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new HmacJwtParser(null));
+        assertEquals("Key set must not be null", e.getMessage());
+    }
+
+    @Test
+    void shouldParseKnownClaims() {
+        Instant issuedAt = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        Instant expiration = issuedAt.plus(1, ChronoUnit.HOURS);
+        String tokenValue = Jwts.builder()
+                .setSubject("1")
+                .claim(JwtClaim.EMAIL.getName(), "alice@mail.com")
+                .claim(JwtClaim.FULL_NAME.getName(), "Alice")
+                .claim(JwtClaim.PROFILE_PICTURE_URL.getName(), "http://example.com/picture")
+                .setIssuedAt(Date.from(issuedAt))
+                .setExpiration(Date.from(expiration))
+                .signWith(signingKey, SignatureAlgorithm.HS512)
+                .compact();
+
+        Jwt token = parser.parse(tokenValue);
+        assertEquals(tokenValue, token.getTokenValue());
+        assertEquals("1", token.getSubject());
+        assertEquals("alice@mail.com", token.getEmail());
+        assertEquals("Alice", token.getFullName());
+        assertEquals("http://example.com/picture", token.getProfilePictureUrl());
+        assertEquals(issuedAt, token.getIssuedAt());
+        assertEquals(expiration, token.getExpiration());
+    }
+
+    @Test
+    void shouldSkipUnknownClaims() {
+        String tokenValue = Jwts.builder()
+                .setSubject("1")
+                .claim("roles", List.of("admin", "user"))
+                .signWith(signingKey, SignatureAlgorithm.HS512)
+                .compact();
+        Jwt token = parser.parse(tokenValue);
+        assertEquals("1", token.getSubject());
+        assertFalse(token.getClaims().containsKey("roles"));
+    }
+
+    @Test
+    void shouldReturnTokenWithUnmodifiableClaims() {
+        String tokenValue = Jwts.builder().setSubject("1").signWith(signingKey, SignatureAlgorithm.HS512).compact();
+        Jwt token = parser.parse(tokenValue);
+        assertThrows(UnsupportedOperationException.class, () -> token.getClaims().put(Claims.SUBJECT, "2"));
+    }
+
+    @Test
+    void shouldVerifyTokenWithKeyReferencedByKeyId() {
+        String tokenValue = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, previousKey.getId())
+                .setSubject("1")
+                .signWith(previousKey.getSecretKey(), SignatureAlgorithm.HS256)
+                .compact();
+        Jwt token = parser.parse(tokenValue);
+        assertEquals("1", token.getSubject());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenKeyIdIsUnknown() {
+        String tokenValue = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, "unknown")
+                .setSubject("1")
+                .signWith(signingKey, SignatureAlgorithm.HS512)
+                .compact();
+        InvalidAccessTokenException e = assertThrows(InvalidAccessTokenException.class,
+                () -> parser.parse(tokenValue));
+        assertEquals("Access token is unsupported", e.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenAlgorithmDoesNotMatchKey() {
+        String tokenValue = Jwts.builder()
+                .setHeaderParam(JwsHeader.KEY_ID, previousKey.getId())
+                .setSubject("1")
+                .signWith(Keys.secretKeyFor(SignatureAlgorithm.HS512), SignatureAlgorithm.HS512)
+                .compact();
+        InvalidAccessTokenException e = assertThrows(InvalidAccessTokenException.class,
+                () -> parser.parse(tokenValue));
+        assertEquals("Access token is unsupported", e.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenSignatureIsInvalid() {
+        String tokenValue = Jwts.builder()
+                .setSubject("1")
+                .signWith(Keys.secretKeyFor(SignatureAlgorithm.HS512), SignatureAlgorithm.HS512)
+                .compact();
+        InvalidAccessTokenException e = assertThrows(InvalidAccessTokenException.class,
+                () -> parser.parse(tokenValue));
+        assertEquals("Access token signature is not valid", e.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenPayloadIsTampered() {
+        String tokenValue = Jwts.builder()
+                .setSubject("1")
+                .signWith(signingKey, SignatureAlgorithm.HS512)
+                .compact();
+        String[] parts = tokenValue.split("\\.");
+        String tamperedPayload = Jwts.builder().setSubject("2").compact().split("\\.")[1];
+        InvalidAccessTokenException e = assertThrows(InvalidAccessTokenException.class,
+                () -> parser.parse(parts[0] + "." + tamperedPayload + "." + parts[2]));
+        assertEquals("Access token signature is not valid", e.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenAlgorithmIsNotSupported() {
+        String tokenValue = Jwts.builder()
+                .setSubject("1")
+                .signWith(Keys.secretKeyFor(SignatureAlgorithm.HS256), SignatureAlgorithm.HS256)
+                .compact();
+        InvalidAccessTokenException e = assertThrows(InvalidAccessTokenException.class,
+                () -> parser.parse(tokenValue));
+        assertEquals("Access token is unsupported", e.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenTokenIsNotSigned() {
+        String tokenValue = Jwts.builder().setSubject("1").compact();
+        InvalidAccessTokenException e = assertThrows(InvalidAccessTokenException.class,
+                () -> parser.parse(tokenValue));
+        assertEquals("Access token is unsupported", e.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenTokenIsExpired() {
+        String tokenValue = Jwts.builder()
+                .setSubject("1")
+                .setExpiration(Date.from(Instant.now().minus(1, ChronoUnit.MINUTES)))
+                .signWith(signingKey, SignatureAlgorithm.HS512)
+                .compact();
+        InvalidAccessTokenException e = assertThrows(InvalidAccessTokenException.class,
+                () -> parser.parse(tokenValue));
+        assertEquals("Access token is expired", e.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenTokenIsNotValidYet() {
+        String tokenValue = Jwts.builder()
+                .setSubject("1")
+                .setNotBefore(Date.from(Instant.now().plus(1, ChronoUnit.MINUTES)))
+                .signWith(signingKey, SignatureAlgorithm.HS512)
+                .compact();
+        InvalidAccessTokenException e = assertThrows(InvalidAccessTokenException.class,
+                () -> parser.parse(tokenValue));
+        assertEquals("Access token is not valid yet", e.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenTokenIsMalformed() {
+        for (String tokenValue : List.of("abc", "abc.def", "a.b.c.d", ".e30.abc", "e30..abc", "!!!.e30.abc")) {
+            InvalidAccessTokenException e = assertThrows(InvalidAccessTokenException.class,
+                    () -> parser.parse(tokenValue), tokenValue);
+            assertEquals("Access token is malformed", e.getMessage(), tokenValue);
+        }
+    }
+
+    @Test
+    void shouldThrowExceptionOnParseWhenTokenValueIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> parser.parse(null));
+        assertEquals("Token value must not be null or empty", e.getMessage());
+    }
+}
@@ -0,0 +1,63 @@
+package org.briarheart.orchestra.security.web.server.authentication.jwt;
+
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class JwtKeySetTest {
+    @Test
+    void shouldUseSigningKeyForVerification() {
+        JwtSigningKey signingKey = createKey("current");
+        JwtKeySet keySet = new JwtKeySet(signingKey, List.of(createKey("previous")));
+        assertSame(signingKey, keySet.getVerificationKey("current"));
+    }
+
+    @Test
+    void shouldReturnVerificationKeyById() {
+        JwtSigningKey previousKey = createKey("previous");
+        JwtKeySet keySet = new JwtKeySet(createKey("current"), List.of(previousKey));
+        assertSame(previousKey, keySet.getVerificationKey("previous"));
+    }
+
+    @Test
+    void shouldReturnKeyWithoutIdWhenKeyIdIsNull() {
+        JwtSigningKey legacyKey = createKey(null);
+        JwtKeySet keySet = new JwtKeySet(createKey("current"), List.of(legacyKey));
+        assertSame(legacyKey, keySet.getVerificationKey(null));
+    }
+
+    @Test
+    void shouldReturnNullWhenKeyIsNotFound() {
+        JwtKeySet keySet = new JwtKeySet(createKey("current"));
+        assertNull(keySet.getVerificationKey("unknown"));
+        assertNull(keySet.getVerificationKey(null));
+    }
+
+    @Test
+    void shouldThrowExceptionOnConstructWhenKeyIdIsDuplicated() {
+        JwtSigningKey signingKey = createKey("current");
+        List<JwtSigningKey> verificationKeys = List.of(createKey("current"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new JwtKeySet(signingKey, verificationKeys));
+        assertEquals("Duplicate key id: current", e.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionOnKeyConstructWhenAlgorithmIsNotHmac() {
+        byte[] secret = Keys.secretKeyFor(SignatureAlgorithm.HS512).getEncoded();
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new JwtSigningKey("current", SignatureAlgorithm.RS256, secret));
+        assertEquals("Signature algorithm RS256 is not supported", e.getMessage());
+    }
+
+    private static JwtSigningKey createKey(String id) {
+        return new JwtSigningKey(id, SignatureAlgorithm.HS512, Keys.secretKeyFor(SignatureAlgorithm.HS512).getEncoded());
+    }
+}
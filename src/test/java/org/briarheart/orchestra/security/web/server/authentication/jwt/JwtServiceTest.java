@@ -1,7 +1,12 @@
 package org.briarheart.orchestra.security.web.server.authentication.jwt;
 
+import io.jsonwebtoken.JwsHeader;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
 import org.briarheart.orchestra.model.User;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessToken;
+import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessTokenRevocationService;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.InvalidAccessTokenException;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.ServerAccessTokenRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -118,6 +123,92 @@ class JwtServiceTest {
         assertEquals(PROFILE_PICTURE_URL, accessToken.getProfilePictureUrl());
     }
 
+    @Test
+    void shouldIncludeOnlyUserIdAndProfileVersionInCompactToken() {
+        service.setCompactClaims(true);
+        User user = User.builder().id(1L).version(3L).email(USER_EMAIL).fullName("White Rabbit").build();
+
+        MockServerHttpRequest requestMock = MockServerHttpRequest.get("/").build();
+        MockServerWebExchange webExchangeMock = MockServerWebExchange.from(requestMock);
+
+        AccessToken accessToken = service.createAccessToken(user, webExchangeMock).block();
+        assertNotNull(accessToken);
+
+        AccessToken parsedToken = service.parseAccessToken(accessToken.getTokenValue()).block();
+        assertNotNull(parsedToken);
+        assertEquals("1", parsedToken.getSubject());
+        assertEquals(3L, parsedToken.getProfileVersion());
+        assertNull(parsedToken.getEmail());
+        assertNull(parsedToken.getFullName());
+    }
+
+    @Test
+    void shouldIncludeUniqueIdInToken() {
+        User user = User.builder().id(1L).email(USER_EMAIL).build();
+
+        MockServerHttpRequest requestMock = MockServerHttpRequest.get("/").build();
+        MockServerWebExchange webExchangeMock = MockServerWebExchange.from(requestMock);
+
+        AccessToken accessToken1 = service.createAccessToken(user, webExchangeMock).block();
+        AccessToken accessToken2 = service.createAccessToken(user, webExchangeMock).block();
+        assertNotNull(accessToken1);
+        assertNotNull(accessToken2);
+        assertNotNull(accessToken1.getId());
+        assertNotEquals(accessToken1.getId(), accessToken2.getId());
+
+        AccessToken parsedToken = service.parseAccessToken(accessToken1.getTokenValue()).block();
+        assertNotNull(parsedToken);
+        assertEquals(accessToken1.getId(), parsedToken.getId());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenAccessTokenIsRevoked() {
+        AccessTokenRevocationService revocationServiceMock = mock(AccessTokenRevocationService.class);
+        when(revocationServiceMock.isRevoked(any())).thenReturn(Mono.just(true));
+        service.setRevocationService(revocationServiceMock);
+
+        InvalidAccessTokenException e = assertThrows(InvalidAccessTokenException.class, () ->
+                service.parseAccessToken(VALID_ACCESS_TOKEN_VALUE).block());
+        assertEquals("Access token is revoked", e.getMessage());
+    }
+
+    @Test
+    void shouldParseAccessTokenThatIsNotRevoked() {
+        AccessTokenRevocationService revocationServiceMock = mock(AccessTokenRevocationService.class);
+        when(revocationServiceMock.isRevoked(any())).thenReturn(Mono.just(false));
+        service.setRevocationService(revocationServiceMock);
+
+        AccessToken accessToken = service.parseAccessToken(VALID_ACCESS_TOKEN_VALUE).block();
+        assertNotNull(accessToken);
+        assertEquals(USER_EMAIL, accessToken.getSubject());
+    }
+
+    @Test
+    void shouldIncludeSigningKeyIdInToken() {
+        ServerAccessTokenRepository accessTokenRepositoryMock = mock(ServerAccessTokenRepository.class);
+        when(accessTokenRepositoryMock.saveAccessToken(any(), any()))
+                .thenAnswer(args -> Mono.just(args.getArgument(0, AccessToken.class)));
+        byte[] secret = Keys.secretKeyFor(SignatureAlgorithm.HS256).getEncoded();
+        JwtSigningKey signingKey = new JwtSigningKey("current", SignatureAlgorithm.HS256, secret);
+        JwtService keySetService = new JwtService(accessTokenRepositoryMock, new JwtKeySet(signingKey));
+
+        User user = User.builder().id(1L).email(USER_EMAIL).build();
+
+        MockServerHttpRequest requestMock = MockServerHttpRequest.get("/").build();
+        MockServerWebExchange webExchangeMock = MockServerWebExchange.from(requestMock);
+
+        AccessToken accessToken = keySetService.createAccessToken(user, webExchangeMock).block();
+        assertNotNull(accessToken);
+        JwsHeader<?> header = Jwts.parser().setSigningKey(signingKey.getSecretKey())
+                .parseClaimsJws(accessToken.getTokenValue()).getHeader();
+        assertEquals("current", header.getKeyId());
+        assertEquals(SignatureAlgorithm.HS256.getValue(), header.getAlgorithm());
+
+        AccessToken parsedToken = keySetService.parseAccessToken(accessToken.getTokenValue()).block();
+        assertNotNull(parsedToken);
+        assertEquals(USER_EMAIL, parsedToken.getEmail());
+    }
+
     @Test
     void shouldParseAccessToken() {
         AccessToken accessToken = service.parseAccessToken(VALID_ACCESS_TOKEN_VALUE).block();
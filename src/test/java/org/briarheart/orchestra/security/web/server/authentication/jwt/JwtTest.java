@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import java.time.Instant;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 /**
  * @author Roman Chigvintsev
@@ -27,4 +28,19 @@ class JwtTest {
                 .build();
         assertEquals(Instant.ofEpochSecond(EXP), token.getExpiration());
     }
+
+    @Test
+    void shouldReturnExpirationClaimOfIntegerType() {
+        final int EXP = 1570970985;
+        Jwt token = new Jwt.Builder(TestJwts.DEFAULT_ACCESS_TOKEN_VALUE)
+                .claim(JwtClaim.EXPIRATION_TIME, EXP)
+                .build();
+        assertEquals(Instant.ofEpochSecond(EXP), token.getExpiration());
+    }
+
+    @Test
+    void shouldReturnNullWhenExpirationClaimIsMissing() {
+        Jwt token = new Jwt.Builder(TestJwts.DEFAULT_ACCESS_TOKEN_VALUE).build();
+        assertNull(token.getExpiration());
+    }
 }
@@ -1,5 +1,8 @@
 package org.briarheart.orchestra.security.web.server.authentication.logout;
 
+import org.briarheart.orchestra.security.web.server.authentication.AccessTokenAuthentication;
+import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessToken;
+import org.briarheart.orchestra.security.web.server.authentication.accesstoken.AccessTokenRevocationService;
 import org.briarheart.orchestra.security.web.server.authentication.accesstoken.ServerAccessTokenRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,12 +20,15 @@ import static org.mockito.Mockito.*;
 class AccessTokenLogoutHandlerTest {
     private AccessTokenLogoutHandler handler;
     private ServerAccessTokenRepository accessTokenRepositoryMock;
+    private AccessTokenRevocationService revocationServiceMock;
 
     @BeforeEach
     void setUp() {
         accessTokenRepositoryMock = mock(ServerAccessTokenRepository.class);
         when(accessTokenRepositoryMock.removeAccessToken(any())).thenReturn(Mono.empty());
-        handler = new AccessTokenLogoutHandler(accessTokenRepositoryMock);
+        revocationServiceMock = mock(AccessTokenRevocationService.class);
+        when(revocationServiceMock.revokeAccessToken(any())).thenReturn(Mono.empty());
+        handler = new AccessTokenLogoutHandler(accessTokenRepositoryMock, revocationServiceMock);
     }
 
     @SuppressWarnings("UnassignedFluxMonoInstance")
@@ -36,5 +42,21 @@ class AccessTokenLogoutHandlerTest {
         handler.logout(webFilterExchangeMock, null).block();
         verify(accessTokenRepositoryMock).removeAccessToken(webExchangeMock);
         verifyNoMoreInteractions(accessTokenRepositoryMock);
+        verify(revocationServiceMock, never()).revokeAccessToken(any());
+    }
+
+    @Test
+    void shouldRevokeAccessTokenOfCurrentAuthentication() {
+        MockServerHttpRequest requestMock = MockServerHttpRequest.get("/").build();
+        MockServerWebExchange webExchangeMock = MockServerWebExchange.from(requestMock);
+        WebFilterExchange webFilterExchangeMock = mock(WebFilterExchange.class);
+        when(webFilterExchangeMock.getExchange()).thenReturn(webExchangeMock);
+
+        AccessToken accessTokenMock = mock(AccessToken.class);
+        when(accessTokenMock.getTokenValue()).thenReturn("header.payload.signature");
+        AccessTokenAuthentication authentication = new AccessTokenAuthentication(accessTokenMock, null);
+
+        handler.logout(webFilterExchangeMock, authentication).block();
+        verify(revocationServiceMock).revokeAccessToken(accessTokenMock);
     }
 }
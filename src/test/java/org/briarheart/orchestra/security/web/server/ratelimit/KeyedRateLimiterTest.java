@@ -0,0 +1,85 @@
+package org.briarheart.orchestra.security.web.server.ratelimit;
+
+import com.google.common.base.Ticker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class KeyedRateLimiterTest {
+    private ManualTicker ticker;
+    private MeterRegistry meterRegistry;
+    private KeyedRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        ticker = new ManualTicker();
+        meterRegistry = new SimpleMeterRegistry();
+        rateLimiter = new KeyedRateLimiter("login", "client", 3, Duration.ofMinutes(1), 100, meterRegistry,
+                ticker);
+    }
+
+    @Test
+    void shouldAllowBurstUpToCapacity() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(rateLimiter.tryAcquire("127.0.0.1").isZero());
+        }
+    }
+
+    @Test
+    void shouldRejectRequestExceedingCapacity() {
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.tryAcquire("127.0.0.1");
+        }
+        Duration waitTime = rateLimiter.tryAcquire("127.0.0.1");
+        assertEquals(Duration.ofSeconds(20), waitTime);
+    }
+
+    @Test
+    void shouldRefillTokensOverTime() {
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.tryAcquire("127.0.0.1");
+        }
+        ticker.advance(Duration.ofSeconds(20));
+        assertTrue(rateLimiter.tryAcquire("127.0.0.1").isZero());
+        assertFalse(rateLimiter.tryAcquire("127.0.0.1").isZero());
+    }
+
+    @Test
+    void shouldLimitRequestsPerKey() {
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.tryAcquire("127.0.0.1");
+        }
+        assertTrue(rateLimiter.tryAcquire("127.0.0.2").isZero());
+    }
+
+    @Test
+    void shouldPublishMetrics() {
+        for (int i = 0; i < 4; i++) {
+            rateLimiter.tryAcquire("127.0.0.1");
+        }
+        assertEquals(3.0, meterRegistry.get("rate.limiter.requests").tag("outcome", "allowed").counter().count());
+        assertEquals(1.0, meterRegistry.get("rate.limiter.requests").tag("outcome", "rejected").counter().count());
+        assertEquals(1.0, meterRegistry.get("rate.limiter.keys").gauge().value());
+    }
+
+    private static class ManualTicker extends Ticker {
+        private long nanos = 1_000_000_000L;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(Duration duration) {
+            nanos += duration.toNanos();
+        }
+    }
+}
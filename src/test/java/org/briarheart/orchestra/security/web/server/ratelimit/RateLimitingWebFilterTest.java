@@ -0,0 +1,182 @@
+package org.briarheart.orchestra.security.web.server.ratelimit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.web.server.util.matcher.PathPatternParserServerWebExchangeMatcher;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class RateLimitingWebFilterTest {
+    private static final InetSocketAddress CLIENT_ADDRESS = new InetSocketAddress("10.0.0.1", 54321);
+
+    private RateLimitingWebFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        RateLimitingWebFilter.Rule loginRule = new RateLimitingWebFilter.Rule(
+                new PathPatternParserServerWebExchangeMatcher("/login", HttpMethod.POST),
+                new KeyedRateLimiter("login", "client", 3, Duration.ofMinutes(1), 100, meterRegistry),
+                new KeyedRateLimiter("login", "email", 1, Duration.ofMinutes(1), 100, meterRegistry),
+                "username"
+        );
+        RateLimitingWebFilter.Rule registrationRule = new RateLimitingWebFilter.Rule(
+                new PathPatternParserServerWebExchangeMatcher("/v?/users", HttpMethod.POST),
+                null,
+                new KeyedRateLimiter("registration", "email", 1, Duration.ofMinutes(1), 100, meterRegistry),
+                "email"
+        );
+        filter = new RateLimitingWebFilter(List.of(loginRule, registrationRule), new ObjectMapper());
+    }
+
+    @Test
+    void shouldPassRequestNotMatchingAnyRule() {
+        for (int i = 0; i < 5; i++) {
+            MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/tasks")
+                    .remoteAddress(CLIENT_ADDRESS)
+                    .build());
+            assertTrue(filterAndCheckPassed(exchange));
+        }
+    }
+
+    @Test
+    void shouldRejectRequestWhenClientLimitIsExceeded() {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(filterAndCheckPassed(createLoginExchange("user" + i + "@mail.com")));
+        }
+        MockServerWebExchange exchange = createLoginExchange("user3@mail.com");
+        assertFalse(filterAndCheckPassed(exchange));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exchange.getResponse().getStatusCode());
+        assertEquals("20", exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void shouldRejectRequestWhenEmailLimitIsExceeded() {
+        assertTrue(filterAndCheckPassed(createLoginExchange("alice@mail.com")));
+        MockServerWebExchange exchange = createLoginExchange("Alice@Mail.com");
+        assertFalse(filterAndCheckPassed(exchange));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exchange.getResponse().getStatusCode());
+        assertEquals("60", exchange.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void shouldRejectJsonRequestWhenEmailLimitIsExceeded() {
+        assertTrue(filterAndCheckPassed(createRegistrationExchange("alice@mail.com")));
+        MockServerWebExchange exchange = createRegistrationExchange("alice@mail.com");
+        assertFalse(filterAndCheckPassed(exchange));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void shouldPreserveJsonRequestBodyForDownstreamHandlers() {
+        String body = "{\"email\":\"alice@mail.com\",\"password\":\"secret\"}";
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/v1/users")
+                .remoteAddress(CLIENT_ADDRESS)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body));
+        AtomicReference<String> receivedBody = new AtomicReference<>();
+        WebFilterChain chain = e -> DataBufferUtils.join(e.getRequest().getBody())
+                .doOnNext(buffer -> {
+                    receivedBody.set(buffer.toString(StandardCharsets.UTF_8));
+                    DataBufferUtils.release(buffer);
+                })
+                .then();
+        filter.filter(exchange, chain).block();
+        assertEquals(body, receivedBody.get());
+    }
+
+    @Test
+    void shouldRejectJsonRequestWhenBodySizeExceedsLimit() {
+        filter.setMaxBodySize(32);
+        MockServerWebExchange exchange = createRegistrationExchange("alice-with-very-long-name@mail.com");
+        assertFalse(filterAndCheckPassed(exchange));
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void shouldRejectJsonRequestWhenDeclaredContentLengthExceedsLimit() {
+        filter.setMaxBodySize(32);
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/v1/users")
+                .remoteAddress(CLIENT_ADDRESS)
+                .contentType(MediaType.APPLICATION_JSON)
+                .contentLength(1024)
+                .body("{}"));
+        assertFalse(filterAndCheckPassed(exchange));
+        assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, exchange.getResponse().getStatusCode());
+    }
+
+    @Test
+    void shouldResolveClientAddressFromConfiguredHeader() {
+        filter.setClientAddressHeader("X-Forwarded-For");
+        for (int i = 0; i < 5; i++) {
+            MockServerWebExchange exchange = createLoginExchange("user" + i + "@mail.com", "192.168.0." + i);
+            assertTrue(filterAndCheckPassed(exchange));
+        }
+    }
+
+    @Test
+    void shouldUseLastAddressFromConfiguredHeader() {
+        filter.setClientAddressHeader("X-Forwarded-For");
+        for (int i = 0; i < 3; i++) {
+            String forwardedFor = "1.1.1." + i + ", 192.168.0.1";
+            MockServerWebExchange exchange = createLoginExchange("user" + i + "@mail.com", forwardedFor);
+            assertTrue(filterAndCheckPassed(exchange));
+        }
+        MockServerWebExchange exchange = createLoginExchange("user3@mail.com", "1.1.1.3, 192.168.0.1");
+        assertFalse(filterAndCheckPassed(exchange));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, exchange.getResponse().getStatusCode());
+    }
+
+    private boolean filterAndCheckPassed(ServerWebExchange exchange) {
+        AtomicReference<Boolean> passed = new AtomicReference<>(false);
+        WebFilterChain chain = e -> {
+            passed.set(true);
+            return Mono.empty();
+        };
+        filter.filter(exchange, chain).block();
+        return passed.get();
+    }
+
+    private MockServerWebExchange createLoginExchange(String username) {
+        return MockServerWebExchange.from(MockServerHttpRequest.post("/login")
+                .remoteAddress(CLIENT_ADDRESS)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body("username=" + username + "&password=secret"));
+    }
+
+    private MockServerWebExchange createLoginExchange(String username, String forwardedFor) {
+        return MockServerWebExchange.from(MockServerHttpRequest.post("/login")
+                .remoteAddress(CLIENT_ADDRESS)
+                .header("X-Forwarded-For", forwardedFor)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                .body("username=" + username + "&password=secret"));
+    }
+
+    private MockServerWebExchange createRegistrationExchange(String email) {
+        return MockServerWebExchange.from(MockServerHttpRequest.post("/v1/users")
+                .remoteAddress(CLIENT_ADDRESS)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body("{\"email\":\"" + email + "\"}"));
+    }
+}
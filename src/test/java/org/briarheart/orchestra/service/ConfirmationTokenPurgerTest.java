@@ -0,0 +1,148 @@
+package org.briarheart.orchestra.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.briarheart.orchestra.config.ApplicationSecurityProperties;
+import org.briarheart.orchestra.data.EmailConfirmationTokenRepository;
+import org.briarheart.orchestra.data.EmailOutboxMessageRepository;
+import org.briarheart.orchestra.data.PasswordResetConfirmationTokenRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class ConfirmationTokenPurgerTest {
+    private static final int BATCH_SIZE = 10;
+
+    private ConfirmationTokenPurger purger;
+    private EmailConfirmationTokenRepository emailConfirmationTokenRepository;
+    private PasswordResetConfirmationTokenRepository passwordResetTokenRepository;
+    private EmailOutboxMessageRepository emailOutboxRepository;
+    private ApplicationSecurityProperties securityProperties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        emailConfirmationTokenRepository = mock(EmailConfirmationTokenRepository.class);
+        when(emailConfirmationTokenRepository.deleteByExpiresAtBefore(any(LocalDateTime.class), anyInt()))
+                .thenReturn(Mono.just(0));
+
+        passwordResetTokenRepository = mock(PasswordResetConfirmationTokenRepository.class);
+        when(passwordResetTokenRepository.deleteByExpiresAtBefore(any(LocalDateTime.class), anyInt()))
+                .thenReturn(Mono.just(0));
+        when(passwordResetTokenRepository.deleteInvalid(anyInt())).thenReturn(Mono.just(0));
+
+        emailOutboxRepository = mock(EmailOutboxMessageRepository.class);
+        when(emailOutboxRepository.deleteDeadBefore(any(LocalDateTime.class), anyInt())).thenReturn(Mono.just(0));
+
+        securityProperties = new ApplicationSecurityProperties();
+        ApplicationSecurityProperties.TokenPurge purgeProperties = securityProperties.getTokenPurge();
+        purgeProperties.setBatchSize(BATCH_SIZE);
+        purgeProperties.setBatchPause(Duration.ZERO);
+        purgeProperties.setMaxBatchesPerRun(3);
+
+        meterRegistry = new SimpleMeterRegistry();
+        purger = new ConfirmationTokenPurger(emailConfirmationTokenRepository, passwordResetTokenRepository,
+                emailOutboxRepository, securityProperties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        purger.destroy();
+    }
+
+    @Test
+    void shouldDeleteExpiredAndInvalidTokens() {
+        when(emailConfirmationTokenRepository.deleteByExpiresAtBefore(any(LocalDateTime.class), anyInt()))
+                .thenReturn(Mono.just(1));
+        when(passwordResetTokenRepository.deleteByExpiresAtBefore(any(LocalDateTime.class), anyInt()))
+                .thenReturn(Mono.just(2));
+        when(passwordResetTokenRepository.deleteInvalid(anyInt())).thenReturn(Mono.just(3));
+
+        Long deleted = purger.purge().block();
+        assertEquals(6L, deleted);
+        verify(emailConfirmationTokenRepository, times(1)).deleteByExpiresAtBefore(any(LocalDateTime.class),
+                eq(BATCH_SIZE));
+        verify(passwordResetTokenRepository, times(1)).deleteByExpiresAtBefore(any(LocalDateTime.class),
+                eq(BATCH_SIZE));
+        verify(passwordResetTokenRepository, times(1)).deleteInvalid(BATCH_SIZE);
+    }
+
+    @Test
+    void shouldDeleteDeadEmailMessages() {
+        when(emailOutboxRepository.deleteDeadBefore(any(LocalDateTime.class), anyInt())).thenReturn(Mono.just(4));
+
+        Long deleted = purger.purge().block();
+        assertEquals(4L, deleted);
+        verify(emailOutboxRepository, times(1)).deleteDeadBefore(any(LocalDateTime.class), eq(BATCH_SIZE));
+        assertEquals(4.0, meterRegistry.get("email.outbox.messages").tag("outcome", "purged").counter().count());
+    }
+
+    @Test
+    void shouldKeepExpiredTokensDuringRetentionPeriod() {
+        LocalDateTime before = LocalDateTime.now(ZoneOffset.UTC).minus(securityProperties.getTokenPurge()
+                .getRetention());
+        purger.purge().block();
+        LocalDateTime after = LocalDateTime.now(ZoneOffset.UTC).minus(securityProperties.getTokenPurge()
+                .getRetention());
+        verify(emailConfirmationTokenRepository, times(1)).deleteByExpiresAtBefore(
+                argThat(expiresAt -> !expiresAt.isBefore(before) && !expiresAt.isAfter(after)), anyInt());
+    }
+
+    @Test
+    void shouldDeleteNextBatchWhenPreviousOneIsFull() {
+        when(emailConfirmationTokenRepository.deleteByExpiresAtBefore(any(LocalDateTime.class), anyInt()))
+                .thenReturn(Mono.just(BATCH_SIZE), Mono.just(BATCH_SIZE), Mono.just(5));
+
+        Long deleted = purger.purge().block();
+        assertEquals(2L * BATCH_SIZE + 5, deleted);
+        verify(emailConfirmationTokenRepository, times(3)).deleteByExpiresAtBefore(any(LocalDateTime.class),
+                anyInt());
+    }
+
+    @Test
+    void shouldLimitNumberOfBatchesPerRun() {
+        when(passwordResetTokenRepository.deleteInvalid(anyInt())).thenReturn(Mono.just(BATCH_SIZE));
+
+        Long deleted = purger.purge().block();
+        assertEquals(3L * BATCH_SIZE, deleted);
+        verify(passwordResetTokenRepository, times(3)).deleteInvalid(anyInt());
+    }
+
+    @Test
+    void shouldPublishMetrics() {
+        when(emailConfirmationTokenRepository.deleteByExpiresAtBefore(any(LocalDateTime.class), anyInt()))
+                .thenReturn(Mono.just(1));
+        when(passwordResetTokenRepository.deleteByExpiresAtBefore(any(LocalDateTime.class), anyInt()))
+                .thenReturn(Mono.just(2));
+        when(passwordResetTokenRepository.deleteInvalid(anyInt())).thenReturn(Mono.just(3));
+
+        purger.purge().block();
+
+        assertEquals(1.0, meterRegistry.get("confirmation.tokens.purged").tag("type", "email-confirmation")
+                .counter().count());
+        assertEquals(5.0, meterRegistry.get("confirmation.tokens.purged").tag("type", "password-reset")
+                .counter().count());
+        assertEquals(1L, meterRegistry.get("confirmation.tokens.purge").timer().count());
+    }
+
+    @Test
+    void shouldThrowExceptionOnConstructWhenBatchSizeIsNotPositive() {
+        securityProperties.getTokenPurge().setBatchSize(0);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new ConfirmationTokenPurger(emailConfirmationTokenRepository, passwordResetTokenRepository,
+                        emailOutboxRepository, securityProperties, meterRegistry));
+        assertEquals("Batch size must be greater than zero", e.getMessage());
+    }
+}
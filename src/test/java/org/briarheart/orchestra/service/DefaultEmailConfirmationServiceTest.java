@@ -4,16 +4,18 @@ import org.briarheart.orchestra.config.ApplicationInfoProperties;
 import org.briarheart.orchestra.data.EmailConfirmationTokenRepository;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.data.UserRepository;
+import org.briarheart.orchestra.mail.MailTemplateEngine;
+import org.briarheart.orchestra.model.AbstractToken;
 import org.briarheart.orchestra.model.EmailConfirmationToken;
+import org.briarheart.orchestra.model.EmailOutboxMessage;
 import org.briarheart.orchestra.model.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.context.support.MessageSourceAccessor;
 import org.springframework.context.support.ResourceBundleMessageSource;
-import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
@@ -36,7 +38,8 @@ class DefaultEmailConfirmationServiceTest {
     private DefaultEmailConfirmationService service;
     private EmailConfirmationTokenRepository tokenRepository;
     private UserRepository userRepository;
-    private JavaMailSender javaMailSender;
+    private EmailOutboxService emailOutboxService;
+    private TransactionalOperator transactionalOperator;
 
     @BeforeEach
     void setUp() {
@@ -55,9 +58,15 @@ class DefaultEmailConfirmationServiceTest {
         messageSource.setBasename("messages");
         MessageSourceAccessor messages = new MessageSourceAccessor(messageSource);
 
-        javaMailSender = mock(JavaMailSender.class);
-        service = new DefaultEmailConfirmationService(tokenRepository, userRepository, appInfo, messages,
-                javaMailSender);
+        emailOutboxService = mock(EmailOutboxService.class);
+        when(emailOutboxService.enqueue(any(SimpleMailMessage.class)))
+                .thenReturn(Mono.just(EmailOutboxMessage.builder().id(1L).build()));
+
+        transactionalOperator = mock(TransactionalOperator.class);
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(args -> args.getArgument(0));
+
+        service = new DefaultEmailConfirmationService(tokenRepository, userRepository, appInfo,
+                new MailTemplateEngine(messages), emailOutboxService, transactionalOperator);
     }
 
     @Test
@@ -65,7 +74,7 @@ class DefaultEmailConfirmationServiceTest {
         User user = User.builder().email("alice@mail.com").fullName("Alice").build();
         service.sendEmailConfirmationLink(user, Locale.ENGLISH).block();
         ArgumentCaptor<SimpleMailMessage> messageCaptor = ArgumentCaptor.forClass(SimpleMailMessage.class);
-        verify(javaMailSender, times(1)).send(messageCaptor.capture());
+        verify(emailOutboxService, times(1)).enqueue(messageCaptor.capture());
         SimpleMailMessage message = messageCaptor.getValue();
         assertThat(message.getTo(), arrayContaining(user.getEmail()));
     }
@@ -77,7 +86,7 @@ class DefaultEmailConfirmationServiceTest {
         assertNotNull(token);
 
         ArgumentCaptor<SimpleMailMessage> messageCaptor = ArgumentCaptor.forClass(SimpleMailMessage.class);
-        verify(javaMailSender, times(1)).send(messageCaptor.capture());
+        verify(emailOutboxService, times(1)).enqueue(messageCaptor.capture());
         SimpleMailMessage message = messageCaptor.getValue();
         String confirmationLink = APPLICATION_URL + "/account/email/confirmation?userId=" + user.getId()
                 + "&token=" + token.getTokenValue();
@@ -92,42 +101,31 @@ class DefaultEmailConfirmationServiceTest {
     }
 
     @Test
-    void shouldThrowExceptionOnEmailConfirmationLinkSendWhenMailExceptionIsThrown() {
+    void shouldPutEmailConfirmationLinkIntoOutboxWithinTransaction() {
         User user = User.builder().email("alice@mail.com").fullName("Alice").build();
-        doThrow(new MailSendException("Something went wrong")).when(javaMailSender).send(any(SimpleMailMessage.class));
-        assertThrows(UnableToSendMessageException.class,
-                () -> service.sendEmailConfirmationLink(user, Locale.ENGLISH).block());
+        service.sendEmailConfirmationLink(user, Locale.ENGLISH).block();
+        verify(transactionalOperator, times(1)).transactional(any(Mono.class));
     }
 
     @Test
     void shouldConfirmEmail() {
-        User user = User.builder().id(1L).email("alice@mail.com").emailConfirmed(false).enabled(false).build();
-        EmailConfirmationToken token = EmailConfirmationToken.builder()
-                .id(2L)
-                .userId(user.getId())
-                .tokenValue("K1Mb2ByFcfYndPmuFijB")
-                .expiresAt(LocalDateTime.now(ZoneOffset.UTC).plus(1, ChronoUnit.HOURS))
-                .build();
-
-        when(tokenRepository.findFirstByUserIdAndTokenValueOrderByCreatedAtDesc(user.getId(), token.getTokenValue()))
-                .thenReturn(Mono.just(token));
-        when(userRepository.findById(user.getId())).thenReturn(Mono.just(user));
-
-        service.confirmEmail(user.getId(), token.getTokenValue()).block();
+        long userId = 1L;
+        String tokenValue = "K1Mb2ByFcfYndPmuFijB";
+        mockEmailConfirmation(userId, tokenValue, 1);
 
-        User expectedUser = new User(user);
-        expectedUser.setEmailConfirmed(true);
-        expectedUser.setEnabled(true);
-        expectedUser.setVersion(1L);
-        verify(userRepository, times(1)).save(expectedUser);
+        service.confirmEmail(userId, tokenValue).block();
+        verify(userRepository, times(1)).confirmEmail(eq(userId), eq(AbstractToken.hashTokenValue(tokenValue)),
+                any(LocalDateTime.class));
+        verify(tokenRepository, never()).findByTokenHash(anyString());
     }
 
     @Test
     void shouldThrowExceptionOnEmailConfirmWhenTokenIsNotFound() {
         long userId = 1L;
         String tokenValue = "K1Mb2ByFcfYndPmuFijB";
-        when(tokenRepository.findFirstByUserIdAndTokenValueOrderByCreatedAtDesc(userId, tokenValue))
-                .thenReturn(Mono.empty());
+        mockEmailConfirmation(userId, tokenValue, 0);
+        when(tokenRepository.findByTokenHash(AbstractToken.hashTokenValue(tokenValue))).thenReturn(Mono.empty());
+
         EntityNotFoundException e = assertThrows(EntityNotFoundException.class,
                 () -> service.confirmEmail(userId, tokenValue).block());
         assertEquals("Email confirmation token \"" + tokenValue + "\" is not registered for user with id " + userId,
@@ -135,53 +133,64 @@ class DefaultEmailConfirmationServiceTest {
     }
 
     @Test
-    void shouldThrowExceptionOnEmailConfirmWhenTokenIsExpired() {
+    void shouldThrowExceptionOnEmailConfirmWhenTokenBelongsToAnotherUser() {
         long userId = 1L;
         EmailConfirmationToken token = EmailConfirmationToken.builder()
                 .id(2L)
-                .userId(userId)
+                .userId(3L)
                 .tokenValue("K1Mb2ByFcfYndPmuFijB")
-                .expiresAt(LocalDateTime.now(ZoneOffset.UTC).minus(1, ChronoUnit.HOURS))
+                .expiresAt(LocalDateTime.now(ZoneOffset.UTC).plus(1, ChronoUnit.HOURS))
                 .build();
-        when(tokenRepository.findFirstByUserIdAndTokenValueOrderByCreatedAtDesc(userId, token.getTokenValue()))
-                .thenReturn(Mono.just(token));
-        TokenExpiredException e = assertThrows(TokenExpiredException.class,
-                () -> service.confirmEmail(userId, token.getTokenValue()).block());
-        assertEquals("Email confirmation token \"" + token.getTokenValue() + "\" is expired", e.getMessage());
+        mockEmailConfirmation(userId, token.getTokenValue(), 0);
+        when(tokenRepository.findByTokenHash(token.getTokenHash())).thenReturn(Mono.just(token));
+
+        assertThrows(EntityNotFoundException.class, () -> service.confirmEmail(userId, token.getTokenValue()).block());
     }
 
     @Test
-    void shouldThrowExceptionOnEmailConfirmWhenUserIsNotFound() {
+    void shouldThrowExceptionOnEmailConfirmWhenTokenIsExpired() {
         long userId = 1L;
         EmailConfirmationToken token = EmailConfirmationToken.builder()
                 .id(2L)
                 .userId(userId)
                 .tokenValue("K1Mb2ByFcfYndPmuFijB")
-                .expiresAt(LocalDateTime.now(ZoneOffset.UTC).plus(1, ChronoUnit.HOURS))
+                .expiresAt(LocalDateTime.now(ZoneOffset.UTC).minus(1, ChronoUnit.HOURS))
                 .build();
-        when(tokenRepository.findFirstByUserIdAndTokenValueOrderByCreatedAtDesc(userId, token.getTokenValue()))
-                .thenReturn(Mono.just(token));
-        when(userRepository.findById(userId)).thenReturn(Mono.empty());
-        EntityNotFoundException e = assertThrows(EntityNotFoundException.class,
+        mockEmailConfirmation(userId, token.getTokenValue(), 0);
+        when(tokenRepository.findByTokenHash(token.getTokenHash())).thenReturn(Mono.just(token));
+
+        TokenExpiredException e = assertThrows(TokenExpiredException.class,
                 () -> service.confirmEmail(userId, token.getTokenValue()).block());
-        assertEquals("User with id " + userId + " is not found", e.getMessage());
+        assertEquals("Email confirmation token \"" + token.getTokenValue() + "\" is expired", e.getMessage());
     }
 
     @Test
     void shouldDoNothingOnEmailConfirmWhenEmailIsAlreadyConfirmed() {
-        User user = User.builder().id(1L).email("alice@mail.com").build();
+        long userId = 1L;
         EmailConfirmationToken token = EmailConfirmationToken.builder()
                 .id(2L)
-                .userId(user.getId())
+                .userId(userId)
                 .tokenValue("K1Mb2ByFcfYndPmuFijB")
                 .expiresAt(LocalDateTime.now(ZoneOffset.UTC).plus(1, ChronoUnit.HOURS))
                 .build();
+        mockEmailConfirmation(userId, token.getTokenValue(), 0);
+        when(tokenRepository.findByTokenHash(token.getTokenHash())).thenReturn(Mono.just(token));
 
-        when(tokenRepository.findFirstByUserIdAndTokenValueOrderByCreatedAtDesc(user.getId(), token.getTokenValue()))
-                .thenReturn(Mono.just(token));
-        when(userRepository.findById(user.getId())).thenReturn(Mono.just(user));
-
-        service.confirmEmail(user.getId(), token.getTokenValue()).block();
+        service.confirmEmail(userId, token.getTokenValue()).block();
         verify(userRepository, never()).save(any(User.class));
     }
+
+    @Test
+    void shouldStoreTokenDigestInsteadOfTokenValue() {
+        User user = User.builder().id(1L).email("alice@mail.com").fullName("Alice").build();
+        EmailConfirmationToken token = service.sendEmailConfirmationLink(user, Locale.ENGLISH).block();
+        assertNotNull(token);
+        assertEquals(AbstractToken.hashTokenValue(token.getTokenValue()), token.getTokenHash());
+        assertEquals(64, token.getTokenHash().length());
+    }
+
+    private void mockEmailConfirmation(long userId, String tokenValue, int result) {
+        when(userRepository.confirmEmail(eq(userId), eq(AbstractToken.hashTokenValue(tokenValue)),
+                any(LocalDateTime.class))).thenReturn(Mono.just(result));
+    }
 }
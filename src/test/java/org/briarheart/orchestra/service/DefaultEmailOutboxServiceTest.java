@@ -0,0 +1,50 @@
+package org.briarheart.orchestra.service;
+
+import org.briarheart.orchestra.data.EmailOutboxMessageRepository;
+import org.briarheart.orchestra.model.EmailOutboxMessage;
+import org.briarheart.orchestra.model.EmailOutboxMessageStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.SimpleMailMessage;
+import reactor.core.publisher.Mono;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class DefaultEmailOutboxServiceTest {
+    private DefaultEmailOutboxService service;
+
+    @BeforeEach
+    void setUp() {
+        EmailOutboxMessageRepository outboxRepository = mock(EmailOutboxMessageRepository.class);
+        when(outboxRepository.save(any(EmailOutboxMessage.class))).thenAnswer(args -> Mono.just(args.getArgument(0)));
+        service = new DefaultEmailOutboxService(outboxRepository);
+    }
+
+    @Test
+    void shouldPutMessageIntoOutbox() {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo("alice@mail.com");
+        message.setSubject("Test");
+        message.setText("Test message");
+
+        EmailOutboxMessage result = service.enqueue(message).block();
+        assertNotNull(result);
+        assertEquals("alice@mail.com", result.getRecipient());
+        assertEquals("Test", result.getSubject());
+        assertEquals("Test message", result.getText());
+        assertEquals(EmailOutboxMessageStatus.PENDING, result.getStatus());
+        assertEquals(0, result.getAttempts());
+        assertNotNull(result.getNextAttemptAt());
+    }
+
+    @Test
+    void shouldThrowExceptionOnEnqueueWhenMessageHasNoRecipient() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> service.enqueue(new SimpleMailMessage()));
+        assertEquals("Message must have one recipient", e.getMessage());
+    }
+}
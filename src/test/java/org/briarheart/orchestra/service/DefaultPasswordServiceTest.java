@@ -1,32 +1,44 @@
 package org.briarheart.orchestra.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.briarheart.orchestra.config.ApplicationInfoProperties;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.data.PasswordResetConfirmationTokenRepository;
 import org.briarheart.orchestra.data.UserRepository;
+import org.briarheart.orchestra.mail.MailTemplateEngine;
+import org.briarheart.orchestra.model.AbstractToken;
 import org.briarheart.orchestra.model.PasswordResetConfirmationToken;
+import org.briarheart.orchestra.model.EmailOutboxMessage;
 import org.briarheart.orchestra.model.User;
+import org.briarheart.orchestra.security.crypto.password.ReactivePasswordEncoder;
+import org.briarheart.orchestra.security.oauth2.core.userdetails.UserDetailsCache;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.context.support.MessageSourceAccessor;
 import org.springframework.context.support.ResourceBundleMessageSource;
-import org.springframework.mail.MailSendException;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.arrayContaining;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -39,8 +51,11 @@ class DefaultPasswordServiceTest {
     private DefaultPasswordService service;
     private PasswordResetConfirmationTokenRepository tokenRepository;
     private UserRepository userRepository;
-    private JavaMailSender javaMailSender;
+    private EmailOutboxService emailOutboxService;
+    private TransactionalOperator transactionalOperator;
     private PasswordEncoder passwordEncoder;
+    private ReactivePasswordEncoder reactivePasswordEncoder;
+    private UserDetailsCache userDetailsCache;
 
     @BeforeEach
     void setUp() {
@@ -58,7 +73,12 @@ class DefaultPasswordServiceTest {
         messageSource.setBasename("messages");
         MessageSourceAccessor messages = new MessageSourceAccessor(messageSource);
 
-        javaMailSender = mock(JavaMailSender.class);
+        emailOutboxService = mock(EmailOutboxService.class);
+        when(emailOutboxService.enqueue(any(SimpleMailMessage.class)))
+                .thenReturn(Mono.just(EmailOutboxMessage.builder().id(1L).build()));
+
+        transactionalOperator = mock(TransactionalOperator.class);
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(args -> args.getArgument(0));
 
         passwordEncoder = mock(PasswordEncoder.class);
         when(passwordEncoder.encode(anyString())).thenAnswer(args -> args.getArgument(0));
@@ -68,8 +88,18 @@ class DefaultPasswordServiceTest {
             return rawPassword.equals(encodedPassword);
         });
 
-        service = new DefaultPasswordService(tokenRepository, userRepository, appInfo, messages, javaMailSender,
-                passwordEncoder);
+        reactivePasswordEncoder = new ReactivePasswordEncoder(passwordEncoder, 1, 10, new SimpleMeterRegistry());
+
+        service = new DefaultPasswordService(tokenRepository, userRepository, appInfo, new MailTemplateEngine(messages),
+                emailOutboxService, reactivePasswordEncoder, transactionalOperator);
+
+        userDetailsCache = mock(UserDetailsCache.class);
+        service.setUserDetailsCache(userDetailsCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reactivePasswordEncoder.destroy();
     }
 
     @Test
@@ -79,7 +109,7 @@ class DefaultPasswordServiceTest {
 
         service.resetPassword(user.getEmail(), Locale.ENGLISH).block();
         ArgumentCaptor<SimpleMailMessage> messageCaptor = ArgumentCaptor.forClass(SimpleMailMessage.class);
-        verify(javaMailSender, times(1)).send(messageCaptor.capture());
+        verify(emailOutboxService, times(1)).enqueue(messageCaptor.capture());
         SimpleMailMessage message = messageCaptor.getValue();
         assertThat(message.getTo(), arrayContaining(user.getEmail()));
     }
@@ -97,7 +127,7 @@ class DefaultPasswordServiceTest {
         PasswordResetConfirmationToken token = tokenCaptor.getValue();
 
         ArgumentCaptor<SimpleMailMessage> messageCaptor = ArgumentCaptor.forClass(SimpleMailMessage.class);
-        verify(javaMailSender, times(1)).send(messageCaptor.capture());
+        verify(emailOutboxService, times(1)).enqueue(messageCaptor.capture());
         SimpleMailMessage message = messageCaptor.getValue();
         String confirmationLink = APPLICATION_URL + "/account/password/reset/confirmation?userId=" + user.getId()
                 + "&token=" + token.getTokenValue();
@@ -112,11 +142,26 @@ class DefaultPasswordServiceTest {
         service.resetPassword(user.getEmail(), Locale.ENGLISH).block();
 
         ArgumentCaptor<SimpleMailMessage> messageCaptor = ArgumentCaptor.forClass(SimpleMailMessage.class);
-        verify(javaMailSender, times(1)).send(messageCaptor.capture());
+        verify(emailOutboxService, times(1)).enqueue(messageCaptor.capture());
         SimpleMailMessage message = messageCaptor.getValue();
         assertThat(message.getText(), containsString("1 day"));
     }
 
+    @Test
+    void shouldIncludeChangedLinkExpirationTimeoutIntoMessageText() {
+        User user = User.builder().id(1L).email("alice@mail.com").fullName("Alice").build();
+        when(userRepository.findByEmailAndEnabled(user.getEmail(), true)).thenReturn(Mono.just(user));
+
+        service.resetPassword(user.getEmail(), Locale.ENGLISH).block();
+        service.setPasswordResetTokenExpirationTimeout(Duration.ofHours(2));
+        service.resetPassword(user.getEmail(), Locale.ENGLISH).block();
+
+        ArgumentCaptor<SimpleMailMessage> messageCaptor = ArgumentCaptor.forClass(SimpleMailMessage.class);
+        verify(emailOutboxService, times(2)).enqueue(messageCaptor.capture());
+        SimpleMailMessage message = messageCaptor.getAllValues().get(1);
+        assertThat(message.getText(), containsString("2 hours"));
+    }
+
     @Test
     void shouldDoNothingOnPasswordResetWhenUserIsNotFound() {
         String email = "alice@mail.com";
@@ -133,94 +178,140 @@ class DefaultPasswordServiceTest {
     }
 
     @Test
-    void shouldThrowExceptionOnPasswordResetWhenMailExceptionIsThrown() {
+    void shouldPutPasswordResetLinkIntoOutboxWithinTransaction() {
         User user = User.builder().id(1L).email("alice@mail.com").fullName("Alice").build();
         when(userRepository.findByEmailAndEnabled(user.getEmail(), true)).thenReturn(Mono.just(user));
-
-        doThrow(new MailSendException("Something went wrong")).when(javaMailSender).send(any(SimpleMailMessage.class));
-        assertThrows(UnableToSendMessageException.class,
-                () -> service.resetPassword("alice@mail.com", Locale.ENGLISH).block());
+        service.resetPassword("alice@mail.com", Locale.ENGLISH).block();
+        verify(transactionalOperator, times(1)).transactional(any(Mono.class));
     }
 
     @Test
     void shouldConfirmPasswordReset() {
-        User user = User.builder().id(1L).email("alice@mail.com").emailConfirmed(true).enabled(true).build();
-        PasswordResetConfirmationToken token = PasswordResetConfirmationToken.builder()
-                .id(2L)
-                .userId(user.getId())
-                .tokenValue("K1Mb2ByFcfYndPmuFijB")
-                .expiresAt(LocalDateTime.now(ZoneOffset.UTC).plus(1, ChronoUnit.HOURS))
-                .build();
-
-        when(tokenRepository.findFirstByUserIdAndTokenValueAndValidOrderByCreatedAtDesc(
-                user.getId(),
-                token.getTokenValue(),
-                true
-        )).thenReturn(Mono.just(token));
-        when(userRepository.findById(user.getId())).thenReturn(Mono.just(user));
+        long userId = 1L;
+        String tokenValue = "K1Mb2ByFcfYndPmuFijB";
+        mockValidToken(userId, tokenValue);
+        mockTokenInvalidation(userId, tokenValue, 1);
+        when(userRepository.resetPassword(anyLong(), anyString())).thenReturn(Mono.just(1));
 
         String newPassword = "qwerty";
-        service.confirmPasswordReset(user.getId(), token.getTokenValue(), newPassword).block();
-
-        User expectedUser = new User(user);
-        expectedUser.setPassword(newPassword);
-        expectedUser.setVersion(1L);
-        verify(userRepository, times(1)).save(expectedUser);
+        service.confirmPasswordReset(userId, tokenValue, newPassword).block();
+        verify(userRepository, times(1)).resetPassword(userId, newPassword);
     }
 
     @Test
     void shouldInvalidateTokenOnPasswordResetConfirm() {
-        User user = User.builder().id(1L).email("alice@mail.com").emailConfirmed(true).enabled(true).build();
-        PasswordResetConfirmationToken token = PasswordResetConfirmationToken.builder()
-                .id(2L)
-                .userId(user.getId())
-                .tokenValue("K1Mb2ByFcfYndPmuFijB")
-                .expiresAt(LocalDateTime.now(ZoneOffset.UTC).plus(1, ChronoUnit.HOURS))
-                .build();
+        long userId = 1L;
+        String tokenValue = "K1Mb2ByFcfYndPmuFijB";
+        mockValidToken(userId, tokenValue);
+        mockTokenInvalidation(userId, tokenValue, 1);
+        when(userRepository.resetPassword(anyLong(), anyString())).thenReturn(Mono.just(1));
 
-        when(tokenRepository.findFirstByUserIdAndTokenValueAndValidOrderByCreatedAtDesc(
-                user.getId(),
-                token.getTokenValue(),
-                true
-        )).thenReturn(Mono.just(token));
-        when(userRepository.findById(user.getId())).thenReturn(Mono.just(user));
+        service.confirmPasswordReset(userId, tokenValue, "qwerty").block();
+        verify(tokenRepository, times(1)).invalidate(eq(AbstractToken.hashTokenValue(tokenValue)), eq(userId),
+                any(LocalDateTime.class));
+    }
 
-        String newPassword = "qwerty";
-        service.confirmPasswordReset(user.getId(), token.getTokenValue(), newPassword).block();
+    @Test
+    void shouldInvalidateTokenAndResetPasswordWithinTransaction() {
+        long userId = 1L;
+        String tokenValue = "K1Mb2ByFcfYndPmuFijB";
+        mockValidToken(userId, tokenValue);
+        mockTokenInvalidation(userId, tokenValue, 1);
+        when(userRepository.resetPassword(anyLong(), anyString())).thenReturn(Mono.just(1));
 
-        PasswordResetConfirmationToken invalidatedToken = new PasswordResetConfirmationToken(token);
-        invalidatedToken.setValid(false);
-        verify(tokenRepository, times(1)).save(invalidatedToken);
+        service.confirmPasswordReset(userId, tokenValue, "qwerty").block();
+        verify(transactionalOperator, times(1)).transactional(any(Mono.class));
     }
 
     @Test
-    void shouldEncodePasswordOnPasswordResetConfirm() {
-        User user = User.builder().id(1L).email("alice@mail.com").emailConfirmed(true).enabled(true).build();
+    void shouldNotInvalidateTokenWhenPasswordEncodingFails() {
+        long userId = 1L;
+        String tokenValue = "K1Mb2ByFcfYndPmuFijB";
+        mockValidToken(userId, tokenValue);
+        when(passwordEncoder.encode(anyString())).thenThrow(new IllegalStateException("Encoder failure"));
+
+        assertThrows(IllegalStateException.class,
+                () -> service.confirmPasswordReset(userId, tokenValue, "qwerty").block());
+        verify(tokenRepository, never()).invalidate(anyString(), anyLong(), any(LocalDateTime.class));
+    }
+
+    @Test
+    void shouldNotEncodePasswordOnPasswordResetConfirmWhenTokenIsNotFound() {
+        long userId = 1L;
+        String tokenValue = "K1Mb2ByFcfYndPmuFijB";
+        when(tokenRepository.findByTokenHash(AbstractToken.hashTokenValue(tokenValue))).thenReturn(Mono.empty());
+
+        assertThrows(EntityNotFoundException.class,
+                () -> service.confirmPasswordReset(userId, tokenValue, "qwerty").block());
+        verify(passwordEncoder, never()).encode(anyString());
+    }
+
+    @Test
+    void shouldRejectConcurrentUseOfTheSameToken() {
+        long userId = 1L;
         PasswordResetConfirmationToken token = PasswordResetConfirmationToken.builder()
                 .id(2L)
-                .userId(user.getId())
+                .userId(userId)
                 .tokenValue("K1Mb2ByFcfYndPmuFijB")
                 .expiresAt(LocalDateTime.now(ZoneOffset.UTC).plus(1, ChronoUnit.HOURS))
                 .build();
+        when(tokenRepository.findByTokenHash(token.getTokenHash())).thenReturn(Mono.just(token));
+        // Conditional update of token succeeds only once
+        AtomicBoolean valid = new AtomicBoolean(true);
+        when(tokenRepository.invalidate(eq(token.getTokenHash()), eq(userId), any(LocalDateTime.class)))
+                .thenAnswer(args -> Mono.fromSupplier(() -> {
+                    if (valid.compareAndSet(true, false)) {
+                        token.setValid(false);
+                        return 1;
+                    }
+                    return 0;
+                }));
+        when(userRepository.resetPassword(anyLong(), anyString())).thenReturn(Mono.just(1));
+
+        List<Throwable> errors = Collections.synchronizedList(new ArrayList<>());
+        Mono<Void> firstConfirmation = service.confirmPasswordReset(userId, token.getTokenValue(), "qwerty")
+                .onErrorResume(e -> Mono.fromRunnable(() -> errors.add(e)));
+        Mono<Void> secondConfirmation = service.confirmPasswordReset(userId, token.getTokenValue(), "s3cret")
+                .onErrorResume(e -> Mono.fromRunnable(() -> errors.add(e)));
+        Mono.when(firstConfirmation, secondConfirmation).block();
+
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0) instanceof EntityNotFoundException);
+        verify(userRepository, times(1)).resetPassword(eq(userId), anyString());
+    }
 
-        when(tokenRepository.findFirstByUserIdAndTokenValueAndValidOrderByCreatedAtDesc(
-                user.getId(),
-                token.getTokenValue(),
-                true
-        )).thenReturn(Mono.just(token));
-        when(userRepository.findById(user.getId())).thenReturn(Mono.just(user));
+    @Test
+    void shouldEncodePasswordOnPasswordResetConfirm() {
+        long userId = 1L;
+        String tokenValue = "K1Mb2ByFcfYndPmuFijB";
+        mockValidToken(userId, tokenValue);
+        mockTokenInvalidation(userId, tokenValue, 1);
+        when(userRepository.resetPassword(anyLong(), anyString())).thenReturn(Mono.just(1));
 
         String newPassword = "qwerty";
-        service.confirmPasswordReset(user.getId(), token.getTokenValue(), newPassword).block();
+        service.confirmPasswordReset(userId, tokenValue, newPassword).block();
         verify(passwordEncoder, times(1)).encode(newPassword);
     }
 
+    @Test
+    void shouldInvalidateCachedUserDetailsOnPasswordResetConfirm() {
+        long userId = 1L;
+        String tokenValue = "K1Mb2ByFcfYndPmuFijB";
+        mockValidToken(userId, tokenValue);
+        mockTokenInvalidation(userId, tokenValue, 1);
+        when(userRepository.resetPassword(anyLong(), anyString())).thenReturn(Mono.just(1));
+
+        service.confirmPasswordReset(userId, tokenValue, "qwerty").block();
+        verify(userDetailsCache, times(1)).invalidateById(userId);
+    }
+
     @Test
     void shouldThrowExceptionOnPasswordResetConfirmWhenTokenIsNotFound() {
         long userId = 1L;
         String tokenValue = "K1Mb2ByFcfYndPmuFijB";
-        when(tokenRepository.findFirstByUserIdAndTokenValueAndValidOrderByCreatedAtDesc(userId, tokenValue, true))
-                .thenReturn(Mono.empty());
+        mockTokenInvalidation(userId, tokenValue, 0);
+        when(tokenRepository.findByTokenHash(AbstractToken.hashTokenValue(tokenValue))).thenReturn(Mono.empty());
+
         EntityNotFoundException e = assertThrows(EntityNotFoundException.class,
                 () -> service.confirmPasswordReset(userId, tokenValue, "qwerty").block());
         assertEquals("Password reset confirmation token \"" + tokenValue + "\" is not registered for user with id "
@@ -228,26 +319,24 @@ class DefaultPasswordServiceTest {
     }
 
     @Test
-    void shouldThrowExceptionOnPasswordResetConfirmWhenTokenIsExpired() {
+    void shouldThrowExceptionOnPasswordResetConfirmWhenTokenBelongsToAnotherUser() {
         long userId = 1L;
         PasswordResetConfirmationToken token = PasswordResetConfirmationToken.builder()
                 .id(2L)
-                .userId(userId)
+                .userId(3L)
                 .tokenValue("K1Mb2ByFcfYndPmuFijB")
-                .expiresAt(LocalDateTime.now(ZoneOffset.UTC).minus(1, ChronoUnit.HOURS))
+                .expiresAt(LocalDateTime.now(ZoneOffset.UTC).plus(1, ChronoUnit.HOURS))
                 .build();
-        when(tokenRepository.findFirstByUserIdAndTokenValueAndValidOrderByCreatedAtDesc(
-                userId,
-                token.getTokenValue(),
-                true
-        )).thenReturn(Mono.just(token));
-        TokenExpiredException e = assertThrows(TokenExpiredException.class,
+        mockTokenInvalidation(userId, token.getTokenValue(), 0);
+        when(tokenRepository.findByTokenHash(token.getTokenHash())).thenReturn(Mono.just(token));
+
+        assertThrows(EntityNotFoundException.class,
                 () -> service.confirmPasswordReset(userId, token.getTokenValue(), "qwerty").block());
-        assertEquals("Password reset confirmation token \"" + token.getTokenValue() + "\" is expired", e.getMessage());
+        verify(userRepository, never()).resetPassword(anyLong(), anyString());
     }
 
     @Test
-    void shouldThrowExceptionOnPasswordResetConfirmWhenUserIsNotFound() {
+    void shouldThrowExceptionOnPasswordResetConfirmWhenTokenIsAlreadyUsed() {
         long userId = 1L;
         PasswordResetConfirmationToken token = PasswordResetConfirmationToken.builder()
                 .id(2L)
@@ -255,14 +344,42 @@ class DefaultPasswordServiceTest {
                 .tokenValue("K1Mb2ByFcfYndPmuFijB")
                 .expiresAt(LocalDateTime.now(ZoneOffset.UTC).plus(1, ChronoUnit.HOURS))
                 .build();
-        when(tokenRepository.findFirstByUserIdAndTokenValueAndValidOrderByCreatedAtDesc(
-                userId,
-                token.getTokenValue(),
-                true
-        )).thenReturn(Mono.just(token));
-        when(userRepository.findById(userId)).thenReturn(Mono.empty());
-        EntityNotFoundException e = assertThrows(EntityNotFoundException.class,
+        token.setValid(false);
+        mockTokenInvalidation(userId, token.getTokenValue(), 0);
+        when(tokenRepository.findByTokenHash(token.getTokenHash())).thenReturn(Mono.just(token));
+
+        assertThrows(EntityNotFoundException.class,
+                () -> service.confirmPasswordReset(userId, token.getTokenValue(), "qwerty").block());
+        verify(userRepository, never()).resetPassword(anyLong(), anyString());
+    }
+
+    @Test
+    void shouldThrowExceptionOnPasswordResetConfirmWhenTokenIsExpired() {
+        long userId = 1L;
+        PasswordResetConfirmationToken token = PasswordResetConfirmationToken.builder()
+                .id(2L)
+                .userId(userId)
+                .tokenValue("K1Mb2ByFcfYndPmuFijB")
+                .expiresAt(LocalDateTime.now(ZoneOffset.UTC).minus(1, ChronoUnit.HOURS))
+                .build();
+        mockTokenInvalidation(userId, token.getTokenValue(), 0);
+        when(tokenRepository.findByTokenHash(token.getTokenHash())).thenReturn(Mono.just(token));
+
+        TokenExpiredException e = assertThrows(TokenExpiredException.class,
                 () -> service.confirmPasswordReset(userId, token.getTokenValue(), "qwerty").block());
+        assertEquals("Password reset confirmation token \"" + token.getTokenValue() + "\" is expired", e.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionOnPasswordResetConfirmWhenUserIsNotFound() {
+        long userId = 1L;
+        String tokenValue = "K1Mb2ByFcfYndPmuFijB";
+        mockValidToken(userId, tokenValue);
+        mockTokenInvalidation(userId, tokenValue, 1);
+        when(userRepository.resetPassword(anyLong(), anyString())).thenReturn(Mono.just(0));
+
+        EntityNotFoundException e = assertThrows(EntityNotFoundException.class,
+                () -> service.confirmPasswordReset(userId, tokenValue, "qwerty").block());
         assertEquals("User with id " + userId + " is not found", e.getMessage());
     }
 
@@ -285,6 +402,14 @@ class DefaultPasswordServiceTest {
         verify(userRepository, times(1)).save(updatedUser);
     }
 
+    @Test
+    void shouldInvalidateCachedUserDetailsOnPasswordChange() {
+        User user = User.builder().id(1L).email("alice@mail.com").password("secret").build();
+        when(userRepository.findById(user.getId())).thenReturn(Mono.just(user));
+        service.changePassword(user.getId(), user.getPassword(), "s3cret").block();
+        verify(userDetailsCache, times(1)).invalidate(user.getEmail());
+    }
+
     @Test
     void shouldThrowExceptionOnPasswordChangeWhenUserIsNotFound() {
         long userId = 1L;
@@ -301,4 +426,19 @@ class DefaultPasswordServiceTest {
         assertThrows(InvalidPasswordException.class,
                 () -> service.changePassword(user.getId(), "qwerty", "s3cret").block());
     }
+
+    private void mockValidToken(long userId, String tokenValue) {
+        PasswordResetConfirmationToken token = PasswordResetConfirmationToken.builder()
+                .id(2L)
+                .userId(userId)
+                .tokenValue(tokenValue)
+                .expiresAt(LocalDateTime.now(ZoneOffset.UTC).plus(1, ChronoUnit.HOURS))
+                .build();
+        when(tokenRepository.findByTokenHash(token.getTokenHash())).thenReturn(Mono.just(token));
+    }
+
+    private void mockTokenInvalidation(long userId, String tokenValue, int result) {
+        when(tokenRepository.invalidate(eq(AbstractToken.hashTokenValue(tokenValue)), eq(userId),
+                any(LocalDateTime.class))).thenReturn(Mono.just(result));
+    }
 }
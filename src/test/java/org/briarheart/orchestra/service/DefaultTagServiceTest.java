@@ -1,5 +1,6 @@
 package org.briarheart.orchestra.service;
 
+import org.briarheart.orchestra.data.Cursor;
 import org.briarheart.orchestra.data.EntityAlreadyExistsException;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.data.TagRepository;
@@ -10,12 +11,14 @@ import org.briarheart.orchestra.model.TaskStatus;
 import org.briarheart.orchestra.model.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 /**
@@ -30,7 +33,7 @@ class DefaultTagServiceTest {
     void setUp() {
         tagRepository = mock(TagRepository.class);
         taskRepository = mock(TaskRepository.class);
-        tagService = new DefaultTagService(tagRepository, taskRepository);
+        tagService = new DefaultTagService(tagRepository, taskRepository, new TagCache());
     }
 
     @Test
@@ -54,12 +57,35 @@ class DefaultTagServiceTest {
     void shouldReturnTagById() {
         User user = User.builder().id(1L).email("alice@mail.com").build();
         Tag tag = Tag.builder().id(2L).userId(user.getId()).name("Test tag").build();
-        when(tagRepository.findByIdAndUserId(tag.getId(), user.getId())).thenReturn(Mono.just(tag));
+        when(tagRepository.findByUserId(user.getId())).thenReturn(Flux.just(tag));
 
         Tag result = tagService.getTag(tag.getId(), user).block();
         assertEquals(tag, result);
     }
 
+    @Test
+    void shouldLoadTagsOfUserOnlyOnce() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Tag tag = Tag.builder().id(2L).userId(user.getId()).name("Test tag").build();
+        when(tagRepository.findByUserId(user.getId())).thenReturn(Flux.just(tag));
+
+        tagService.getTags(user).blockLast();
+        tagService.getTag(tag.getId(), user).block();
+        verify(tagRepository, times(1)).findByUserId(user.getId());
+    }
+
+    @Test
+    void shouldReturnCopyOfCachedTag() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Tag tag = Tag.builder().id(2L).userId(user.getId()).name("Test tag").build();
+        when(tagRepository.findByUserId(user.getId())).thenReturn(Flux.just(tag));
+
+        Tag result = tagService.getTag(tag.getId(), user).block();
+        assertNotNull(result);
+        result.setName("Modified tag");
+        assertEquals("Test tag", tagService.getTag(tag.getId(), user).block().getName());
+    }
+
     @Test
     void shouldThrowExceptionOnTagGetWhenUserIsNull() {
         IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
@@ -69,7 +95,7 @@ class DefaultTagServiceTest {
 
     @Test
     void shouldThrowExceptionOnTagGetWhenTagIsNotFound() {
-        when(tagRepository.findByIdAndUserId(anyLong(), anyLong())).thenReturn(Mono.empty());
+        when(tagRepository.findByUserId(anyLong())).thenReturn(Flux.empty());
         long tagId = 2L;
         User user = User.builder().id(1L).email("alice@mail.com").build();
         EntityNotFoundException e = assertThrows(EntityNotFoundException.class,
@@ -98,6 +124,21 @@ class DefaultTagServiceTest {
         assertEquals(expectedResult, result);
     }
 
+    @Test
+    void shouldInvalidateTagCacheOnTagCreate() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        when(tagRepository.findByUserId(user.getId())).thenReturn(Flux.empty());
+        when(tagRepository.save(any())).thenAnswer(args -> Mono.just(args.getArgument(0)));
+
+        Tag tag = Tag.builder().userId(user.getId()).name("New tag").build();
+        when(tagRepository.findByNameAndUserId(tag.getName(), tag.getUserId())).thenReturn(Mono.empty());
+
+        tagService.getTags(user).blockLast();
+        tagService.createTag(tag).block();
+        tagService.getTags(user).blockLast();
+        verify(tagRepository, times(2)).findByUserId(user.getId());
+    }
+
     @Test
     void shouldThrowExceptionOnTagCreateWhenTagIsNull() {
         IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> tagService.createTag(null));
@@ -117,7 +158,7 @@ class DefaultTagServiceTest {
     void shouldUpdateTag() {
         Tag tag = Tag.builder().id(1L).userId(2L).name("Test tag").build();
 
-        when(tagRepository.findByIdAndUserId(tag.getId(), tag.getUserId())).thenReturn(Mono.just(tag));
+        when(tagRepository.findByUserId(tag.getUserId())).thenReturn(Flux.just(tag));
         when(tagRepository.findByNameAndUserId(tag.getName(), tag.getUserId())).thenReturn(Mono.empty());
         when(tagRepository.save(any())).thenAnswer(args -> Mono.just(args.getArgument(0)));
 
@@ -128,6 +169,23 @@ class DefaultTagServiceTest {
         assertEquals(updatedTag, result);
     }
 
+    @Test
+    void shouldInvalidateTagCacheOnTagUpdate() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Tag tag = Tag.builder().id(2L).userId(user.getId()).name("Test tag").build();
+
+        when(tagRepository.findByUserId(user.getId())).thenReturn(Flux.just(tag));
+        when(tagRepository.findByNameAndUserId(anyString(), anyLong())).thenReturn(Mono.empty());
+        when(tagRepository.save(any())).thenAnswer(args -> Mono.just(args.getArgument(0)));
+
+        Tag updatedTag = new Tag(tag);
+        updatedTag.setName("Updated test tag");
+
+        tagService.updateTag(updatedTag).block();
+        tagService.getTags(user).blockLast();
+        verify(tagRepository, times(2)).findByUserId(user.getId());
+    }
+
     @Test
     void shouldThrowExceptionOnTagUpdateWhenTagIsNull() {
         IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> tagService.updateTag(null));
@@ -136,7 +194,7 @@ class DefaultTagServiceTest {
 
     @Test
     void shouldThrowExceptionOnTagUpdateWhenTagIsNotFound() {
-        when(tagRepository.findByIdAndUserId(anyLong(), anyLong())).thenReturn(Mono.empty());
+        when(tagRepository.findByUserId(anyLong())).thenReturn(Flux.empty());
         Tag tag = Tag.builder().id(2L).userId(1L).name("Test tag").build();
         EntityNotFoundException e = assertThrows(EntityNotFoundException.class,
                 () -> tagService.updateTag(tag).block());
@@ -151,7 +209,7 @@ class DefaultTagServiceTest {
         updatedTag.setId(tag.getId());
         updatedTag.setName("Updated test tag");
 
-        when(tagRepository.findByIdAndUserId(tag.getId(), tag.getUserId())).thenReturn(Mono.just(tag));
+        when(tagRepository.findByUserId(tag.getUserId())).thenReturn(Flux.just(tag));
         when(tagRepository.findByNameAndUserId(updatedTag.getName(), updatedTag.getUserId()))
                 .thenReturn(Mono.just(updatedTag));
         EntityAlreadyExistsException e = assertThrows(EntityAlreadyExistsException.class,
@@ -164,13 +222,26 @@ class DefaultTagServiceTest {
         User user = User.builder().id(1L).email("alice@mail.com").build();
         Tag tag = Tag.builder().id(2L).userId(user.getId()).name("Test tag").build();
 
-        when(tagRepository.findByIdAndUserId(tag.getId(), user.getId())).thenReturn(Mono.just(tag));
+        when(tagRepository.findByUserId(user.getId())).thenReturn(Flux.just(tag));
         when(tagRepository.delete(tag)).thenReturn(Mono.just(true).then());
 
         tagService.deleteTag(tag.getId(), user).block();
         verify(tagRepository, times(1)).delete(tag);
     }
 
+    @Test
+    void shouldInvalidateTagCacheOnTagDelete() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Tag tag = Tag.builder().id(2L).userId(user.getId()).name("Test tag").build();
+
+        when(tagRepository.findByUserId(user.getId())).thenReturn(Flux.just(tag));
+        when(tagRepository.delete(tag)).thenReturn(Mono.just(true).then());
+
+        tagService.deleteTag(tag.getId(), user).block();
+        tagService.getTags(user).blockLast();
+        verify(tagRepository, times(2)).findByUserId(user.getId());
+    }
+
     @Test
     void shouldThrowExceptionOnTagDeleteWhenUserIsNull() {
         IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
@@ -180,7 +251,7 @@ class DefaultTagServiceTest {
 
     @Test
     void shouldThrowExceptionOnTagDeleteWhenTagIsNotFound() {
-        when(tagRepository.findByIdAndUserId(anyLong(), anyLong())).thenReturn(Mono.empty());
+        when(tagRepository.findByUserId(anyLong())).thenReturn(Flux.empty());
 
         long tagId = 1L;
         User user = User.builder().id(1L).email("alice@mail.com").build();
@@ -196,11 +267,27 @@ class DefaultTagServiceTest {
         Tag tag = Tag.builder().id(2L).userId(user.getId()).name("Test tag").build();
         Task task = Task.builder().id(3L).userId(user.getId()).title("Test task").status(TaskStatus.PROCESSED).build();
 
-        when(tagRepository.findByIdAndUserId(tag.getId(), user.getId())).thenReturn(Mono.just(tag));
+        when(tagRepository.findByUserId(user.getId())).thenReturn(Flux.just(tag));
         when(taskRepository.findByStatusNotAndTagIdOrderByCreatedAtAsc(TaskStatus.COMPLETED, tag.getId(), 0, null))
                 .thenReturn(Flux.just(task));
 
         Task result = tagService.getUncompletedTasks(tag.getId(), user, Pageable.unpaged()).blockFirst();
         assertEquals(task, result);
     }
+
+    @Test
+    void shouldReturnUncompletedTasksForTagFollowingCursor() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Tag tag = Tag.builder().id(2L).userId(user.getId()).name("Test tag").build();
+        Task task = Task.builder().id(3L).userId(user.getId()).title("Test task").status(TaskStatus.PROCESSED).build();
+        Cursor cursor = new Cursor(LocalDateTime.parse("2020-01-10T00:00:00"), 1L);
+        PageRequest pageRequest = PageRequest.of(0, 50);
+
+        when(tagRepository.findByUserId(user.getId())).thenReturn(Flux.just(tag));
+        when(taskRepository.findByStatusNotAndTagIdAfterOrderByCreatedAtAsc(TaskStatus.COMPLETED, tag.getId(),
+                cursor.getCreatedAt(), cursor.getId(), pageRequest.getPageSize())).thenReturn(Flux.just(task));
+
+        Task result = tagService.getUncompletedTasks(tag.getId(), user, cursor, pageRequest).blockFirst();
+        assertEquals(task, result);
+    }
 }
@@ -1,5 +1,6 @@
 package org.briarheart.orchestra.service;
 
+import org.briarheart.orchestra.data.Cursor;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.data.TaskListRepository;
 import org.briarheart.orchestra.data.TaskRepository;
@@ -11,9 +12,12 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -25,13 +29,17 @@ import static org.mockito.Mockito.*;
 class DefaultTaskListServiceTest {
     private TaskListRepository taskListRepository;
     private TaskRepository taskRepository;
+    private TransactionalOperator transactionalOperator;
     private DefaultTaskListService taskListService;
 
     @BeforeEach
+    @SuppressWarnings("unchecked")
     void setUp() {
         taskListRepository = mock(TaskListRepository.class);
         taskRepository = mock(TaskRepository.class);
-        taskListService = new DefaultTaskListService(taskListRepository, taskRepository);
+        transactionalOperator = mock(TransactionalOperator.class);
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(args -> args.getArgument(0));
+        taskListService = new DefaultTaskListService(taskListRepository, taskRepository, transactionalOperator);
     }
 
     @Test
@@ -129,8 +137,8 @@ class DefaultTaskListServiceTest {
 
         when(taskListRepository.findByIdAndUserId(taskList.getId(), user.getId())).thenReturn(Mono.just(taskList));
         when(taskListRepository.save(any(TaskList.class))).thenAnswer(args -> Mono.just(args.getArgument(0)));
-        when(taskRepository.findByTaskListIdAndUserIdOrderByCreatedAtAsc(taskList.getId(), user.getId(), 0, null))
-                .thenReturn(Flux.empty());
+        when(taskRepository.updateStatusByTaskListIdAndUserId(TaskStatus.COMPLETED, taskList.getId(), user.getId()))
+                .thenReturn(Mono.just(0));
 
         TaskList completedTaskList = new TaskList(taskList);
         completedTaskList.setCompleted(true);
@@ -143,19 +151,29 @@ class DefaultTaskListServiceTest {
     void shouldCompleteTasksOnTaskListComplete() {
         User user = User.builder().id(1L).email("alice@mail.com").build();
         TaskList taskList = TaskList.builder().id(2L).userId(user.getId()).name("Test task list").build();
-        Task task = Task.builder().id(3L).userId(user.getId()).taskListId(taskList.getId()).title("Test task").build();
 
         when(taskListRepository.findByIdAndUserId(taskList.getId(), user.getId())).thenReturn(Mono.just(taskList));
         when(taskListRepository.save(any(TaskList.class))).thenAnswer(args -> Mono.just(args.getArgument(0)));
-        when(taskRepository.findByTaskListIdAndUserIdOrderByCreatedAtAsc(taskList.getId(), user.getId(), 0, null))
-                .thenReturn(Flux.just(task));
-        when(taskRepository.save(any(Task.class))).thenAnswer(args -> Mono.just(args.getArgument(0)));
+        when(taskRepository.updateStatusByTaskListIdAndUserId(TaskStatus.COMPLETED, taskList.getId(), user.getId()))
+                .thenReturn(Mono.just(3));
 
-        Task completedTask = new Task(task);
-        completedTask.setStatus(TaskStatus.COMPLETED);
+        Integer result = taskListService.completeTaskList(taskList.getId(), user).block();
+        assertEquals(3, result);
+        verify(taskRepository, never()).save(any(Task.class));
+    }
+
+    @Test
+    void shouldCompleteTaskListInTransaction() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        TaskList taskList = TaskList.builder().id(2L).userId(user.getId()).name("Test task list").build();
+
+        when(taskListRepository.findByIdAndUserId(taskList.getId(), user.getId())).thenReturn(Mono.just(taskList));
+        when(taskListRepository.save(any(TaskList.class))).thenAnswer(args -> Mono.just(args.getArgument(0)));
+        when(taskRepository.updateStatusByTaskListIdAndUserId(TaskStatus.COMPLETED, taskList.getId(), user.getId()))
+                .thenReturn(Mono.just(3));
 
         taskListService.completeTaskList(taskList.getId(), user).block();
-        verify(taskRepository, times(1)).save(completedTask);
+        verify(transactionalOperator, times(1)).transactional(any(Mono.class));
     }
 
     @Test
@@ -182,8 +200,7 @@ class DefaultTaskListServiceTest {
 
         when(taskListRepository.findByIdAndUserId(taskList.getId(), user.getId())).thenReturn(Mono.just(taskList));
         when(taskListRepository.delete(taskList)).thenReturn(Mono.just(true).then());
-        when(taskRepository.findByTaskListIdAndUserIdOrderByCreatedAtAsc(taskList.getId(), user.getId(), 0, null))
-                .thenReturn(Flux.empty());
+        when(taskRepository.deleteByTaskListIdAndUserId(taskList.getId(), user.getId())).thenReturn(Mono.just(0));
 
         taskListService.deleteTaskList(taskList.getId(), user).block();
         verify(taskListRepository, times(1)).delete(taskList);
@@ -193,16 +210,27 @@ class DefaultTaskListServiceTest {
     void shouldDeleteTasksOnTaskListDelete() {
         User user = User.builder().id(1L).email("alice@mail.com").build();
         TaskList taskList = TaskList.builder().id(2L).userId(user.getId()).name("Test task list").build();
-        Task task = Task.builder().id(3L).userId(user.getId()).taskListId(taskList.getId()).title("Test task").build();
 
         when(taskListRepository.findByIdAndUserId(taskList.getId(), user.getId())).thenReturn(Mono.just(taskList));
         when(taskListRepository.delete(taskList)).thenReturn(Mono.just(true).then());
-        when(taskRepository.findByTaskListIdAndUserIdOrderByCreatedAtAsc(taskList.getId(), user.getId(), 0, null))
-                .thenReturn(Flux.just(task));
-        when(taskRepository.delete(task)).thenReturn(Mono.empty());
+        when(taskRepository.deleteByTaskListIdAndUserId(taskList.getId(), user.getId())).thenReturn(Mono.just(3));
+
+        Integer result = taskListService.deleteTaskList(taskList.getId(), user).block();
+        assertEquals(3, result);
+        verify(taskRepository, never()).delete(any(Task.class));
+    }
+
+    @Test
+    void shouldDeleteTaskListInTransaction() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        TaskList taskList = TaskList.builder().id(2L).userId(user.getId()).name("Test task list").build();
+
+        when(taskListRepository.findByIdAndUserId(taskList.getId(), user.getId())).thenReturn(Mono.just(taskList));
+        when(taskListRepository.delete(taskList)).thenReturn(Mono.just(true).then());
+        when(taskRepository.deleteByTaskListIdAndUserId(taskList.getId(), user.getId())).thenReturn(Mono.just(3));
 
         taskListService.deleteTaskList(taskList.getId(), user).block();
-        verify(taskRepository, times(1)).delete(task);
+        verify(transactionalOperator, times(1)).transactional(any(Mono.class));
     }
 
     @Test
@@ -237,6 +265,37 @@ class DefaultTaskListServiceTest {
         assertEquals(task, result);
     }
 
+    @Test
+    void shouldReturnFirstPageOfTasksForTaskListInCursorMode() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        TaskList taskList = TaskList.builder().id(2L).userId(user.getId()).name("Test task list").build();
+        Task task = Task.builder().id(3L).userId(user.getId()).taskListId(taskList.getId()).title("Test task").build();
+
+        when(taskListRepository.findByIdAndUserId(task.getTaskListId(), user.getId())).thenReturn(Mono.just(taskList));
+        PageRequest pageRequest = PageRequest.of(3, 50);
+        when(taskRepository.findByTaskListIdAndUserIdOrderByCreatedAtAsc(task.getTaskListId(), user.getId(), 0,
+                pageRequest.getPageSize())).thenReturn(Flux.just(task));
+
+        Task result = taskListService.getTasks(taskList.getId(), user, null, pageRequest).blockFirst();
+        assertEquals(task, result);
+    }
+
+    @Test
+    void shouldReturnTasksForTaskListFollowingCursor() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        TaskList taskList = TaskList.builder().id(2L).userId(user.getId()).name("Test task list").build();
+        Task task = Task.builder().id(3L).userId(user.getId()).taskListId(taskList.getId()).title("Test task").build();
+        Cursor cursor = new Cursor(LocalDateTime.parse("2020-01-10T00:00:00"), 1L);
+
+        when(taskListRepository.findByIdAndUserId(task.getTaskListId(), user.getId())).thenReturn(Mono.just(taskList));
+        PageRequest pageRequest = PageRequest.of(0, 50);
+        when(taskRepository.findByTaskListIdAndUserIdAfterOrderByCreatedAtAsc(task.getTaskListId(), user.getId(),
+                cursor.getCreatedAt(), cursor.getId(), pageRequest.getPageSize())).thenReturn(Flux.just(task));
+
+        Task result = taskListService.getTasks(taskList.getId(), user, cursor, pageRequest).blockFirst();
+        assertEquals(task, result);
+    }
+
     @Test
     void shouldThrowExceptionOnTasksGetWhenUserIsNull() {
         IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
@@ -12,7 +12,7 @@ import reactor.core.publisher.Mono;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
-import java.util.Set;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -40,7 +40,7 @@ class DefaultTaskServiceTest {
 
         currentTime = LocalDateTime.now(ZoneOffset.UTC);
         taskService = new DefaultTaskService(taskRepository, taskTagRelationRepository, tagRepository,
-                taskCommentRepository) {
+                taskCommentRepository, new TagCache()) {
             @Override
             protected LocalDateTime getCurrentTime() {
                 return currentTime;
@@ -321,6 +321,225 @@ class DefaultTaskServiceTest {
         assertEquals("User must not be null", e.getMessage());
     }
 
+    @Test
+    void shouldReturnFirstPageOfUnprocessedTasksInCursorMode() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Task task = Task.builder().id(2L).userId(user.getId()).title("Test task").build();
+        PageRequest pageRequest = PageRequest.of(3, 50);
+        when(taskRepository.findByStatusAndUserIdOrderByCreatedAtAsc(TaskStatus.UNPROCESSED, user.getId(), 0,
+                pageRequest.getPageSize())).thenReturn(Flux.just(task));
+
+        Task result = taskService.getUnprocessedTasks(user, null, pageRequest).blockFirst();
+        assertEquals(task, result);
+    }
+
+    @Test
+    void shouldReturnUnprocessedTasksFollowingCursor() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Task task = Task.builder().id(2L).userId(user.getId()).title("Test task").build();
+        Cursor cursor = new Cursor(currentTime, 1L);
+        PageRequest pageRequest = PageRequest.of(0, 50);
+        when(taskRepository.findByStatusAndUserIdAfterOrderByCreatedAtAsc(TaskStatus.UNPROCESSED, user.getId(),
+                cursor.getCreatedAt(), cursor.getId(), pageRequest.getPageSize())).thenReturn(Flux.just(task));
+
+        Task result = taskService.getUnprocessedTasks(user, cursor, pageRequest).blockFirst();
+        assertEquals(task, result);
+    }
+
+    @Test
+    void shouldReturnProcessedTasksFollowingCursor() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Task task = Task.builder().id(2L).userId(user.getId()).title("Test task").status(TaskStatus.PROCESSED).build();
+        Cursor cursor = new Cursor(currentTime, 1L);
+        PageRequest pageRequest = PageRequest.of(0, 50);
+        when(taskRepository.findByStatusAndUserIdAfterOrderByCreatedAtAsc(TaskStatus.PROCESSED, user.getId(),
+                cursor.getCreatedAt(), cursor.getId(), pageRequest.getPageSize())).thenReturn(Flux.just(task));
+
+        Task result = taskService.getProcessedTasks(user, cursor, pageRequest).blockFirst();
+        assertEquals(task, result);
+    }
+
+    @Test
+    void shouldReturnProcessedTasksWithDeadlineDateBetweenFollowingCursor() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        LocalDateTime deadlineFrom = LocalDateTime.now();
+        LocalDateTime deadlineTo = deadlineFrom.plus(1, ChronoUnit.DAYS);
+        Task task = Task.builder()
+                .id(2L)
+                .userId(user.getId())
+                .title("Test task")
+                .status(TaskStatus.PROCESSED)
+                .deadline(deadlineTo)
+                .build();
+        Cursor cursor = new Cursor(currentTime, 1L);
+        when(taskRepository.findByDeadlineBetweenAndStatusAndUserIdAfterOrderByCreatedAtAsc(
+                deadlineFrom,
+                deadlineTo,
+                TaskStatus.PROCESSED,
+                user.getId(),
+                cursor.getCreatedAt(),
+                cursor.getId(),
+                null
+        )).thenReturn(Flux.just(task));
+
+        Task result = taskService.getProcessedTasks(deadlineFrom, deadlineTo, user, cursor, null).blockFirst();
+        assertEquals(task, result);
+    }
+
+    @Test
+    void shouldReturnProcessedTasksWithoutDeadlineDateFollowingCursor() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Task task = Task.builder().id(2L).userId(user.getId()).title("Test task").status(TaskStatus.PROCESSED).build();
+        Cursor cursor = new Cursor(currentTime, 1L);
+        when(taskRepository.findByDeadlineIsNullAndStatusAndUserIdAfterOrderByCreatedAtAsc(TaskStatus.PROCESSED,
+                user.getId(), cursor.getCreatedAt(), cursor.getId(), null)).thenReturn(Flux.just(task));
+
+        Task result = taskService.getProcessedTasks(null, null, user, cursor, null).blockFirst();
+        assertEquals(task, result);
+    }
+
+    @Test
+    void shouldReturnFirstPageOfProcessedTasksWithDeadlineInCursorMode() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        LocalDateTime deadlineTo = LocalDateTime.now().plus(1, ChronoUnit.DAYS);
+        Task task = Task.builder().id(2L).userId(user.getId()).title("Test task").status(TaskStatus.PROCESSED).build();
+        PageRequest pageRequest = PageRequest.of(3, 50);
+        when(taskRepository.findByDeadlineLessThanEqualAndStatusAndUserIdOrderByCreatedAtAsc(deadlineTo,
+                TaskStatus.PROCESSED, user.getId(), 0, pageRequest.getPageSize())).thenReturn(Flux.just(task));
+
+        Task result = taskService.getProcessedTasks(null, deadlineTo, user, null, pageRequest).blockFirst();
+        assertEquals(task, result);
+    }
+
+    @Test
+    void shouldReturnUncompletedTasksFollowingCursor() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        Task task = Task.builder().id(2L).userId(user.getId()).title("Test task").status(TaskStatus.PROCESSED).build();
+        Cursor cursor = new Cursor(currentTime, 1L);
+        PageRequest pageRequest = PageRequest.of(0, 50);
+        when(taskRepository.findByStatusNotAndUserIdAfterOrderByCreatedAtAsc(TaskStatus.COMPLETED, user.getId(),
+                cursor.getCreatedAt(), cursor.getId(), pageRequest.getPageSize())).thenReturn(Flux.just(task));
+
+        Task result = taskService.getUncompletedTasks(user, cursor, pageRequest).blockFirst();
+        assertEquals(task, result);
+    }
+
+    @Test
+    void shouldReturnUnprocessedTasksWithTotal() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        CountedTask task = new CountedTask();
+        task.setId(2L);
+        task.setUserId(user.getId());
+        task.setTitle("Test task");
+        task.setTotal(5L);
+        PageRequest pageRequest = PageRequest.of(1, 2);
+        when(taskRepository.findWithTotalByStatusAndUserIdOrderByCreatedAtAsc(TaskStatus.UNPROCESSED, user.getId(),
+                pageRequest.getOffset(), pageRequest.getPageSize())).thenReturn(Flux.just(task));
+
+        ItemPage<Task> result = taskService.getUnprocessedTasksWithTotal(user, pageRequest).block();
+        assertNotNull(result);
+        assertEquals(List.of(new Task(task)), result.getItems());
+        assertEquals(5L, result.getTotal());
+        verify(taskRepository, never()).countAllByStatusAndUserId(any(), anyLong());
+    }
+
+    @Test
+    void shouldReturnZeroTotalWhenThereAreNoUnprocessedTasks() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        when(taskRepository.findWithTotalByStatusAndUserIdOrderByCreatedAtAsc(TaskStatus.UNPROCESSED, user.getId(), 0,
+                null)).thenReturn(Flux.empty());
+
+        ItemPage<Task> result = taskService.getUnprocessedTasksWithTotal(user, Pageable.unpaged()).block();
+        assertNotNull(result);
+        assertTrue(result.getItems().isEmpty());
+        assertEquals(0L, result.getTotal());
+        verify(taskRepository, never()).countAllByStatusAndUserId(any(), anyLong());
+    }
+
+    @Test
+    void shouldCountUnprocessedTasksSeparatelyWhenPageIsOutOfRange() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        PageRequest pageRequest = PageRequest.of(10, 2);
+        when(taskRepository.findWithTotalByStatusAndUserIdOrderByCreatedAtAsc(TaskStatus.UNPROCESSED, user.getId(),
+                pageRequest.getOffset(), pageRequest.getPageSize())).thenReturn(Flux.empty());
+        when(taskRepository.countAllByStatusAndUserId(TaskStatus.UNPROCESSED, user.getId())).thenReturn(Mono.just(3L));
+
+        ItemPage<Task> result = taskService.getUnprocessedTasksWithTotal(user, pageRequest).block();
+        assertNotNull(result);
+        assertTrue(result.getItems().isEmpty());
+        assertEquals(3L, result.getTotal());
+    }
+
+    @Test
+    void shouldReturnProcessedTasksWithTotal() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        CountedTask task = new CountedTask();
+        task.setId(2L);
+        task.setUserId(user.getId());
+        task.setTitle("Test task");
+        task.setStatus(TaskStatus.PROCESSED);
+        task.setTotal(1L);
+        when(taskRepository.findWithTotalByStatusAndUserIdOrderByCreatedAtAsc(TaskStatus.PROCESSED, user.getId(), 0,
+                null)).thenReturn(Flux.just(task));
+
+        ItemPage<Task> result = taskService.getProcessedTasksWithTotal(user, Pageable.unpaged()).block();
+        assertNotNull(result);
+        assertEquals(List.of(new Task(task)), result.getItems());
+        assertEquals(1L, result.getTotal());
+    }
+
+    @Test
+    void shouldReturnProcessedTasksWithDeadlineDateBetweenWithTotal() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        LocalDateTime deadlineFrom = LocalDateTime.now();
+        LocalDateTime deadlineTo = deadlineFrom.plus(1, ChronoUnit.DAYS);
+        CountedTask task = new CountedTask();
+        task.setId(2L);
+        task.setUserId(user.getId());
+        task.setTitle("Test task");
+        task.setStatus(TaskStatus.PROCESSED);
+        task.setDeadline(deadlineTo);
+        task.setTotal(1L);
+        when(taskRepository.findWithTotalByDeadlineBetweenAndStatusAndUserIdOrderByCreatedAtAsc(deadlineFrom,
+                deadlineTo, TaskStatus.PROCESSED, user.getId(), 0, null)).thenReturn(Flux.just(task));
+
+        ItemPage<Task> result = taskService.getProcessedTasksWithTotal(deadlineFrom, deadlineTo, user, null).block();
+        assertNotNull(result);
+        assertEquals(List.of(new Task(task)), result.getItems());
+        assertEquals(1L, result.getTotal());
+    }
+
+    @Test
+    void shouldCountProcessedTasksWithoutDeadlineSeparatelyWhenPageIsOutOfRange() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        PageRequest pageRequest = PageRequest.of(10, 2);
+        when(taskRepository.findWithTotalByDeadlineIsNullAndStatusAndUserIdOrderByCreatedAtAsc(TaskStatus.PROCESSED,
+                user.getId(), pageRequest.getOffset(), pageRequest.getPageSize())).thenReturn(Flux.empty());
+        when(taskRepository.countAllByDeadlineIsNullAndStatusAndUserId(TaskStatus.PROCESSED, user.getId()))
+                .thenReturn(Mono.just(3L));
+
+        ItemPage<Task> result = taskService.getProcessedTasksWithTotal(null, null, user, pageRequest).block();
+        assertNotNull(result);
+        assertEquals(3L, result.getTotal());
+    }
+
+    @Test
+    void shouldReturnUncompletedTasksWithTotal() {
+        User user = User.builder().id(1L).email("alice@mail.com").build();
+        CountedTask task = new CountedTask();
+        task.setId(2L);
+        task.setUserId(user.getId());
+        task.setTitle("Test task");
+        task.setTotal(1L);
+        when(taskRepository.findWithTotalByStatusNotAndUserIdOrderByCreatedAtAsc(TaskStatus.COMPLETED, user.getId(), 0,
+                null)).thenReturn(Flux.just(task));
+
+        ItemPage<Task> result = taskService.getUncompletedTasksWithTotal(user, Pageable.unpaged()).block();
+        assertNotNull(result);
+        assertEquals(List.of(new Task(task)), result.getItems());
+        assertEquals(1L, result.getTotal());
+    }
+
     @Test
     void shouldReturnTaskById() {
         User user = User.builder().id(1L).email("alice@mail.com").build();
@@ -502,7 +721,7 @@ class DefaultTaskServiceTest {
         when(taskRepository.findByIdAndUserId(task.getId(), user.getId())).thenReturn(Mono.just(task));
         when(taskTagRelationRepository.findByTaskId(task.getId()))
                 .thenReturn(Flux.just(new TaskTagRelation(task.getId(), tag.getId())));
-        when(tagRepository.findByIdIn(Set.of(tag.getId()))).thenReturn(Flux.just(tag));
+        when(tagRepository.findByUserId(user.getId())).thenReturn(Flux.just(tag));
 
         Tag result = taskService.getTags(task.getId(), user).blockFirst();
         assertEquals(tag, result);
@@ -533,13 +752,13 @@ class DefaultTaskServiceTest {
         Tag tag = Tag.builder().id(3L).userId(user.getId()).name("Test tag").build();
 
         when(taskRepository.findByIdAndUserId(task.getId(), user.getId())).thenReturn(Mono.just(task));
-        when(tagRepository.findByIdAndUserId(tag.getId(), user.getId())).thenReturn(Mono.just(tag));
-        when(taskTagRelationRepository.findByTaskIdAndTagId(task.getId(), tag.getId())).thenReturn(Mono.empty());
+        when(tagRepository.findByUserId(user.getId())).thenReturn(Flux.just(tag));
         when(taskTagRelationRepository.create(task.getId(), tag.getId()))
                 .thenAnswer(args -> Mono.just(new TaskTagRelation(task.getId(), tag.getId())));
 
         taskService.assignTag(task.getId(), tag.getId(), user).block();
         verify(taskTagRelationRepository, times(1)).create(task.getId(), tag.getId());
+        verify(taskTagRelationRepository, never()).findByTaskIdAndTagId(anyLong(), anyLong());
     }
 
     @Test
@@ -556,7 +775,7 @@ class DefaultTaskServiceTest {
         long taskId = 3L;
 
         when(taskRepository.findByIdAndUserId(taskId, user.getId())).thenReturn(Mono.empty());
-        when(tagRepository.findByIdAndUserId(tag.getId(), user.getId())).thenReturn(Mono.just(tag));
+        when(tagRepository.findByUserId(user.getId())).thenReturn(Flux.just(tag));
 
         EntityNotFoundException e = assertThrows(EntityNotFoundException.class,
                 () -> taskService.assignTag(taskId, tag.getId(), user).block());
@@ -570,7 +789,7 @@ class DefaultTaskServiceTest {
         Long tagId = 3L;
 
         when(taskRepository.findByIdAndUserId(task.getId(), user.getId())).thenReturn(Mono.just(task));
-        when(tagRepository.findByIdAndUserId(tagId, user.getId())).thenReturn(Mono.empty());
+        when(tagRepository.findByUserId(user.getId())).thenReturn(Flux.empty());
 
         EntityNotFoundException e = assertThrows(EntityNotFoundException.class,
                 () -> taskService.assignTag(task.getId(), tagId, user).block());
@@ -1,18 +1,26 @@
 package org.briarheart.orchestra.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.briarheart.orchestra.config.ApplicationProfilePictureProperties;
 import org.briarheart.orchestra.data.EntityAlreadyExistsException;
 import org.briarheart.orchestra.data.EntityNotFoundException;
 import org.briarheart.orchestra.data.ProfilePictureRepository;
+import org.briarheart.orchestra.data.ProfilePictureVariantRepository;
 import org.briarheart.orchestra.data.UserRepository;
 import org.briarheart.orchestra.model.EmailConfirmationToken;
 import org.briarheart.orchestra.model.ProfilePicture;
+import org.briarheart.orchestra.model.ProfilePictureVariant;
 import org.briarheart.orchestra.model.User;
+import org.briarheart.orchestra.security.crypto.password.ReactivePasswordEncoder;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.context.support.MessageSourceAccessor;
 import org.springframework.context.support.ResourceBundleMessageSource;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
@@ -22,6 +30,7 @@ import java.util.Locale;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 /**
@@ -31,9 +40,14 @@ class DefaultUserServiceTest {
     private DefaultUserService service;
     private UserRepository userRepository;
     private ProfilePictureRepository profilePictureRepository;
+    private ProfilePictureVariantRepository profilePictureVariantRepository;
+    private ProfilePictureResizer profilePictureResizer;
+    private ProfilePictureCache profilePictureCache;
     private EmailConfirmationService emailConfirmationService;
     private PasswordEncoder passwordEncoder;
+    private ReactivePasswordEncoder reactivePasswordEncoder;
     private MessageSourceAccessor messages;
+    private TransactionalOperator transactionalOperator;
 
     @BeforeEach
     void setUp() {
@@ -41,6 +55,15 @@ class DefaultUserServiceTest {
         when(userRepository.save(any(User.class))).thenAnswer(args -> Mono.just(new User(args.getArgument(0))));
 
         profilePictureRepository = mock(ProfilePictureRepository.class);
+        profilePictureVariantRepository = mock(ProfilePictureVariantRepository.class);
+        when(profilePictureVariantRepository.deleteByUserId(anyLong())).thenReturn(Mono.empty());
+        when(profilePictureVariantRepository.create(any(ProfilePictureVariant.class)))
+                .thenAnswer(args -> Mono.just(args.getArgument(0)));
+
+        profilePictureResizer = mock(ProfilePictureResizer.class);
+        when(profilePictureResizer.resize(any(ProfilePicture.class))).thenReturn(Flux.empty());
+
+        profilePictureCache = new ProfilePictureCache(new ApplicationProfilePictureProperties());
 
         emailConfirmationService = mock(EmailConfirmationService.class);
         when(emailConfirmationService.sendEmailConfirmationLink(any(User.class), eq(Locale.ENGLISH)))
@@ -59,52 +82,97 @@ class DefaultUserServiceTest {
 
         passwordEncoder = mock(PasswordEncoder.class);
         when(passwordEncoder.encode(anyString())).thenAnswer(args -> args.getArgument(0));
+        reactivePasswordEncoder = new ReactivePasswordEncoder(passwordEncoder, 1, 10, new SimpleMeterRegistry());
 
         ResourceBundleMessageSource messageSource = new ResourceBundleMessageSource();
         messageSource.setBasename("messages");
         messages = new MessageSourceAccessor(messageSource);
 
-        service = new DefaultUserService(userRepository, profilePictureRepository, emailConfirmationService,
-                passwordEncoder, messages);
+        transactionalOperator = mock(TransactionalOperator.class);
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(args -> args.getArgument(0));
+
+        service = new DefaultUserService(userRepository, profilePictureRepository, profilePictureVariantRepository,
+                profilePictureResizer, profilePictureCache, emailConfirmationService, reactivePasswordEncoder, messages,
+                transactionalOperator);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reactivePasswordEncoder.destroy();
     }
 
     @Test
     void shouldThrowExceptionOnConstructWhenUserRepositoryIsNull() {
-        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new DefaultUserService(null,
-                profilePictureRepository, emailConfirmationService, passwordEncoder, messages));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new DefaultUserService(
+                null, profilePictureRepository, profilePictureVariantRepository, profilePictureResizer, profilePictureCache,
+                emailConfirmationService, reactivePasswordEncoder, messages, transactionalOperator));
         assertEquals("User repository must not be null", e.getMessage());
     }
 
     @Test
     void shouldThrowExceptionOnConstructWhenProfilePictureRepositoryIsNull() {
-        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, ()
-                -> new DefaultUserService(userRepository, null, emailConfirmationService, passwordEncoder, messages));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new DefaultUserService(
+                userRepository, null, profilePictureVariantRepository, profilePictureResizer, profilePictureCache,
+                emailConfirmationService, reactivePasswordEncoder, messages, transactionalOperator));
         assertEquals("Profile picture repository must not be null", e.getMessage());
     }
 
+    @Test
+    void shouldThrowExceptionOnConstructWhenProfilePictureVariantRepositoryIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new DefaultUserService(
+                userRepository, profilePictureRepository, null, profilePictureResizer, profilePictureCache,
+                emailConfirmationService, reactivePasswordEncoder, messages, transactionalOperator));
+        assertEquals("Profile picture variant repository must not be null", e.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionOnConstructWhenProfilePictureResizerIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new DefaultUserService(
+                userRepository, profilePictureRepository, profilePictureVariantRepository, null, profilePictureCache,
+                emailConfirmationService, reactivePasswordEncoder, messages, transactionalOperator));
+        assertEquals("Profile picture resizer must not be null", e.getMessage());
+    }
+
+    @Test
+    void shouldThrowExceptionOnConstructWhenProfilePictureCacheIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new DefaultUserService(
+                userRepository, profilePictureRepository, profilePictureVariantRepository, profilePictureResizer, null,
+                emailConfirmationService, reactivePasswordEncoder, messages, transactionalOperator));
+        assertEquals("Profile picture cache must not be null", e.getMessage());
+    }
+
     @Test
     void shouldThrowExceptionOnConstructWhenEmailConfirmationServiceIsNull() {
-        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, ()
-                -> new DefaultUserService(userRepository, profilePictureRepository, null, passwordEncoder, messages));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new DefaultUserService(
+                userRepository, profilePictureRepository, profilePictureVariantRepository, profilePictureResizer, profilePictureCache,
+                null, passwordEncoder, messages, transactionalOperator));
         assertEquals("Email confirmation service must not be null", e.getMessage());
     }
 
     @Test
     void shouldThrowExceptionOnConstructWhenPasswordEncoderIsNull() {
-        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, ()
-                -> new DefaultUserService(userRepository, profilePictureRepository, emailConfirmationService, null,
-                messages));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new DefaultUserService(
+                userRepository, profilePictureRepository, profilePictureVariantRepository, profilePictureResizer, profilePictureCache,
+                emailConfirmationService, null, messages, transactionalOperator));
         assertEquals("Password encoder must not be null", e.getMessage());
     }
 
     @Test
     void shouldThrowExceptionOnConstructWhenMessageSourceAccessorIsNull() {
-        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, ()
-                -> new DefaultUserService(userRepository, profilePictureRepository, emailConfirmationService,
-                passwordEncoder, null));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new DefaultUserService(
+                userRepository, profilePictureRepository, profilePictureVariantRepository, profilePictureResizer, profilePictureCache,
+                emailConfirmationService, reactivePasswordEncoder, null, transactionalOperator));
         assertEquals("Message source accessor must not be null", e.getMessage());
     }
 
+    @Test
+    void shouldThrowExceptionOnConstructWhenTransactionalOperatorIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new DefaultUserService(
+                userRepository, profilePictureRepository, profilePictureVariantRepository, profilePictureResizer, profilePictureCache,
+                emailConfirmationService, reactivePasswordEncoder, messages, null));
+        assertEquals("Transactional operator must not be null", e.getMessage());
+    }
+
     @Test
     void shouldCreateUser() {
         User newUser = User.builder().email("alice@mail.com").password("secret").fullName("Alice").build();
@@ -266,6 +334,109 @@ class DefaultUserServiceTest {
         assertEquals(profilePicture, result);
     }
 
+    @Test
+    void shouldReturnProfilePictureVariant() {
+        Long userId = 1L;
+        byte[] variantData = new byte[]{1, 2, 3};
+        ProfilePictureVariant variant = ProfilePictureVariant.builder()
+                .userId(userId)
+                .size(64)
+                .data(variantData)
+                .type("image/jpeg")
+                .build();
+        when(profilePictureVariantRepository.findFirstByUserIdAndSizeGreaterThanEqual(userId, 64))
+                .thenReturn(Mono.just(variant));
+        ProfilePicture pictureWithoutData = ProfilePicture.builder().userId(userId).hash("abc").build();
+        when(profilePictureRepository.findWithoutDataByUserId(userId)).thenReturn(Mono.just(pictureWithoutData));
+
+        ProfilePicture result = service.getProfilePicture(userId, 48).block();
+        assertNotNull(result);
+        assertArrayEquals(variantData, result.getData());
+        assertEquals("image/jpeg", result.getType());
+        assertEquals("abc", result.getHash());
+        verify(profilePictureRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void shouldReturnOriginalProfilePictureWhenThereIsNoVariantOfRequestedSize() {
+        Long userId = 1L;
+        ProfilePicture profilePicture = ProfilePicture.builder().userId(userId).build();
+        when(profilePictureRepository.findById(userId)).thenReturn(Mono.just(profilePicture));
+        when(profilePictureVariantRepository.findFirstByUserIdAndSizeGreaterThanEqual(userId, 64))
+                .thenReturn(Mono.empty());
+
+        ProfilePicture result = service.getProfilePicture(userId, 64).block();
+        assertEquals(profilePicture, result);
+    }
+
+    @Test
+    void shouldReturnOriginalProfilePictureWhenRequestedSizeExceedsAllVariantSizes() {
+        Long userId = 1L;
+        ProfilePicture profilePicture = ProfilePicture.builder().userId(userId).build();
+        when(profilePictureRepository.findById(userId)).thenReturn(Mono.just(profilePicture));
+
+        ProfilePicture result = service.getProfilePicture(userId, 512).block();
+        assertEquals(profilePicture, result);
+        verify(profilePictureVariantRepository, never()).findFirstByUserIdAndSizeGreaterThanEqual(anyLong(), any());
+    }
+
+    @Test
+    void shouldReturnCachedProfilePictureVariantForAllSizesServedByThisVariant() {
+        Long userId = 1L;
+        ProfilePictureVariant variant = ProfilePictureVariant.builder()
+                .userId(userId)
+                .size(64)
+                .data(new byte[]{1, 2, 3})
+                .build();
+        when(profilePictureVariantRepository.findFirstByUserIdAndSizeGreaterThanEqual(userId, 64))
+                .thenReturn(Mono.just(variant));
+        ProfilePicture pictureWithoutData = ProfilePicture.builder().userId(userId).hash("abc").build();
+        when(profilePictureRepository.findWithoutDataByUserId(userId)).thenReturn(Mono.just(pictureWithoutData));
+
+        service.getProfilePicture(userId, 40).block();
+        service.getProfilePicture(userId, 48).block();
+        service.getProfilePicture(userId, 64).block();
+        verify(profilePictureVariantRepository, times(1)).findFirstByUserIdAndSizeGreaterThanEqual(userId, 64);
+        verify(profilePictureRepository, times(1)).findWithoutDataByUserId(userId);
+    }
+
+    @Test
+    void shouldReturnOriginalProfilePictureWhenSizeIsNotSpecified() {
+        Long userId = 1L;
+        ProfilePicture profilePicture = ProfilePicture.builder().userId(userId).build();
+        when(profilePictureRepository.findById(userId)).thenReturn(Mono.just(profilePicture));
+
+        ProfilePicture result = service.getProfilePicture(userId, null).block();
+        assertEquals(profilePicture, result);
+        verify(profilePictureVariantRepository, never()).findFirstByUserIdAndSizeGreaterThanEqual(anyLong(), any());
+    }
+
+    @Test
+    void shouldReturnCachedProfilePicture() {
+        Long userId = 1L;
+        ProfilePicture profilePicture = ProfilePicture.builder().userId(userId).data(new byte[]{1, 2, 3}).build();
+        when(profilePictureRepository.findById(userId)).thenReturn(Mono.just(profilePicture));
+
+        service.getProfilePicture(userId, null).block();
+        ProfilePicture result = service.getProfilePicture(userId, null).block();
+        assertEquals(profilePicture, result);
+        verify(profilePictureRepository, times(1)).findById(userId);
+    }
+
+    @Test
+    void shouldInvalidateCachedProfilePictureOnProfilePictureSave() {
+        Long userId = 1L;
+        ProfilePicture profilePicture = ProfilePicture.builder().userId(userId).data(new byte[]{1, 2, 3}).build();
+        when(profilePictureRepository.findById(userId)).thenReturn(Mono.just(profilePicture));
+        when(profilePictureRepository.createOrUpdate(any(ProfilePicture.class)))
+                .thenAnswer(args -> Mono.just(args.getArgument(0)));
+
+        service.getProfilePicture(userId, null).block();
+        service.saveProfilePicture(ProfilePicture.builder().userId(userId).data(new byte[]{4, 5, 6}).build()).block();
+        service.getProfilePicture(userId, null).block();
+        verify(profilePictureRepository, times(2)).findById(userId);
+    }
+
     @Test
     void shouldThrowExceptionOnProfilePictureGetWhenProfilePictureIsNotFound() {
         Long userId = 1L;
@@ -276,30 +447,96 @@ class DefaultUserServiceTest {
     }
 
     @Test
-    void shouldCreateProfilePicture() {
+    void shouldSaveProfilePicture() {
         long userId = 1L;
-        when(profilePictureRepository.findById(userId)).thenReturn(Mono.empty());
-        when(profilePictureRepository.create(any(ProfilePicture.class)))
+        when(profilePictureRepository.createOrUpdate(any(ProfilePicture.class)))
                 .thenAnswer(args -> Mono.just(args.getArgument(0)));
 
-        ProfilePicture profilePicture = ProfilePicture.builder().userId(userId).build();
+        ProfilePicture profilePicture = ProfilePicture.builder().userId(userId).data(new byte[]{1, 2, 3}).build();
 
         ProfilePicture result = service.saveProfilePicture(profilePicture).block();
         assertNotNull(result);
-        verify(profilePictureRepository, times(1)).create(profilePicture);
+        verify(profilePictureRepository, times(1)).createOrUpdate(profilePicture);
+        verify(profilePictureRepository, never()).findById(anyLong());
     }
 
     @Test
-    void shouldUpdateProfilePicture() {
+    void shouldRecreateProfilePictureVariantsOnProfilePictureSave() {
         long userId = 1L;
-        ProfilePicture profilePicture = ProfilePicture.builder().userId(userId).build();
-        when(profilePictureRepository.findById(userId)).thenReturn(Mono.just(profilePicture));
-        when(profilePictureRepository.save(any(ProfilePicture.class)))
+        when(profilePictureRepository.createOrUpdate(any(ProfilePicture.class)))
+                .thenAnswer(args -> Mono.just(args.getArgument(0)));
+
+        ProfilePicture profilePicture = ProfilePicture.builder().userId(userId).data(new byte[]{1, 2, 3}).build();
+        ProfilePictureVariant variant = ProfilePictureVariant.builder().userId(userId).size(32).build();
+        when(profilePictureResizer.resize(profilePicture)).thenReturn(Flux.just(variant));
+
+        service.saveProfilePicture(profilePicture).block();
+        verify(profilePictureVariantRepository, times(1)).deleteByUserId(userId);
+        verify(profilePictureVariantRepository, times(1)).create(variant);
+        verify(transactionalOperator, times(1)).transactional(any(Mono.class));
+    }
+
+    @Test
+    void shouldCalculateProfilePictureHashOnProfilePictureSave() {
+        when(profilePictureRepository.createOrUpdate(any(ProfilePicture.class)))
                 .thenAnswer(args -> Mono.just(args.getArgument(0)));
 
+        ProfilePicture profilePicture = ProfilePicture.builder().userId(1L).data("test".getBytes()).build();
         ProfilePicture result = service.saveProfilePicture(profilePicture).block();
         assertNotNull(result);
-        verify(profilePictureRepository, times(1)).save(profilePicture);
+        assertEquals("9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08", result.getHash());
+    }
+
+    @Test
+    void shouldReturnProfilePictureWithoutData() {
+        Long userId = 1L;
+        ProfilePicture profilePicture = ProfilePicture.builder().userId(userId).hash("abc").build();
+        when(profilePictureRepository.findWithoutDataByUserId(userId)).thenReturn(Mono.just(profilePicture));
+
+        ProfilePicture result = service.getProfilePictureWithoutData(userId).block();
+        assertEquals(profilePicture, result);
+        verify(profilePictureRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void shouldReturnCachedProfilePictureWithoutData() {
+        Long userId = 1L;
+        ProfilePicture profilePicture = ProfilePicture.builder()
+                .userId(userId)
+                .data(new byte[]{1, 2, 3})
+                .type("image/jpeg")
+                .hash("abc")
+                .build();
+        when(profilePictureRepository.findById(userId)).thenReturn(Mono.just(profilePicture));
+
+        service.getProfilePicture(userId, null).block();
+        ProfilePicture result = service.getProfilePictureWithoutData(userId, null).block();
+        assertNotNull(result);
+        assertNull(result.getData());
+        assertEquals("image/jpeg", result.getType());
+        assertEquals("abc", result.getHash());
+        verify(profilePictureRepository, never()).findWithoutDataByUserId(anyLong());
+    }
+
+    @Test
+    void shouldLoadProfilePictureWithoutDataWhenProfilePictureIsNotCached() {
+        Long userId = 1L;
+        ProfilePicture profilePicture = ProfilePicture.builder().userId(userId).hash("abc").build();
+        when(profilePictureRepository.findWithoutDataByUserId(userId)).thenReturn(Mono.just(profilePicture));
+
+        ProfilePicture result = service.getProfilePictureWithoutData(userId, 64).block();
+        assertEquals(profilePicture, result);
+        verify(profilePictureRepository, never()).findById(anyLong());
+        verify(profilePictureVariantRepository, never()).findFirstByUserIdAndSizeGreaterThanEqual(anyLong(), any());
+    }
+
+    @Test
+    void shouldThrowExceptionOnProfilePictureWithoutDataGetWhenProfilePictureIsNotFound() {
+        Long userId = 1L;
+        when(profilePictureRepository.findWithoutDataByUserId(userId)).thenReturn(Mono.empty());
+        EntityNotFoundException e = assertThrows(EntityNotFoundException.class,
+                () -> service.getProfilePictureWithoutData(userId).block());
+        assertEquals("Profile picture associated with user with id " + userId + " is not found", e.getMessage());
     }
 
     @Test
@@ -0,0 +1,163 @@
+package org.briarheart.orchestra.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.briarheart.orchestra.config.ApplicationMailProperties;
+import org.briarheart.orchestra.data.EmailOutboxMessageRepository;
+import org.briarheart.orchestra.model.EmailOutboxMessage;
+import org.briarheart.orchestra.model.EmailOutboxMessageStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class EmailOutboxDispatcherTest {
+    private EmailOutboxDispatcher dispatcher;
+    private EmailOutboxMessageRepository outboxRepository;
+    private JavaMailSender mailSender;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        outboxRepository = mock(EmailOutboxMessageRepository.class);
+        when(outboxRepository.deleteByIdIn(anyCollection()))
+                .thenAnswer(args -> Mono.just(((List<?>) args.getArgument(0)).size()));
+        when(outboxRepository.saveAll(anyIterable())).thenAnswer(args -> Flux.fromIterable(args.getArgument(0)));
+
+        mailSender = mock(JavaMailSender.class);
+        meterRegistry = new SimpleMeterRegistry();
+
+        ApplicationMailProperties mailProperties = new ApplicationMailProperties();
+        mailProperties.getOutbox().setMaxAttempts(3);
+        dispatcher = new EmailOutboxDispatcher(outboxRepository, mailSender, mailProperties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.destroy();
+    }
+
+    @Test
+    void shouldSendClaimedMessagesInSingleBatch() {
+        List<EmailOutboxMessage> messages = List.of(createMessage(1L, "alice@mail.com", 0),
+                createMessage(2L, "bob@mail.com", 0));
+        mockClaimedMessages(messages);
+
+        List<SimpleMailMessage> sentMessages = new ArrayList<>();
+        doAnswer(invocation -> {
+            // Varargs are expanded by Mockito
+            for (Object message : invocation.getArguments()) {
+                sentMessages.add((SimpleMailMessage) message);
+            }
+            return null;
+        }).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        Integer claimed = dispatcher.dispatch().block();
+        assertEquals(2, claimed);
+
+        verify(mailSender, times(1)).send(any(SimpleMailMessage[].class));
+        assertEquals(2, sentMessages.size());
+        assertArrayEquals(new String[]{"alice@mail.com"}, sentMessages.get(0).getTo());
+        assertArrayEquals(new String[]{"bob@mail.com"}, sentMessages.get(1).getTo());
+    }
+
+    @Test
+    void shouldDeleteSentMessages() {
+        mockClaimedMessages(List.of(createMessage(1L, "alice@mail.com", 0)));
+        dispatcher.dispatch().block();
+        verify(outboxRepository, times(1)).deleteByIdIn(List.of(1L));
+        assertEquals(1.0, meterRegistry.get("email.outbox.messages").tag("outcome", "sent").counter().count());
+    }
+
+    @Test
+    void shouldDoNothingWhenThereAreNoMessagesToSend() {
+        when(outboxRepository.claim(anyString(), any(LocalDateTime.class), any(LocalDateTime.class), anyInt()))
+                .thenReturn(Mono.just(0));
+        Integer claimed = dispatcher.dispatch().block();
+        assertEquals(0, claimed);
+        verify(mailSender, never()).send(any(SimpleMailMessage[].class));
+    }
+
+    @Test
+    void shouldScheduleRetryOfFailedMessage() {
+        EmailOutboxMessage message = createMessage(1L, "alice@mail.com", 0);
+        mockClaimedMessages(List.of(message));
+        doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        dispatcher.dispatch().block();
+
+        assertEquals(1, message.getAttempts());
+        assertEquals(EmailOutboxMessageStatus.PENDING, message.getStatus());
+        assertNull(message.getClaimToken());
+        assertTrue(message.getNextAttemptAt().isAfter(LocalDateTime.now(ZoneOffset.UTC)));
+        assertEquals("Connection refused", message.getLastError());
+        verify(outboxRepository, times(1)).saveAll(List.of(message));
+    }
+
+    @Test
+    void shouldMoveMessageToDeadLettersAfterMaxAttempts() {
+        EmailOutboxMessage message = createMessage(1L, "alice@mail.com", 2);
+        mockClaimedMessages(List.of(message));
+        doThrow(new MailSendException("Connection refused")).when(mailSender).send(any(SimpleMailMessage[].class));
+
+        dispatcher.dispatch().block();
+
+        assertEquals(EmailOutboxMessageStatus.DEAD, message.getStatus());
+        assertEquals("", message.getText());
+        assertFalse(message.getNextAttemptAt().isAfter(LocalDateTime.now(ZoneOffset.UTC)));
+        assertEquals(1.0, meterRegistry.get("email.outbox.messages").tag("outcome", "dead").counter().count());
+    }
+
+    @Test
+    void shouldRetryOnlyFailedMessagesOfBatch() {
+        EmailOutboxMessage sentMessage = createMessage(1L, "alice@mail.com", 0);
+        EmailOutboxMessage failedMessage = createMessage(2L, "bob@mail.com", 0);
+        mockClaimedMessages(List.of(sentMessage, failedMessage));
+
+        SimpleMailMessage failedMailMessage = new SimpleMailMessage();
+        failedMailMessage.setTo(failedMessage.getRecipient());
+        failedMailMessage.setSubject(failedMessage.getSubject());
+        failedMailMessage.setText(failedMessage.getText());
+        doThrow(new MailSendException(Map.of(failedMailMessage, new Exception("Mailbox unavailable"))))
+                .when(mailSender).send(any(SimpleMailMessage[].class));
+
+        dispatcher.dispatch().block();
+
+        verify(outboxRepository, times(1)).deleteByIdIn(List.of(1L));
+        verify(outboxRepository, times(1)).saveAll(List.of(failedMessage));
+        assertEquals(0, sentMessage.getAttempts());
+        assertEquals(1, failedMessage.getAttempts());
+    }
+
+    private void mockClaimedMessages(List<EmailOutboxMessage> messages) {
+        when(outboxRepository.claim(anyString(), any(LocalDateTime.class), any(LocalDateTime.class), anyInt()))
+                .thenReturn(Mono.just(messages.size()));
+        when(outboxRepository.findByClaimToken(anyString())).thenReturn(Flux.fromIterable(messages));
+    }
+
+    private static EmailOutboxMessage createMessage(Long id, String recipient, int attempts) {
+        return EmailOutboxMessage.builder()
+                .id(id)
+                .recipient(recipient)
+                .subject("Test")
+                .text("Test message")
+                .attempts(attempts)
+                .claimToken("claim")
+                .build();
+    }
+}
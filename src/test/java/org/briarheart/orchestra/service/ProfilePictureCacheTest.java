@@ -0,0 +1,147 @@
+package org.briarheart.orchestra.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.briarheart.orchestra.config.ApplicationProfilePictureProperties;
+import org.briarheart.orchestra.model.ProfilePicture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class ProfilePictureCacheTest {
+    private ApplicationProfilePictureProperties properties;
+    private ProfilePictureCache cache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ApplicationProfilePictureProperties();
+        properties.getCache().setMaxSize(DataSize.ofBytes(10));
+        cache = new ProfilePictureCache(properties);
+    }
+
+    @Test
+    void shouldThrowExceptionOnConstructWhenPropertiesAreNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new ProfilePictureCache(null));
+        assertEquals("Profile picture properties must not be null", e.getMessage());
+    }
+
+    @Test
+    void shouldLoadProfilePictureOnlyOnce() {
+        AtomicInteger loadCount = new AtomicInteger();
+        Function<Integer, Mono<ProfilePicture>> loader = createLoader(1L, 3, loadCount);
+        cache.get(1L, null, loader).block();
+        ProfilePicture result = cache.get(1L, null, loader).block();
+        assertNotNull(result);
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    void shouldCacheProfilePicturesOfDifferentSizesSeparately() {
+        AtomicInteger loadCount = new AtomicInteger();
+        Function<Integer, Mono<ProfilePicture>> loader = createLoader(1L, 3, loadCount);
+        cache.get(1L, null, loader).block();
+        cache.get(1L, 32, loader).block();
+        assertEquals(2, loadCount.get());
+    }
+
+    @Test
+    void shouldCacheProfilePicturesByVariantSize() {
+        AtomicInteger loadCount = new AtomicInteger();
+        Function<Integer, Mono<ProfilePicture>> loader = createLoader(1L, 3, loadCount);
+        cache.get(1L, 20, loader).block();
+        cache.get(1L, 30, loader).block();
+        cache.get(1L, 32, loader).block();
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    void shouldPassVariantSizeToLoader() {
+        List<Integer> loadedSizes = new ArrayList<>();
+        Function<Integer, Mono<ProfilePicture>> loader = size -> {
+            loadedSizes.add(size);
+            return Mono.just(ProfilePicture.builder().userId(1L).data(new byte[1]).build());
+        };
+        cache.get(1L, 48, loader).block();
+        cache.get(1L, 512, loader).block();
+        assertEquals(Arrays.asList(64, null), loadedSizes);
+    }
+
+    @Test
+    void shouldReturnCachedProfilePictureForAllSizesServedByTheSameVariant() {
+        assertNull(cache.getIfPresent(1L, 48));
+        cache.get(1L, 64, createLoader(1L, 3, new AtomicInteger())).block();
+        assertNotNull(cache.getIfPresent(1L, 40));
+        assertNotNull(cache.getIfPresent(1L, 48));
+        assertNull(cache.getIfPresent(1L, 32));
+    }
+
+    @Test
+    void shouldEvictProfilePicturesWhenMaxSizeIsExceeded() {
+        AtomicInteger loadCount = new AtomicInteger();
+        cache.get(1L, null, createLoader(1L, 6, loadCount)).block();
+        cache.get(2L, null, createLoader(2L, 6, loadCount)).block();
+        cache.get(1L, null, createLoader(1L, 6, loadCount)).block();
+        assertEquals(3, loadCount.get());
+    }
+
+    @Test
+    void shouldInvalidateProfilePicturesOfUser() {
+        AtomicInteger loadCount = new AtomicInteger();
+        Function<Integer, Mono<ProfilePicture>> loader = createLoader(1L, 3, loadCount);
+        cache.get(1L, null, loader).block();
+        cache.get(1L, 32, loader).block();
+        cache.invalidate(1L);
+        cache.get(1L, null, loader).block();
+        cache.get(1L, 32, loader).block();
+        assertEquals(4, loadCount.get());
+    }
+
+    @Test
+    void shouldNotCacheProfilePictureLoadedDuringInvalidation() {
+        MonoProcessor<ProfilePicture> pendingPicture = MonoProcessor.create();
+        Mono<ProfilePicture> result = cache.get(1L, null, size -> pendingPicture);
+        result.subscribe();
+        cache.invalidate(1L);
+        pendingPicture.onNext(ProfilePicture.builder().userId(1L).data(new byte[]{1}).build());
+
+        AtomicInteger loadCount = new AtomicInteger();
+        cache.get(1L, null, createLoader(1L, 1, loadCount)).block();
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    void shouldPublishCacheMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+
+        AtomicInteger loadCount = new AtomicInteger();
+        Function<Integer, Mono<ProfilePicture>> loader = createLoader(1L, 3, loadCount);
+        cache.get(1L, null, loader).block();
+        cache.get(1L, null, loader).block();
+
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "profilePictures").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "profilePictures").tag("result", "miss")
+                .functionCounter().count());
+        assertNotNull(registry.find("cache.evictions").tag("cache", "profilePictures").functionCounter());
+    }
+
+    private Function<Integer, Mono<ProfilePicture>> createLoader(Long userId, int dataSize, AtomicInteger loadCount) {
+        return size -> Mono.fromSupplier(() -> {
+            loadCount.incrementAndGet();
+            return ProfilePicture.builder().userId(userId).data(new byte[dataSize]).build();
+        });
+    }
+}
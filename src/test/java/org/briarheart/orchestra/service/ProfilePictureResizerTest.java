@@ -0,0 +1,131 @@
+package org.briarheart.orchestra.service;
+
+import org.briarheart.orchestra.config.ApplicationProfilePictureProperties;
+import org.briarheart.orchestra.model.ProfilePicture;
+import org.briarheart.orchestra.model.ProfilePictureVariant;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class ProfilePictureResizerTest {
+    private ProfilePictureResizer resizer;
+
+    @BeforeEach
+    void setUp() {
+        resizer = new ProfilePictureResizer(new ApplicationProfilePictureProperties());
+    }
+
+    @AfterEach
+    void tearDown() {
+        resizer.destroy();
+    }
+
+    @Test
+    void shouldThrowExceptionOnConstructWhenPropertiesAreNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> new ProfilePictureResizer(null));
+        assertEquals("Profile picture properties must not be null", e.getMessage());
+    }
+
+    @Test
+    void shouldCreateVariantForEveryConfiguredSize() throws IOException {
+        ProfilePicture picture = createPicture(600, 400, BufferedImage.TYPE_INT_RGB, "jpeg");
+        List<ProfilePictureVariant> variants = resizer.resize(picture).collectList().block();
+        assertNotNull(variants);
+        assertEquals(3, variants.size());
+        for (ProfilePictureVariant variant : variants) {
+            assertEquals(picture.getUserId(), variant.getUserId());
+            assertEquals(MediaType.IMAGE_JPEG_VALUE, variant.getType());
+            BufferedImage image = ImageIO.read(new ByteArrayInputStream(variant.getData()));
+            assertEquals((int) variant.getSize(), image.getWidth());
+            assertEquals(Math.round(variant.getSize() * 400 / 600.0), image.getHeight());
+        }
+    }
+
+    @Test
+    void shouldPreserveTransparency() throws IOException {
+        ProfilePicture picture = createPicture(100, 100, BufferedImage.TYPE_INT_ARGB, "png");
+        List<ProfilePictureVariant> variants = resizer.resize(picture).collectList().block();
+        assertNotNull(variants);
+        assertEquals(2, variants.size());
+        for (ProfilePictureVariant variant : variants) {
+            assertEquals(MediaType.IMAGE_PNG_VALUE, variant.getType());
+            assertTrue(ImageIO.read(new ByteArrayInputStream(variant.getData())).getColorModel().hasAlpha());
+        }
+    }
+
+    @Test
+    void shouldNotCreateVariantsLargerThanPicture() throws IOException {
+        ProfilePicture picture = createPicture(32, 32, BufferedImage.TYPE_INT_RGB, "jpeg");
+        List<ProfilePictureVariant> variants = resizer.resize(picture).collectList().block();
+        assertNotNull(variants);
+        assertTrue(variants.isEmpty());
+    }
+
+    @Test
+    void shouldNotCreateVariantsWhenPictureCannotBeDecoded() {
+        ProfilePicture picture = ProfilePicture.builder().userId(1L).data(new byte[]{1, 2, 3}).build();
+        List<ProfilePictureVariant> variants = resizer.resize(picture).collectList().block();
+        assertNotNull(variants);
+        assertTrue(variants.isEmpty());
+    }
+
+    @Test
+    void shouldRejectPictureWithTooManyPixels() throws IOException {
+        ApplicationProfilePictureProperties properties = new ApplicationProfilePictureProperties();
+        properties.setMaxPixels(100 * 100 - 1);
+        ProfilePictureResizer limitedResizer = new ProfilePictureResizer(properties);
+        try {
+            ProfilePicture picture = createPicture(100, 100, BufferedImage.TYPE_INT_RGB, "jpeg");
+            ProfilePictureTooLargeException e = assertThrows(ProfilePictureTooLargeException.class,
+                    () -> limitedResizer.resize(picture).collectList().block());
+            assertEquals("Profile picture must not contain more than 9999 pixels", e.getMessage());
+        } finally {
+            limitedResizer.destroy();
+        }
+    }
+
+    @Test
+    void shouldRejectPictureDeclaringHugeDimensionsWithoutDecodingIt() {
+        // PNG header declaring 50000x50000 image without any image data
+        ByteBuffer header = ByteBuffer.allocate(33);
+        header.put(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'});
+        header.putInt(13);
+        int chunkStart = header.position();
+        header.put(new byte[]{'I', 'H', 'D', 'R'}).putInt(50_000).putInt(50_000).put(new byte[]{8, 2, 0, 0, 0});
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), chunkStart, header.position() - chunkStart);
+        header.putInt((int) crc.getValue());
+
+        ProfilePicture picture = ProfilePicture.builder().userId(1L).data(header.array()).build();
+        assertThrows(ProfilePictureTooLargeException.class, () -> resizer.resize(picture).collectList().block());
+    }
+
+    @Test
+    void shouldThrowExceptionOnResizeWhenPictureIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> resizer.resize(null));
+        assertEquals("Profile picture must not be null", e.getMessage());
+    }
+
+    private ProfilePicture createPicture(int width, int height, int imageType, String format) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, imageType);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, format, output);
+        return ProfilePicture.builder().userId(1L).data(output.toByteArray()).build();
+    }
+}
@@ -0,0 +1,110 @@
+package org.briarheart.orchestra.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.briarheart.orchestra.model.Tag;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.MonoProcessor;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class TagCacheTest {
+    private TagCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new TagCache(1, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void shouldThrowExceptionOnConstructWhenTimeToLiveIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new TagCache(1, null));
+        assertEquals("Time to live must not be null", e.getMessage());
+    }
+
+    @Test
+    void shouldReturnTagsOfUserByTheirIds() {
+        Tag tag1 = Tag.builder().id(2L).userId(1L).name("Tag 1").build();
+        Tag tag2 = Tag.builder().id(3L).userId(1L).name("Tag 2").build();
+        Map<Long, Tag> result = cache.get(1L, () -> Flux.just(tag1, tag2)).block();
+        assertNotNull(result);
+        assertEquals(List.of(2L, 3L), List.copyOf(result.keySet()));
+        assertEquals(tag2, result.get(3L));
+    }
+
+    @Test
+    void shouldLoadTagsOnlyOnce() {
+        AtomicInteger loadCount = new AtomicInteger();
+        Supplier<Flux<Tag>> loader = createLoader(1L, loadCount);
+        cache.get(1L, loader).block();
+        Map<Long, Tag> result = cache.get(1L, loader).block();
+        assertNotNull(result);
+        assertEquals(1, result.size());
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    void shouldEvictTagsWhenMaxSizeIsExceeded() {
+        AtomicInteger loadCount = new AtomicInteger();
+        cache.get(1L, createLoader(1L, loadCount)).block();
+        cache.get(2L, createLoader(2L, loadCount)).block();
+        cache.get(1L, createLoader(1L, loadCount)).block();
+        assertEquals(3, loadCount.get());
+    }
+
+    @Test
+    void shouldInvalidateTagsOfUser() {
+        AtomicInteger loadCount = new AtomicInteger();
+        Supplier<Flux<Tag>> loader = createLoader(1L, loadCount);
+        cache.get(1L, loader).block();
+        cache.invalidate(1L);
+        cache.get(1L, loader).block();
+        assertEquals(2, loadCount.get());
+    }
+
+    @Test
+    void shouldNotCacheTagsLoadedDuringInvalidation() {
+        MonoProcessor<Tag> pendingTag = MonoProcessor.create();
+        cache.get(1L, pendingTag::flux).subscribe();
+        cache.invalidate(1L);
+        pendingTag.onNext(Tag.builder().id(2L).userId(1L).name("Test tag").build());
+
+        AtomicInteger loadCount = new AtomicInteger();
+        cache.get(1L, createLoader(1L, loadCount)).block();
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    void shouldPublishCacheMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        cache.bindTo(registry);
+
+        AtomicInteger loadCount = new AtomicInteger();
+        Supplier<Flux<Tag>> loader = createLoader(1L, loadCount);
+        cache.get(1L, loader).block();
+        cache.get(1L, loader).block();
+
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "tags").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "tags").tag("result", "miss")
+                .functionCounter().count());
+        assertNotNull(registry.find("cache.evictions").tag("cache", "tags").functionCounter());
+    }
+
+    private Supplier<Flux<Tag>> createLoader(Long userId, AtomicInteger loadCount) {
+        return () -> Flux.defer(() -> {
+            loadCount.incrementAndGet();
+            return Flux.just(Tag.builder().id(userId + 1).userId(userId).name("Test tag").build());
+        });
+    }
+}
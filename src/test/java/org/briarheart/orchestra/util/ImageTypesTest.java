@@ -0,0 +1,67 @@
+package org.briarheart.orchestra.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author Roman Chigvintsev
+ */
+class ImageTypesTest {
+    private final DefaultDataBufferFactory bufferFactory = new DefaultDataBufferFactory();
+
+    @Test
+    void shouldDetectPng() {
+        byte[] bytes = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0};
+        assertEquals(MediaType.IMAGE_PNG, ImageTypes.detect(bufferFactory.wrap(bytes)));
+    }
+
+    @Test
+    void shouldDetectJpeg() {
+        byte[] bytes = {(byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xe0};
+        assertEquals(MediaType.IMAGE_JPEG, ImageTypes.detect(bufferFactory.wrap(bytes)));
+    }
+
+    @Test
+    void shouldDetectGif() {
+        byte[] bytes = "GIF89a".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(MediaType.IMAGE_GIF, ImageTypes.detect(bufferFactory.wrap(bytes)));
+    }
+
+    @Test
+    void shouldDetectWebp() {
+        byte[] bytes = "RIFF\0\0\0\0WEBPVP8 ".getBytes(StandardCharsets.US_ASCII);
+        assertEquals(ImageTypes.IMAGE_WEBP, ImageTypes.detect(bufferFactory.wrap(bytes)));
+    }
+
+    @Test
+    void shouldReturnNullWhenContentIsNotImage() {
+        byte[] bytes = "Not an image".getBytes(StandardCharsets.US_ASCII);
+        assertNull(ImageTypes.detect(bufferFactory.wrap(bytes)));
+    }
+
+    @Test
+    void shouldReturnNullWhenContentIsShorterThanSignature() {
+        byte[] bytes = {(byte) 0xff, (byte) 0xd8};
+        assertNull(ImageTypes.detect(bufferFactory.wrap(bytes)));
+    }
+
+    @Test
+    void shouldNotChangeReadPosition() {
+        byte[] bytes = {(byte) 0xff, (byte) 0xd8, (byte) 0xff, (byte) 0xe0};
+        DataBuffer buffer = bufferFactory.wrap(bytes);
+        ImageTypes.detect(buffer);
+        assertEquals(0, buffer.readPosition());
+    }
+
+    @Test
+    void shouldThrowExceptionOnDetectWhenContentIsNull() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ImageTypes.detect(null));
+        assertEquals("Image content must not be null", e.getMessage());
+    }
+}
@@ -19,9 +19,13 @@ DELETE FROM tasks_tags;
 INSERT INTO tasks_tags (task_id, tag_id) VALUES (1, 1);
 
 DELETE FROM email_confirmation_token;
-INSERT INTO email_confirmation_token (id, user_id, email, token_value, created_at, expires_at)
-VALUES (1, 2, 'jane.doe@mail.com', '4b1f7955-a406-4d36-8cbe-d6c61f39e27d', '2020-01-01 00:00:00', '9999-01-01 00:00:00');
+-- Token value is 4b1f7955-a406-4d36-8cbe-d6c61f39e27d
+INSERT INTO email_confirmation_token (id, user_id, email, token_hash, created_at, expires_at)
+VALUES (1, 2, 'jane.doe@mail.com', '3a92124f9debfb166bcc208479ca6b55e403ef8ddf34e946e75b5507b9ff6c69',
+        '2020-01-01 00:00:00', '9999-01-01 00:00:00');
 
 DELETE FROM password_reset_confirmation_token;
-INSERT INTO password_reset_confirmation_token (id, user_id, email, token_value, created_at, expires_at)
-VALUES (1, 1, 'john.doe@mail.com', 'cf575578-cddf-4773-b1e0-5f37cbb0a8d9', '2020-01-01 00:00:00', '9999-01-01 00:00:00');
+-- Token value is cf575578-cddf-4773-b1e0-5f37cbb0a8d9
+INSERT INTO password_reset_confirmation_token (id, user_id, email, token_hash, created_at, expires_at)
+VALUES (1, 1, 'john.doe@mail.com', '383474a53b9b4de855efc6f561ea86f65dc6df2523fbb7b9470558605680a3f0',
+        '2020-01-01 00:00:00', '9999-01-01 00:00:00');